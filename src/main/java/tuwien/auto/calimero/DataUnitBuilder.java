@@ -94,11 +94,9 @@ public final class DataUnitBuilder
 		// ADC codes
 		else if (apci4 == 6 || apci4 == 7)
 			return apci4 << 6;
-		// memory codes
-		else if (apci4 == 8 || apci4 == 9 || apci4 == 10) {
-			if ((apci6 & 0x30) == 0)
-				return apci4 << 6;
-		}
+		// memory codes, the lowest 6 bits hold the number of bytes
+		else if (apci4 == 8 || apci4 == 9 || apci4 == 10)
+			return apci4 << 6;
 		// the rest
 		else
 			return apci4 << 6 | apci6;
@@ -250,7 +248,7 @@ public final class DataUnitBuilder
 		// 0x0280 A_Memory_Write-PDU
 		else if (svc == 0x0200 || svc == 0x0240 || svc == 0x0280) {
 			offset = 1;
-			mask = 0x0f;
+			mask = 0x3f;
 		}
 		final byte[] asdu = new byte[apdu.length - offset];
 		for (int i = 0; i < asdu.length; ++i)
@@ -62,6 +62,21 @@ public class GroupAddress extends KNXAddress
 
 	private static volatile boolean fmt3Level = true;
 
+	// shared instances of all address values, created on first use of valueOf and
+	// safely published by the class initialization of the holder
+	private static final class Shared
+	{
+		static final GroupAddress[] groups = new GroupAddress[0x10000];
+
+		static {
+			for (int i = 0; i < groups.length; i++)
+				groups[i] = new GroupAddress(i);
+		}
+
+		private Shared()
+		{}
+	}
+
 	/**
 	 * Creates a KNX group address from a 16 Bit address value.
 	 * <p>
@@ -73,6 +88,26 @@ public class GroupAddress extends KNXAddress
 		super(address);
 	}
 
+	/**
+	 * Returns a shared KNX group address instance for a 16 Bit address value.
+	 * <p>
+	 * There is exactly one shared instance for every address value, so shared
+	 * instances might be compared by identity, and no new address object is allocated
+	 * for every decoded frame. The shared instances of all 65536 address values are
+	 * created together on the first call of this method.<br>
+	 * Addresses created by a constructor are always new instances, compare those using
+	 * {@link #equals(Object)}.
+	 * 
+	 * @param address the address value in the range 0 <= value <= 0xFFFF
+	 * @return the group address
+	 */
+	public static GroupAddress valueOf(int address)
+	{
+		if (address < 0 || address > 0xffff)
+			throw new KNXIllegalArgumentException("address out of range [0..0xFFFF]");
+		return Shared.groups[address];
+	}
+
 	/**
 	 * Creates a KNX group address from the 3-level notation main-, middle- and sub-group.
 	 * <p>
@@ -83,7 +118,7 @@ public class GroupAddress extends KNXAddress
 	 */
 	public GroupAddress(int mainGroup, int middleGroup, int subGroup)
 	{
-		init(mainGroup, middleGroup, subGroup);
+		super(toAddress(mainGroup, middleGroup, subGroup));
 	}
 
 	/**
@@ -95,7 +130,7 @@ public class GroupAddress extends KNXAddress
 	 */
 	public GroupAddress(int mainGroup, int subGroup)
 	{
-		init(mainGroup, subGroup);
+		super(toAddress(mainGroup, subGroup));
 	}
 
 	/**
@@ -123,20 +158,7 @@ public class GroupAddress extends KNXAddress
 	 */
 	public GroupAddress(String address) throws KNXFormatException
 	{
-		final String[] tokens = parse(address);
-		try {
-			if (tokens.length == 2)
-				init(Byte.parseByte(tokens[0]), Short.parseShort(tokens[1]));
-			else if (tokens.length == 3)
-				init(Byte.parseByte(tokens[0]), Byte.parseByte(tokens[1]), Short
-					.parseShort(tokens[2]));
-		}
-		catch (final NumberFormatException e) {
-			throw new KNXFormatException("invalid group address", address);
-		}
-		catch (final KNXIllegalArgumentException e) {
-			throw new KNXFormatException(e.getMessage());
-		}
+		super(parseGroup(address));
 	}
 
 	/**
@@ -263,6 +285,8 @@ public class GroupAddress extends KNXAddress
 	 */
 	public boolean equals(Object obj)
 	{
+		if (obj == this)
+			return true;
 		if (obj instanceof GroupAddress)
 			return address == ((GroupAddress) obj).address;
 		return false;
@@ -276,17 +300,34 @@ public class GroupAddress extends KNXAddress
 		return address;
 	}
 
-	private void init(int main, int middle, int sub)
+	private static int parseGroup(String address) throws KNXFormatException
+	{
+		final String[] tokens = parse(address);
+		try {
+			if (tokens.length == 2)
+				return toAddress(Byte.parseByte(tokens[0]), Short.parseShort(tokens[1]));
+			return toAddress(Byte.parseByte(tokens[0]), Byte.parseByte(tokens[1]), Short
+				.parseShort(tokens[2]));
+		}
+		catch (final NumberFormatException e) {
+			throw new KNXFormatException("invalid group address", address);
+		}
+		catch (final KNXIllegalArgumentException e) {
+			throw new KNXFormatException(e.getMessage());
+		}
+	}
+
+	private static int toAddress(int main, int middle, int sub)
 	{
 		if ((main & ~0x1F) != 0 || (middle & ~0x7) != 0 || (sub & ~0xFF) != 0)
 			throw new KNXIllegalArgumentException("address group out of range");
-		address = main << 11 | middle << 8 | sub;
+		return main << 11 | middle << 8 | sub;
 	}
 
-	private void init(int main, int sub)
+	private static int toAddress(int main, int sub)
 	{
 		if ((main & ~0x1F) != 0 || (sub & ~0x7FF) != 0)
 			throw new KNXIllegalArgumentException("address group out of range");
-		address = main << 11 | sub;
+		return main << 11 | sub;
 	}
 }
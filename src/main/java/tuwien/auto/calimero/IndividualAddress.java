@@ -52,6 +52,21 @@ public class IndividualAddress extends KNXAddress
 {
 	static final String ATTR_IND = "individual";
 
+	// shared instances of all address values, created on first use of valueOf and
+	// safely published by the class initialization of the holder
+	private static final class Shared
+	{
+		static final IndividualAddress[] individuals = new IndividualAddress[0x10000];
+
+		static {
+			for (int i = 0; i < individuals.length; i++)
+				individuals[i] = new IndividualAddress(i);
+		}
+
+		private Shared()
+		{}
+	}
+
 	/**
 	 * Creates a KNX individual address from a 16 Bit address value.
 	 * <p>
@@ -63,6 +78,26 @@ public class IndividualAddress extends KNXAddress
 		super(address);
 	}
 
+	/**
+	 * Returns a shared KNX individual address instance for a 16 Bit address value.
+	 * <p>
+	 * There is exactly one shared instance for every address value, so shared
+	 * instances might be compared by identity, and no new address object is allocated
+	 * for every decoded frame. The shared instances of all 65536 address values are
+	 * created together on the first call of this method.<br>
+	 * Addresses created by a constructor are always new instances, compare those using
+	 * {@link #equals(Object)}.
+	 * 
+	 * @param address the address value in the range 0 <= value <= 0xFFFF
+	 * @return the individual address
+	 */
+	public static IndividualAddress valueOf(int address)
+	{
+		if (address < 0 || address > 0xffff)
+			throw new KNXIllegalArgumentException("address out of range [0..0xFFFF]");
+		return Shared.individuals[address];
+	}
+
 	/**
 	 * Creates a KNX individual address from the 3-level notation area-, line- and
 	 * device-address.
@@ -74,7 +109,7 @@ public class IndividualAddress extends KNXAddress
 	 */
 	public IndividualAddress(int area, int line, int device)
 	{
-		init(area, line, device);
+		super(toAddress(area, line, device));
 	}
 
 	/**
@@ -103,17 +138,7 @@ public class IndividualAddress extends KNXAddress
 	 */
 	public IndividualAddress(String address) throws KNXFormatException
 	{
-		final String[] tokens = parse(address);
-		if (tokens.length != 3)
-			throw new KNXFormatException("wrong individual address syntax with "
-				+ tokens.length + " levels", address);
-		try {
-			init(Byte.parseByte(tokens[0]), Byte.parseByte(tokens[1]), Short
-				.parseShort(tokens[2]));
-		}
-		catch (final KNXIllegalArgumentException e) {
-			throw new KNXFormatException(e.getMessage());
-		}
+		super(parseIndividual(address));
 	}
 
 	/**
@@ -197,6 +222,8 @@ public class IndividualAddress extends KNXAddress
 	 */
 	public boolean equals(Object obj)
 	{
+		if (obj == this)
+			return true;
 		if (obj instanceof IndividualAddress)
 			return address == ((IndividualAddress) obj).address;
 		return false;
@@ -212,10 +239,25 @@ public class IndividualAddress extends KNXAddress
 		return offset ^ address;
 	}
 
-	private void init(int area, int line, int device)
+	private static int parseIndividual(String address) throws KNXFormatException
+	{
+		final String[] tokens = parse(address);
+		if (tokens.length != 3)
+			throw new KNXFormatException("wrong individual address syntax with "
+				+ tokens.length + " levels", address);
+		try {
+			return toAddress(Byte.parseByte(tokens[0]), Byte.parseByte(tokens[1]), Short
+				.parseShort(tokens[2]));
+		}
+		catch (final KNXIllegalArgumentException e) {
+			throw new KNXFormatException(e.getMessage());
+		}
+	}
+
+	private static int toAddress(int area, int line, int device)
 	{
 		if ((area & ~0xF) != 0 || (line & ~0xF) != 0 || (device & ~0xFF) != 0)
 			throw new KNXIllegalArgumentException("address value out of range");
-		address = area << 12 | line << 8 | device;
+		return area << 12 | line << 8 | device;
 	}
 }
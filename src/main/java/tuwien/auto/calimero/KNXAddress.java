@@ -36,6 +36,7 @@
 
 package tuwien.auto.calimero;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.StringTokenizer;
@@ -61,7 +62,7 @@ public abstract class KNXAddress
 	private static final String ATTR_TYPE = "type";
 	private static final String TAG_ADDRESS = "knxAddress";
 
-	int address;
+	final int address;
 
 	/**
 	 * Creates a KNX address from a 16 Bit address value.
@@ -112,23 +113,9 @@ public abstract class KNXAddress
 			throw new KNXMLException("XML element represents no KNX " + getType()
 				+ " address", e != null ? e.getName() : null, r.getLineNumber());
 		r.complete(e);
-		try {
-			address = Integer.parseInt(e.getCharacterData());
-			if (address >= 0 && address <= 0xffff)
-				return;
-		}
-		catch (final NumberFormatException nfe) {}
-		throw new KNXMLException("malformed KNX address value", e.getCharacterData(), r
-			.getLineNumber());
+		address = parseValue(e.getCharacterData(), r.getLineNumber());
 	}
 
-	/**
-	 * Creates KNX address 0 (reserved address).
-	 * <p>
-	 */
-	KNXAddress()
-	{}
-
 	/**
 	 * Creates a KNX address from xml input.
 	 * <p>
@@ -161,7 +148,9 @@ public abstract class KNXAddress
 	 * An address level separator of type '.' found in <code>address</code> indicates an
 	 * individual address, i.e. an {@link IndividualAddress} is created, otherwise a
 	 * {@link GroupAddress} is created.<br>
-	 * Allowed separators are '.' or '/', mutually exclusive.
+	 * Allowed separators are '.' or '/', mutually exclusive.<br>
+	 * A shared address instance is returned, see {@link GroupAddress#valueOf(int)}
+	 * and {@link IndividualAddress#valueOf(int)}.
 	 * 
 	 * @param address string containing the KNX address
 	 * @return the created KNX address, either of subtype {@link GroupAddress} or
@@ -172,8 +161,9 @@ public abstract class KNXAddress
 	public static KNXAddress create(String address) throws KNXFormatException
 	{
 		if (address.indexOf('.') != -1)
-			return new IndividualAddress(address);
-		return new GroupAddress(address);
+			return IndividualAddress.valueOf(new IndividualAddress(address)
+				.getRawAddress());
+		return GroupAddress.valueOf(new GroupAddress(address).getRawAddress());
 	}
 
 	/**
@@ -220,6 +210,32 @@ public abstract class KNXAddress
 		return new byte[] { (byte) (address >>> 8), (byte) address };
 	}
 
+	/**
+	 * Writes the raw address value into <code>buf</code>, starting at the current buffer
+	 * position.
+	 * <p>
+	 * The high byte of the address is written first, the buffer position is advanced by
+	 * 2.
+	 * 
+	 * @param buf the buffer to write to
+	 */
+	public final void writeTo(ByteBuffer buf)
+	{
+		buf.put((byte) (address >>> 8));
+		buf.put((byte) address);
+	}
+
+	private static int parseValue(String value, int line) throws KNXMLException
+	{
+		try {
+			final int address = Integer.parseInt(value);
+			if (address >= 0 && address <= 0xffff)
+				return address;
+		}
+		catch (final NumberFormatException nfe) {}
+		throw new KNXMLException("malformed KNX address value", value, line);
+	}
+
 	static String[] parse(String address) throws KNXFormatException
 	{
 		StringTokenizer t = null;
@@ -58,6 +58,8 @@ import tuwien.auto.calimero.exception.KNXTimeoutException;
 import tuwien.auto.calimero.link.KNXLinkClosedException;
 import tuwien.auto.calimero.link.KNXNetworkLink;
 import tuwien.auto.calimero.link.event.NetworkLinkListener;
+import tuwien.auto.calimero.link.event.ReconnectEvent;
+import tuwien.auto.calimero.link.event.ReconnectListener;
 import tuwien.auto.calimero.link.medium.KNXMediumSettings;
 import tuwien.auto.calimero.log.LogManager;
 import tuwien.auto.calimero.log.LogService;
@@ -81,6 +83,11 @@ import tuwien.auto.calimero.log.LogService;
  * If no request filter is set, no buffer lookup is done on requests, instead the request
  * is forwarded directly to the KNX network.
  * <p>
+ * If the link of a configuration reconnects after an interruption (see
+ * {@link ReconnectListener}), messages buffered before the reconnect might be outdated.
+ * A request for such a message is forwarded to the KNX network, unless the configuration
+ * is set to query the buffer only; the response refreshes the buffer.
+ * <p>
  * In general, one network buffer is created for one KNX installation, to easier
  * distinguish between different installations. Nevertheless, this is not enforced in any
  * way; a new configuration also might just always use a new network buffer.
@@ -100,8 +107,10 @@ public final class NetworkBuffer
 		private volatile boolean active;
 		private volatile boolean queryBufferOnly;
 		private DatapointModel model;
+		// buffered frames older than this time are outdated after a link interruption
+		private volatile long refreshBefore;
 
-		private final class SquirrelListener implements NetworkLinkListener
+		private final class SquirrelListener implements ReconnectListener
 		{
 			SquirrelListener()
 			{}
@@ -123,6 +132,14 @@ public final class NetworkBuffer
 				activate(false);
 			}
 
+			public void linkInterrupted(CloseEvent e)
+			{}
+
+			public void linkReconnected(ReconnectEvent e)
+			{
+				refreshBefore = e.getReconnectTime();
+			}
+
 			private void updateBuffer(CEMI frame)
 			{
 				if (nwFilter != null)
@@ -218,7 +235,7 @@ public final class NetworkBuffer
 				if (rf == null || !isOpen() || DataUnitBuilder.getAPDUService(nsdu) != 0)
 					return false;
 				final CEMILData cemi = rf.request(dst, ConfigImpl.this);
-				if (cemi != null) {
+				if (cemi != null && (queryBufferOnly || !isOutdated(dst))) {
 					fireIndication(cemi);
 					return true;
 				}
@@ -227,6 +244,17 @@ public final class NetworkBuffer
 				return false;
 			}
 
+			// a frame buffered before a link interruption is refreshed from the network
+			private boolean isOutdated(KNXAddress dst)
+			{
+				final long refresh = refreshBefore;
+				if (refresh == 0)
+					return false;
+				final Cache c = getCache();
+				final CacheObject co = c != null ? c.get(dst) : null;
+				return co != null && co.getTimestamp() < refresh;
+			}
+
 			private void fireIndication(CEMILData frame)
 			{
 				final FrameEvent e = new FrameEvent(this, frame);
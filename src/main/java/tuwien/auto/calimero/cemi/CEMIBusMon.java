@@ -36,7 +36,7 @@
 
 package tuwien.auto.calimero.cemi;
 
-import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
 
 import tuwien.auto.calimero.DataUnitBuilder;
 import tuwien.auto.calimero.exception.KNXFormatException;
@@ -199,38 +199,43 @@ public class CEMIBusMon implements CEMI
 	 */
 	public CEMIBusMon(byte[] data, int offset, int length) throws KNXFormatException
 	{
-		final ByteArrayInputStream is = new ByteArrayInputStream(data, offset, length);
+		final int end = Math.min(offset + length, data.length);
+		int i = offset;
 		// don't limit to maximum of 34 bytes so to allow extended frames
-		if (is.available() < 10)
-			throw new KNXFormatException("bus monitor frame length too short", is
-				.available());
-		final int mc = is.read();
+		if (end - i < 10)
+			throw new KNXFormatException("bus monitor frame length too short", end - i);
+		final int mc = data[i++] & 0xff;
 		if (mc != MC_BUSMON_IND)
 			throw new KNXFormatException("msg code indicates no bus monitor frame", mc);
-		final short ail = (short) is.read();
+		final short ail = (short) (data[i++] & 0xff);
 		if (ail < MIN_ADDINFO_LENGTH)
 			throw new KNXFormatException("bus monitor add.info length too short", ail);
+		if (ail > end - i)
+			throw new KNXFormatException("bus monitor add.info exceeds frame", ail);
 
 		boolean statusRead = false;
 		boolean timeRead = false;
-		final int body = is.available() - ail;
-		final byte[] addInfo = new byte[20];
-		while (is.available() > body) {
-			final int id = is.read();
-			final int len = is.read();
-			is.read(addInfo, 0, len);
+		// an add.info element might exceed the add.info length (e.g., an extended
+		// timestamp with add.info length 7), the raw frame follows the last element
+		final int body = i + ail;
+		while (i < body) {
+			final int id = data[i++] & 0xff;
+			final int len = i < end ? data[i++] & 0xff : 0;
+			if (len > end - i)
+				throw new KNXFormatException("invalid add.info length", len);
 			if (!statusRead)
-				statusRead = readStatus(id, len, addInfo);
+				statusRead = readStatus(id, len, data, i);
 			if (!timeRead)
-				timeRead = readTimestamp(id, len, addInfo);
+				timeRead = readTimestamp(id, len, data, i);
+			i += len;
 		}
 		if (!timeRead)
 			throw new KNXFormatException("no additional info for timestamp");
 		if (!statusRead)
 			throw new KNXFormatException("no additional info for status info");
 
-		raw = new byte[is.available()];
-		is.read(raw, 0, raw.length);
+		raw = new byte[end - i];
+		System.arraycopy(data, i, raw, 0, raw.length);
 	}
 
 	/* (non-Javadoc)
@@ -355,7 +360,7 @@ public class CEMIBusMon implements CEMI
 	 */
 	public final short getStructLength()
 	{
-		return (short) (raw.length + 9);
+		return (short) (raw.length + 7 + stampLength());
 	}
 
 	/* (non-Javadoc)
@@ -363,25 +368,38 @@ public class CEMIBusMon implements CEMI
 	 */
 	public byte[] toByteArray()
 	{
-		final byte stampLen = (byte) (tstampType == TYPEID_TIMESTAMP ? 2 : 4);
-		final byte[] buf = new byte[raw.length + 7 + stampLen];
-		int i = 0;
-		buf[i++] = MC_BUSMON_IND;
-		buf[i++] = 7;
-		buf[i++] = TYPEID_STATUSINFO;
-		buf[i++] = 1;
-		buf[i++] = (byte) status;
-		buf[i++] = (byte) tstampType;
-		buf[i++] = stampLen;
+		final byte[] buf = new byte[getStructLength()];
+		writeTo(ByteBuffer.wrap(buf));
+		return buf;
+	}
+
+	/**
+	 * Writes the byte representation of the whole cEMI message structure into
+	 * <code>buf</code>, starting at the current buffer position.
+	 * <p>
+	 * The buffer position is advanced by the message length, see
+	 * {@link #getStructLength()}.
+	 * 
+	 * @param buf the buffer to write to
+	 */
+	public void writeTo(ByteBuffer buf)
+	{
+		final int stampLen = stampLength();
+		buf.put((byte) MC_BUSMON_IND);
+		// status info and timestamp, each with type ID and length
+		buf.put((byte) (5 + stampLen));
+		buf.put((byte) TYPEID_STATUSINFO);
+		buf.put((byte) 1);
+		buf.put((byte) status);
+		buf.put((byte) tstampType);
+		buf.put((byte) stampLen);
 		if (tstampType == TYPEID_TIMESTAMP_EXT) {
-			buf[i++] = (byte) (tstamp >> 24);
-			buf[i++] = (byte) (tstamp >> 16);
+			buf.put((byte) (tstamp >> 24));
+			buf.put((byte) (tstamp >> 16));
 		}
-		buf[i++] = (byte) (tstamp >> 8);
-		buf[i++] = (byte) tstamp;
-		for (int k = 0; k < raw.length; ++k)
-			buf[i++] = raw[k];
-		return buf;
+		buf.put((byte) (tstamp >> 8));
+		buf.put((byte) tstamp);
+		buf.put(raw);
 	}
 
 //	REMOVED FROM INTERFACE
@@ -434,19 +452,24 @@ public class CEMIBusMon implements CEMI
 	{
 		return status;
 	}
+
+	private int stampLength()
+	{
+		return tstampType == TYPEID_TIMESTAMP ? 2 : 4;
+	}
 	
-	private boolean readStatus(int typeID, int len, byte[] addInfo)
+	private boolean readStatus(int typeID, int len, byte[] data, int offset)
 		throws KNXFormatException
 	{
 		if (typeID != TYPEID_STATUSINFO)
 			return false;
 		if (len != 1)
 			throw new KNXFormatException("wrong status info length", len);
-		status = (short) (addInfo[0] & 0xff);
+		status = (short) (data[offset] & 0xff);
 		return true;
 	}
 
-	private boolean readTimestamp(int typeID, int len, byte[] addInfo)
+	private boolean readTimestamp(int typeID, int len, byte[] data, int offset)
 		throws KNXFormatException
 	{
 		if (typeID != TYPEID_TIMESTAMP && typeID != TYPEID_TIMESTAMP_EXT)
@@ -454,7 +477,7 @@ public class CEMIBusMon implements CEMI
 		if (len != 2 && len != 4)
 			throw new KNXFormatException("wrong timestamp info length", len);
 		for (int i = 0; i < len; ++i)
-			tstamp = tstamp << 8 | addInfo[i] & 0xff;
+			tstamp = tstamp << 8 | data[offset + i] & 0xff;
 		if (len == 4)
 			tstampType = TYPEID_TIMESTAMP_EXT;
 		return true;
@@ -36,7 +36,7 @@
 
 package tuwien.auto.calimero.cemi;
 
-import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
 import java.util.BitSet;
 
 import tuwien.auto.calimero.DataUnitBuilder;
@@ -179,19 +179,19 @@ public class CEMIDevMgmt implements CEMI
 	 */
 	public CEMIDevMgmt(byte[] data, int offset, int length) throws KNXFormatException
 	{
-		final ByteArrayInputStream is = new ByteArrayInputStream(data, offset, length);
-		checkLength(is, 1);
+		final int end = Math.min(offset + length, data.length);
+		checkLength(end - offset, 1);
 		try {
-			checkSetMC((short) is.read());
+			checkSetMC(data[offset] & 0xff);
 		}
 		catch (final KNXIllegalArgumentException e) {
 			throw new KNXFormatException(e.getMessage());
 		}
 		if (mc == MC_RESET_REQ || mc == MC_RESET_IND)
-			initReset(is);
+			initReset(end - offset - 1);
 		else {
-			initHeader(is);
-			initBody(is);
+			initHeader(data, offset + 1, end);
+			initBody(data, offset + 7, end);
 		}
 	}
 
@@ -422,19 +422,31 @@ public class CEMIDevMgmt implements CEMI
 	public byte[] toByteArray()
 	{
 		final byte[] buf = new byte[header + data.length];
-		int i = 0;
-		buf[i++] = (byte) mc;
+		writeTo(ByteBuffer.wrap(buf));
+		return buf;
+	}
+
+	/**
+	 * Writes the byte representation of the whole cEMI message structure into
+	 * <code>buf</code>, starting at the current buffer position.
+	 * <p>
+	 * The buffer position is advanced by the message length, see
+	 * {@link #getStructLength()}.
+	 * 
+	 * @param buf the buffer to write to
+	 */
+	public void writeTo(ByteBuffer buf)
+	{
+		buf.put((byte) mc);
 		if (header > 1) {
-			buf[i++] = (byte) (iot >>> 8);
-			buf[i++] = (byte) iot;
-			buf[i++] = (byte) oi;
-			buf[i++] = (byte) pid;
-			buf[i++] = (byte) (elems << 4 | start >>> 8);
-			buf[i++] = (byte) start;
-			for (int k = 0; k < data.length; ++k)
-				buf[i++] = data[k];
+			buf.put((byte) (iot >>> 8));
+			buf.put((byte) iot);
+			buf.put((byte) oi);
+			buf.put((byte) pid);
+			buf.put((byte) (elems << 4 | start >>> 8));
+			buf.put((byte) start);
+			buf.put(data);
 		}
-		return buf;
 	}
 
 	/* (non-Javadoc)
@@ -471,9 +483,9 @@ public class CEMIDevMgmt implements CEMI
 		return buf.toString();
 	}
 
-	private void checkLength(ByteArrayInputStream is, int len) throws KNXFormatException
+	private void checkLength(int available, int len) throws KNXFormatException
 	{
-		if (is.available() < len)
+		if (available < len)
 			throw new KNXFormatException("invalid frame length of " + len + " bytes", len);
 	}
 
@@ -484,35 +496,37 @@ public class CEMIDevMgmt implements CEMI
 		mc = (short) msgCode;
 	}
 
-	private void initReset(ByteArrayInputStream is) throws KNXFormatException
+	private void initReset(int available) throws KNXFormatException
 	{
-		if (is.available() != 0)
+		if (available != 0)
 			throw new KNXFormatException("invalid length for a reset frame");
 	}
 
-	private void initHeader(ByteArrayInputStream is) throws KNXFormatException
+	private void initHeader(byte[] data, int offset, int end) throws KNXFormatException
 	{
-		checkLength(is, 6);
+		checkLength(end - offset, 6);
 		header = 7;
+		final int i = offset;
 		try {
-			final int tmp;
-			checkSetHeaderInfo(is.read() << 8 | is.read(), is.read(), is.read(),
-				((tmp = is.read()) & 0x0F) << 8 | is.read(), tmp >> 4);
+			final int tmp = data[i + 4] & 0xff;
+			checkSetHeaderInfo((data[i] & 0xff) << 8 | data[i + 1] & 0xff,
+				data[i + 2] & 0xff, data[i + 3] & 0xff, (tmp & 0x0F) << 8 | data[i + 5]
+					& 0xff, tmp >> 4);
 		}
 		catch (final KNXIllegalArgumentException e) {
 			throw new KNXFormatException(e.getMessage());
 		}
 	}
 
-	private void initBody(ByteArrayInputStream is) throws KNXFormatException
+	private void initBody(byte[] data, int offset, int end) throws KNXFormatException
 	{
 		// read error information on negative response
 		if (isNegativeResponse())
-			data = new byte[] { (byte) is.read() };
+			this.data = new byte[] { (byte) (offset < end ? data[offset] : -1) };
 		else if (mc == MC_PROPREAD_CON || mc == MC_PROPWRITE_REQ || mc == MC_PROPINFO_IND) {
-			checkLength(is, 1);
-			data = new byte[is.available()];
-			is.read(data, 0, data.length);
+			checkLength(end - offset, 1);
+			this.data = new byte[end - offset];
+			System.arraycopy(data, offset, this.data, 0, this.data.length);
 		}
 	}
 
@@ -77,13 +77,11 @@ public final class CEMIFactory
 		case CEMILData.MC_LDATA_REQ:
 		case CEMILData.MC_LDATA_CON:
 		case CEMILData.MC_LDATA_IND:
-			if (length < 26)
-				try {
-					return new CEMILData(data, offset);
-				}
-				catch (final KNXFormatException e) {
-					// fall-through and try if the extended cEMI works
-				}
+			// use the basic L-data type for a standard frame without additional info,
+			// otherwise the extended cEMI
+			if (length < 26 && data.length - offset > 2 && data[offset + 1] == 0
+				&& (data[offset + 2] & 0x80) != 0)
+				return new CEMILData(data, offset);
 			return new CEMILDataEx(data, offset);
 		case CEMIDevMgmt.MC_PROPREAD_REQ:
 		case CEMIDevMgmt.MC_PROPREAD_CON:
@@ -193,13 +191,13 @@ public final class CEMIFactory
 		final boolean c = (frame[1] & 0x01) != 0;
 		final int dst = (frame[4] & 0xff) << 8 | frame[5] & 0xff;
 		final KNXAddress a = (frame[6] & 0x80) != 0 ?
-			(KNXAddress) new GroupAddress(dst) : new IndividualAddress(dst);
+			(KNXAddress) GroupAddress.valueOf(dst) : IndividualAddress.valueOf(dst);
 		final int hops = frame[6] >> 4 & 0x07;
 		final int len = (frame[6] & 0x0f) + 1;
 		final byte[] tpdu = truncate(frame, 7, Math.min(len, frame.length - 7));
 		// no long frames in EMI2
-		return c ? new CEMILData(mc, new IndividualAddress(0), a, tpdu, p, c)
-			: new CEMILData(mc, new IndividualAddress(0), a, tpdu, p, true, true, ack,
+		return c ? new CEMILData(mc, IndividualAddress.valueOf(0), a, tpdu, p, c)
+			: new CEMILData(mc, IndividualAddress.valueOf(0), a, tpdu, p, true, true, ack,
 				hops);
 	}
 	
@@ -36,8 +36,7 @@
 
 package tuwien.auto.calimero.cemi;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 
 import tuwien.auto.calimero.DataUnitBuilder;
 import tuwien.auto.calimero.GroupAddress;
@@ -122,14 +121,12 @@ public class CEMILData implements CEMI
 	{
 		if (data.length - offset < BASIC_LENGTH + 1)
 			throw new KNXFormatException("buffer too short for frame");
-		final ByteArrayInputStream is =
-			new ByteArrayInputStream(data, offset, data.length - offset);
-		readMC(is);
-		readAddInfo(is);
-		readCtrlAndAddr(is);
+		readMC(data[offset] & 0xff);
+		final int i = readAddInfo(data, offset + 1);
+		readCtrlAndAddr(data, i);
 		if ((ctrl1 & 0x80) == 0)
 			throw new KNXFormatException("only cEMI standard frame supported");
-		readPayload(is);
+		readPayload(data, i + 6);
 	}
 
 	/**
@@ -440,18 +437,30 @@ public class CEMILData implements CEMI
 	 */
 	public byte[] toByteArray()
 	{
-		final ByteArrayOutputStream os = new ByteArrayOutputStream();
-		os.write(mc);
-		writeAddInfo(os);
+		final ByteBuffer buf = ByteBuffer.allocate(getStructLength());
+		writeTo(buf);
+		return buf.array();
+	}
+
+	/**
+	 * Writes the byte representation of the whole cEMI message structure into
+	 * <code>buf</code>, starting at the current buffer position.
+	 * <p>
+	 * The buffer position is advanced by the message length, see
+	 * {@link #getStructLength()}.
+	 * 
+	 * @param buf the buffer to write to
+	 */
+	public void writeTo(ByteBuffer buf)
+	{
+		buf.put((byte) mc);
+		writeAddInfo(buf);
 		setCtrlPriority();
-		os.write(ctrl1);
-		os.write(ctrl2);
-		byte[] buf = source.toByteArray();
-		os.write(buf, 0, buf.length);
-		buf = dst.toByteArray();
-		os.write(buf, 0, buf.length);
-		writePayload(os);
-		return os.toByteArray();
+		buf.put((byte) ctrl1);
+		buf.put((byte) ctrl2);
+		source.writeTo(buf);
+		dst.writeTo(buf);
+		writePayload(buf);
 	}
 
 	/* (non-Javadoc)
@@ -477,39 +486,50 @@ public class CEMILData implements CEMI
 		return buf.toString();
 	}
 
-	void readAddInfo(ByteArrayInputStream is) throws KNXFormatException
+	/**
+	 * Reads the additional information starting at <code>data[offset]</code>.
+	 * <p>
+	 * 
+	 * @param data the cEMI frame
+	 * @param offset offset of the additional info length field
+	 * @return offset of the first field following the additional information
+	 * @throws KNXFormatException on unsupported or invalid additional information
+	 */
+	int readAddInfo(byte[] data, int offset) throws KNXFormatException
 	{
-		if (is.read() != 0)
+		if (data[offset] != 0)
 			throw new KNXFormatException("cEMI frames with additional info not supported");
+		return offset + 1;
 	}
 
-	void readPayload(ByteArrayInputStream is) throws KNXFormatException
+	void readPayload(byte[] data, int offset) throws KNXFormatException
 	{
-		final int len = is.read() + 1;
-		if (len > is.available())
+		final int len = (data[offset] & 0xff) + 1;
+		final int start = offset + 1;
+		if (len > data.length - start)
 			throw new KNXFormatException("length of tpdu exceeds available data", len);
-		data = new byte[len];
-		is.read(data, 0, len);
+		this.data = new byte[len];
+		System.arraycopy(data, start, this.data, 0, len);
 	}
 
 	/**
-	 * Writes additional information to <code>os</code>.
+	 * Writes additional information to <code>buf</code>.
 	 * <p>
 	 * This type does not support additional information; the additional info length is
 	 * set to 0, indicating no additional information.
 	 * <p>
 	 * 
-	 * @param os the output stream
+	 * @param buf the buffer to write to
 	 */
-	void writeAddInfo(ByteArrayOutputStream os)
+	void writeAddInfo(ByteBuffer buf)
 	{
-		os.write(0);
+		buf.put((byte) 0);
 	}
 
-	void writePayload(ByteArrayOutputStream os)
+	void writePayload(ByteBuffer buf)
 	{
-		os.write(data.length - 1);
-		os.write(data, 0, data.length);
+		buf.put((byte) (data.length - 1));
+		buf.put(data);
 	}
 
 	boolean isValidTPDULength(byte[] tpdu)
@@ -517,24 +537,24 @@ public class CEMILData implements CEMI
 		return tpdu.length <= 16;
 	}
 
-	void readCtrlAndAddr(ByteArrayInputStream is)
+	// reads the 6 bytes of control fields, source and destination address
+	void readCtrlAndAddr(byte[] data, int offset)
 	{
-		ctrl1 = (short) is.read();
+		int i = offset;
+		ctrl1 = (short) (data[i++] & 0xff);
 		getCtrlPriority();
-		ctrl2 = (short) is.read();
-		final byte[] addr = new byte[2];
-		is.read(addr, 0, 2);
-		source = new IndividualAddress(addr);
-		is.read(addr, 0, 2);
+		ctrl2 = (short) (data[i++] & 0xff);
+		source = IndividualAddress.valueOf((data[i++] & 0xff) << 8 | data[i++] & 0xff);
+		final int addr = (data[i++] & 0xff) << 8 | data[i] & 0xff;
 		if ((ctrl2 & 0x80) != 0)
-			dst = new GroupAddress(addr);
+			dst = GroupAddress.valueOf(addr);
 		else
-			dst = new IndividualAddress(addr);
+			dst = IndividualAddress.valueOf(addr);
 	}
 
-	void readMC(ByteArrayInputStream is) throws KNXFormatException
+	void readMC(int msgCode) throws KNXFormatException
 	{
-		mc = (short) is.read();
+		mc = (short) msgCode;
 		if (mc != MC_LDATA_REQ && mc != MC_LDATA_CON && mc != MC_LDATA_IND)
 			throw new KNXFormatException("msg code indicates no L-data frame", mc);
 	}
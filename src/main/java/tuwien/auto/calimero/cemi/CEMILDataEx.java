@@ -36,8 +36,7 @@
 
 package tuwien.auto.calimero.cemi;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -163,12 +162,13 @@ public class CEMILDataEx extends CEMILData implements Cloneable
 	{
 		if (data.length - offset < BASIC_LENGTH + 1)
 			throw new KNXFormatException("buffer too short for frame");
-		final ByteArrayInputStream is =
-			new ByteArrayInputStream(data, offset, data.length - offset);
-		readMC(is);
-		readAddInfo(is);
-		readCtrlAndAddr(is);
-		readPayload(is);
+		readMC(data[offset] & 0xff);
+		final int i = readAddInfo(data, offset + 1);
+		// control fields, addresses and NPDU length field
+		if (data.length - i < 7)
+			throw new KNXFormatException("buffer too short for frame");
+		readCtrlAndAddr(data, i);
+		readPayload(data, i + 6);
 	}
 
 	/**
@@ -427,6 +427,14 @@ public class CEMILDataEx extends CEMILData implements Cloneable
 		return super.toByteArray();
 	}
 
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.cemi.CEMILData#writeTo(java.nio.ByteBuffer)
+	 */
+	public synchronized void writeTo(ByteBuffer buf)
+	{
+		super.writeTo(buf);
+	}
+
 	/* (non-Javadoc)
 	 * @see tuwien.auto.calimero.cemi.CEMILData#toString()
 	 */
@@ -478,75 +486,79 @@ public class CEMILDataEx extends CEMILData implements Cloneable
 	}
 
 	/* (non-Javadoc)
-	 * @see tuwien.auto.calimero.cemi.CEMILData#readAddInfo(java.io.ByteArrayInputStream)
+	 * @see tuwien.auto.calimero.cemi.CEMILData#readAddInfo(byte[], int)
 	 */
-	void readAddInfo(ByteArrayInputStream is) throws KNXFormatException
+	int readAddInfo(byte[] data, int offset) throws KNXFormatException
 	{
-		final int ail = is.read();
+		final int ail = data[offset] & 0xff;
+		int i = offset + 1;
 		if (ail == 0)
-			return;
-		if (ail > is.available())
+			return i;
+		if (ail > data.length - i)
 			throw new KNXFormatException("additional info length exceeds frame length",
 				ail);
 		int remaining = ail;
 		for (; remaining > 0; remaining -= 2) {
-			if (remaining < 1)
+			if (remaining < 2)
 				throw new KNXFormatException("lack of space for additional info");
-			final int type = is.read();
-			final int len = is.read();
-			if (len > remaining || !checkAddInfoLength(type, len))
+			final int type = data[i++] & 0xff;
+			final int len = data[i++] & 0xff;
+			if (len > remaining - 2 || !checkAddInfoLength(type, len))
 				throw new KNXFormatException("invalid length " + len
 					+ " for additional info type 0x" + Integer.toHexString(type), len);
 			final byte[] info = new byte[len];
-			is.read(info, 0, len);
+			System.arraycopy(data, i, info, 0, len);
+			i += len;
 			putAddInfo(type, info);
 			remaining -= len;
 		}
+		return i;
 	}
 
 	/* (non-Javadoc)
-	 * @see tuwien.auto.calimero.cemi.CEMILData#readPayload(java.io.ByteArrayInputStream)
+	 * @see tuwien.auto.calimero.cemi.CEMILData#readPayload(byte[], int)
 	 */
-	void readPayload(ByteArrayInputStream is) throws KNXFormatException
+	void readPayload(byte[] data, int offset) throws KNXFormatException
 	{
-		int len = is.read();
+		int len = data[offset] & 0xff;
+		final int start = offset + 1;
 		// length field is 0 in RF frames
 		if (len == 0)
-			len = is.available();
+			len = data.length - start;
 		else {
 			++len;
-			if (len > is.available())
+			if (len > data.length - start)
 				throw new KNXFormatException("length of tpdu exceeds available data", len);
 		}
-		data = new byte[len];
-		is.read(data, 0, len);
+		this.data = new byte[len];
+		System.arraycopy(data, start, this.data, 0, len);
 	}
 
 	/**
-	 * Writes all additional information to <code>os</code>.
+	 * Writes all additional information to <code>buf</code>.
 	 * <p>
 	 * 
-	 * @param os the output stream
+	 * @param buf the buffer to write to
 	 */
-	synchronized void writeAddInfo(ByteArrayOutputStream os)
+	synchronized void writeAddInfo(ByteBuffer buf)
 	{
-		os.write(getAddInfoLength());
+		buf.put((byte) getAddInfoLength());
 		for (int i = 0; i < addInfo.length; i++)
 			if (addInfo[i] != null) {
-				os.write(i);
-				os.write(addInfo[i].length);
-				os.write(addInfo[i], 0, addInfo[i].length);
+				buf.put((byte) i);
+				buf.put((byte) addInfo[i].length);
+				buf.put(addInfo[i]);
 			}
 	}
 
 	/* (non-Javadoc)
-	 * @see tuwien.auto.calimero.cemi.CEMILData#writePayload(java.io.ByteArrayOutputStream)
+	 * @see tuwien.auto.calimero.cemi.CEMILData#writePayload(java.nio.ByteBuffer)
 	 */
-	void writePayload(ByteArrayOutputStream os)
+	void writePayload(ByteBuffer buf)
 	{
 		// RF frames don't use NPDU length field
-		os.write(addInfo[ADDINFO_RFMEDIUM] != null ? 0 : data.length - 1);
-		os.write(data, 0, data.length);
+		buf.put((byte) (addInfo[ADDINFO_RFMEDIUM] != null ? 0 : data.length - 1));
+		buf.put(data);
 	}
 
 	/* (non-Javadoc)
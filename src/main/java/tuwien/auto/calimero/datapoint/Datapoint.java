@@ -320,7 +320,7 @@ public abstract class Datapoint
 			throw new KNXMLException("main address already set", null, r.getLineNumber());
 		if (r.getPosition() != XMLReader.START_TAG)
 			r.read();
-		main = new GroupAddress(r);
+		main = GroupAddress.valueOf(new GroupAddress(r).getRawAddress());
 	}
 
 	abstract void doSave(XMLWriter w) throws KNXMLException;
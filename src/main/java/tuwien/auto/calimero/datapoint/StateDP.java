@@ -302,10 +302,12 @@ public class StateDP extends Datapoint
 			}
 			else if (tag.equals(TAG_UPDATING))
 				while (r.read() == XMLReader.START_TAG)
-					updating.add(new GroupAddress(r));
+					updating.add(GroupAddress.valueOf(new GroupAddress(r)
+						.getRawAddress()));
 			else if (tag.equals(TAG_INVALIDATING))
 				while (r.read() == XMLReader.START_TAG)
-					invalidating.add(new GroupAddress(r));
+					invalidating.add(GroupAddress.valueOf(new GroupAddress(r)
+						.getRawAddress()));
 			else if (!main) {
 				super.doLoad(r);
 				main = true;
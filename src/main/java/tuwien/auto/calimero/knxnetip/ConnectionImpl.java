@@ -42,6 +42,7 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -169,6 +170,10 @@ abstract class ConnectionImpl implements KNXnetIPConnection
 	private List listenersCopy = new ArrayList();
 	private final Semaphore sendWaitQueue = new Semaphore();
 
+	// buffer and packet reused for sending cEMI frames, guarded by lock
+	private ByteBuffer sendBuffer = ByteBuffer.allocate(64);
+	private final DatagramPacket sendPacket = new DatagramPacket(new byte[0], 0);
+
 	ConnectionImpl()
 	{}
 
@@ -253,19 +258,12 @@ abstract class ConnectionImpl implements KNXnetIPConnection
 					throw new KNXConnectionClosedException("connection closed");
 				}
 				updateState = mode == NONBLOCKING;
-				final byte[] buf;
-				if (serviceRequest == KNXnetIPHeader.ROUTING_IND)
-					buf = PacketHelper.toPacket(new RoutingIndication(frame));
-				else
-					buf = PacketHelper.toPacket(new ServiceRequest(serviceRequest,
-						channelID, getSeqNoSend(), frame));
-				final DatagramPacket p =
-					new DatagramPacket(buf, buf.length, dataEP.getAddress(), dataEP
-						.getPort());
+				final DatagramPacket p = pack(frame);
 				int attempt = 0;
 				for (; attempt < maxSendAttempts; ++attempt) {
-					logger.trace("sending cEMI frame, " + mode + ", attempt "
-						+ (attempt + 1));
+					if (logger.isEnabled(LogLevel.TRACE))
+						logger.trace("sending cEMI frame, {}, attempt {}", mode,
+							new Integer(attempt + 1));
 					socket.send(p);
 					// shortcut for routing, don't switch into 'ack-pending'
 					if (serviceRequest == KNXnetIPHeader.ROUTING_IND)
@@ -314,6 +312,35 @@ abstract class ConnectionImpl implements KNXnetIPConnection
 		}
 	}
 
+	// writes the packet containing frame into the send buffer, and returns the send
+	// packet for it; invoked with lock held
+	private DatagramPacket pack(CEMI frame)
+	{
+		final int length;
+		if (serviceRequest == KNXnetIPHeader.ROUTING_IND) {
+			final RoutingIndication ind = new RoutingIndication(frame);
+			length = reserve(PacketHelper.getPacketLength(ind));
+			PacketHelper.toPacket(ind, sendBuffer);
+		}
+		else {
+			final ServiceRequest req =
+				new ServiceRequest(serviceRequest, channelID, getSeqNoSend(), frame);
+			length = reserve(PacketHelper.getPacketLength(req));
+			PacketHelper.toPacket(req, sendBuffer);
+		}
+		sendPacket.setData(sendBuffer.array(), 0, length);
+		sendPacket.setSocketAddress(dataEP);
+		return sendPacket;
+	}
+
+	private int reserve(int length)
+	{
+		if (sendBuffer.capacity() < length)
+			sendBuffer = ByteBuffer.allocate(length);
+		sendBuffer.clear();
+		return length;
+	}
+
 	/* (non-Javadoc)
 	 * @see tuwien.auto.calimero.knxnetip.KNXnetIPConnection#getRemoteAddress()
 	 */
@@ -742,8 +769,9 @@ abstract class ConnectionImpl implements KNXnetIPConnection
 					Thread.sleep(HEARTBEAT_INTERVAL * 1000);
 					int i = 0;
 					for (; i < MAX_REQUEST_ATTEMPTS; i++) {
-						logger.trace("sending connection state request, attempt "
-							+ (i + 1));
+						if (logger.isEnabled(LogLevel.TRACE))
+							logger.trace("sending connection state request, attempt {}",
+								new Integer(i + 1));
 						synchronized (this) {
 							received = false;
 							socket.send(p);
@@ -0,0 +1,150 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.knxnetip;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
+import tuwien.auto.calimero.knxnetip.util.DeviceDIB;
+import tuwien.auto.calimero.knxnetip.util.ManufacturerDIB;
+import tuwien.auto.calimero.knxnetip.util.SuppFamiliesDIB;
+
+/**
+ * Immutable registry entry of a KNXnet/IP server known to a {@link DiscoveryService}.
+ * <p>
+ * An entry holds the self description of the server, as received with the last search or
+ * description response, and the time the server answered the last time.
+ * 
+ * @author B. Malinowsky
+ * @see DiscoveryService
+ */
+public class DiscoveredServer
+{
+	private final InetSocketAddress endpoint;
+	private final DeviceDIB device;
+	private final SuppFamiliesDIB families;
+	private final ManufacturerDIB manufacturer;
+	private final long lastSeen;
+
+	DiscoveredServer(InetSocketAddress ctrlEndpoint, DeviceDIB device,
+		SuppFamiliesDIB svcFamilies, ManufacturerDIB mfrData, long lastSeen)
+	{
+		endpoint = ctrlEndpoint;
+		this.device = device;
+		families = svcFamilies;
+		manufacturer = mfrData;
+		this.lastSeen = lastSeen;
+	}
+
+	/**
+	 * Returns the control endpoint of the server, which is also used as destination for
+	 * description requests.
+	 * <p>
+	 * 
+	 * @return the control endpoint
+	 */
+	public final InetSocketAddress getControlEndpoint()
+	{
+		return endpoint;
+	}
+
+	/**
+	 * Returns the device information of the server.
+	 * <p>
+	 * 
+	 * @return device DIB
+	 */
+	public final DeviceDIB getDevice()
+	{
+		return device;
+	}
+
+	/**
+	 * Returns the supported service families of the server.
+	 * <p>
+	 * 
+	 * @return supported service families DIB
+	 */
+	public final SuppFamiliesDIB getServiceFamilies()
+	{
+		return families;
+	}
+
+	/**
+	 * Returns the manufacturer data of the server, if any.
+	 * <p>
+	 * Manufacturer data is only available with a description response, not with a search
+	 * response.
+	 * 
+	 * @return manufacturer DIB, or <code>null</code> if no manufacturer data was received
+	 */
+	public final ManufacturerDIB getManufacturerData()
+	{
+		return manufacturer;
+	}
+
+	/**
+	 * Returns the time the server answered the last time.
+	 * <p>
+	 * 
+	 * @return time in milliseconds, as returned by {@link System#currentTimeMillis()}
+	 */
+	public final long getLastSeen()
+	{
+		return lastSeen;
+	}
+
+	/**
+	 * Returns a textual representation of the control endpoint and the device
+	 * information.
+	 * <p>
+	 * 
+	 * @return a string representation of this object
+	 */
+	public String toString()
+	{
+		return endpoint.getAddress().getHostAddress() + ":" + endpoint.getPort() + " "
+			+ device.getName() + " (" + device.getAddress() + ")";
+	}
+
+	// returns whether the self description differs from the one of entry s
+	boolean differs(DiscoveredServer s)
+	{
+		return !Arrays.equals(device.toByteArray(), s.device.toByteArray())
+			|| !Arrays.equals(families.toByteArray(), s.families.toByteArray());
+	}
+}
@@ -74,7 +74,8 @@ import tuwien.auto.calimero.log.LogService;
  * Supports networks with routers doing network address translation.<br>
  * Requests for self description are sent using the UDP transport protocol.<br>
  * Due to protocol limitations, only IPv4 addresses are supported when network address
- * translation is <b>not</b> used. With NAT enabled, IPv6 addresses can be used as well.
+ * translation is <b>not</b> used. With NAT enabled, IPv6 addresses can be used as well.<br>
+ * For a search on many network interfaces at once, see {@link MulticastSearch}.
  * <p>
  * A note on (not) using network address translation (NAT):<br>
  * If discovery or description attempts fail indicating a timeout limit, it might be
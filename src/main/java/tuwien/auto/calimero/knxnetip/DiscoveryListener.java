@@ -0,0 +1,77 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.knxnetip;
+
+import java.util.EventListener;
+
+/**
+ * Listener interface to receive changes in the server registry of a
+ * {@link DiscoveryService}.
+ * <p>
+ * Notifications are invoked by the background threads of the discovery service.
+ * 
+ * @author B. Malinowsky
+ * @see DiscoveryService
+ */
+public interface DiscoveryListener extends EventListener
+{
+	/**
+	 * A new server was found and added to the registry.
+	 * <p>
+	 * 
+	 * @param server the new registry entry
+	 */
+	void serverAdded(DiscoveredServer server);
+
+	/**
+	 * The self description of a known server changed, e.g., the device status or the
+	 * supported service families.
+	 * <p>
+	 * 
+	 * @param server the updated registry entry
+	 */
+	void serverChanged(DiscoveredServer server);
+
+	/**
+	 * A server did not answer within the time to live of its registry entry, and was
+	 * removed from the registry.
+	 * <p>
+	 * 
+	 * @param server the removed registry entry
+	 */
+	void serverRemoved(DiscoveredServer server);
+}
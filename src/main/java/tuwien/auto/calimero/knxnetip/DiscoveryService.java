@@ -0,0 +1,511 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.knxnetip;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.exception.KNXFormatException;
+import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
+import tuwien.auto.calimero.exception.KNXIllegalStateException;
+import tuwien.auto.calimero.knxnetip.servicetype.DescriptionRequest;
+import tuwien.auto.calimero.knxnetip.servicetype.DescriptionResponse;
+import tuwien.auto.calimero.knxnetip.servicetype.KNXnetIPHeader;
+import tuwien.auto.calimero.knxnetip.servicetype.PacketHelper;
+import tuwien.auto.calimero.knxnetip.servicetype.SearchResponse;
+import tuwien.auto.calimero.knxnetip.util.DeviceDIB;
+import tuwien.auto.calimero.knxnetip.util.ManufacturerDIB;
+import tuwien.auto.calimero.knxnetip.util.SuppFamiliesDIB;
+import tuwien.auto.calimero.log.LogLevel;
+import tuwien.auto.calimero.log.LogManager;
+import tuwien.auto.calimero.log.LogService;
+
+/**
+ * Long-running discovery service, keeping a live registry of the KNXnet/IP servers
+ * found.
+ * <p>
+ * Servers are found by multicast searches (see {@link MulticastSearch}), started with
+ * {@link #start(int)} and, if necessary, later on with {@link #search(int)}. Every
+ * server found is added to the registry with its self description. Afterwards, known
+ * servers are re-probed periodically with unicast description requests instead of
+ * repeated multicast searches. Each answer refreshes the registry entry of the server; a
+ * server not answering within the time to live is removed from the registry.<br>
+ * The registry is available without any network access using {@link #getServers()} or
+ * {@link #getServer(InetSocketAddress)}. Registry changes are supplied to
+ * {@link DiscoveryListener}s.
+ * <p>
+ * Description requests are sent and received by one datagram channel, served by a single
+ * background thread.
+ * <p>
+ * See {@link Discoverer} for a note on network address translation (NAT).
+ * 
+ * @author B. Malinowsky
+ * @see Discoverer
+ * @see MulticastSearch
+ */
+public class DiscoveryService
+{
+	// 512 bytes is a common minimum, but 256 should be large enough for all purposes
+	private static final int bufferSize = 256;
+
+	// registry events
+	private static final int ADDED = 0;
+	private static final int CHANGED = 1;
+	private static final int REMOVED = 2;
+
+	private final LogService logger =
+		LogManager.getManager().getLogService(Discoverer.LOG_SERVICE);
+
+	private final InetAddress host;
+	private final int port;
+	private final boolean isNatAware;
+	private final long probeInterval;
+	private final long ttl;
+	private final InetSocketAddress searchDst;
+
+	private final List listeners = new ArrayList();
+	private List listenersCopy = new ArrayList();
+
+	// control endpoint -> discovered server
+	private final Map servers = new HashMap();
+
+	private DatagramChannel ch;
+	private Selector selector;
+	private MulticastSearch search;
+	private volatile boolean quit;
+	private boolean started;
+
+	/**
+	 * Creates a new discovery service.
+	 * <p>
+	 * 
+	 * @param localHost local host address used for description responses, or
+	 *        <code>null</code> to use the local host as obtained by
+	 *        {@link InetAddress#getLocalHost()}
+	 * @param localPort the port number used to bind the socket for description requests,
+	 *        a valid port is in the range of 1 to 65535, or use 0 to pick an arbitrary
+	 *        unused (ephemeral) port
+	 * @param useNAT <code>true</code> to use a NAT (network address translation) aware
+	 *        discovery/description mechanism, <code>false</code> to use the default way
+	 * @param probeInterval interval in seconds between description requests to known
+	 *        servers, probeInterval > 0
+	 * @param timeToLive time in seconds a server is kept in the registry after its last
+	 *        answer, timeToLive > probeInterval
+	 * @throws KNXException if local host can't be used
+	 */
+	public DiscoveryService(InetAddress localHost, int localPort, boolean useNAT,
+		int probeInterval, int timeToLive) throws KNXException
+	{
+		this(localHost, localPort, useNAT, probeInterval, timeToLive, null);
+	}
+
+	// allows to search using a destination other than the discovery multicast address
+	DiscoveryService(InetAddress localHost, int localPort, boolean useNAT,
+		int probeInterval, int timeToLive, InetSocketAddress searchDestination)
+		throws KNXException
+	{
+		if (localPort < 0 || localPort > 0xFFFF)
+			throw new KNXIllegalArgumentException("port out of range [0..0xFFFF]");
+		if (probeInterval <= 0)
+			throw new KNXIllegalArgumentException("probe interval has to be > 0");
+		if (timeToLive <= probeInterval)
+			throw new KNXIllegalArgumentException("time to live has to be > probe "
+				+ "interval");
+		try {
+			host = localHost != null ? localHost : InetAddress.getLocalHost();
+		}
+		catch (final UnknownHostException e) {
+			logger.error("can't get local host", e);
+			throw new KNXException("can't get local host");
+		}
+		if (!useNAT && host.getAddress().length != 4)
+			throw new KNXException(host.getHostAddress() + " is not an IPv4 address");
+		port = localPort;
+		isNatAware = useNAT;
+		this.probeInterval = probeInterval * 1000L;
+		ttl = timeToLive * 1000L;
+		searchDst = searchDestination;
+	}
+
+	/**
+	 * Adds the specified discovery listener to receive registry changes.
+	 * <p>
+	 * If <code>l</code> was already added as listener, no action is performed.
+	 * 
+	 * @param l the listener to add
+	 */
+	public void addDiscoveryListener(DiscoveryListener l)
+	{
+		if (l == null)
+			return;
+		synchronized (listeners) {
+			if (!listeners.contains(l)) {
+				listeners.add(l);
+				listenersCopy = new ArrayList(listeners);
+			}
+			else
+				logger.warn("event listener already registered");
+		}
+	}
+
+	/**
+	 * Removes the specified discovery listener.
+	 * <p>
+	 * If <code>l</code> was not added in the first place, no action is performed.
+	 * 
+	 * @param l the listener to remove
+	 */
+	public void removeDiscoveryListener(DiscoveryListener l)
+	{
+		synchronized (listeners) {
+			if (listeners.remove(l))
+				listenersCopy = new ArrayList(listeners);
+		}
+	}
+
+	/**
+	 * Starts the discovery service with an initial search for servers.
+	 * <p>
+	 * The method returns after the search was started, servers are added to the registry
+	 * as they answer. A discovery service can only be started once.
+	 * 
+	 * @param searchTimeout time window in seconds during which search responses are
+	 *        received, searchTimeout > 0
+	 * @throws KNXException on failure opening the socket for description requests, or
+	 *         on failure starting the search
+	 */
+	public void start(int searchTimeout) throws KNXException
+	{
+		if (searchTimeout <= 0)
+			throw new KNXIllegalArgumentException("search timeout has to be > 0");
+		synchronized (this) {
+			if (started)
+				throw new KNXIllegalStateException("discovery service already started");
+			started = true;
+			try {
+				selector = Selector.open();
+				ch = DatagramChannel.open();
+				ch.socket().bind(new InetSocketAddress(host, port));
+				ch.configureBlocking(false);
+				ch.register(selector, SelectionKey.OP_READ);
+			}
+			catch (final IOException e) {
+				quit = true;
+				close();
+				logger.error("failed to open channel on " + host, e);
+				throw new KNXException("discovery service couldn't be started, "
+					+ e.getMessage());
+			}
+		}
+		final Thread t = new Thread("Discovery service")
+		{
+			public void run()
+			{
+				probe();
+			}
+		};
+		t.setDaemon(true);
+		t.start();
+		try {
+			search(searchTimeout);
+		}
+		catch (final KNXException e) {
+			stop();
+			throw e;
+		}
+	}
+
+	/**
+	 * Starts a new multicast search for servers, stopping a search still running.
+	 * <p>
+	 * A search is only necessary to find servers not known to the registry, known servers
+	 * are re-probed anyway.
+	 * 
+	 * @param timeout time window in seconds during which search responses are received,
+	 *        timeout > 0
+	 * @throws KNXException on failure starting the search
+	 */
+	public void search(int timeout) throws KNXException
+	{
+		if (timeout <= 0)
+			throw new KNXIllegalArgumentException("search timeout has to be > 0");
+		final InetSocketAddress dst = searchDst != null ? searchDst
+			: new InetSocketAddress(Discoverer.SEARCH_MULTICAST, Discoverer.SEARCH_PORT);
+		// the search uses ephemeral ports, our port is bound already
+		final MulticastSearch s = new MulticastSearch(0, isNatAware, dst)
+		{
+			void received(SearchResponse res, InetSocketAddress controlEndpoint)
+			{
+				update(controlEndpoint, res.getDevice(), res.getServiceFamilies(), null);
+			}
+		};
+		synchronized (this) {
+			if (!started || quit)
+				throw new KNXIllegalStateException("discovery service not running");
+			if (search != null)
+				search.stop();
+			search = s;
+		}
+		s.start(timeout, 0);
+	}
+
+	/**
+	 * Stops the discovery service.
+	 * <p>
+	 * The registry is not cleared.
+	 */
+	public void stop()
+	{
+		final MulticastSearch s;
+		final Selector sel;
+		synchronized (this) {
+			quit = true;
+			s = search;
+			sel = selector;
+		}
+		if (s != null)
+			s.stop();
+		if (sel != null)
+			sel.wakeup();
+	}
+
+	/**
+	 * Returns whether the discovery service is running.
+	 * <p>
+	 * 
+	 * @return <code>true</code> if started and not stopped, <code>false</code> otherwise
+	 */
+	public synchronized boolean isRunning()
+	{
+		return started && !quit;
+	}
+
+	/**
+	 * Returns all servers currently in the registry.
+	 * <p>
+	 * 
+	 * @return array of {@link DiscoveredServer}s
+	 */
+	public synchronized DiscoveredServer[] getServers()
+	{
+		return (DiscoveredServer[]) servers.values().toArray(
+			new DiscoveredServer[servers.size()]);
+	}
+
+	/**
+	 * Returns the registry entry of the server with the specified control endpoint.
+	 * <p>
+	 * 
+	 * @param controlEndpoint control endpoint of the server
+	 * @return the registry entry, or <code>null</code> if the server is not known
+	 */
+	public synchronized DiscoveredServer getServer(InetSocketAddress controlEndpoint)
+	{
+		return (DiscoveredServer) servers.get(controlEndpoint);
+	}
+
+	// sends description requests to known servers and removes expired servers
+	private void probe()
+	{
+		final ByteBuffer buf = ByteBuffer.allocate(bufferSize);
+		final ByteBuffer req = ByteBuffer.allocate(bufferSize);
+		PacketHelper.toPacket(new DescriptionRequest(isNatAware ? null
+			: (InetSocketAddress) ch.socket().getLocalSocketAddress()), req);
+		req.flip();
+		long nextProbe = System.currentTimeMillis() + probeInterval;
+		try {
+			while (!quit) {
+				long now = System.currentTimeMillis();
+				if (now >= nextProbe) {
+					final InetSocketAddress[] endpoints;
+					synchronized (this) {
+						endpoints = (InetSocketAddress[]) servers.keySet().toArray(
+							new InetSocketAddress[servers.size()]);
+					}
+					for (int i = 0; i < endpoints.length; i++) {
+						req.rewind();
+						ch.send(req, endpoints[i]);
+					}
+					if (logger.isEnabled(LogLevel.TRACE))
+						logger.trace("sent description request to {} servers",
+							new Integer(endpoints.length));
+					nextProbe = now + probeInterval;
+				}
+				final long expiry = removeExpired(now);
+				final long timeout = Math.max(1, Math.min(nextProbe, expiry) - now);
+				if (selector.select(timeout) == 0)
+					continue;
+				selector.selectedKeys().clear();
+				InetSocketAddress from;
+				buf.clear();
+				while (!quit && (from = (InetSocketAddress) ch.receive(buf)) != null) {
+					buf.flip();
+					checkForResponse(buf, from);
+					buf.clear();
+				}
+			}
+		}
+		catch (final IOException e) {
+			if (!quit)
+				logger.error("discovery service stopped", e);
+		}
+		finally {
+			synchronized (this) {
+				quit = true;
+			}
+			close();
+		}
+	}
+
+	private void checkForResponse(ByteBuffer buf, InetSocketAddress from)
+	{
+		final byte[] data = buf.array();
+		try {
+			if (buf.limit() < 6)
+				return;
+			final KNXnetIPHeader h = new KNXnetIPHeader(data, 0);
+			if (h.getServiceType() != KNXnetIPHeader.DESCRIPTION_RES
+				|| h.getTotalLength() > buf.limit())
+				return;
+			synchronized (this) {
+				if (!servers.containsKey(from))
+					return;
+			}
+			final DescriptionResponse res =
+				new DescriptionResponse(data, h.getStructLength());
+			update(from, res.getDevice(), res.getServiceFamilies(), res
+				.getManufacturerData());
+		}
+		catch (final KNXFormatException e) {
+			logger.warn("invalid description response from " + from + ", "
+				+ e.getMessage());
+		}
+	}
+
+	// adds or refreshes a server entry
+	private void update(InetSocketAddress endpoint, DeviceDIB device,
+		SuppFamiliesDIB families, ManufacturerDIB mfr)
+	{
+		final DiscoveredServer old;
+		final DiscoveredServer s;
+		synchronized (this) {
+			if (quit)
+				return;
+			old = (DiscoveredServer) servers.get(endpoint);
+			// keep manufacturer data of an earlier description response
+			final ManufacturerDIB m = mfr == null && old != null
+				? old.getManufacturerData() : mfr;
+			s = new DiscoveredServer(endpoint, device, families, m, System
+				.currentTimeMillis());
+			servers.put(endpoint, s);
+		}
+		if (old == null) {
+			logger.info("found server " + s);
+			fire(s, ADDED);
+		}
+		else if (s.differs(old)) {
+			logger.info("server " + s + " changed");
+			fire(s, CHANGED);
+		}
+	}
+
+	// removes expired servers, returns the time the next server expires
+	private long removeExpired(long now)
+	{
+		final List removed = new ArrayList();
+		long next = Long.MAX_VALUE;
+		synchronized (this) {
+			for (final Iterator i = servers.values().iterator(); i.hasNext();) {
+				final DiscoveredServer s = (DiscoveredServer) i.next();
+				final long expiry = s.getLastSeen() + ttl;
+				if (expiry <= now) {
+					i.remove();
+					removed.add(s);
+				}
+				else
+					next = Math.min(next, expiry);
+			}
+		}
+		for (final Iterator i = removed.iterator(); i.hasNext();) {
+			final DiscoveredServer s = (DiscoveredServer) i.next();
+			logger.info("server " + s + " expired");
+			fire(s, REMOVED);
+		}
+		return next;
+	}
+
+	private void fire(DiscoveredServer s, int event)
+	{
+		for (final Iterator i = listenersCopy.iterator(); i.hasNext();) {
+			final DiscoveryListener l = (DiscoveryListener) i.next();
+			try {
+				if (event == ADDED)
+					l.serverAdded(s);
+				else if (event == CHANGED)
+					l.serverChanged(s);
+				else
+					l.serverRemoved(s);
+			}
+			catch (final RuntimeException rte) {
+				logger.error("discovery listener", rte);
+			}
+		}
+	}
+
+	private synchronized void close()
+	{
+		try {
+			if (ch != null)
+				ch.close();
+			if (selector != null)
+				selector.close();
+		}
+		catch (final IOException ignore) {}
+	}
+}
@@ -0,0 +1,526 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.knxnetip;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.exception.KNXFormatException;
+import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
+import tuwien.auto.calimero.exception.KNXIllegalStateException;
+import tuwien.auto.calimero.knxnetip.servicetype.KNXnetIPHeader;
+import tuwien.auto.calimero.knxnetip.servicetype.PacketHelper;
+import tuwien.auto.calimero.knxnetip.servicetype.SearchRequest;
+import tuwien.auto.calimero.knxnetip.servicetype.SearchResponse;
+import tuwien.auto.calimero.knxnetip.util.HPAI;
+import tuwien.auto.calimero.log.LogManager;
+import tuwien.auto.calimero.log.LogService;
+
+/**
+ * Does a KNXnet/IP discovery search on all network interfaces in parallel, using a single
+ * selector thread.
+ * <p>
+ * For every network interface, a search request is sent from a datagram channel bound to
+ * an address of that interface. All channels are served by one selector in one background
+ * thread, which decodes incoming search responses from a single reused receive buffer.
+ * Compared to {@link Discoverer#startSearch(int, boolean)}, no thread and no socket
+ * timeout handling is needed per interface, which matters on hosts with many (virtual)
+ * network interfaces.
+ * <p>
+ * Responses are deduplicated by the control endpoint of the answering server, i.e., a
+ * server answering on more interfaces or more than once is reported only once. Responses
+ * are supplied to {@link SearchListener}s as they arrive, and collected for
+ * {@link #getSearchResponses()}.<br>
+ * A search ends if the timeout was reached, if the expected number of servers answered,
+ * or if {@link #stop()} was invoked.
+ * <p>
+ * A search is started only once, use a new search object for every search.
+ * <p>
+ * See {@link Discoverer} for a note on network address translation (NAT).
+ * 
+ * @author B. Malinowsky
+ * @see Discoverer
+ */
+public class MulticastSearch
+{
+	// 512 bytes is a common minimum, but 256 should be large enough for all purposes
+	private static final int bufferSize = 256;
+
+	private final LogService logger =
+		LogManager.getManager().getLogService(Discoverer.LOG_SERVICE);
+
+	private final int port;
+	private final boolean isNatAware;
+	private final InetSocketAddress dst;
+
+	private final List listeners = new ArrayList();
+	private List listenersCopy = new ArrayList();
+
+	// control endpoint -> search response, in order of arrival
+	private final Map responses = new LinkedHashMap();
+	private int expected;
+
+	private Selector selector;
+	private volatile boolean quit;
+	private boolean started;
+	private boolean done;
+	private boolean complete;
+
+	/**
+	 * Creates a new multicast search.
+	 * <p>
+	 * 
+	 * @param localPort the port number used to bind the channels, a valid port is in the
+	 *        range of 1 to 65535, or use 0 to pick an arbitrary unused (ephemeral) port
+	 * @param useNAT <code>true</code> to use a NAT (network address translation) aware
+	 *        search, <code>false</code> to use the default way
+	 */
+	public MulticastSearch(int localPort, boolean useNAT)
+	{
+		this(localPort, useNAT, new InetSocketAddress(Discoverer.SEARCH_MULTICAST,
+			Discoverer.SEARCH_PORT));
+	}
+
+	// allows to search using a destination other than the discovery multicast address
+	MulticastSearch(int localPort, boolean useNAT, InetSocketAddress searchDestination)
+	{
+		if (localPort < 0 || localPort > 0xFFFF)
+			throw new KNXIllegalArgumentException("port out of range [0..0xFFFF]");
+		port = localPort;
+		isNatAware = useNAT;
+		dst = searchDestination;
+	}
+
+	/**
+	 * Adds the specified search listener to receive search responses and the end of the
+	 * search.
+	 * <p>
+	 * If <code>l</code> was already added as listener, no action is performed.
+	 * 
+	 * @param l the listener to add
+	 */
+	public void addSearchListener(SearchListener l)
+	{
+		if (l == null)
+			return;
+		synchronized (listeners) {
+			if (!listeners.contains(l)) {
+				listeners.add(l);
+				listenersCopy = new ArrayList(listeners);
+			}
+			else
+				logger.warn("event listener already registered");
+		}
+	}
+
+	/**
+	 * Removes the specified search listener.
+	 * <p>
+	 * If <code>l</code> was not added in the first place, no action is performed.
+	 * 
+	 * @param l the listener to remove
+	 */
+	public void removeSearchListener(SearchListener l)
+	{
+		synchronized (listeners) {
+			if (listeners.remove(l))
+				listenersCopy = new ArrayList(listeners);
+		}
+	}
+
+	/**
+	 * Starts the search on all found network interfaces.
+	 * <p>
+	 * The search requests are sent before this method returns, responses are received in
+	 * the background.
+	 * 
+	 * @param timeout time window in seconds during which search responses are received,
+	 *        timeout >= 0. If timeout is 0, no timeout is set, and the search ends with
+	 *        the expected number of responses or on {@link #stop()}.
+	 * @param expectedServers number of servers expected to answer, the search ends as
+	 *        soon as that many servers answered, use 0 to not end the search early
+	 * @throws KNXException on error getting the network interfaces, or if no search
+	 *         request could be sent on any network interface
+	 */
+	public void start(int timeout, int expectedServers) throws KNXException
+	{
+		if (timeout < 0)
+			throw new KNXIllegalArgumentException("timeout has to be >= 0");
+		if (expectedServers < 0)
+			throw new KNXIllegalArgumentException("expected servers has to be >= 0");
+		synchronized (this) {
+			if (started)
+				throw new KNXIllegalStateException("search already started");
+			started = true;
+			expected = expectedServers;
+			try {
+				selector = Selector.open();
+			}
+			catch (final IOException e) {
+				done = true;
+				logger.error("failed to open selector", e);
+				throw new KNXException("search couldn't be started, " + e.getMessage());
+			}
+		}
+		try {
+			openChannels();
+			final int sent = sendRequests();
+			if (sent == 0)
+				throw new KNXException("search couldn't be started on any network "
+					+ "interface");
+			logger.info("search on " + sent + " network interfaces");
+		}
+		catch (final KNXException e) {
+			close();
+			synchronized (this) {
+				done = true;
+				notifyAll();
+			}
+			throw e;
+		}
+		final long end = timeout == 0 ? 0 : System.currentTimeMillis() + timeout * 1000L;
+		final Thread t = new Thread("Discoverer multicast search")
+		{
+			public void run()
+			{
+				receive(end);
+			}
+		};
+		t.setDaemon(true);
+		t.start();
+	}
+
+	/**
+	 * Stops the search.
+	 * <p>
+	 * Already received search responses are not removed.
+	 */
+	public void stop()
+	{
+		final Selector s;
+		synchronized (this) {
+			quit = true;
+			if (!started) {
+				started = true;
+				done = true;
+				notifyAll();
+				return;
+			}
+			s = selector;
+		}
+		if (s != null)
+			s.wakeup();
+	}
+
+	/**
+	 * Waits for the end of the search.
+	 * <p>
+	 * 
+	 * @param timeout timeout in milliseconds, 0 to wait without timeout
+	 * @return <code>true</code> if the search ended, <code>false</code> on timeout
+	 * @throws InterruptedException on interrupted thread
+	 */
+	public synchronized boolean waitForEnd(long timeout) throws InterruptedException
+	{
+		final long end = System.currentTimeMillis() + timeout;
+		long remaining = timeout;
+		while (!done && (timeout == 0 || remaining > 0)) {
+			wait(remaining);
+			remaining = end - System.currentTimeMillis();
+		}
+		return done;
+	}
+
+	/**
+	 * Returns <code>true</code> if the search is currently running.
+	 * <p>
+	 * 
+	 * @return a <code>boolean</code> showing the search state
+	 */
+	public synchronized boolean isSearching()
+	{
+		return started && !done;
+	}
+
+	/**
+	 * Returns whether the expected number of servers answered.
+	 * <p>
+	 * 
+	 * @return <code>true</code> if the search ended early with all expected responses,
+	 *         <code>false</code> otherwise
+	 */
+	public synchronized boolean isComplete()
+	{
+		return complete;
+	}
+
+	/**
+	 * Returns the search responses received so far, one response for each answering
+	 * server, in the order of arrival.
+	 * <p>
+	 * 
+	 * @return array of {@link SearchResponse}s
+	 */
+	public synchronized SearchResponse[] getSearchResponses()
+	{
+		return (SearchResponse[]) responses.values().toArray(
+			new SearchResponse[responses.size()]);
+	}
+
+	// opens a channel for the first usable address of every network interface
+	private void openChannels() throws KNXException
+	{
+		final Enumeration eni;
+		try {
+			eni = NetworkInterface.getNetworkInterfaces();
+		}
+		catch (final SocketException e) {
+			logger.error("failed to get network interfaces", e);
+			throw new KNXException("network interface error: " + e.getMessage());
+		}
+		if (eni == null) {
+			logger.error("no network interfaces found");
+			throw new KNXException("no network interfaces found");
+		}
+		boolean lo = false;
+		while (eni.hasMoreElements()) {
+			final NetworkInterface ni = (NetworkInterface) eni.nextElement();
+			for (final Enumeration ea = ni.getInetAddresses(); ea.hasMoreElements();) {
+				final InetAddress a = (InetAddress) ea.nextElement();
+				if (!isNatAware && a.getAddress().length != 4)
+					logger.info("skipped " + a + ", not an IPv4 address");
+				else if (!(lo && a.isLoopbackAddress()) && open(a, ni)) {
+					if (a.isLoopbackAddress())
+						lo = true;
+					else
+						break;
+				}
+			}
+		}
+	}
+
+	private boolean open(InetAddress a, NetworkInterface ni)
+	{
+		DatagramChannel ch = null;
+		try {
+			ch = DatagramChannel.open();
+			ch.socket().bind(new InetSocketAddress(a, port));
+			ch.configureBlocking(false);
+			ch.register(selector, SelectionKey.OP_READ, ni);
+			return true;
+		}
+		catch (final IOException e) {
+			logger.warn("failed to open channel on " + a, e);
+			close(ch);
+			return false;
+		}
+	}
+
+	// sends one search request on every channel, returns the number of requests sent
+	private int sendRequests()
+	{
+		final ByteBuffer buf = ByteBuffer.allocate(bufferSize);
+		int sent = 0;
+		for (final Iterator i = selector.keys().iterator(); i.hasNext();) {
+			final SelectionKey k = (SelectionKey) i.next();
+			final DatagramChannel ch = (DatagramChannel) k.channel();
+			final InetSocketAddress local =
+				(InetSocketAddress) ch.socket().getLocalSocketAddress();
+			try {
+				buf.clear();
+				PacketHelper.toPacket(new SearchRequest(isNatAware ? null : local), buf);
+				buf.flip();
+				ch.send(buf, dst);
+				logger.trace("search on {}", local);
+				++sent;
+			}
+			catch (final IOException e) {
+				logger.warn("I/O failure sending search request on " + local, e);
+				k.cancel();
+				close(ch);
+			}
+		}
+		return sent;
+	}
+
+	// timeEnd = 0 for infinite timeout
+	private void receive(long timeEnd)
+	{
+		final ByteBuffer buf = ByteBuffer.allocate(bufferSize);
+		try {
+			while (!quit) {
+				long timeout = 0;
+				if (timeEnd != 0) {
+					timeout = timeEnd - System.currentTimeMillis();
+					if (timeout <= 0)
+						break;
+				}
+				if (selector.select(timeout) == 0)
+					continue;
+				for (final Iterator i = selector.selectedKeys().iterator(); i.hasNext()
+					&& !quit;) {
+					final SelectionKey k = (SelectionKey) i.next();
+					i.remove();
+					final DatagramChannel ch = (DatagramChannel) k.channel();
+					InetSocketAddress from;
+					buf.clear();
+					while (!quit
+						&& (from = (InetSocketAddress) ch.receive(buf)) != null) {
+						buf.flip();
+						checkForResponse(buf, from, (NetworkInterface) k.attachment());
+						buf.clear();
+					}
+				}
+			}
+		}
+		catch (final IOException e) {
+			if (!quit)
+				logger.error("while waiting for responses", e);
+		}
+		finally {
+			close();
+		}
+		final boolean c;
+		synchronized (this) {
+			c = complete;
+			logger.info("search ended, " + responses.size() + " servers answered");
+		}
+		for (final Iterator i = listenersCopy.iterator(); i.hasNext();) {
+			final SearchListener l = (SearchListener) i.next();
+			try {
+				l.searchEnded(c);
+			}
+			catch (final RuntimeException rte) {
+				logger.error("search listener", rte);
+			}
+		}
+		synchronized (this) {
+			done = true;
+			notifyAll();
+		}
+	}
+
+	private void checkForResponse(ByteBuffer buf, InetSocketAddress from,
+		NetworkInterface ni)
+	{
+		final byte[] data = buf.array();
+		final SearchResponse res;
+		try {
+			if (buf.limit() < 6)
+				return;
+			final KNXnetIPHeader h = new KNXnetIPHeader(data, 0);
+			if (h.getServiceType() != KNXnetIPHeader.SEARCH_RES
+				|| h.getTotalLength() > buf.limit())
+				return;
+			res = new SearchResponse(data, h.getStructLength());
+		}
+		catch (final KNXFormatException e) {
+			logger.warn("invalid search response from " + from + ", " + e.getMessage());
+			return;
+		}
+		final HPAI ep = res.getControlEndpoint();
+		final InetAddress a = ep.getAddress();
+		// fall back to the sender for unspecified (NAT) control endpoints
+		final InetSocketAddress key = a.isAnyLocalAddress() || ep.getPort() == 0 ? from
+			: new InetSocketAddress(a, ep.getPort());
+		synchronized (this) {
+			if (responses.containsKey(key))
+				return;
+			responses.put(key, res);
+			if (expected > 0 && responses.size() >= expected) {
+				complete = true;
+				quit = true;
+			}
+		}
+		received(res, key);
+		for (final Iterator i = listenersCopy.iterator(); i.hasNext();) {
+			final SearchListener l = (SearchListener) i.next();
+			try {
+				l.responseReceived(res, ni);
+			}
+			catch (final RuntimeException rte) {
+				logger.error("search listener", rte);
+			}
+		}
+	}
+
+	/**
+	 * Invoked for the search response of every answering server, before search listeners
+	 * are notified.
+	 * <p>
+	 * 
+	 * @param res the search response
+	 * @param controlEndpoint the control endpoint the response was deduplicated by, this
+	 *        is the sender address for unspecified control endpoints
+	 */
+	void received(SearchResponse res, InetSocketAddress controlEndpoint)
+	{}
+
+	private void close()
+	{
+		for (final Iterator i = selector.keys().iterator(); i.hasNext();)
+			close(((SelectionKey) i.next()).channel());
+		try {
+			selector.close();
+		}
+		catch (final IOException ignore) {}
+	}
+
+	private static void close(Channel ch)
+	{
+		if (ch != null)
+			try {
+				ch.close();
+			}
+			catch (final IOException ignore) {}
+	}
+}
@@ -36,8 +36,8 @@
 
 package tuwien.auto.calimero.knxnetip.servicetype;
 
-import java.io.ByteArrayOutputStream;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
 
 import tuwien.auto.calimero.exception.KNXFormatException;
 import tuwien.auto.calimero.knxnetip.util.CRI;
@@ -159,17 +159,13 @@ public class ConnectRequest extends ServiceType
 	}
 
 	/* (non-Javadoc)
-	 * @see tuwien.auto.calimero.knxnetip.servicetype.ServiceType#toByteArray
-	 *      (java.io.ByteArrayOutputStream)
+	 * @see tuwien.auto.calimero.knxnetip.servicetype.ServiceType#writeTo
+	 *      (java.nio.ByteBuffer)
 	 */
-	byte[] toByteArray(ByteArrayOutputStream os)
+	void writeTo(ByteBuffer buf)
 	{
-		byte[] buf = ctrlPt.toByteArray();
-		os.write(buf, 0, buf.length);
-		buf = dataPt.toByteArray();
-		os.write(buf, 0, buf.length);
-		buf = cri.toByteArray();
-		os.write(buf, 0, buf.length);
-		return os.toByteArray();
+		ctrlPt.writeTo(buf);
+		dataPt.writeTo(buf);
+		cri.writeTo(buf);
 	}
 }
@@ -36,7 +36,7 @@
 
 package tuwien.auto.calimero.knxnetip.servicetype;
 
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 
 import tuwien.auto.calimero.exception.KNXFormatException;
 import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
@@ -213,19 +213,16 @@ public class ConnectResponse extends ServiceType
 	}
 
 	/* (non-Javadoc)
-	 * @see tuwien.auto.calimero.knxnetip.servicetype.ServiceType#toByteArray
-	 *      (java.io.ByteArrayOutputStream)
+	 * @see tuwien.auto.calimero.knxnetip.servicetype.ServiceType#writeTo
+	 *      (java.nio.ByteBuffer)
 	 */
-	byte[] toByteArray(ByteArrayOutputStream os)
+	void writeTo(ByteBuffer buf)
 	{
-		os.write(channelid);
-		os.write(status);
+		buf.put((byte) channelid);
+		buf.put((byte) status);
 		if (endpt != null && crd != null) {
-			byte[] buf = endpt.toByteArray();
-			os.write(buf, 0, buf.length);
-			buf = crd.toByteArray();
-			os.write(buf, 0, buf.length);
+			endpt.writeTo(buf);
+			crd.writeTo(buf);
 		}
-		return os.toByteArray();
 	}
 }
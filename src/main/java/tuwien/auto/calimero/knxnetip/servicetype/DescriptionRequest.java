@@ -37,9 +37,9 @@
 
 package tuwien.auto.calimero.knxnetip.servicetype;
 
-import java.io.ByteArrayOutputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 
 import tuwien.auto.calimero.exception.KNXFormatException;
 import tuwien.auto.calimero.knxnetip.util.HPAI;
@@ -137,13 +137,11 @@ public class DescriptionRequest extends ServiceType
 	}
 
 	/* (non-Javadoc)
-	 * @see tuwien.auto.calimero.knxnetip.servicetype.ServiceType#toByteArray
-	 *      (java.io.ByteArrayOutputStream)
+	 * @see tuwien.auto.calimero.knxnetip.servicetype.ServiceType#writeTo
+	 *      (java.nio.ByteBuffer)
 	 */
-	byte[] toByteArray(ByteArrayOutputStream os)
+	void writeTo(ByteBuffer buf)
 	{
-		final byte[] buf = endpoint.toByteArray();
-		os.write(buf, 0, buf.length);
-		return os.toByteArray();
+		endpoint.writeTo(buf);
 	}
 }
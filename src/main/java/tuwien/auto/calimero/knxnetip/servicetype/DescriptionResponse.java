@@ -37,7 +37,7 @@
 
 package tuwien.auto.calimero.knxnetip.servicetype;
 
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 
 import tuwien.auto.calimero.exception.KNXFormatException;
 import tuwien.auto.calimero.knxnetip.util.DIB;
@@ -167,19 +167,14 @@ public class DescriptionResponse extends ServiceType
 	}
 
 	/* (non-Javadoc)
-	 * @see tuwien.auto.calimero.knxnetip.servicetype.ServiceType#toByteArray
-	 *      (java.io.ByteArrayOutputStream)
+	 * @see tuwien.auto.calimero.knxnetip.servicetype.ServiceType#writeTo
+	 *      (java.nio.ByteBuffer)
 	 */
-	byte[] toByteArray(ByteArrayOutputStream os)
+	void writeTo(ByteBuffer buf)
 	{
-		byte[] buf = device.toByteArray();
-		os.write(buf, 0, buf.length);
-		buf = suppfam.toByteArray();
-		os.write(buf, 0, buf.length);
-		if (mfr != null) {
-			buf = mfr.toByteArray();
-			os.write(buf, 0, buf.length);
-		}
-		return os.toByteArray();
+		device.writeTo(buf);
+		suppfam.writeTo(buf);
+		if (mfr != null)
+			mfr.writeTo(buf);
 	}
 }
@@ -37,7 +37,7 @@
 
 package tuwien.auto.calimero.knxnetip.servicetype;
 
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 
 import tuwien.auto.calimero.exception.KNXFormatException;
 import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
@@ -129,15 +129,13 @@ public class DisconnectRequest extends ServiceType
 	}
 
 	/* (non-Javadoc)
-	 * @see tuwien.auto.calimero.knxnetip.servicetype.ServiceType#toByteArray
-	 *      (java.io.ByteArrayOutputStream)
+	 * @see tuwien.auto.calimero.knxnetip.servicetype.ServiceType#writeTo
+	 *      (java.nio.ByteBuffer)
 	 */
-	byte[] toByteArray(ByteArrayOutputStream os)
+	void writeTo(ByteBuffer buf)
 	{
-		os.write(channelid);
-		os.write(0);
-		final byte[] buf = endpt.toByteArray();
-		os.write(buf, 0, buf.length);
-		return os.toByteArray();
+		buf.put((byte) channelid);
+		buf.put((byte) 0);
+		endpt.writeTo(buf);
 	}
 }
@@ -36,7 +36,7 @@
 
 package tuwien.auto.calimero.knxnetip.servicetype;
 
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 
 import tuwien.auto.calimero.exception.KNXFormatException;
 import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
@@ -281,14 +281,34 @@ public class KNXnetIPHeader
 	 */
 	public byte[] toByteArray()
 	{
-		final ByteArrayOutputStream os = new ByteArrayOutputStream();
-		os.write(headersize);
-		os.write(version);
-		os.write(service >> 8);
-		os.write(service);
-		os.write(totalsize >> 8);
-		os.write(totalsize);
-		return os.toByteArray();
+		final byte[] buf = new byte[headersize];
+		writeTo(ByteBuffer.wrap(buf));
+		return buf;
+	}
+
+	/**
+	 * Writes the byte representation of the KNXnet/IP header structure into
+	 * <code>buf</code>, starting at the current buffer position.
+	 * <p>
+	 * The buffer position is advanced by the header length.
+	 * 
+	 * @param buf the buffer to write to
+	 */
+	public void writeTo(ByteBuffer buf)
+	{
+		write(buf, service, totalsize - headersize);
+	}
+
+	// writes a header v1.0 without creating a header object
+	static void write(ByteBuffer buf, int serviceType, int bodyLength)
+	{
+		final int total = HEADER_SIZE_10 + bodyLength;
+		buf.put((byte) HEADER_SIZE_10);
+		buf.put((byte) KNXNETIP_VERSION_10);
+		buf.put((byte) (serviceType >> 8));
+		buf.put((byte) serviceType);
+		buf.put((byte) (total >> 8));
+		buf.put((byte) total);
 	}
 
 	/**
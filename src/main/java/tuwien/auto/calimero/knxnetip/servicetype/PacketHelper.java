@@ -36,7 +36,8 @@
 
 package tuwien.auto.calimero.knxnetip.servicetype;
 
-import java.io.ByteArrayOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 
 import tuwien.auto.calimero.exception.KNXFormatException;
 
@@ -48,6 +49,9 @@ import tuwien.auto.calimero.exception.KNXFormatException;
  */
 public final class PacketHelper
 {
+	// size of a KNXnet/IP message header v1.0
+	private static final int HEADER_SIZE = 6;
+
 	private PacketHelper()
 	{}
 
@@ -61,10 +65,48 @@ public final class PacketHelper
 	 */
 	public static byte[] toPacket(ServiceType type)
 	{
-		final KNXnetIPHeader h = new KNXnetIPHeader(type.svcType, type.getStructLength());
-		final ByteArrayOutputStream os = new ByteArrayOutputStream(h.getTotalLength());
-		os.write(h.toByteArray(), 0, h.getStructLength());
-		return type.toByteArray(os);
+		final ByteBuffer buf = ByteBuffer.allocate(getPacketLength(type));
+		toPacket(type, buf);
+		return buf.array();
+	}
+
+	/**
+	 * Writes a packet with a KNXnet/IP message header v1.0, containing the specified
+	 * service <code>type</code>, into <code>buf</code>, starting at the current buffer
+	 * position.
+	 * <p>
+	 * No objects are created for encoding the packet, so a single (direct) buffer can be
+	 * reused for sending packets, e.g., using a datagram channel. The buffer position is
+	 * advanced by the packet length, see {@link #getPacketLength(ServiceType)}.
+	 * 
+	 * @param type service type to pack
+	 * @param buf the buffer to write to
+	 * @return the packet length in bytes
+	 * @throws java.nio.BufferOverflowException if the remaining buffer space is less than
+	 *         the packet length
+	 */
+	public static int toPacket(ServiceType type, ByteBuffer buf)
+	{
+		final int length = getPacketLength(type);
+		if (buf.remaining() < length)
+			throw new BufferOverflowException();
+		KNXnetIPHeader.write(buf, type.svcType, type.getStructLength());
+		type.writeTo(buf);
+		return length;
+	}
+
+	/**
+	 * Returns the length of the KNXnet/IP packet containing the specified service
+	 * <code>type</code>, i.e., the length of the KNXnet/IP message header v1.0 plus the
+	 * length of the service type structure.
+	 * <p>
+	 * 
+	 * @param type service type
+	 * @return the packet length in bytes
+	 */
+	public static int getPacketLength(ServiceType type)
+	{
+		return HEADER_SIZE + type.getStructLength();
 	}
 
 	/**
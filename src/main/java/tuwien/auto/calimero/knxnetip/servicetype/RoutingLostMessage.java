@@ -36,7 +36,7 @@
 
 package tuwien.auto.calimero.knxnetip.servicetype;
 
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 
 import tuwien.auto.calimero.exception.KNXFormatException;
 import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
@@ -148,15 +148,14 @@ public class RoutingLostMessage extends ServiceType
 	}
 
 	/* (non-Javadoc)
-	 * @see tuwien.auto.calimero.knxnetip.servicetype.ServiceType#toByteArray
-	 * (java.io.ByteArrayOutputStream)
+	 * @see tuwien.auto.calimero.knxnetip.servicetype.ServiceType#writeTo
+	 *      (java.nio.ByteBuffer)
 	 */
-	byte[] toByteArray(ByteArrayOutputStream os)
+	void writeTo(ByteBuffer buf)
 	{
-		os.write(4);
-		os.write(state);
-		os.write(lost >> 8);
-		os.write(lost);
-		return os.toByteArray();
+		buf.put((byte) 4);
+		buf.put((byte) state);
+		buf.put((byte) (lost >> 8));
+		buf.put((byte) lost);
 	}
 }
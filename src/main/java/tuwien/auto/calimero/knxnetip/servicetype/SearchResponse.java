@@ -37,7 +37,7 @@
 
 package tuwien.auto.calimero.knxnetip.servicetype;
 
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 
 import tuwien.auto.calimero.exception.KNXFormatException;
 import tuwien.auto.calimero.knxnetip.util.DeviceDIB;
@@ -140,15 +140,13 @@ public class SearchResponse extends ServiceType
 	}
 
 	/* (non-Javadoc)
-	 * @see tuwien.auto.calimero.knxnetip.servicetype.ServiceType#toByteArray
-	 *      (java.io.ByteArrayOutputStream)
+	 * @see tuwien.auto.calimero.knxnetip.servicetype.ServiceType#writeTo
+	 *      (java.nio.ByteBuffer)
 	 */
-	byte[] toByteArray(ByteArrayOutputStream os)
+	void writeTo(ByteBuffer buf)
 	{
-		byte[] buf = desc.getDevice().toByteArray();
-		os.write(buf, 0, buf.length);
-		buf = desc.getServiceFamilies().toByteArray();
-		os.write(buf, 0, buf.length);
-		return os.toByteArray();
+		endpt.writeTo(buf);
+		desc.getDevice().writeTo(buf);
+		desc.getServiceFamilies().writeTo(buf);
 	}
 }
@@ -36,8 +36,7 @@
 
 package tuwien.auto.calimero.knxnetip.servicetype;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 
 import tuwien.auto.calimero.cemi.CEMI;
 import tuwien.auto.calimero.cemi.CEMIDevMgmt;
@@ -123,12 +122,13 @@ public class ServiceRequest extends ServiceType
 		super(serviceType);
 		if (length < CONN_HEADER_SIZE + 1)
 			throw new KNXFormatException("buffer too short for service request");
-		final ByteArrayInputStream is = new ByteArrayInputStream(data, offset, length);
-		if (is.read() != CONN_HEADER_SIZE)
+		if (data.length - offset < CONN_HEADER_SIZE)
+			throw new KNXFormatException("buffer too short for service request");
+		if (data[offset] != CONN_HEADER_SIZE)
 			throw new KNXFormatException("unsupported connection header");
-		channelid = (short) is.read();
-		seq = (short) is.read();
-		/* final int reserved = */is.read();
+		channelid = (short) (data[offset + 1] & 0xff);
+		seq = (short) (data[offset + 2] & 0xff);
+		/* final int reserved = data[offset + 3]; */
 		cemi = frame;
 	}
 	
@@ -185,17 +185,15 @@ public class ServiceRequest extends ServiceType
 	}
 
 	/* (non-Javadoc)
-	 * @see tuwien.auto.calimero.knxnetip.servicetype.ServiceType#toByteArray
-	 *      (java.io.ByteArrayOutputStream)
+	 * @see tuwien.auto.calimero.knxnetip.servicetype.ServiceType#writeTo
+	 *      (java.nio.ByteBuffer)
 	 */
-	byte[] toByteArray(ByteArrayOutputStream os)
+	void writeTo(ByteBuffer buf)
 	{
-		os.write(CONN_HEADER_SIZE);
-		os.write(channelid);
-		os.write(seq);
-		os.write(0);
-		final byte[] buf = cemi.toByteArray();
-		os.write(buf, 0, buf.length);
-		return os.toByteArray();
+		buf.put((byte) CONN_HEADER_SIZE);
+		buf.put((byte) channelid);
+		buf.put((byte) seq);
+		buf.put((byte) 0);
+		writeTo(cemi, buf);
 	}
 }
@@ -36,8 +36,12 @@
 
 package tuwien.auto.calimero.knxnetip.servicetype;
 
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 
+import tuwien.auto.calimero.cemi.CEMI;
+import tuwien.auto.calimero.cemi.CEMIBusMon;
+import tuwien.auto.calimero.cemi.CEMIDevMgmt;
+import tuwien.auto.calimero.cemi.CEMILData;
 import tuwien.auto.calimero.log.LogManager;
 import tuwien.auto.calimero.log.LogService;
 
@@ -68,7 +72,9 @@ abstract class ServiceType
 	 */
 	public final byte[] toByteArray()
 	{
-		return toByteArray(new ByteArrayOutputStream(50));
+		final ByteBuffer buf = ByteBuffer.allocate(getStructLength());
+		writeTo(buf);
+		return buf.array();
 	}
 
 	/**
@@ -82,7 +88,29 @@ abstract class ServiceType
 		return KNXnetIPHeader.getSvcName(svcType);
 	}
 
-	abstract byte[] toByteArray(ByteArrayOutputStream os);
+	/**
+	 * Writes the service type structure into <code>buf</code>, starting at the current
+	 * buffer position.
+	 * <p>
+	 * 
+	 * @param buf the buffer to write to, with at least {@link #getStructLength()} bytes
+	 *        remaining
+	 */
+	abstract void writeTo(ByteBuffer buf);
 
 	abstract short getStructLength();
+
+	// the cEMI types of this library write directly into the buffer, any other cEMI
+	// implementation is written by its byte representation
+	static void writeTo(CEMI cemi, ByteBuffer buf)
+	{
+		if (cemi instanceof CEMILData)
+			((CEMILData) cemi).writeTo(buf);
+		else if (cemi instanceof CEMIDevMgmt)
+			((CEMIDevMgmt) cemi).writeTo(buf);
+		else if (cemi instanceof CEMIBusMon)
+			((CEMIBusMon) cemi).writeTo(buf);
+		else
+			buf.put(cemi.toByteArray());
+	}
 }
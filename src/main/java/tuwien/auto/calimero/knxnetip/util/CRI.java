@@ -36,7 +36,7 @@
 
 package tuwien.auto.calimero.knxnetip.util;
 
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 
 import tuwien.auto.calimero.DataUnitBuilder;
 import tuwien.auto.calimero.exception.KNXFormatException;
@@ -184,11 +184,24 @@ class CRBase
 	 */
 	public byte[] toByteArray()
 	{
-		final ByteArrayOutputStream os = new ByteArrayOutputStream();
-		os.write(length);
-		os.write(connType);
-		os.write(opt, 0, opt.length);
-		return os.toByteArray();
+		final byte[] buf = new byte[length];
+		writeTo(ByteBuffer.wrap(buf));
+		return buf;
+	}
+
+	/**
+	 * Writes the byte representation of this structure into <code>buf</code>, starting
+	 * at the current buffer position.
+	 * <p>
+	 * The buffer position is advanced by the structure length.
+	 * 
+	 * @param buf the buffer to write to
+	 */
+	public void writeTo(ByteBuffer buf)
+	{
+		buf.put((byte) length);
+		buf.put((byte) connType);
+		buf.put(opt);
 	}
 }
 
@@ -36,6 +36,8 @@
 	 
 package tuwien.auto.calimero.knxnetip.util;
 
+import java.nio.ByteBuffer;
+
 import tuwien.auto.calimero.exception.KNXFormatException;
 
 /**
@@ -128,4 +130,17 @@ public abstract class DIB
 		buf[1] = (byte) type;
 		return buf;
 	}
+
+	/**
+	 * Writes the byte representation of the whole DIB structure into <code>buf</code>,
+	 * starting at the current buffer position.
+	 * <p>
+	 * The buffer position is advanced by the structure length.
+	 * 
+	 * @param buf the buffer to write to
+	 */
+	public void writeTo(ByteBuffer buf)
+	{
+		buf.put(toByteArray());
+	}
 }
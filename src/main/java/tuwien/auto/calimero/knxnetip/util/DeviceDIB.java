@@ -115,8 +115,7 @@ public class DeviceDIB extends DIB
 			new ByteArrayInputStream(data, offset + 2, data.length - offset - 2);
 		knxmedium = (short) is.read();
 		devicestatus = (short) is.read();
-		address =
-			new IndividualAddress(new byte[] { (byte) is.read(), (byte) is.read(), });
+		address = IndividualAddress.valueOf(is.read() << 8 | is.read());
 		projectInstallID = (is.read() << 8) | is.read();
 		is.read(serial, 0, serial.length);
 		is.read(mcaddress, 0, mcaddress.length);
@@ -36,10 +36,10 @@
 
 package tuwien.auto.calimero.knxnetip.util;
 
-import java.io.ByteArrayOutputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 
 import tuwien.auto.calimero.exception.KNXFormatException;
 import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
@@ -239,13 +239,26 @@ public class HPAI
 	 */
 	public final byte[] toByteArray()
 	{
-		final ByteArrayOutputStream os = new ByteArrayOutputStream(HPAI_SIZE);
-		os.write(length);
-		os.write(hostprot);
-		os.write(address, 0, address.length);
-		os.write(port >> 8);
-		os.write(port);
-		return os.toByteArray();
+		final byte[] buf = new byte[length];
+		writeTo(ByteBuffer.wrap(buf));
+		return buf;
+	}
+
+	/**
+	 * Writes the byte representation of this HPAI into <code>buf</code>, starting at
+	 * the current buffer position.
+	 * <p>
+	 * The buffer position is advanced by the structure length.
+	 * 
+	 * @param buf the buffer to write to
+	 */
+	public final void writeTo(ByteBuffer buf)
+	{
+		buf.put((byte) length);
+		buf.put((byte) hostprot);
+		buf.put(address);
+		buf.put((byte) (port >> 8));
+		buf.put((byte) port);
 	}
 
 	/**
@@ -104,7 +104,7 @@ public class TunnelCRD extends CRD
 	 */
 	public final IndividualAddress getAssignedAddress()
 	{
-		return new IndividualAddress(opt);
+		return IndividualAddress.valueOf((opt[0] & 0xff) << 8 | opt[1] & 0xff);
 	}
 
 	/**
@@ -46,6 +46,8 @@ import tuwien.auto.calimero.FrameEvent;
 import tuwien.auto.calimero.KNXListener;
 import tuwien.auto.calimero.link.event.LinkListener;
 import tuwien.auto.calimero.link.event.NetworkLinkListener;
+import tuwien.auto.calimero.link.event.ReconnectEvent;
+import tuwien.auto.calimero.link.event.ReconnectListener;
 import tuwien.auto.calimero.log.LogService;
 
 /**
@@ -115,6 +117,38 @@ abstract class EventNotifier extends Thread implements KNXListener
 		}
 	}
 
+	static final class Interrupted implements EventCallback
+	{
+		private final CloseEvent event;
+
+		Interrupted(CloseEvent e)
+		{
+			event = e;
+		}
+
+		public void invoke(LinkListener l)
+		{
+			if (l instanceof ReconnectListener)
+				((ReconnectListener) l).linkInterrupted(event);
+		}
+	}
+
+	static final class Reconnected implements EventCallback
+	{
+		private final ReconnectEvent event;
+
+		Reconnected(ReconnectEvent e)
+		{
+			event = e;
+		}
+
+		public void invoke(LinkListener l)
+		{
+			if (l instanceof ReconnectListener)
+				((ReconnectListener) l).linkReconnected(event);
+		}
+	}
+
 	final LogService logger;
 	final Object source;
 
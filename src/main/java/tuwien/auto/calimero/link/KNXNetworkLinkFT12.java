@@ -37,7 +37,6 @@
 package tuwien.auto.calimero.link;
 
 import tuwien.auto.calimero.CloseEvent;
-import tuwien.auto.calimero.DataUnitBuilder;
 import tuwien.auto.calimero.FrameEvent;
 import tuwien.auto.calimero.GroupAddress;
 import tuwien.auto.calimero.KNXAddress;
@@ -82,11 +81,11 @@ public class KNXNetworkLinkFT12 implements KNXNetworkLink
 				final int mc = f.getMessageCode();
 				if (mc == CEMILData.MC_LDATA_IND) {
 					addEvent(new Indication(new FrameEvent(source, f)));
-					logger.info("indication from " + f.getSource());
+					logger.info("indication from {}", f.getSource());
 				}
 				else if (mc == CEMILData.MC_LDATA_CON) {
 					addEvent(new Confirmation(new FrameEvent(source, f)));
-					logger.info("confirmation of " + f.getDestination());
+					logger.info("confirmation of {}", f.getDestination());
 				}
 			}
 			catch (final KNXFormatException ex) {
@@ -361,10 +360,10 @@ public class KNXNetworkLinkFT12 implements KNXNetworkLink
 		if (closed)
 			throw new KNXLinkClosedException("link closed");
 		try {
-			logger.info("send message to " + dst + (wait ? ", wait for ack" : ""));
-			logger.trace("EMI " + DataUnitBuilder.toHex(msg, " "));
+			logger.info("send message to {}{}", dst, wait ? ", wait for ack" : "");
+			logger.trace("EMI {}", msg);
 			conn.send(msg, wait);
-			logger.trace("send to " + dst + " succeeded");
+			logger.trace("send to {} succeeded", dst);
 		}
 		catch (final KNXPortClosedException e) {
 			logger.error("send error, closing link", e);
@@ -116,12 +116,12 @@ public class KNXNetworkLinkIP implements KNXNetworkLink
 			final int mc = e.getFrame().getMessageCode();
 			if (mc == CEMILData.MC_LDATA_IND) {
 				addEvent(new Indication(new FrameEvent(source, e.getFrame())));
-				logger.info("indication from " + ((CEMILData) e.getFrame()).getSource());
+				logger.info("indication from {}", ((CEMILData) e.getFrame()).getSource());
 			}
 			else if (mc == CEMILData.MC_LDATA_CON) {
 				addEvent(new Confirmation(new FrameEvent(source, e.getFrame())));
-				logger.info("confirmation of "
-					+ ((CEMILData) e.getFrame()).getDestination());
+				logger.info("confirmation of {}",
+					((CEMILData) e.getFrame()).getDestination());
 			}
 			else
 				logger.warn("unspecified frame event - ignored, msg code = 0x"
@@ -417,7 +417,7 @@ public class KNXNetworkLinkIP implements KNXNetworkLink
 		final short mc = mode == TUNNEL ? CEMILData.MC_LDATA_REQ : CEMILData.MC_LDATA_IND;
 		final IndividualAddress src = medium.getDeviceAddress();
 		// use default address 0 in system broadcast
-		final KNXAddress d = dst == null ? new GroupAddress(0) : dst;
+		final KNXAddress d = dst == null ? GroupAddress.valueOf(0) : dst;
 		final boolean tp = medium.getMedium() == KNXMediumSettings.MEDIUM_TP0
 			|| medium.getMedium() == KNXMediumSettings.MEDIUM_TP1;
 		if (nsdu.length <= 16 && tp)
@@ -454,12 +454,12 @@ public class KNXNetworkLinkIP implements KNXNetworkLink
 			}
 		}
 		try {
-			logger.info("send message to " + msg.getDestination()
-				+ (waitForCon ? ", wait for confirmation" : ""));
-			logger.trace("cEMI " + msg);
+			logger.info("send message to {}{}", msg.getDestination(),
+				waitForCon ? ", wait for confirmation" : "");
+			logger.trace("cEMI {}", msg);
 			conn.send(msg, waitForCon ? KNXnetIPConnection.WAIT_FOR_CON
 				: KNXnetIPConnection.WAIT_FOR_ACK);
-			logger.trace("send to " + msg.getDestination() + " succeeded");
+			logger.trace("send to {} succeeded", msg.getDestination());
 		}
 		catch (final KNXConnectionClosedException e) {
 			logger.error("send error, closing link", e);
@@ -0,0 +1,693 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.link;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import tuwien.auto.calimero.CloseEvent;
+import tuwien.auto.calimero.FrameEvent;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.KNXAddress;
+import tuwien.auto.calimero.Priority;
+import tuwien.auto.calimero.cemi.CEMIFactory;
+import tuwien.auto.calimero.cemi.CEMILData;
+import tuwien.auto.calimero.cemi.CEMILDataEx;
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.exception.KNXFormatException;
+import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
+import tuwien.auto.calimero.exception.KNXIllegalStateException;
+import tuwien.auto.calimero.exception.KNXTimeoutException;
+import tuwien.auto.calimero.link.event.NetworkLinkListener;
+import tuwien.auto.calimero.link.medium.KNXMediumSettings;
+import tuwien.auto.calimero.link.medium.TPSettings;
+import tuwien.auto.calimero.log.LogManager;
+import tuwien.auto.calimero.log.LogService;
+
+/**
+ * A pool of KNXnet/IP tunneling links, shared by lightweight virtual network links.
+ * <p>
+ * KNXnet/IP servers only offer a few tunneling connections, often one to four. Instead of
+ * opening a {@link KNXNetworkLinkIP} of its own, every user obtains a virtual link from
+ * the pool using {@link #getLink(InetSocketAddress, KNXMediumSettings)}. The pool owns at
+ * most the configured number of tunneling links per server. A virtual link is assigned to
+ * the tunnel with the least virtual links; a new tunnel is only opened while all tunnels
+ * are in use and the maximum is not reached. If the server does not accept another
+ * tunneling connection, the virtual link shares an existing tunnel.
+ * <p>
+ * A virtual link behaves like a network link of its own, with its own listeners, medium
+ * settings and hop count. Messages are sent over the tunnel of the virtual link. A
+ * confirmation is only supplied to the virtual link which sent the confirmed message,
+ * indications are supplied to all virtual links of a tunnel.<br>
+ * The server does not return a message to the tunnel it was sent over, but would supply
+ * it to other tunnels. Therefore, a message sent by a virtual link is supplied as
+ * L-Data indication to the other virtual links of its tunnel, unless sending failed,
+ * e.g., if no confirmation was received for a blocking send.
+ * <p>
+ * If a tunnel is closed by the server or due to a communication failure, the pool
+ * reconnects the tunnel in the background, the virtual links stay open. Sending over a
+ * tunnel not connected tries to reconnect first, and fails with a timeout if the tunnel
+ * can't be reconnected.<br>
+ * Closing a virtual link does not affect other virtual links, a tunnel is closed
+ * together with its last virtual link. Closing the pool closes all virtual links and
+ * tunnels.
+ * 
+ * @author B. Malinowsky
+ * @see KNXNetworkLinkIP
+ */
+public class KNXNetworkLinkPool
+{
+	// time between reconnect attempts of a tunnel
+	private static final long reconnectDelay = 5000;
+	// sent messages without confirmation received within this time are discarded
+	private static final long conTimeout = 10000;
+
+	private final LogService logger;
+
+	private final InetSocketAddress localEP;
+	private final boolean useNAT;
+	private final int maxTunnels;
+
+	// server control endpoint -> list of tunnels
+	private final Map servers = new HashMap();
+	private boolean closed;
+
+	/**
+	 * Creates a new link pool.
+	 * <p>
+	 * 
+	 * @param localEP the local endpoint used for the tunneling links, this is the client
+	 *        control endpoint, use <code>null</code> for the default local host and an
+	 *        ephemeral port number
+	 * @param useNAT <code>true</code> to use network address translation,
+	 *        <code>false</code> to use the default (non aware) mode
+	 * @param maxTunnels maximum number of tunneling links opened to one server,
+	 *        maxTunnels > 0
+	 */
+	public KNXNetworkLinkPool(InetSocketAddress localEP, boolean useNAT, int maxTunnels)
+	{
+		if (maxTunnels <= 0)
+			throw new KNXIllegalArgumentException("maximum tunnels has to be > 0");
+		this.localEP = localEP;
+		this.useNAT = useNAT;
+		this.maxTunnels = maxTunnels;
+		logger = LogManager.getManager().getLogService("link pool");
+	}
+
+	/**
+	 * Returns a new virtual link to the KNXnet/IP server with control endpoint
+	 * <code>server</code>.
+	 * <p>
+	 * If necessary, a new tunneling link to the server is opened.
+	 * 
+	 * @param server the server control endpoint
+	 * @param settings medium settings defining device and medium specifics of the
+	 *        virtual link, the medium has to be equal for all virtual links of a server
+	 * @return the virtual link
+	 * @throws KNXException on failure opening a tunneling link to the server
+	 */
+	public KNXNetworkLink getLink(InetSocketAddress server, KNXMediumSettings settings)
+		throws KNXException
+	{
+		if (settings == null)
+			throw new KNXIllegalArgumentException("medium settings are mandatory");
+		while (true) {
+			final PooledLink l = assign(server, settings).add(settings);
+			// retry if the tunnel was closed with its last virtual link meanwhile
+			if (l != null)
+				return l;
+		}
+	}
+
+	/**
+	 * Returns the number of tunneling links currently owned for the specified server.
+	 * <p>
+	 * 
+	 * @param server the server control endpoint
+	 * @return number of tunnels
+	 */
+	public synchronized int getTunnels(InetSocketAddress server)
+	{
+		final List tunnels = (List) servers.get(server);
+		return tunnels != null ? tunnels.size() : 0;
+	}
+
+	/**
+	 * Closes the pool, together with all virtual links and tunneling links.
+	 * <p>
+	 * Once closed, no virtual links can be obtained anymore.
+	 */
+	public void close()
+	{
+		final List all = new ArrayList();
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+			for (final Iterator i = servers.values().iterator(); i.hasNext();)
+				all.addAll((List) i.next());
+			servers.clear();
+		}
+		for (final Iterator i = all.iterator(); i.hasNext();)
+			((Tunnel) i.next()).close();
+		logger.info("link pool closed");
+	}
+
+	/**
+	 * Opens the tunneling link of a tunnel.
+	 * <p>
+	 * 
+	 * @param server server control endpoint
+	 * @param settings medium settings of the tunnel
+	 * @return the opened link
+	 * @throws KNXException on failure opening the link
+	 */
+	KNXNetworkLink open(InetSocketAddress server, KNXMediumSettings settings)
+		throws KNXException
+	{
+		return new KNXNetworkLinkIP(KNXNetworkLinkIP.TUNNEL, localEP, server, useNAT,
+			settings);
+	}
+
+	// returns the tunnel for a new virtual link, opens a new tunnel if necessary
+	private Tunnel assign(InetSocketAddress server, KNXMediumSettings settings)
+		throws KNXException
+	{
+		Tunnel t = null;
+		Tunnel opened = null;
+		synchronized (this) {
+			if (closed)
+				throw new KNXIllegalStateException("link pool closed");
+			List tunnels = (List) servers.get(server);
+			if (tunnels == null) {
+				tunnels = new ArrayList();
+				servers.put(server, tunnels);
+			}
+			t = leastUsed(tunnels);
+			if (t != null && t.settings.getMedium() != settings.getMedium())
+				throw new KNXIllegalArgumentException("medium differs");
+			if (t == null || t.users() > 0 && tunnels.size() < maxTunnels) {
+				// reserve the tunnel slot, connect without holding the pool lock
+				opened = new Tunnel(server, settings);
+				tunnels.add(opened);
+			}
+		}
+		if (opened != null) {
+			try {
+				opened.connect();
+				t = opened;
+			}
+			catch (final KNXException e) {
+				synchronized (this) {
+					final List tunnels = (List) servers.get(server);
+					t = null;
+					if (tunnels != null) {
+						tunnels.remove(opened);
+						t = leastUsed(tunnels);
+						if (tunnels.isEmpty())
+							servers.remove(server);
+					}
+				}
+				if (t == null)
+					throw e;
+				logger.warn("share tunnel to " + server + ", no new tunnel, "
+					+ e.getMessage());
+			}
+		}
+		return t;
+	}
+
+	// returns the tunnel with the least virtual links, or null for no tunnels
+	private static Tunnel leastUsed(List tunnels)
+	{
+		Tunnel least = null;
+		for (final Iterator i = tunnels.iterator(); i.hasNext();) {
+			final Tunnel t = (Tunnel) i.next();
+			if (least == null || t.users() < least.users())
+				least = t;
+		}
+		return least;
+	}
+
+	private synchronized void remove(Tunnel t)
+	{
+		final List tunnels = (List) servers.get(t.server);
+		if (tunnels != null && tunnels.remove(t) && tunnels.isEmpty())
+			servers.remove(t.server);
+	}
+
+	// a message sent by a virtual link, waiting for its confirmation
+	private static final class Pending
+	{
+		final PooledLink link;
+		final CEMILData msg;
+		final long time;
+
+		Pending(PooledLink link, CEMILData msg)
+		{
+			this.link = link;
+			this.msg = msg;
+			time = System.currentTimeMillis();
+		}
+
+		boolean confirms(CEMILData con)
+		{
+			return msg.getDestination().equals(con.getDestination())
+				&& Arrays.equals(msg.getPayload(), con.getPayload());
+		}
+	}
+
+	private final class Tunnel implements NetworkLinkListener
+	{
+		final InetSocketAddress server;
+		final KNXMediumSettings settings;
+
+		private volatile KNXNetworkLink link;
+		// virtual links using this tunnel
+		private final List links = new ArrayList();
+		private volatile List linksCopy = new ArrayList();
+		private final LinkedList pending = new LinkedList();
+		private final Object connectLock = new Object();
+		private volatile boolean closing;
+		private boolean reconnecting;
+		private int count;
+
+		Tunnel(InetSocketAddress server, KNXMediumSettings settings)
+		{
+			this.server = server;
+			this.settings = settings;
+		}
+
+		int users()
+		{
+			synchronized (links) {
+				return links.size();
+			}
+		}
+
+		// returns null if this tunnel is closed already
+		PooledLink add(KNXMediumSettings medium)
+		{
+			final PooledLink l;
+			synchronized (links) {
+				if (closing)
+					return null;
+				l = new PooledLink(this, "pooled link "
+					+ server.getAddress().getHostAddress() + ":" + server.getPort() + " #"
+					+ ++count, medium);
+				links.add(l);
+				linksCopy = new ArrayList(links);
+			}
+			logger.info("opened " + l.getName());
+			return l;
+		}
+
+		void remove(PooledLink l)
+		{
+			final boolean last;
+			synchronized (links) {
+				if (!links.remove(l))
+					return;
+				linksCopy = new ArrayList(links);
+				last = links.isEmpty();
+				if (last)
+					closing = true;
+			}
+			synchronized (pending) {
+				for (final Iterator i = pending.iterator(); i.hasNext();)
+					if (((Pending) i.next()).link == l)
+						i.remove();
+			}
+			if (last) {
+				KNXNetworkLinkPool.this.remove(this);
+				close();
+			}
+		}
+
+		void connect() throws KNXException
+		{
+			synchronized (connectLock) {
+				if (closing)
+					throw new KNXLinkClosedException("link pool closed");
+				if (link != null && link.isOpen())
+					return;
+				final KNXNetworkLink l = open(server, settings);
+				l.addLinkListener(this);
+				link = l;
+				logger.info("connected tunnel to " + server);
+			}
+		}
+
+		void send(PooledLink src, CEMILData msg, boolean waitForCon)
+			throws KNXTimeoutException, KNXLinkClosedException
+		{
+			KNXNetworkLink l = link;
+			if (l == null || !l.isOpen()) {
+				try {
+					connect();
+				}
+				catch (final KNXLinkClosedException e) {
+					throw e;
+				}
+				catch (final KNXException e) {
+					throw new KNXTimeoutException("tunnel to " + server
+						+ " not connected, " + e.getMessage());
+				}
+				l = link;
+			}
+			final Pending p = new Pending(src, msg);
+			synchronized (pending) {
+				final long now = System.currentTimeMillis();
+				while (!pending.isEmpty() && now - ((Pending) pending.getFirst()).time
+					> conTimeout)
+					pending.removeFirst();
+				pending.add(p);
+			}
+			try {
+				l.send(msg, waitForCon);
+			}
+			catch (final KNXTimeoutException e) {
+				removePending(p);
+				throw e;
+			}
+			catch (final KNXLinkClosedException e) {
+				removePending(p);
+				reconnect();
+				throw new KNXTimeoutException("tunnel to " + server + " closed, "
+					+ e.getMessage());
+			}
+			loopback(src, msg);
+		}
+
+		void close()
+		{
+			final KNXNetworkLink l;
+			synchronized (connectLock) {
+				closing = true;
+				l = link;
+			}
+			final List copy = linksCopy;
+			for (final Iterator i = copy.iterator(); i.hasNext();)
+				((PooledLink) i.next()).closed("link pool closed");
+			if (l != null)
+				l.close();
+			logger.info("closed tunnel to " + server);
+		}
+
+		public void indication(FrameEvent e)
+		{
+			if (e.getSource() != link)
+				return;
+			final List copy = linksCopy;
+			for (final Iterator i = copy.iterator(); i.hasNext();)
+				((PooledLink) i.next()).notifier.frameReceived(e);
+		}
+
+		public void confirmation(FrameEvent e)
+		{
+			final CEMILData con = (CEMILData) e.getFrame();
+			Pending p = null;
+			synchronized (pending) {
+				for (final Iterator i = pending.iterator(); i.hasNext();) {
+					final Pending next = (Pending) i.next();
+					if (next.confirms(con)) {
+						p = next;
+						i.remove();
+						break;
+					}
+				}
+			}
+			if (p != null)
+				p.link.notifier.frameReceived(e);
+			else
+				logger.warn("no sender for confirmation of {}", con.getDestination());
+		}
+
+		public void linkClosed(CloseEvent e)
+		{
+			if (e.getSource() != link || closing)
+				return;
+			logger.warn("tunnel to " + server + " closed, " + e.getReason());
+			reconnect();
+		}
+
+		// reconnects the tunnel in the background
+		private void reconnect()
+		{
+			synchronized (connectLock) {
+				if (closing || reconnecting)
+					return;
+				reconnecting = true;
+			}
+			final Thread t = new Thread("Link pool reconnect " + server)
+			{
+				public void run()
+				{
+					try {
+						while (true) {
+							try {
+								connect();
+								return;
+							}
+							catch (final KNXException e) {
+								if (closing)
+									return;
+								logger.warn("reconnect tunnel to " + server + " failed, "
+									+ e.getMessage());
+							}
+							Thread.sleep(reconnectDelay);
+						}
+					}
+					catch (final InterruptedException e) {}
+					finally {
+						synchronized (connectLock) {
+							reconnecting = false;
+						}
+					}
+				}
+			};
+			t.setDaemon(true);
+			t.start();
+		}
+
+		// supplies a sent message as indication to the other virtual links of this tunnel
+		private void loopback(PooledLink src, CEMILData msg)
+		{
+			final List copy = linksCopy;
+			if (copy.size() < 2)
+				return;
+			final CEMILData ind;
+			try {
+				ind = (CEMILData) CEMIFactory.create(CEMILData.MC_LDATA_IND, msg
+					.getPayload(), msg);
+			}
+			catch (final KNXFormatException e) {
+				logger.error("no indication of message to " + msg.getDestination(), e);
+				return;
+			}
+			final FrameEvent e = new FrameEvent(src, ind);
+			for (final Iterator i = copy.iterator(); i.hasNext();) {
+				final PooledLink l = (PooledLink) i.next();
+				if (l != src)
+					l.notifier.frameReceived(e);
+			}
+		}
+
+		private void removePending(Pending p)
+		{
+			synchronized (pending) {
+				pending.remove(p);
+			}
+		}
+	}
+
+	private static final class PooledLinkNotifier extends EventNotifier
+	{
+		PooledLinkNotifier(Object source, LogService logger)
+		{
+			super(source, logger);
+		}
+
+		public void frameReceived(FrameEvent e)
+		{
+			final int mc = e.getFrame().getMessageCode();
+			if (mc == CEMILData.MC_LDATA_IND)
+				addEvent(new Indication(new FrameEvent(source, e.getFrame())));
+			else if (mc == CEMILData.MC_LDATA_CON)
+				addEvent(new Confirmation(new FrameEvent(source, e.getFrame())));
+		}
+	}
+
+	private final class PooledLink implements KNXNetworkLink
+	{
+		final EventNotifier notifier;
+		private final Tunnel tunnel;
+		private final String name;
+		private volatile boolean closed;
+		private volatile byte hopCount = 6;
+		private KNXMediumSettings medium;
+
+		PooledLink(Tunnel t, String name, KNXMediumSettings settings)
+		{
+			tunnel = t;
+			this.name = name;
+			setKNXMedium(settings);
+			notifier = new PooledLinkNotifier(this, logger);
+		}
+
+		public void setKNXMedium(KNXMediumSettings settings)
+		{
+			if (settings == null)
+				throw new KNXIllegalArgumentException("medium settings are mandatory");
+			if (medium != null && !settings.getClass().isAssignableFrom(medium.getClass())
+				&& !medium.getClass().isAssignableFrom(settings.getClass()))
+				throw new KNXIllegalArgumentException("medium differs");
+			medium = settings;
+		}
+
+		public KNXMediumSettings getKNXMedium()
+		{
+			return medium;
+		}
+
+		public void addLinkListener(NetworkLinkListener l)
+		{
+			notifier.addListener(l);
+		}
+
+		public void removeLinkListener(NetworkLinkListener l)
+		{
+			notifier.removeListener(l);
+		}
+
+		public void setHopCount(int count)
+		{
+			if (count < 0 || count > 7)
+				throw new KNXIllegalArgumentException("hop count out of range [0..7]");
+			hopCount = (byte) count;
+		}
+
+		public byte getHopCount()
+		{
+			return hopCount;
+		}
+
+		public void sendRequest(KNXAddress dst, Priority p, byte[] nsdu)
+			throws KNXTimeoutException, KNXLinkClosedException
+		{
+			send(dst, p, nsdu, false);
+		}
+
+		public void sendRequestWait(KNXAddress dst, Priority p, byte[] nsdu)
+			throws KNXTimeoutException, KNXLinkClosedException
+		{
+			send(dst, p, nsdu, true);
+		}
+
+		public void send(CEMILData msg, boolean waitForCon) throws KNXTimeoutException,
+			KNXLinkClosedException
+		{
+			if (closed)
+				throw new KNXLinkClosedException("link closed");
+			// the tunnel link would use its own device address for the source
+			final IndividualAddress src = medium.getDeviceAddress();
+			final CEMILData f = msg.getSource().getRawAddress() == 0
+				&& src.getRawAddress() != 0 ? (CEMILData) CEMIFactory.create(src, null, msg,
+				false) : msg;
+			tunnel.send(this, f, waitForCon);
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		public boolean isOpen()
+		{
+			return !closed;
+		}
+
+		public void close()
+		{
+			if (closed("user request"))
+				tunnel.remove(this);
+		}
+
+		public String toString()
+		{
+			return getName() + (closed ? " (closed), " : ", ") + medium.getMediumString()
+				+ " medium hopcount " + hopCount;
+		}
+
+		// returns true if this link was closed by this call
+		boolean closed(String reason)
+		{
+			synchronized (this) {
+				if (closed)
+					return false;
+				closed = true;
+			}
+			notifier.connectionClosed(new CloseEvent(this, true, reason));
+			logger.info(name + " closed");
+			return true;
+		}
+
+		private void send(KNXAddress dst, Priority p, byte[] nsdu, boolean confirm)
+			throws KNXTimeoutException, KNXLinkClosedException
+		{
+			final CEMILData f;
+			final IndividualAddress src = medium.getDeviceAddress();
+			// use default address 0 in system broadcast
+			final KNXAddress d = dst == null ? GroupAddress.valueOf(0) : dst;
+			final boolean tp = medium instanceof TPSettings;
+			if (nsdu.length <= 16 && tp)
+				f = new CEMILData(CEMILData.MC_LDATA_REQ, src, d, nsdu, p, true,
+					hopCount);
+			else
+				f = new CEMILDataEx(CEMILData.MC_LDATA_REQ, src, d, nsdu, p, true,
+					dst != null, false, hopCount);
+			send(f, confirm);
+		}
+	}
+}
@@ -0,0 +1,575 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.link;
+
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import tuwien.auto.calimero.CloseEvent;
+import tuwien.auto.calimero.FrameEvent;
+import tuwien.auto.calimero.KNXAddress;
+import tuwien.auto.calimero.Priority;
+import tuwien.auto.calimero.cemi.CEMILData;
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
+import tuwien.auto.calimero.exception.KNXTimeoutException;
+import tuwien.auto.calimero.link.event.NetworkLinkListener;
+import tuwien.auto.calimero.link.event.ReconnectEvent;
+import tuwien.auto.calimero.link.event.ReconnectListener;
+import tuwien.auto.calimero.link.medium.KNXMediumSettings;
+import tuwien.auto.calimero.log.LogManager;
+import tuwien.auto.calimero.log.LogService;
+
+/**
+ * A KNX network link based on KNXnet/IP tunneling, which reconnects after the tunneling
+ * connection was lost.
+ * <p>
+ * The link uses a {@link KNXNetworkLinkIP} in tunneling mode. If the tunneling connection
+ * is closed by the server or due to a communication failure (e.g., no heartbeat
+ * response), the link stays open and reconnects in the background. The delay between
+ * two connect attempts starts with the initial reconnect delay and is doubled with every
+ * failed attempt, up to the maximum reconnect delay.<br>
+ * Link listeners stay registered with this link while reconnecting. Listeners of type
+ * {@link ReconnectListener} are notified about the interruption and the reestablished
+ * connection, e.g., to refresh state which might be outdated after the interruption.
+ * <p>
+ * Messages sent while the link is not connected are handled according to the outage
+ * policy of the link:<br>
+ * - {@link #REJECT_SENDS} rejects the message with a {@link KNXTimeoutException}<br>
+ * - {@link #BUFFER_SENDS} buffers the message and returns immediately; buffered
+ * messages are sent in order after the link reconnected, a confirmation is supplied to
+ * the link listeners then. If the buffer is full, the oldest buffered message is
+ * discarded. The link is reported as connected only after all buffered messages were
+ * sent, messages sent meanwhile are buffered as well to keep their order.
+ * <p>
+ * Once the link has been closed by the user, it is not available for further link
+ * communication, i.e. it can't be reopened.
+ * 
+ * @author B. Malinowsky
+ * @see KNXNetworkLinkIP
+ */
+public class KNXNetworkLinkReconnect implements KNXNetworkLink
+{
+	/**
+	 * Outage policy to reject messages sent while the link is not connected.
+	 * <p>
+	 */
+	public static final int REJECT_SENDS = 1;
+
+	/**
+	 * Outage policy to buffer messages sent while the link is not connected.
+	 * <p>
+	 */
+	public static final int BUFFER_SENDS = 2;
+
+	// maximum number of messages buffered during an interruption
+	private static final int maxBuffered = 100;
+
+	private static final class LinkNotifier extends EventNotifier
+	{
+		LinkNotifier(Object source, LogService logger)
+		{
+			super(source, logger);
+		}
+
+		public void frameReceived(FrameEvent e)
+		{
+			final int mc = e.getFrame().getMessageCode();
+			if (mc == CEMILData.MC_LDATA_IND)
+				addEvent(new Indication(new FrameEvent(source, e.getFrame())));
+			else if (mc == CEMILData.MC_LDATA_CON)
+				addEvent(new Confirmation(new FrameEvent(source, e.getFrame())));
+		}
+	}
+
+	// a message sent while the link was not connected
+	private static final class Request
+	{
+		private final KNXAddress dst;
+		private final Priority p;
+		private final byte[] nsdu;
+		private final CEMILData msg;
+		private final boolean wait;
+
+		Request(KNXAddress dst, Priority p, byte[] nsdu, CEMILData msg, boolean wait)
+		{
+			this.dst = dst;
+			this.p = p;
+			this.nsdu = nsdu;
+			this.msg = msg;
+			this.wait = wait;
+		}
+
+		void send(KNXNetworkLink link) throws KNXTimeoutException, KNXLinkClosedException
+		{
+			if (msg != null)
+				link.send(msg, wait);
+			else if (wait)
+				link.sendRequestWait(dst, p, nsdu);
+			else
+				link.sendRequest(dst, p, nsdu);
+		}
+	}
+
+	// forwards the events of the tunneling link
+	private final class Forwarder implements NetworkLinkListener
+	{
+		Forwarder()
+		{}
+
+		public void indication(FrameEvent e)
+		{
+			notifier.frameReceived(e);
+		}
+
+		public void confirmation(FrameEvent e)
+		{
+			notifier.frameReceived(e);
+		}
+
+		public void linkClosed(CloseEvent e)
+		{
+			// we close a tunneling link ourselves only on failure or user request
+			if (!e.isUserRequest())
+				lost((KNXNetworkLink) e.getSource(), e.getReason());
+		}
+	}
+
+	private final InetSocketAddress localEP;
+	private final InetSocketAddress remoteEP;
+	private final boolean useNAT;
+	private final int policy;
+
+	private final LogService logger;
+	private final EventNotifier notifier;
+	private final NetworkLinkListener forwarder = new Forwarder();
+
+	private volatile byte hopCount = 6;
+	private KNXMediumSettings medium;
+	private volatile long initialDelay = 1000;
+	private volatile long maxDelay = 60000;
+
+	// guards link, closed, buffered messages and the reconnect state
+	private final Object lock = new Object();
+	// the tunneling link, null while not connected
+	private KNXNetworkLink link;
+	private volatile boolean closed;
+	private final List buffered = new LinkedList();
+	private Thread reconnector;
+	private long lostTime;
+
+	/**
+	 * Creates a new reconnecting network link, and connects to the KNXnet/IP server.
+	 * <p>
+	 * 
+	 * @param localEP the local endpoint of the link, this is the client control endpoint,
+	 *        use <code>null</code> for the default local host and an ephemeral port
+	 *        number
+	 * @param remoteEP the server control endpoint of the link to communicate with
+	 * @param useNAT <code>true</code> to use network address translation,
+	 *        <code>false</code> to use the default (non aware) mode
+	 * @param settings medium settings defining device and medium specifics needed for
+	 *        communication
+	 * @param outagePolicy handling of messages sent while the link is not connected, one
+	 *        of {@link #REJECT_SENDS}, {@link #BUFFER_SENDS}
+	 * @throws KNXException on failure establishing the initial connection
+	 */
+	public KNXNetworkLinkReconnect(InetSocketAddress localEP, InetSocketAddress remoteEP,
+		boolean useNAT, KNXMediumSettings settings, int outagePolicy) throws KNXException
+	{
+		if (remoteEP == null)
+			throw new KNXIllegalArgumentException("no server control endpoint");
+		if (outagePolicy != REJECT_SENDS && outagePolicy != BUFFER_SENDS)
+			throw new KNXIllegalArgumentException("unknown outage policy");
+		this.localEP = localEP;
+		this.remoteEP = remoteEP;
+		this.useNAT = useNAT;
+		policy = outagePolicy;
+		setKNXMedium(settings);
+		logger = LogManager.getManager().getLogService(getName());
+		notifier = new LinkNotifier(this, logger);
+		try {
+			link = open();
+		}
+		catch (final KNXException e) {
+			notifier.quit();
+			throw e;
+		}
+		link.addLinkListener(forwarder);
+	}
+
+	/**
+	 * Sets the delays between connect attempts while reconnecting.
+	 * <p>
+	 * 
+	 * @param initial delay after the first failed attempt in milliseconds, initial > 0
+	 * @param maximum maximum delay in milliseconds, maximum >= initial
+	 */
+	public final void setReconnectDelay(long initial, long maximum)
+	{
+		if (initial <= 0 || maximum < initial)
+			throw new KNXIllegalArgumentException("invalid reconnect delay");
+		initialDelay = initial;
+		maxDelay = maximum;
+	}
+
+	/**
+	 * Returns whether the link is currently connected to the KNXnet/IP server.
+	 * <p>
+	 * An open link might not be connected while reconnecting.
+	 * 
+	 * @return <code>true</code> if connected, <code>false</code> otherwise
+	 */
+	public final boolean isConnected()
+	{
+		synchronized (lock) {
+			return link != null;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkLink#setKNXMedium
+	 * (tuwien.auto.calimero.link.medium.KNXMediumSettings)
+	 */
+	public void setKNXMedium(KNXMediumSettings settings)
+	{
+		if (settings == null)
+			throw new KNXIllegalArgumentException("medium settings are mandatory");
+		if (medium != null && !settings.getClass().isAssignableFrom(medium.getClass())
+			&& !medium.getClass().isAssignableFrom(settings.getClass()))
+			throw new KNXIllegalArgumentException("medium differs");
+		medium = settings;
+		final KNXNetworkLink l = current();
+		if (l != null)
+			l.setKNXMedium(settings);
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkLink#getKNXMedium()
+	 */
+	public KNXMediumSettings getKNXMedium()
+	{
+		return medium;
+	}
+
+	/**
+	 * {@inheritDoc} Listeners of type {@link ReconnectListener} are additionally notified
+	 * about interruptions and reconnects of the link.
+	 */
+	public void addLinkListener(NetworkLinkListener l)
+	{
+		notifier.addListener(l);
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkLink#removeLinkListener
+	 * (tuwien.auto.calimero.link.event.NetworkLinkListener)
+	 */
+	public void removeLinkListener(NetworkLinkListener l)
+	{
+		notifier.removeListener(l);
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkLink#setHopCount(int)
+	 */
+	public final void setHopCount(int count)
+	{
+		if (count < 0 || count > 7)
+			throw new KNXIllegalArgumentException("hop count out of range [0..7]");
+		hopCount = (byte) count;
+		final KNXNetworkLink l = current();
+		if (l != null)
+			l.setHopCount(count);
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkLink#getHopCount()
+	 */
+	public final byte getHopCount()
+	{
+		return hopCount;
+	}
+
+	/**
+	 * {@inheritDoc} While the link is not connected, the message is handled according to
+	 * the outage policy.
+	 */
+	public void sendRequest(KNXAddress dst, Priority p, byte[] nsdu)
+		throws KNXTimeoutException, KNXLinkClosedException
+	{
+		send(new Request(dst, p, nsdu, null, false));
+	}
+
+	/**
+	 * {@inheritDoc} While the link is not connected, the message is handled according to
+	 * the outage policy; a buffered message is not waited for.
+	 */
+	public void sendRequestWait(KNXAddress dst, Priority p, byte[] nsdu)
+		throws KNXTimeoutException, KNXLinkClosedException
+	{
+		send(new Request(dst, p, nsdu, null, true));
+	}
+
+	/**
+	 * {@inheritDoc} While the link is not connected, the message is handled according to
+	 * the outage policy; a buffered message is not waited for.
+	 */
+	public void send(CEMILData msg, boolean waitForCon) throws KNXTimeoutException,
+		KNXLinkClosedException
+	{
+		send(new Request(null, null, null, msg, waitForCon));
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkLink#getName()
+	 */
+	public String getName()
+	{
+		return "reconnecting link " + remoteEP.getAddress().getHostAddress() + ":"
+			+ remoteEP.getPort();
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkLink#isOpen()
+	 */
+	public boolean isOpen()
+	{
+		return !closed;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkLink#close()
+	 */
+	public void close()
+	{
+		final KNXNetworkLink l;
+		final Thread t;
+		synchronized (lock) {
+			if (closed)
+				return;
+			closed = true;
+			l = link;
+			link = null;
+			t = reconnector;
+			if (!buffered.isEmpty())
+				logger.warn("discard " + buffered.size() + " buffered messages");
+			buffered.clear();
+		}
+		if (t != null)
+			t.interrupt();
+		if (l != null)
+			l.close();
+		notifier.addEvent(new EventNotifier.Closed(new CloseEvent(this, true,
+			"user request")));
+		notifier.quit();
+		logger.info("link closed");
+		LogManager.getManager().removeLogService(logger.getName());
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString()
+	{
+		return getName() + (closed ? " (closed)" : isConnected() ? "" : " (reconnecting)")
+			+ ", " + medium.getMediumString() + " medium hopcount " + hopCount;
+	}
+
+	// opens a tunneling link, for tests this might be overridden
+	KNXNetworkLink open() throws KNXException
+	{
+		return new KNXNetworkLinkIP(KNXNetworkLinkIP.TUNNEL, localEP, remoteEP, useNAT,
+			medium);
+	}
+
+	private KNXNetworkLink current()
+	{
+		synchronized (lock) {
+			return link;
+		}
+	}
+
+	private void send(Request r) throws KNXTimeoutException, KNXLinkClosedException
+	{
+		while (true) {
+			final KNXNetworkLink l;
+			synchronized (lock) {
+				if (closed)
+					throw new KNXLinkClosedException("link closed");
+				l = link;
+				if (l == null) {
+					if (policy == REJECT_SENDS)
+						throw new KNXTimeoutException("link interrupted, reconnecting");
+					if (buffered.size() == maxBuffered) {
+						buffered.remove(0);
+						logger.warn("buffer full, discard oldest message");
+					}
+					buffered.add(r);
+					return;
+				}
+			}
+			try {
+				r.send(l);
+				return;
+			}
+			catch (final KNXLinkClosedException e) {
+				// the close event of the tunneling link might still be pending
+				lost(l, e.getMessage());
+			}
+		}
+	}
+
+	// the tunneling link l was closed, start reconnecting if it is the current link
+	private void lost(KNXNetworkLink l, String reason)
+	{
+		synchronized (lock) {
+			if (closed || link != l)
+				return;
+			link = null;
+			lostTime = System.currentTimeMillis();
+			reconnector = new Thread("Reconnect " + getName())
+			{
+				public void run()
+				{
+					reconnect();
+				}
+			};
+			reconnector.setDaemon(true);
+			reconnector.start();
+		}
+		l.removeLinkListener(forwarder);
+		logger.warn("connection lost (" + reason + "), reconnecting");
+		notifier.addEvent(new EventNotifier.Interrupted(new CloseEvent(this, false,
+			reason)));
+	}
+
+	private void reconnect()
+	{
+		long delay = initialDelay;
+		int attempts = 0;
+		try {
+			while (!closed) {
+				++attempts;
+				KNXNetworkLink l = null;
+				try {
+					l = open();
+					l.setHopCount(hopCount);
+					l.addLinkListener(forwarder);
+					final long lost = flush(l);
+					if (lost != 0) {
+						// apply settings changed while flushing
+						l.setHopCount(hopCount);
+						l.setKNXMedium(medium);
+						logger.info("reconnected after " + attempts + " attempts");
+						final ReconnectEvent e = new ReconnectEvent(this, lost, System
+							.currentTimeMillis(), attempts);
+						notifier.addEvent(new EventNotifier.Reconnected(e));
+						return;
+					}
+				}
+				catch (final KNXException e) {
+					logger.warn("reconnect attempt " + attempts + " failed, "
+						+ e.getMessage());
+				}
+				if (l != null) {
+					l.removeLinkListener(forwarder);
+					l.close();
+				}
+				if (closed)
+					return;
+				Thread.sleep(delay);
+				delay = Math.min(2 * delay, maxDelay);
+			}
+		}
+		catch (final InterruptedException e) {}
+	}
+
+	// sends the buffered messages over link l and publishes l as current link, returns
+	// the time the connection was lost, or 0 if l or this link got closed meanwhile;
+	// messages are sent without holding the lock, with link still unpublished to buffer
+	// any new message behind the ones being sent
+	private long flush(KNXNetworkLink l)
+	{
+		while (true) {
+			final List batch;
+			synchronized (lock) {
+				if (closed)
+					return 0;
+				if (buffered.isEmpty()) {
+					link = l;
+					reconnector = null;
+					return lostTime;
+				}
+				batch = new LinkedList(buffered);
+				buffered.clear();
+			}
+			if (!send(l, batch)) {
+				synchronized (lock) {
+					if (!closed) {
+						// put back unsent messages in front, newer messages might follow
+						buffered.addAll(0, batch);
+						while (buffered.size() > maxBuffered)
+							buffered.remove(0);
+					}
+				}
+				return 0;
+			}
+		}
+	}
+
+	// sends and removes the messages of batch, returns false if link l got closed
+	private boolean send(KNXNetworkLink l, List batch)
+	{
+		for (final Iterator i = batch.iterator(); i.hasNext() && !closed;) {
+			final Request r = (Request) i.next();
+			try {
+				r.send(l);
+			}
+			catch (final KNXTimeoutException e) {
+				logger.warn("discard buffered message, " + e.getMessage());
+			}
+			catch (final KNXLinkClosedException e) {
+				return false;
+			}
+			i.remove();
+		}
+		return !closed;
+	}
+}
@@ -47,8 +47,6 @@ import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
 import tuwien.auto.calimero.link.event.LinkListener;
 import tuwien.auto.calimero.link.event.MonitorFrameEvent;
 import tuwien.auto.calimero.link.medium.KNXMediumSettings;
-import tuwien.auto.calimero.link.medium.RawFrame;
-import tuwien.auto.calimero.link.medium.RawFrameFactory;
 import tuwien.auto.calimero.log.LogManager;
 import tuwien.auto.calimero.log.LogService;
 import tuwien.auto.calimero.serial.FT12Connection;
@@ -81,19 +79,15 @@ public class KNXNetworkMonitorFT12 implements KNXNetworkMonitor
 		public void frameReceived(FrameEvent e)
 		{
 			try {
-				final CEMIBusMon mon =
-					(CEMIBusMon) CEMIFactory.createFromEMI(e.getFrameBytes());
+				final byte[] frame = e.getFrameBytes();
+				final CEMIBusMon mon = (CEMIBusMon) CEMIFactory.createFromEMI(frame);
 				logger.info("received monitor indication");
-				RawFrame raw = null;
-				if (decode)
-					try {
-						raw = RawFrameFactory.create(((KNXNetworkMonitorFT12) source)
-							.medium.getMedium(), mon.getPayload(), 0);
-					}
-					catch (final KNXFormatException ex) {
-						logger.error("decoding raw frame", ex);
-					}
-				addEvent(new Indication(new MonitorFrameEvent(source, mon, raw)));
+				// raw frame is decoded on demand by the event, directly from the EMI
+				// frame, which starts at offset 4
+				final MonitorFrameEvent mfe = decode ? new MonitorFrameEvent(source, mon,
+					((KNXNetworkMonitorFT12) source).medium.getMedium(), frame, 4)
+					: new MonitorFrameEvent(source, mon);
+				addEvent(new Indication(mfe));
 			}
 			catch (final KNXFormatException ex) {
 				logger.warn("unspecified frame event - ignored", ex);
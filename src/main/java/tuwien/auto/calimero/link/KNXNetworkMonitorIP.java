@@ -44,15 +44,12 @@ import tuwien.auto.calimero.CloseEvent;
 import tuwien.auto.calimero.FrameEvent;
 import tuwien.auto.calimero.cemi.CEMIBusMon;
 import tuwien.auto.calimero.exception.KNXException;
-import tuwien.auto.calimero.exception.KNXFormatException;
 import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
 import tuwien.auto.calimero.knxnetip.KNXnetIPConnection;
 import tuwien.auto.calimero.knxnetip.KNXnetIPTunnel;
 import tuwien.auto.calimero.link.event.LinkListener;
 import tuwien.auto.calimero.link.event.MonitorFrameEvent;
 import tuwien.auto.calimero.link.medium.KNXMediumSettings;
-import tuwien.auto.calimero.link.medium.RawFrame;
-import tuwien.auto.calimero.link.medium.RawFrameFactory;
 import tuwien.auto.calimero.log.LogManager;
 import tuwien.auto.calimero.log.LogService;
 
@@ -83,17 +80,12 @@ public class KNXNetworkMonitorIP implements KNXNetworkMonitor
 		{
 			final int mc = e.getFrame().getMessageCode();
 			if (mc == CEMIBusMon.MC_BUSMON_IND) {
-				RawFrame raw = null;
 				logger.info("received monitor indication");
-				if (decode)
-					try {
-						final short m = ((KNXNetworkMonitorIP) source).medium.getMedium();
-						raw = RawFrameFactory.create(m, e.getFrame().getPayload(), 0);
-					}
-					catch (final KNXFormatException ex) {
-						logger.error("decoding raw frame", ex);
-					}
-				addEvent(new Indication(new MonitorFrameEvent(source, e.getFrame(), raw)));
+				// raw frame is decoded on demand by the event
+				final MonitorFrameEvent mfe = decode ? new MonitorFrameEvent(source, e
+					.getFrame(), ((KNXNetworkMonitorIP) source).medium.getMedium())
+					: new MonitorFrameEvent(source, e.getFrame());
+				addEvent(new Indication(mfe));
 			}
 			else
 				logger.warn("unspecified frame event - ignored, msg code = 0x"
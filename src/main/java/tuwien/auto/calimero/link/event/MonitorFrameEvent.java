@@ -38,24 +38,37 @@ package tuwien.auto.calimero.link.event;
 
 import tuwien.auto.calimero.FrameEvent;
 import tuwien.auto.calimero.cemi.CEMI;
+import tuwien.auto.calimero.exception.KNXFormatException;
 import tuwien.auto.calimero.link.KNXNetworkMonitor;
+import tuwien.auto.calimero.link.medium.KNXMediumSettings;
 import tuwien.auto.calimero.link.medium.RawFrame;
+import tuwien.auto.calimero.link.medium.RawFrameFactory;
 
 /**
  * Informs about a new monitor indication received from the KNX network and contains the
  * received indication frame.
  * <p>
  * The source of the event is a {@link KNXNetworkMonitor}.
+ * <p>
+ * The raw frame on medium might be decoded lazily, i.e., on the first call of
+ * {@link #getRawFrame()}, so that no decoding is done for events where the raw frame is
+ * not of interest. The decoded raw frame is kept by the event, as is the error if
+ * decoding failed, see {@link #getRawFrameError()}.
  * 
  * @author B. Malinowsky
  */
 public class MonitorFrameEvent extends FrameEvent
 {
-	// ??? ctor which takes error information if raw frame creation failed
-
 	private static final long serialVersionUID = 1L;
 
-	private final RawFrame raw;
+	private RawFrame raw;
+	private KNXFormatException error;
+
+	// medium and buffer for lazy decoding of the raw frame
+	private final int medium;
+	private byte[] data;
+	private final int offset;
+	private boolean decoded;
 
 	/**
 	 * Creates a new monitor frame event with the indication frame.
@@ -67,6 +80,8 @@ public class MonitorFrameEvent extends FrameEvent
 	{
 		super(source, frame);
 		raw = null;
+		medium = -1;
+		offset = 0;
 	}
 
 	/**
@@ -82,16 +97,89 @@ public class MonitorFrameEvent extends FrameEvent
 	{
 		super(source, frame);
 		raw = rawFrame;
+		medium = -1;
+		offset = 0;
+	}
+
+	/**
+	 * Creates a new monitor frame event with the indication frame, decoding the raw frame
+	 * on medium contained in the indication frame on first access.
+	 * <p>
+	 * 
+	 * @param source the network monitor which received the frame
+	 * @param frame monitor indication frame encapsulated in cEMI type
+	 * @param medium KNX communication medium of the raw frame, one of the media types
+	 *        declared in {@link KNXMediumSettings}
+	 */
+	public MonitorFrameEvent(Object source, CEMI frame, int medium)
+	{
+		this(source, frame, medium, null, 0);
+	}
+
+	/**
+	 * Creates a new monitor frame event with the indication frame, decoding the raw frame
+	 * on medium on first access directly out of the supplied buffer.
+	 * <p>
+	 * The buffer is not copied, it is not allowed to be modified after creation of this
+	 * event.
+	 * 
+	 * @param source the network monitor which received the frame
+	 * @param frame monitor indication frame encapsulated in cEMI type
+	 * @param medium KNX communication medium of the raw frame, one of the media types
+	 *        declared in {@link KNXMediumSettings}
+	 * @param data buffer containing the raw frame on medium of <code>frame</code>, use
+	 *        <code>null</code> to decode from the payload of <code>frame</code>
+	 * @param offset start offset of the raw frame in <code>data</code>
+	 */
+	public MonitorFrameEvent(Object source, CEMI frame, int medium, byte[] data,
+		int offset)
+	{
+		super(source, frame);
+		this.medium = medium;
+		this.data = data;
+		this.offset = offset;
 	}
 
 	/**
 	 * Returns the decoded raw frame on medium.
 	 * <p>
+	 * If this event decodes the raw frame lazily, the raw frame is decoded on the first
+	 * call; if decoding fails, <code>null</code> is returned, and the cause is available
+	 * by {@link #getRawFrameError()}.
 	 * 
 	 * @return the frame of type RawFrame or <code>null</code> on no decoded raw frame
 	 */
-	public final RawFrame getRawFrame()
+	public final synchronized RawFrame getRawFrame()
 	{
+		if (!decoded && medium != -1) {
+			decoded = true;
+			try {
+				// the cEMI payload is a copy, no need to keep it
+				if (data == null)
+					raw = RawFrameFactory.create(medium, getFrame().getPayload(), 0);
+				else
+					raw = RawFrameFactory.create(medium, data, offset);
+			}
+			catch (final KNXFormatException e) {
+				error = e;
+			}
+			data = null;
+		}
 		return raw;
 	}
+
+	/**
+	 * Returns the error which occurred on decoding the raw frame on medium.
+	 * <p>
+	 * If this event decodes the raw frame lazily and the raw frame was not requested
+	 * yet, it is decoded by this method.
+	 * 
+	 * @return the exception thrown on decoding the raw frame, or <code>null</code> if
+	 *         decoding succeeded or this event does not decode the raw frame
+	 */
+	public final synchronized KNXFormatException getRawFrameError()
+	{
+		getRawFrame();
+		return error;
+	}
 }
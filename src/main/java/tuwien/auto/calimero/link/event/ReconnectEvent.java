@@ -0,0 +1,108 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.link.event;
+
+import java.util.EventObject;
+
+/**
+ * Informs about the reestablished connection of a KNX network link after an
+ * interruption.
+ * <p>
+ * The source of the event is the reconnected network link.
+ * 
+ * @author B. Malinowsky
+ * @see ReconnectListener
+ */
+public class ReconnectEvent extends EventObject
+{
+	private static final long serialVersionUID = 1L;
+
+	private final long lost;
+	private final long reconnected;
+	private final int attempts;
+
+	/**
+	 * Creates a new reconnect event.
+	 * <p>
+	 * 
+	 * @param source the reconnected network link
+	 * @param lostTime time the connection was lost, in milliseconds
+	 * @param reconnectTime time the connection was reestablished, in milliseconds
+	 * @param attempts number of connect attempts needed, attempts > 0
+	 */
+	public ReconnectEvent(Object source, long lostTime, long reconnectTime, int attempts)
+	{
+		super(source);
+		lost = lostTime;
+		reconnected = reconnectTime;
+		this.attempts = attempts;
+	}
+
+	/**
+	 * Returns the time the connection was lost.
+	 * <p>
+	 * 
+	 * @return time in milliseconds, as returned by {@link System#currentTimeMillis()}
+	 */
+	public final long getLostTime()
+	{
+		return lost;
+	}
+
+	/**
+	 * Returns the time the connection was reestablished.
+	 * <p>
+	 * Messages received from the KNX network before this time might be outdated.
+	 * 
+	 * @return time in milliseconds, as returned by {@link System#currentTimeMillis()}
+	 */
+	public final long getReconnectTime()
+	{
+		return reconnected;
+	}
+
+	/**
+	 * Returns the number of connect attempts until the connection was reestablished.
+	 * <p>
+	 * 
+	 * @return number of attempts, attempts > 0
+	 */
+	public final int getAttempts()
+	{
+		return attempts;
+	}
+}
@@ -0,0 +1,71 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.link.event;
+
+import tuwien.auto.calimero.CloseEvent;
+
+/**
+ * Listener interface for getting reconnect events from a KNX network link which recovers
+ * from a lost connection.
+ * <p>
+ * Links not supporting reconnection treat a listener of this type like any other
+ * {@link NetworkLinkListener}.
+ * 
+ * @author B. Malinowsky
+ */
+public interface ReconnectListener extends NetworkLinkListener
+{
+	/**
+	 * Invoked after the connection of the link was lost; the link stays open and tries to
+	 * reconnect.
+	 * <p>
+	 * 
+	 * @param e close event object of the lost connection
+	 */
+	void linkInterrupted(CloseEvent e);
+
+	/**
+	 * Invoked after the link reconnected, and sent any messages buffered during the
+	 * interruption.
+	 * <p>
+	 * State obtained before the interruption might be outdated, since messages from the
+	 * KNX network are lost during the interruption.
+	 * 
+	 * @param e reconnect event object
+	 */
+	void linkReconnected(ReconnectEvent e);
+}
@@ -92,7 +92,7 @@ public abstract class KNXMediumSettings
 	 */
 	protected KNXMediumSettings(IndividualAddress device)
 	{
-		dev = device != null ? device : new IndividualAddress(0);
+		dev = device != null ? device : IndividualAddress.valueOf(0);
 	}
 
 	/**
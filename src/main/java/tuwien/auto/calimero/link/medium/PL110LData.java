@@ -36,8 +36,6 @@
 
 package tuwien.auto.calimero.link.medium;
 
-import java.io.ByteArrayInputStream;
-
 import tuwien.auto.calimero.DataUnitBuilder;
 import tuwien.auto.calimero.IndividualAddress;
 import tuwien.auto.calimero.Priority;
@@ -68,12 +66,11 @@ public class PL110LData extends RawFrameBase
 	 */
 	public PL110LData(byte[] data, int offset) throws KNXFormatException
 	{
-		final ByteArrayInputStream is =
-			new ByteArrayInputStream(data, offset, data.length - offset);
-		final int avail = is.available();
+		final int avail = data.length - offset;
 		if (avail < MIN_LENGTH)
 			throw new KNXFormatException("data too short for L-data frame", avail);
-		final int ctrl = is.read();
+		int i = offset;
+		final int ctrl = data[i++] & 0xff;
 		// parse control field and check if valid
 		if ((ctrl & 0x53) != 0x10)
 			throw new KNXFormatException("invalid control field", ctrl);
@@ -82,10 +79,11 @@ public class PL110LData extends RawFrameBase
 		repetition = (ctrl & 0x20) == 0;
 		p = Priority.get((ctrl >> 2) & 0x3);
 
-		final int ctrle = ext ? readCtrlEx(is) : 0;
-		src = new IndividualAddress((is.read() << 8) | is.read());
-		final int addr = (is.read() << 8) | is.read();
-		final int npci = is.read();
+		final int ctrle = ext ? checkCtrlEx(data[i++] & 0xff) : 0;
+		src = IndividualAddress.valueOf(readAddress(data, i));
+		final int addr = readAddress(data, i + 2);
+		i += 4;
+		final int npci = data[i++] & 0xff;
 		final int len;
 		if (ext) {
 			hopcount = (ctrle & 0x70) >> 4;
@@ -101,12 +99,15 @@ public class PL110LData extends RawFrameBase
 			len = npci & 0x0f;
 		}
 
-		tpdu = new byte[len + 1];
-		if (is.read(tpdu, 0, tpdu.length) != tpdu.length)
+		if (data.length - i < len + 1)
 			throw new KNXFormatException("data too short for L-data TPDU");
-		fcs = is.read();
+		tpdu = new byte[len + 1];
+		System.arraycopy(data, i, tpdu, 0, tpdu.length);
+		i += tpdu.length;
+		fcs = i < data.length ? data[i++] & 0xff : -1;
 		doa = new byte[2];
-		is.read(doa, 1, 1);
+		if (i < data.length)
+			doa[1] = data[i];
 	}
 
 	/**
@@ -36,8 +36,6 @@
 
 package tuwien.auto.calimero.link.medium;
 
-import java.io.ByteArrayInputStream;
-
 import tuwien.auto.calimero.DataUnitBuilder;
 import tuwien.auto.calimero.IndividualAddress;
 import tuwien.auto.calimero.Priority;
@@ -69,14 +67,13 @@ public class PL132LData extends RawFrameBase
 	 */
 	public PL132LData(byte[] data, int offset) throws KNXFormatException
 	{
-		final ByteArrayInputStream is =
-			new ByteArrayInputStream(data, offset, data.length - offset);
-		final int avail = is.available();
+		final int avail = data.length - offset;
 		if (avail < MIN_LENGTH)
 			throw new KNXFormatException("data too short for L-data frame", avail);
-		doa = new byte[2];
-		is.read(doa, 0, 2);
-		final int ctrl = is.read();
+		int i = offset;
+		doa = new byte[] { data[i], data[i + 1] };
+		i += 2;
+		final int ctrl = data[i++] & 0xff;
 		// parse control field and check if valid
 		if ((ctrl & 0xC) != 0xC)
 			throw new KNXFormatException("invalid control field", ctrl);
@@ -87,11 +84,12 @@ public class PL132LData extends RawFrameBase
 		final boolean group = (ctrl & 0x20) == 0x20;
 		ack = (ctrl & 0x10) == 0x10;
 		// check fourth byte for extended control field
-		final int ctrle = ext ? readCtrlEx(is) : 0;
-		src = new IndividualAddress((is.read() << 8) | is.read());
-		setDestination((is.read() << 8) | is.read(), group);
+		final int ctrle = ext ? checkCtrlEx(data[i++] & 0xff) : 0;
+		src = IndividualAddress.valueOf(readAddress(data, i));
+		setDestination(readAddress(data, i + 2), group);
+		i += 4;
 
-		final int npci = is.read();
+		final int npci = data[i++] & 0xff;
 		final int len;
 		if (ext) {
 			hopcount = (ctrle & 0x70) >> 4;
@@ -104,10 +102,12 @@ public class PL132LData extends RawFrameBase
 			hopcount = (npci & 0x70) >> 4;
 			len = npci & 0x0f;
 		}
-		tpdu = new byte[len + 1];
-		if (is.read(tpdu, 0, tpdu.length) != tpdu.length)
+		if (data.length - i < len + 1)
 			throw new KNXFormatException("data too short for L-data TPDU");
-		fcs = is.read() << 8 | is.read();
+		tpdu = new byte[len + 1];
+		System.arraycopy(data, i, tpdu, 0, tpdu.length);
+		i += tpdu.length;
+		fcs = data.length - i >= 2 ? readAddress(data, i) : -1;
 	}
 
 	/**
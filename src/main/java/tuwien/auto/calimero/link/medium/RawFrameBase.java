@@ -36,8 +36,6 @@
 
 package tuwien.auto.calimero.link.medium;
 
-import java.io.ByteArrayInputStream;
-
 import tuwien.auto.calimero.GroupAddress;
 import tuwien.auto.calimero.IndividualAddress;
 import tuwien.auto.calimero.KNXAddress;
@@ -221,14 +219,20 @@ public abstract class RawFrameBase implements RawFrame
 
 	void setDestination(int addr, boolean group)
 	{
-		dst = group ? (KNXAddress) new GroupAddress(addr) : new IndividualAddress(addr);
+		dst = group ? (KNXAddress) GroupAddress.valueOf(addr) : IndividualAddress
+			.valueOf(addr);
 	}
 
-	int readCtrlEx(ByteArrayInputStream is) throws KNXFormatException
+	int checkCtrlEx(int ctrle) throws KNXFormatException
 	{
-		final int ctrle = is.read();
 		if ((ctrle & 0xf) != 0)
 			throw new KNXFormatException("LTE-HEE frame not supported");
 		return ctrle;
 	}
+
+	// reads a 2 byte address (or field) in network byte order
+	static int readAddress(byte[] data, int offset)
+	{
+		return (data[offset] & 0xff) << 8 | data[offset + 1] & 0xff;
+	}
 }
@@ -120,7 +120,7 @@ public final class RawFrameFactory
 	 */
 	public static RawFrame createPL110(byte[] data, int offset) throws KNXFormatException
 	{
-		if ((data[0] & 0x10) == 0x10)
+		if ((data[offset] & 0x10) == 0x10)
 			return new PL110LData(data, offset);
 		return new PL110Ack(data, offset);
 	}
@@ -36,8 +36,6 @@
 
 package tuwien.auto.calimero.link.medium;
 
-import java.io.ByteArrayInputStream;
-
 import tuwien.auto.calimero.DataUnitBuilder;
 import tuwien.auto.calimero.IndividualAddress;
 import tuwien.auto.calimero.Priority;
@@ -66,12 +64,11 @@ public class TP1LData extends RawFrameBase
 	 */
 	public TP1LData(byte[] data, int offset) throws KNXFormatException
 	{
-		final ByteArrayInputStream is =
-			new ByteArrayInputStream(data, offset, data.length - offset);
-		final int avail = is.available();
+		final int avail = data.length - offset;
 		if (avail < MIN_LENGTH)
 			throw new KNXFormatException("data too short for L-data frame", avail);
-		final int ctrl = is.read();
+		int i = offset;
+		final int ctrl = data[i++] & 0xff;
 		// parse control field and check if valid
 		if ((ctrl & 0x53) != 0x10)
 			throw new KNXFormatException("invalid control field", ctrl);
@@ -81,10 +78,11 @@ public class TP1LData extends RawFrameBase
 		repetition = (ctrl & 0x20) == 0;
 		p = Priority.get((ctrl >> 2) & 0x3);
 
-		final int ctrle = ext ? readCtrlEx(is) : 0;
-		src = new IndividualAddress((is.read() << 8) | is.read());
-		final int addr = (is.read() << 8) | is.read();
-		final int npci = is.read();
+		final int ctrle = ext ? checkCtrlEx(data[i++] & 0xff) : 0;
+		src = IndividualAddress.valueOf(readAddress(data, i));
+		final int addr = readAddress(data, i + 2);
+		i += 4;
+		final int npci = data[i++] & 0xff;
 		final int len;
 		if (ext) {
 			hopcount = (ctrle & 0x70) >> 4;
@@ -98,10 +96,12 @@ public class TP1LData extends RawFrameBase
 			setDestination(addr, (npci & 0x80) != 0);
 			len = npci & 0x0f;
 		}
-		tpdu = new byte[len + 1];
-		if (is.read(tpdu, 0, tpdu.length) != tpdu.length)
+		if (data.length - i < len + 1)
 			throw new KNXFormatException("data too short for L-data TPDU");
-		fcs = is.read();
+		tpdu = new byte[len + 1];
+		System.arraycopy(data, i, tpdu, 0, tpdu.length);
+		i += tpdu.length;
+		fcs = i < data.length ? data[i] & 0xff : -1;
 	}
 
 	/* (non-Javadoc)
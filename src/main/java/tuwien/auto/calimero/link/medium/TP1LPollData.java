@@ -36,8 +36,6 @@
 
 package tuwien.auto.calimero.link.medium;
 
-import java.io.ByteArrayInputStream;
-
 import tuwien.auto.calimero.GroupAddress;
 import tuwien.auto.calimero.IndividualAddress;
 import tuwien.auto.calimero.Priority;
@@ -67,28 +65,25 @@ public class TP1LPollData extends RawFrameBase
 	 */
 	public TP1LPollData(byte[] data, int offset) throws KNXFormatException
 	{
-		final ByteArrayInputStream is =
-			new ByteArrayInputStream(data, offset, data.length - offset);
-		final int avail = is.available();
+		final int avail = data.length - offset;
 		if (avail < MIN_LENGTH)
 			throw new KNXFormatException("data too short for L-polldata frame", avail);
-		final int ctrl = is.read();
+		final int ctrl = data[offset] & 0xff;
 		// parse control field and check if valid
 		if (ctrl != 0xF0)
 			throw new KNXFormatException("invalid control field", ctrl);
 		type = LPOLLDATA_FRAME;
 		p = Priority.get((ctrl >> 2) & 0x3);
-		int addr = (is.read() << 8) | is.read();
-		src = new IndividualAddress(addr);
-		addr = (is.read() << 8) | is.read();
-		dst = new GroupAddress(addr);
-		final int len = is.read() & 0x0f;
+		src = IndividualAddress.valueOf(readAddress(data, offset + 1));
+		dst = GroupAddress.valueOf(readAddress(data, offset + 3));
+		final int len = data[offset + 5] & 0x0f;
 		expData = len;
-		fcs = is.read();
+		fcs = data[offset + 6] & 0xff;
 		// do we really get poll data response here? don't know for sure..
-		if (expData <= is.available()) {
+		final int i = offset + MIN_LENGTH;
+		if (expData <= data.length - i) {
 			tpdu = new byte[expData];
-			is.read(tpdu, 0, expData);
+			System.arraycopy(data, i, tpdu, 0, expData);
 		}
 	}
 
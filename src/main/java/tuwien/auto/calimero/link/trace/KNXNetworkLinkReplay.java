@@ -0,0 +1,329 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.link.trace;
+
+import tuwien.auto.calimero.FrameEvent;
+import tuwien.auto.calimero.KNXAddress;
+import tuwien.auto.calimero.Priority;
+import tuwien.auto.calimero.cemi.CEMIBusMon;
+import tuwien.auto.calimero.cemi.CEMILData;
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.exception.KNXFormatException;
+import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
+import tuwien.auto.calimero.link.KNXLinkClosedException;
+import tuwien.auto.calimero.link.KNXNetworkLink;
+import tuwien.auto.calimero.link.event.LinkListener;
+import tuwien.auto.calimero.link.event.NetworkLinkListener;
+import tuwien.auto.calimero.link.medium.KNXMediumSettings;
+import tuwien.auto.calimero.link.medium.RawFrame;
+import tuwien.auto.calimero.link.medium.RawFrameBase;
+import tuwien.auto.calimero.link.medium.RawFrameFactory;
+import tuwien.auto.calimero.log.LogManager;
+import tuwien.auto.calimero.log.LogService;
+
+/**
+ * Implementation of the KNX network link replaying a monitor trace.
+ * <p>
+ * The link reads the busmonitor frames of a trace written by {@link MonitorTraceWriter},
+ * decodes the L-data frames contained in the raw frames on medium, and supplies them as
+ * cEMI L-data indications to the link listeners, without any KNX network access. Raw
+ * frames which are not L-data frames or fail decoding are skipped. Frames are replayed
+ * in the pace of their capture times, either in real time, scaled by a speed factor, or
+ * as fast as possible. This allows to benchmark users of a network link with recorded
+ * traffic.
+ * <p>
+ * After adding listeners, the replay is started using {@link #start()}. At the end of
+ * the trace, the link closes itself. Use {@link #getEventsPerSecond()} to get the
+ * achieved replay rate.<br>
+ * Messages sent over the link are discarded, send methods return immediately without
+ * any confirmation.
+ * <p>
+ * Once a link has been closed, it is not available for further link communication, i.e.
+ * it can't be reopened.
+ * 
+ * @author B. Malinowsky
+ * @see MonitorTraceWriter
+ * @see KNXNetworkMonitorReplay
+ */
+public class KNXNetworkLinkReplay implements KNXNetworkLink
+{
+	private final class LinkReplay extends TraceReplay
+	{
+		LinkReplay(String file, double speed, LogService logger) throws KNXException
+		{
+			super(KNXNetworkLinkReplay.this, file, speed, logger);
+		}
+
+		void replay(CEMIBusMon frame)
+		{
+			final RawFrame raw;
+			try {
+				raw = RawFrameFactory.create(medium.getMedium(), frame.getPayload(), 0);
+			}
+			catch (final KNXFormatException e) {
+				logger.warn("skip frame, " + e.getMessage());
+				return;
+			}
+			if (raw == null || raw.getFrameType() != RawFrame.LDATA_FRAME)
+				return;
+			final RawFrameBase f = (RawFrameBase) raw;
+			final CEMILData ind = new CEMILData(CEMILData.MC_LDATA_IND, f.getSource(), f
+				.getDestination(), f.getTPDU(), f.getPriority(), f.isRepetition(), f
+				.getHopcount());
+			final FrameEvent e = new FrameEvent(source, ind);
+			fire(new EventCallback() {
+				public void invoke(LinkListener l)
+				{
+					l.indication(e);
+				}
+			});
+		}
+
+		void closed()
+		{
+			KNXNetworkLinkReplay.this.closed = true;
+			logger.info("link closed");
+			LogManager.getManager().removeLogService(logger.getName());
+		}
+	}
+
+	private volatile boolean closed;
+	private final String file;
+	private volatile byte hopCount = 6;
+	private KNXMediumSettings medium;
+
+	private final LogService logger;
+	private final LinkReplay replay;
+
+	/**
+	 * Creates a new network link replaying the monitor trace with base file name
+	 * <code>file</code>.
+	 * <p>
+	 * 
+	 * @param file base file name of the trace segment files
+	 * @param speed replay speed factor relative to the capture times, e.g.,
+	 *        {@link KNXNetworkMonitorReplay#REAL_TIME}, 10 or 100 for a scaled replay,
+	 *        or {@link KNXNetworkMonitorReplay#AS_FAST_AS_POSSIBLE}
+	 * @param settings medium settings defining the specific KNX medium needed for
+	 *        decoding raw frames of the trace
+	 * @throws KNXException on failure opening the trace
+	 */
+	public KNXNetworkLinkReplay(String file, double speed, KNXMediumSettings settings)
+		throws KNXException
+	{
+		this.file = file;
+		setKNXMedium(settings);
+		logger = LogManager.getManager().getLogService(getName());
+		replay = new LinkReplay(file, speed, logger);
+	}
+
+	/**
+	 * Starts replaying the trace.
+	 * <p>
+	 * A replay can only be started once.
+	 */
+	public void start()
+	{
+		replay.startReplay();
+	}
+
+	/**
+	 * Waits for the end of the replay, either at the end of the trace or after the link
+	 * was closed.
+	 * <p>
+	 * 
+	 * @param timeout timeout in milliseconds, 0 to wait without timeout
+	 * @return <code>true</code> if the replay ended, <code>false</code> on timeout
+	 * @throws InterruptedException on interrupted thread
+	 */
+	public boolean waitForEnd(long timeout) throws InterruptedException
+	{
+		return replay.waitForEnd(timeout);
+	}
+
+	/**
+	 * Returns the number of trace frames replayed so far, including skipped frames.
+	 * <p>
+	 * 
+	 * @return frame count
+	 */
+	public long getEvents()
+	{
+		return replay.getEvents();
+	}
+
+	/**
+	 * Returns the replay rate achieved, measured from the start of the replay until its
+	 * end (or until now, while the replay is running).
+	 * <p>
+	 * 
+	 * @return replayed trace frames per second
+	 */
+	public double getEventsPerSecond()
+	{
+		return replay.getEventsPerSecond();
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkLink#setKNXMedium
+	 * (tuwien.auto.calimero.link.medium.KNXMediumSettings)
+	 */
+	public void setKNXMedium(KNXMediumSettings settings)
+	{
+		if (settings == null)
+			throw new KNXIllegalArgumentException("medium settings are mandatory");
+		if (medium != null && !settings.getClass().isAssignableFrom(medium.getClass())
+			&& !medium.getClass().isAssignableFrom(settings.getClass()))
+			throw new KNXIllegalArgumentException("medium differs");
+		medium = settings;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkLink#getKNXMedium()
+	 */
+	public KNXMediumSettings getKNXMedium()
+	{
+		return medium;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkLink#addLinkListener
+	 * (tuwien.auto.calimero.link.event.NetworkLinkListener)
+	 */
+	public void addLinkListener(NetworkLinkListener l)
+	{
+		replay.addListener(l);
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkLink#removeLinkListener
+	 * (tuwien.auto.calimero.link.event.NetworkLinkListener)
+	 */
+	public void removeLinkListener(NetworkLinkListener l)
+	{
+		replay.removeListener(l);
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkLink#setHopCount(int)
+	 */
+	public final void setHopCount(int count)
+	{
+		if (count < 0 || count > 7)
+			throw new KNXIllegalArgumentException("hop count out of range [0..7]");
+		hopCount = (byte) count;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkLink#getHopCount()
+	 */
+	public final byte getHopCount()
+	{
+		return hopCount;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkLink#sendRequest
+	 * (tuwien.auto.calimero.KNXAddress, tuwien.auto.calimero.Priority, byte[])
+	 */
+	public void sendRequest(KNXAddress dst, Priority p, byte[] nsdu)
+		throws KNXLinkClosedException
+	{
+		if (closed)
+			throw new KNXLinkClosedException("link closed");
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkLink#sendRequestWait
+	 * (tuwien.auto.calimero.KNXAddress, tuwien.auto.calimero.Priority, byte[])
+	 */
+	public void sendRequestWait(KNXAddress dst, Priority p, byte[] nsdu)
+		throws KNXLinkClosedException
+	{
+		if (closed)
+			throw new KNXLinkClosedException("link closed");
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkLink#send
+	 * (tuwien.auto.calimero.cemi.CEMILData, boolean)
+	 */
+	public void send(CEMILData msg, boolean waitForCon) throws KNXLinkClosedException
+	{
+		if (closed)
+			throw new KNXLinkClosedException("link closed");
+	}
+
+	/**
+	 * {@inheritDoc}<br>
+	 * The returned name is "link replay " + base file name of the trace.
+	 */
+	public String getName()
+	{
+		return "link replay " + file;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkLink#isOpen()
+	 */
+	public boolean isOpen()
+	{
+		return !closed;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkLink#close()
+	 */
+	public void close()
+	{
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+		}
+		replay.quit();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString()
+	{
+		return getName() + (closed ? " (closed), " : ", ") + medium.getMediumString()
+			+ " medium hopcount " + hopCount;
+	}
+}
@@ -0,0 +1,274 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.link.trace;
+
+import tuwien.auto.calimero.cemi.CEMIBusMon;
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
+import tuwien.auto.calimero.link.KNXNetworkMonitor;
+import tuwien.auto.calimero.link.event.LinkListener;
+import tuwien.auto.calimero.link.event.MonitorFrameEvent;
+import tuwien.auto.calimero.link.medium.KNXMediumSettings;
+import tuwien.auto.calimero.log.LogManager;
+import tuwien.auto.calimero.log.LogService;
+
+/**
+ * Implementation of the KNX network monitor link replaying a monitor trace.
+ * <p>
+ * The monitor reads the busmonitor frames of a trace written by
+ * {@link MonitorTraceWriter}, and supplies them as monitor indications to the monitor
+ * listeners, without any KNX network access. Frames are replayed in the pace of their
+ * capture times, either in real time, scaled by a speed factor, or as fast as possible.
+ * This allows to benchmark users of a network monitor with recorded traffic.
+ * <p>
+ * After adding listeners, the replay is started using {@link #start()}. At the end of
+ * the trace, the monitor closes itself. Use {@link #getEventsPerSecond()} to get the
+ * achieved replay rate.
+ * <p>
+ * Once a monitor has been closed, it is not available for further link communication,
+ * i.e. it can't be reopened.
+ * 
+ * @author B. Malinowsky
+ * @see MonitorTraceWriter
+ * @see KNXNetworkLinkReplay
+ */
+public class KNXNetworkMonitorReplay implements KNXNetworkMonitor
+{
+	/**
+	 * Replay speed to replay frames as fast as possible, ignoring their capture times.
+	 */
+	public static final double AS_FAST_AS_POSSIBLE = 0;
+
+	/**
+	 * Replay speed to replay frames in real time, i.e., in the pace they were captured.
+	 */
+	public static final double REAL_TIME = 1;
+
+	private final class MonitorReplay extends TraceReplay
+	{
+		volatile boolean decode;
+
+		MonitorReplay(String file, double speed, LogService logger) throws KNXException
+		{
+			super(KNXNetworkMonitorReplay.this, file, speed, logger);
+		}
+
+		void replay(CEMIBusMon frame)
+		{
+			final MonitorFrameEvent e = decode ? new MonitorFrameEvent(source, frame,
+				medium.getMedium()) : new MonitorFrameEvent(source, frame);
+			fire(new EventCallback() {
+				public void invoke(LinkListener l)
+				{
+					l.indication(e);
+				}
+			});
+		}
+
+		void closed()
+		{
+			KNXNetworkMonitorReplay.this.closed = true;
+			logger.info("monitor closed");
+			LogManager.getManager().removeLogService(logger.getName());
+		}
+	}
+
+	private volatile boolean closed;
+	private final String file;
+	private KNXMediumSettings medium;
+
+	private final LogService logger;
+	private final MonitorReplay replay;
+
+	/**
+	 * Creates a new network monitor replaying the monitor trace with base file name
+	 * <code>file</code>.
+	 * <p>
+	 * 
+	 * @param file base file name of the trace segment files
+	 * @param speed replay speed factor relative to the capture times, e.g.,
+	 *        {@link #REAL_TIME}, 10 or 100 for a scaled replay, or
+	 *        {@link #AS_FAST_AS_POSSIBLE}
+	 * @param settings medium settings defining the specific KNX medium needed for
+	 *        decoding raw frames of the trace
+	 * @throws KNXException on failure opening the trace
+	 */
+	public KNXNetworkMonitorReplay(String file, double speed, KNXMediumSettings settings)
+		throws KNXException
+	{
+		this.file = file;
+		setKNXMedium(settings);
+		logger = LogManager.getManager().getLogService(getName());
+		replay = new MonitorReplay(file, speed, logger);
+		logger.info("in busmonitor mode - ready to replay");
+	}
+
+	/**
+	 * Starts replaying the trace.
+	 * <p>
+	 * A replay can only be started once.
+	 */
+	public void start()
+	{
+		replay.startReplay();
+	}
+
+	/**
+	 * Waits for the end of the replay, either at the end of the trace or after the
+	 * monitor was closed.
+	 * <p>
+	 * 
+	 * @param timeout timeout in milliseconds, 0 to wait without timeout
+	 * @return <code>true</code> if the replay ended, <code>false</code> on timeout
+	 * @throws InterruptedException on interrupted thread
+	 */
+	public boolean waitForEnd(long timeout) throws InterruptedException
+	{
+		return replay.waitForEnd(timeout);
+	}
+
+	/**
+	 * Returns the number of frames replayed so far.
+	 * <p>
+	 * 
+	 * @return frame count
+	 */
+	public long getEvents()
+	{
+		return replay.getEvents();
+	}
+
+	/**
+	 * Returns the replay rate achieved, measured from the start of the replay until its
+	 * end (or until now, while the replay is running).
+	 * <p>
+	 * 
+	 * @return replayed frames per second
+	 */
+	public double getEventsPerSecond()
+	{
+		return replay.getEventsPerSecond();
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkMonitor#setKNXMedium
+	 * (tuwien.auto.calimero.link.medium.KNXMediumSettings)
+	 */
+	public void setKNXMedium(KNXMediumSettings settings)
+	{
+		if (settings == null)
+			throw new KNXIllegalArgumentException("medium settings are mandatory");
+		if (medium != null && !settings.getClass().isAssignableFrom(medium.getClass())
+			&& !medium.getClass().isAssignableFrom(settings.getClass()))
+			throw new KNXIllegalArgumentException("medium differs");
+		medium = settings;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkMonitor#getKNXMedium()
+	 */
+	public KNXMediumSettings getKNXMedium()
+	{
+		return medium;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkMonitor#addMonitorListener
+	 * (tuwien.auto.calimero.link.event.LinkListener)
+	 */
+	public void addMonitorListener(LinkListener l)
+	{
+		replay.addListener(l);
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkMonitor#removeMonitorListener
+	 * (tuwien.auto.calimero.link.event.LinkListener)
+	 */
+	public void removeMonitorListener(LinkListener l)
+	{
+		replay.removeListener(l);
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkMonitor#setDecodeRawFrames(boolean)
+	 */
+	public void setDecodeRawFrames(boolean decode)
+	{
+		replay.decode = decode;
+		logger.info((decode ? "enable" : "disable") + " decoding of raw frames");
+	}
+
+	/**
+	 * {@inheritDoc}<br>
+	 * The returned name is "monitor replay " + base file name of the trace.
+	 */
+	public String getName()
+	{
+		return "monitor replay " + file;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkMonitor#isOpen()
+	 */
+	public boolean isOpen()
+	{
+		return !closed;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.KNXNetworkMonitor#close()
+	 */
+	public void close()
+	{
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+		}
+		replay.quit();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString()
+	{
+		return getName() + (closed ? " (closed), " : ", ") + medium.getMediumString()
+			+ " medium" + (replay.decode ? ", decode raw frames" : "");
+	}
+}
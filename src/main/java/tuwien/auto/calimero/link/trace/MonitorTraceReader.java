@@ -0,0 +1,285 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.link.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import tuwien.auto.calimero.cemi.CEMIBusMon;
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.exception.KNXFormatException;
+import tuwien.auto.calimero.exception.KNXIllegalStateException;
+import tuwien.auto.calimero.log.SegmentedFile;
+
+/**
+ * Reads busmonitor frames from a trace written by {@link MonitorTraceWriter}.
+ * <p>
+ * The trace reader iterates the frames of all segment files of a trace in the order of
+ * capture, starting with the oldest segment. Using {@link #seek(long)}, the reader is
+ * positioned at the first frame captured at or after a point in time; the segment and
+ * the position inside the segment is located using the sparse time index of the
+ * segments, so only a small part of the trace is read.<br>
+ * A trace can be read while it is still written to, {@link #next()} returns
+ * <code>null</code> if no more frames are available at that time, and continues with
+ * frames appended later.
+ * <p>
+ * A trace reader is not thread safe.
+ * 
+ * @author B. Malinowsky
+ * @see MonitorTraceWriter
+ */
+public class MonitorTraceReader
+{
+	private final String file;
+
+	private int[] segments;
+	// number of the segment currently read
+	private int segment;
+	private FileChannel channel;
+	private MappedByteBuffer buf;
+	private long time;
+	private boolean closed;
+
+	/**
+	 * Creates a trace reader for the trace with the supplied base file name, positioned
+	 * at the first frame of the trace.
+	 * <p>
+	 * 
+	 * @param file base file name of the trace segment files
+	 * @throws KNXException if no segment file of the trace exists, or the first segment
+	 *         could not be opened
+	 */
+	public MonitorTraceReader(String file) throws KNXException
+	{
+		this.file = file;
+		segments = SegmentedFile.segments(file);
+		if (segments.length == 0)
+			throw new KNXException("no trace segments found for " + file);
+		open(segments[0]);
+	}
+
+	/**
+	 * Returns the base file name of the trace segment files.
+	 * <p>
+	 * 
+	 * @return file name
+	 */
+	public final String getFileName()
+	{
+		return file;
+	}
+
+	/**
+	 * Positions the reader at the first frame of the trace captured at or after
+	 * <code>time</code>.
+	 * <p>
+	 * If no such frame exists (yet), the reader is positioned at the end of the trace.
+	 * 
+	 * @param time capture time in milliseconds since midnight, January 1, 1970 UTC
+	 * @throws KNXException on error reading the trace
+	 */
+	public void seek(long time) throws KNXException
+	{
+		if (closed)
+			throw new KNXIllegalStateException("trace reader closed");
+		segments = SegmentedFile.segments(file);
+		// binary search for last segment starting at or before time
+		int low = 0;
+		int high = segments.length - 1;
+		int found = 0;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			open(segments[mid]);
+			final int count = buf.getInt(MonitorTraceWriter.COUNT_POS);
+			if (count > 0 && indexTime(0) <= time) {
+				found = mid;
+				low = mid + 1;
+			}
+			else
+				high = mid - 1;
+		}
+		open(segments[found]);
+		// binary search for last index entry at or before time
+		low = 0;
+		high = buf.getInt(MonitorTraceWriter.COUNT_POS) - 1;
+		int entry = -1;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			if (indexTime(mid) <= time) {
+				entry = mid;
+				low = mid + 1;
+			}
+			else
+				high = mid - 1;
+		}
+		if (entry >= 0)
+			buf.position(buf.getInt(indexPos(entry) + 8));
+		// scan records, possibly into the following segment
+		while (nextRecord() && this.time < time) {
+			final int pos = buf.position();
+			buf.position(pos + MonitorTraceWriter.RECORD_SIZE
+				+ (buf.get(pos + MonitorTraceWriter.RECORD_SIZE - 1) & 0xff));
+		}
+	}
+
+	/**
+	 * Returns the next frame of the trace.
+	 * <p>
+	 * 
+	 * @return the busmonitor frame, or <code>null</code> if there are no more frames
+	 *         available in the trace
+	 * @throws KNXException on error reading the trace
+	 */
+	public CEMIBusMon next() throws KNXException
+	{
+		if (closed)
+			throw new KNXIllegalStateException("trace reader closed");
+		if (!nextRecord())
+			return null;
+		buf.get();
+		time = buf.getLong();
+		final int status = buf.get() & 0xff;
+		final int type = buf.get() & 0xff;
+		final long timestamp = buf.getInt() & 0xffffffffL;
+		final byte[] raw = new byte[buf.get() & 0xff];
+		buf.get(raw);
+		return new CEMIBusMon(status, timestamp, type == CEMIBusMon.TYPEID_TIMESTAMP_EXT,
+			raw);
+	}
+
+	/**
+	 * Returns the capture time of the frame last returned by {@link #next()}.
+	 * <p>
+	 * 
+	 * @return capture time in milliseconds since midnight, January 1, 1970 UTC
+	 */
+	public final long getTime()
+	{
+		return time;
+	}
+
+	/**
+	 * Closes the trace reader.
+	 * <p>
+	 */
+	public void close()
+	{
+		if (closed)
+			return;
+		closed = true;
+		closeSegment();
+	}
+
+	// positions at the next record, moving on to a following segment if necessary;
+	// if a record is available, time is set to its capture time
+	private boolean nextRecord() throws KNXException
+	{
+		while (buf.get(buf.position()) == MonitorTraceWriter.END) {
+			// a segment is complete once the writer started a following segment
+			int next = nextSegment();
+			if (next == -1) {
+				segments = SegmentedFile.segments(file);
+				next = nextSegment();
+				if (next == -1)
+					return false;
+			}
+			open(next);
+		}
+		time = buf.getLong(buf.position() + 1);
+		return true;
+	}
+
+	private int nextSegment()
+	{
+		for (int i = 0; i < segments.length; ++i)
+			if (segments[i] > segment)
+				return segments[i];
+		return -1;
+	}
+
+	private long indexTime(int entry)
+	{
+		return buf.getLong(indexPos(entry));
+	}
+
+	private static int indexPos(int entry)
+	{
+		return MonitorTraceWriter.INDEX_POS + entry * MonitorTraceWriter.INDEX_ENTRY_SIZE;
+	}
+
+	// opens segment number n, positioned at its first record
+	private void open(int n) throws KNXException
+	{
+		closeSegment();
+		final String name = SegmentedFile.segmentFile(file, n);
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(name, "r");
+			channel = raf.getChannel();
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		catch (final IOException e) {
+			try {
+				if (raf != null)
+					raf.close();
+			}
+			catch (final IOException ignore) {}
+			throw new KNXException("open trace segment " + name + ": " + e.getMessage());
+		}
+		segment = n;
+		if (buf.limit() < MonitorTraceWriter.INDEX_POS
+			|| buf.getInt(0) != MonitorTraceWriter.MAGIC)
+			throw new KNXFormatException("no trace segment " + new File(name).getName());
+		if (buf.get(4) != MonitorTraceWriter.VERSION)
+			throw new KNXFormatException("unsupported trace format version", buf.get(4));
+		final int capacity = buf.getInt(MonitorTraceWriter.CAPACITY_POS);
+		buf.position(indexPos(capacity));
+	}
+
+	private void closeSegment()
+	{
+		try {
+			if (channel != null)
+				channel.close();
+		}
+		catch (final IOException e) {}
+		channel = null;
+	}
+}
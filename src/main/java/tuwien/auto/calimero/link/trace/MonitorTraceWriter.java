@@ -0,0 +1,307 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.link.trace;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+
+import tuwien.auto.calimero.CloseEvent;
+import tuwien.auto.calimero.FrameEvent;
+import tuwien.auto.calimero.cemi.CEMI;
+import tuwien.auto.calimero.cemi.CEMIBusMon;
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
+import tuwien.auto.calimero.exception.KNXIllegalStateException;
+import tuwien.auto.calimero.link.KNXNetworkMonitor;
+import tuwien.auto.calimero.link.event.LinkListener;
+import tuwien.auto.calimero.log.LogManager;
+import tuwien.auto.calimero.log.LogService;
+import tuwien.auto.calimero.log.SegmentedFile;
+
+/**
+ * Captures busmonitor indications of a network monitor into memory-mapped trace files.
+ * <p>
+ * The trace writer is a link listener, add it to a {@link KNXNetworkMonitor} using
+ * {@link KNXNetworkMonitor#addMonitorListener(LinkListener)}. Every received
+ * {@link CEMIBusMon} frame is appended together with its time of capture, its status
+ * information, its timestamp and its raw frame on medium.
+ * <p>
+ * The trace is written into a sequence of segment files of fixed size, named
+ * <code>file.0</code>, <code>file.1</code>, and so on. A new segment is started when a
+ * frame does not fit into the current segment anymore, and if a maximum number of
+ * segments is set, the oldest segments are deleted. On creation, the trace writer
+ * continues with a new segment after existing segments with the same file name.<br>
+ * Each segment holds a sparse index of capture times and record positions, with one
+ * index entry per {@link #INDEX_SPACING} bytes of records. Use {@link MonitorTraceReader}
+ * to read a trace, or to seek to a point in time in a trace.
+ * <p>
+ * Frames are written into the mapped segment directly, {@link #flush()} forces written
+ * frames to the storage device.
+ * 
+ * @author B. Malinowsky
+ * @see MonitorTraceReader
+ * @see SegmentedFile
+ */
+public class MonitorTraceWriter implements LinkListener
+{
+	/**
+	 * Distance in bytes of records in a segment referenced by consecutive index entries.
+	 */
+	public static final int INDEX_SPACING = 4096;
+
+	// segment header: magic "KNXT", format version, index capacity, index entries
+	static final int MAGIC = 0x4b4e5854;
+	static final int VERSION = 1;
+	static final int CAPACITY_POS = 5;
+	static final int COUNT_POS = 9;
+	static final int INDEX_POS = 13;
+	// index entry: capture time, record position
+	static final int INDEX_ENTRY_SIZE = 8 + 4;
+
+	// record types, 0 marks the end of records in a segment
+	static final int END = 0;
+	static final int RECORD = 1;
+	// record: type, time, status, timestamp type, timestamp, raw frame length
+	static final int RECORD_SIZE = 1 + 8 + 1 + 1 + 4 + 1;
+
+	private static final int MIN_SEGMENT_SIZE = 2 * INDEX_SPACING;
+
+	private final SegmentedFile segments;
+	private final int indexCapacity;
+	private final LogService logger;
+
+	private MappedByteBuffer buf;
+	private int indexCount;
+	private int nextIndexPos;
+	private long frames;
+	private boolean closed;
+
+	/**
+	 * Creates a trace writer writing to segments of the supplied size.
+	 * <p>
+	 * 
+	 * @param file base file name of the segment files, the path to the file has to
+	 *        exist
+	 * @param segmentSize size of one segment file in bytes, at least 8192
+	 * @param maxSegments maximum number of segment files kept, older segments are
+	 *        deleted; use 0 for no limit
+	 * @throws KNXException if the first segment file can not be created or mapped
+	 */
+	public MonitorTraceWriter(String file, int segmentSize, int maxSegments)
+		throws KNXException
+	{
+		if (segmentSize < MIN_SEGMENT_SIZE)
+			throw new KNXIllegalArgumentException("segment size < " + MIN_SEGMENT_SIZE);
+		indexCapacity = segmentSize / INDEX_SPACING + 1;
+		logger = LogManager.getManager().getLogService("trace " + file);
+		try {
+			segments = new SegmentedFile(file, segmentSize, maxSegments);
+			openSegment();
+		}
+		catch (final IOException e) {
+			throw new KNXException("open trace segment: " + e.getMessage());
+		}
+		catch (final SecurityException e) {
+			throw new KNXException("open trace segment: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the base file name of the segment files.
+	 * <p>
+	 * 
+	 * @return file name
+	 */
+	public final String getFileName()
+	{
+		return segments.getFileName();
+	}
+
+	/**
+	 * Returns the file name of the segment currently written to.
+	 * <p>
+	 * 
+	 * @return segment file name
+	 */
+	public final synchronized String getSegmentFileName()
+	{
+		return segments.getSegmentFileName();
+	}
+
+	/**
+	 * Returns the number of frames written by this trace writer.
+	 * <p>
+	 * 
+	 * @return frame count
+	 */
+	public final synchronized long getFrameCount()
+	{
+		return frames;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.event.LinkListener#indication
+	 * (tuwien.auto.calimero.FrameEvent)
+	 */
+	public void indication(FrameEvent e)
+	{
+		final CEMI frame = e.getFrame();
+		if (!(frame instanceof CEMIBusMon))
+			return;
+		try {
+			write(System.currentTimeMillis(), (CEMIBusMon) frame);
+		}
+		catch (final KNXException ex) {
+			logger.error("capture of monitor indication", ex);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.event.LinkListener#linkClosed
+	 * (tuwien.auto.calimero.CloseEvent)
+	 */
+	public void linkClosed(CloseEvent e)
+	{
+		flush();
+	}
+
+	/**
+	 * Appends a busmonitor frame with the supplied capture time to the trace.
+	 * <p>
+	 * Capture times are expected to not decrease over the frames of a trace, otherwise
+	 * seeking into the trace might not find all frames of a time window.
+	 * 
+	 * @param time time of capture in milliseconds since midnight, January 1, 1970 UTC
+	 * @param frame the busmonitor frame to append
+	 * @throws KNXException if the frame could not be written
+	 */
+	public synchronized void write(long time, CEMIBusMon frame) throws KNXException
+	{
+		if (closed)
+			throw new KNXIllegalStateException("trace writer closed");
+		final int length = frame.getStructLength() - 9;
+		final int size = RECORD_SIZE + length;
+		try {
+			// one spare byte for the end marker
+			if (buf.remaining() < size + 1) {
+				if (buf.position() == recordsStart())
+					throw new KNXException("frame exceeds segment size");
+				buf = segments.next();
+				initSegment();
+			}
+			final int pos = buf.position();
+			if (pos >= nextIndexPos && indexCount < indexCapacity) {
+				final int entry = INDEX_POS + indexCount * INDEX_ENTRY_SIZE;
+				buf.putLong(entry, time);
+				buf.putInt(entry + 8, pos);
+				buf.putInt(COUNT_POS, ++indexCount);
+				nextIndexPos = pos + INDEX_SPACING;
+			}
+			buf.position(pos + 1);
+			buf.putLong(time);
+			buf.put((byte) status(frame));
+			buf.put((byte) frame.getTimestampType());
+			buf.putInt((int) frame.getTimestamp());
+			buf.put((byte) length);
+			buf.put(frame.getPayload());
+			buf.put(buf.position(), (byte) END);
+			// mark the record valid as last step, for concurrent readers
+			buf.put(pos, (byte) RECORD);
+			++frames;
+		}
+		catch (final IOException e) {
+			throw new KNXException("write trace segment: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Forces frames written so far to the storage device.
+	 * <p>
+	 */
+	public synchronized void flush()
+	{
+		if (!closed)
+			buf.force();
+	}
+
+	/**
+	 * Closes the trace writer and its current segment file.
+	 * <p>
+	 * After closing, frames are not written anymore.
+	 */
+	public synchronized void close()
+	{
+		if (closed)
+			return;
+		closed = true;
+		segments.close();
+		LogManager.getManager().removeLogService(logger.getName());
+	}
+
+	private static int status(CEMIBusMon frame)
+	{
+		int status = frame.getSequenceNumber();
+		status |= frame.getFrameError() ? 0x80 : 0;
+		status |= frame.getBitError() ? 0x40 : 0;
+		status |= frame.getParityError() ? 0x20 : 0;
+		status |= frame.getLost() ? 0x08 : 0;
+		return status;
+	}
+
+	private int recordsStart()
+	{
+		return INDEX_POS + indexCapacity * INDEX_ENTRY_SIZE;
+	}
+
+	private void openSegment() throws IOException
+	{
+		buf = segments.open();
+		initSegment();
+	}
+
+	private void initSegment()
+	{
+		buf.putInt(MAGIC);
+		buf.put((byte) VERSION);
+		buf.putInt(indexCapacity);
+		buf.putInt(0);
+		buf.position(recordsStart());
+		buf.put(buf.position(), (byte) END);
+		indexCount = 0;
+		nextIndexPos = 0;
+	}
+}
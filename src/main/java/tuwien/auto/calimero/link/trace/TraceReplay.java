@@ -0,0 +1,288 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.link.trace;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import tuwien.auto.calimero.CloseEvent;
+import tuwien.auto.calimero.cemi.CEMIBusMon;
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
+import tuwien.auto.calimero.exception.KNXIllegalStateException;
+import tuwien.auto.calimero.link.event.LinkListener;
+import tuwien.auto.calimero.log.LogService;
+
+/**
+ * Replays the frames of a monitor trace, paced according to their capture times.
+ * <p>
+ * Listeners are notified in the replay thread, in the same way a link notifier does.
+ * 
+ * @author B. Malinowsky
+ */
+abstract class TraceReplay extends Thread
+{
+	static interface EventCallback
+	{
+		/**
+		 * Invokes the appropriate listener method with the event contained in this event
+		 * callback.
+		 * <p>
+		 * 
+		 * @param l the listener to notify
+		 */
+		void invoke(LinkListener l);
+	}
+
+	final LogService logger;
+	final Object source;
+
+	private final MonitorTraceReader reader;
+	private final double speed;
+
+	// event listeners
+	private final List listeners = new ArrayList();
+	private volatile List listenersCopy = new ArrayList();
+
+	private volatile boolean stop;
+	private boolean started;
+	private long events;
+	private long startTime;
+	private long endTime;
+	private long startNanos;
+	private boolean done;
+
+	TraceReplay(Object source, String file, double speed, LogService logger)
+		throws KNXException
+	{
+		super("Trace replay");
+		if (speed < 0)
+			throw new KNXIllegalArgumentException("replay speed < 0");
+		this.source = source;
+		this.speed = speed;
+		this.logger = logger;
+		reader = new MonitorTraceReader(file);
+		setDaemon(true);
+	}
+
+	public final void run()
+	{
+		String reason = "end of trace";
+		try {
+			long first = 0;
+			for (CEMIBusMon frame = reader.next(); frame != null && !stop; frame = reader
+				.next()) {
+				final long time = reader.getTime();
+				if (events == 0) {
+					first = time;
+					startNanos = System.nanoTime();
+				}
+				else if (speed > 0)
+					pace((long) ((time - first) * 1000000 / speed));
+				replay(frame);
+				synchronized (this) {
+					++events;
+				}
+			}
+			if (stop)
+				reason = "user request";
+		}
+		catch (final InterruptedException e) {
+			reason = "user request";
+		}
+		catch (final KNXException e) {
+			logger.error("replay of trace " + reader.getFileName(), e);
+			reason = e.getMessage();
+		}
+		finally {
+			synchronized (this) {
+				endTime = System.currentTimeMillis();
+			}
+			reader.close();
+		}
+		notifyClosed(reason);
+	}
+
+	/**
+	 * Replays one frame of the trace.
+	 * <p>
+	 * 
+	 * @param frame the frame
+	 */
+	abstract void replay(CEMIBusMon frame);
+
+	/**
+	 * Invoked after the replay ended and listeners were notified about the close.
+	 * <p>
+	 */
+	abstract void closed();
+
+	final void startReplay()
+	{
+		synchronized (this) {
+			if (started)
+				throw new KNXIllegalStateException("replay already started");
+			started = true;
+			startTime = System.currentTimeMillis();
+		}
+		start();
+	}
+
+	final synchronized boolean waitForEnd(long timeout) throws InterruptedException
+	{
+		final long end = System.currentTimeMillis() + timeout;
+		long remaining = timeout;
+		while (!done && (timeout == 0 || remaining > 0)) {
+			wait(remaining);
+			remaining = end - System.currentTimeMillis();
+		}
+		return done;
+	}
+
+	final synchronized long getEvents()
+	{
+		return events;
+	}
+
+	final synchronized double getEventsPerSecond()
+	{
+		if (startTime == 0)
+			return 0;
+		final long end = endTime != 0 ? endTime : System.currentTimeMillis();
+		final long elapsed = Math.max(1, end - startTime);
+		return events * 1000.0 / elapsed;
+	}
+
+	final void fire(EventCallback ec)
+	{
+		for (final Iterator i = listenersCopy.iterator(); i.hasNext();) {
+			final LinkListener l = (LinkListener) i.next();
+			try {
+				ec.invoke(l);
+			}
+			catch (final RuntimeException rte) {
+				removeListener(l);
+				logger.error("removed event listener", rte);
+			}
+		}
+	}
+
+	final void addListener(LinkListener l)
+	{
+		if (l == null)
+			return;
+		synchronized (listeners) {
+			if (!listeners.contains(l)) {
+				listeners.add(l);
+				listenersCopy = new ArrayList(listeners);
+			}
+			else
+				logger.warn("event listener already registered");
+		}
+	}
+
+	final void removeListener(LinkListener l)
+	{
+		synchronized (listeners) {
+			if (listeners.remove(l))
+				listenersCopy = new ArrayList(listeners);
+		}
+	}
+
+	final void quit()
+	{
+		stop = true;
+		boolean replaying = true;
+		synchronized (this) {
+			if (!started) {
+				started = true;
+				replaying = false;
+			}
+		}
+		if (!replaying) {
+			closeNotStarted();
+			return;
+		}
+		interrupt();
+		if (currentThread() != this) {
+			try {
+				join();
+			}
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	// nothing was replayed, close the trace and notify in the current thread
+	private void closeNotStarted()
+	{
+		synchronized (this) {
+			endTime = System.currentTimeMillis();
+		}
+		reader.close();
+		notifyClosed("user request");
+	}
+
+	private void notifyClosed(String reason)
+	{
+		final CloseEvent e = new CloseEvent(source, stop, reason);
+		for (final Iterator i = listenersCopy.iterator(); i.hasNext();) {
+			final LinkListener l = (LinkListener) i.next();
+			try {
+				l.linkClosed(e);
+			}
+			catch (final RuntimeException rte) {
+				logger.error("event listener", rte);
+			}
+		}
+		closed();
+		synchronized (this) {
+			done = true;
+			notifyAll();
+		}
+	}
+
+	// waits until offset nanoseconds after the replay start
+	private void pace(long offset) throws InterruptedException
+	{
+		final long due = startNanos + offset;
+		for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime())
+			Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+	}
+}
@@ -0,0 +1,141 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.link.traffic;
+
+/**
+ * Tracks the most frequent KNX addresses of a telegram stream in fixed memory.
+ * <p>
+ * Uses the space-saving algorithm with a fixed number of counters, where each counter
+ * decays exponentially with the time constant of the statistics window. A decayed count
+ * divided by the time constant estimates the recent telegram rate of an address.<br>
+ * If all counters are in use, an address not tracked replaces the address with the
+ * lowest count and inherits its count, so counts might be overestimated by at most the
+ * lowest count.
+ * <p>
+ * Not thread safe.
+ * 
+ * @author B. Malinowsky
+ */
+final class TopTalkers
+{
+	private final int[] addresses;
+	private final double[] counts;
+	private final long[] updated;
+	private final double tau;
+	private int size;
+
+	/**
+	 * Creates a new top talkers tracker.
+	 * <p>
+	 * 
+	 * @param capacity number of addresses tracked
+	 * @param window time constant of the count decay in milliseconds
+	 */
+	TopTalkers(int capacity, long window)
+	{
+		addresses = new int[capacity];
+		counts = new double[capacity];
+		updated = new long[capacity];
+		tau = window;
+	}
+
+	void add(int address, long now)
+	{
+		int min = -1;
+		double minCount = Double.MAX_VALUE;
+		for (int i = 0; i < size; ++i) {
+			final double c = decayed(i, now);
+			if (addresses[i] == address) {
+				counts[i] = c + 1;
+				updated[i] = now;
+				return;
+			}
+			if (c < minCount) {
+				minCount = c;
+				min = i;
+			}
+		}
+		if (size < addresses.length) {
+			min = size++;
+			minCount = 0;
+		}
+		addresses[min] = address;
+		counts[min] = minCount + 1;
+		updated[min] = now;
+	}
+
+	/**
+	 * Returns the tracked addresses and their telegram rates, ordered by descending rate.
+	 * <p>
+	 * 
+	 * @param now current time in milliseconds
+	 * @param top receives the raw addresses, its length is the maximum number returned
+	 * @param rates receives the telegram rates in telegrams per second
+	 * @return number of addresses returned
+	 */
+	int top(long now, int[] top, double[] rates)
+	{
+		int n = 0;
+		for (int i = 0; i < size; ++i) {
+			final double rate = decayed(i, now) * 1000 / tau;
+			// insertion into the sorted result
+			int k = Math.min(n, top.length - 1);
+			if (n == top.length && rate <= rates[k])
+				continue;
+			for (; k > 0 && rates[k - 1] < rate; --k) {
+				top[k] = top[k - 1];
+				rates[k] = rates[k - 1];
+			}
+			top[k] = addresses[i];
+			rates[k] = rate;
+			if (n < top.length)
+				++n;
+		}
+		return n;
+	}
+
+	void clear()
+	{
+		size = 0;
+	}
+
+	private double decayed(int i, long now)
+	{
+		final long dt = now - updated[i];
+		return dt <= 0 ? counts[i] : counts[i] * Math.exp(-dt / tau);
+	}
+}
@@ -0,0 +1,311 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.link.traffic;
+
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.IndividualAddress;
+
+/**
+ * A snapshot of KNX network traffic statistics, taken by {@link TrafficStatistics}.
+ * <p>
+ * Window values refer to the sliding statistics window ending at the time the snapshot
+ * was taken, total values refer to all telegrams since the statistics were started or
+ * reset.
+ * <p>
+ * Objects of this type are immutable.
+ * 
+ * @author B. Malinowsky
+ */
+public final class TrafficSnapshot
+{
+	private final long time;
+	private final long window;
+	private final long frames;
+	private final long repetitions;
+	private final long frameErrors;
+	private final long parityErrors;
+	private final long bitErrors;
+	private final long lost;
+	private final double busLoad;
+	private final long totalFrames;
+	private final long totalErrors;
+	private final IndividualAddress[] sources;
+	private final double[] sourceRates;
+	private final GroupAddress[] groups;
+	private final double[] groupRates;
+
+	TrafficSnapshot(long time, long window, long[] counters, double busLoad,
+		long totalFrames, long totalErrors, IndividualAddress[] sources,
+		double[] sourceRates, GroupAddress[] groups, double[] groupRates)
+	{
+		this.time = time;
+		this.window = window;
+		frames = counters[0];
+		repetitions = counters[1];
+		frameErrors = counters[2];
+		parityErrors = counters[3];
+		bitErrors = counters[4];
+		lost = counters[5];
+		this.busLoad = busLoad;
+		this.totalFrames = totalFrames;
+		this.totalErrors = totalErrors;
+		this.sources = sources;
+		this.sourceRates = sourceRates;
+		this.groups = groups;
+		this.groupRates = groupRates;
+	}
+
+	/**
+	 * Returns the time the snapshot was taken.
+	 * <p>
+	 * 
+	 * @return time in milliseconds since midnight, January 1, 1970 UTC
+	 */
+	public long getTime()
+	{
+		return time;
+	}
+
+	/**
+	 * Returns the length of the statistics window covered by this snapshot.
+	 * <p>
+	 * The window is shorter than the configured window length as long as the statistics
+	 * run for less than the window length.
+	 * 
+	 * @return window length in milliseconds
+	 */
+	public long getWindow()
+	{
+		return window;
+	}
+
+	/**
+	 * Returns the number of frames in the statistics window.
+	 * <p>
+	 * 
+	 * @return frame count
+	 */
+	public long getFrames()
+	{
+		return frames;
+	}
+
+	/**
+	 * Returns the frame rate in the statistics window.
+	 * <p>
+	 * 
+	 * @return frames per second
+	 */
+	public double getFramesPerSecond()
+	{
+		return window > 0 ? frames * 1000.0 / window : 0;
+	}
+
+	/**
+	 * Returns the bus load in the statistics window, i.e., the share of time the medium
+	 * was occupied by frames.
+	 * <p>
+	 * 
+	 * @return bus load in percent
+	 */
+	public double getBusLoad()
+	{
+		return busLoad;
+	}
+
+	/**
+	 * Returns the number of repeated frames in the statistics window.
+	 * <p>
+	 * 
+	 * @return repetition count
+	 */
+	public long getRepetitions()
+	{
+		return repetitions;
+	}
+
+	/**
+	 * Returns the share of repeated frames of all frames in the statistics window.
+	 * <p>
+	 * 
+	 * @return repetition rate in percent
+	 */
+	public double getRepetitionRate()
+	{
+		return frames > 0 ? repetitions * 100.0 / frames : 0;
+	}
+
+	/**
+	 * Returns the number of frames with a frame error in the statistics window.
+	 * <p>
+	 * Errors are only available from busmonitor indications.
+	 * 
+	 * @return frame error count
+	 */
+	public long getFrameErrors()
+	{
+		return frameErrors;
+	}
+
+	/**
+	 * Returns the number of frames with a parity error in the statistics window.
+	 * <p>
+	 * Errors are only available from busmonitor indications.
+	 * 
+	 * @return parity error count
+	 */
+	public long getParityErrors()
+	{
+		return parityErrors;
+	}
+
+	/**
+	 * Returns the number of frames with a bit error in the statistics window.
+	 * <p>
+	 * Errors are only available from busmonitor indications.
+	 * 
+	 * @return bit error count
+	 */
+	public long getBitErrors()
+	{
+		return bitErrors;
+	}
+
+	/**
+	 * Returns the number of busmonitor indications in the statistics window indicating
+	 * lost frames.
+	 * <p>
+	 * 
+	 * @return lost indication count
+	 */
+	public long getLost()
+	{
+		return lost;
+	}
+
+	/**
+	 * Returns the number of frames since start or reset of the statistics.
+	 * <p>
+	 * 
+	 * @return total frame count
+	 */
+	public long getTotalFrames()
+	{
+		return totalFrames;
+	}
+
+	/**
+	 * Returns the number of frames with a frame, parity or bit error since start or
+	 * reset of the statistics.
+	 * <p>
+	 * 
+	 * @return total error frame count
+	 */
+	public long getTotalErrors()
+	{
+		return totalErrors;
+	}
+
+	/**
+	 * Returns the source addresses with the highest recent telegram rates, ordered by
+	 * descending rate.
+	 * <p>
+	 * 
+	 * @return array of source addresses, with the rates at the same index in
+	 *         {@link #getSourceRates()}
+	 */
+	public IndividualAddress[] getTopSources()
+	{
+		return (IndividualAddress[]) sources.clone();
+	}
+
+	/**
+	 * Returns the recent telegram rates of the addresses returned by
+	 * {@link #getTopSources()}.
+	 * <p>
+	 * 
+	 * @return array of rates in telegrams per second
+	 */
+	public double[] getSourceRates()
+	{
+		return (double[]) sourceRates.clone();
+	}
+
+	/**
+	 * Returns the group destination addresses with the highest recent telegram rates,
+	 * ordered by descending rate.
+	 * <p>
+	 * 
+	 * @return array of group addresses, with the rates at the same index in
+	 *         {@link #getGroupRates()}
+	 */
+	public GroupAddress[] getTopGroups()
+	{
+		return (GroupAddress[]) groups.clone();
+	}
+
+	/**
+	 * Returns the recent telegram rates of the addresses returned by
+	 * {@link #getTopGroups()}.
+	 * <p>
+	 * 
+	 * @return array of rates in telegrams per second
+	 */
+	public double[] getGroupRates()
+	{
+		return (double[]) groupRates.clone();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString()
+	{
+		final StringBuffer sb = new StringBuffer();
+		sb.append("window ").append(window / 1000.0).append(" s: ");
+		sb.append(frames).append(" frames (");
+		sb.append(Math.round(getFramesPerSecond() * 10) / 10.0).append("/s), load ");
+		sb.append(Math.round(busLoad * 10) / 10.0).append(" %, repetitions ");
+		sb.append(repetitions).append(", errors ").append(frameErrors).append("/");
+		sb.append(parityErrors).append("/").append(bitErrors).append(" (frame/parity/bit)");
+		if (sources.length > 0)
+			sb.append(", top source ").append(sources[0]);
+		if (groups.length > 0)
+			sb.append(", top group ").append(groups[0]);
+		return sb.toString();
+	}
+}
@@ -0,0 +1,353 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.link.traffic;
+
+import tuwien.auto.calimero.CloseEvent;
+import tuwien.auto.calimero.FrameEvent;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.KNXAddress;
+import tuwien.auto.calimero.cemi.CEMI;
+import tuwien.auto.calimero.cemi.CEMIBusMon;
+import tuwien.auto.calimero.cemi.CEMILData;
+import tuwien.auto.calimero.exception.KNXFormatException;
+import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
+import tuwien.auto.calimero.link.KNXNetworkLink;
+import tuwien.auto.calimero.link.KNXNetworkMonitor;
+import tuwien.auto.calimero.link.event.MonitorFrameEvent;
+import tuwien.auto.calimero.link.event.NetworkLinkListener;
+import tuwien.auto.calimero.link.medium.KNXMediumSettings;
+import tuwien.auto.calimero.link.medium.RawFrame;
+import tuwien.auto.calimero.link.medium.RawFrameBase;
+import tuwien.auto.calimero.link.medium.RawFrameFactory;
+
+/**
+ * Aggregates KNX network traffic statistics over a sliding time window.
+ * <p>
+ * The statistics are a link listener, and can be added to a {@link KNXNetworkMonitor}
+ * to evaluate busmonitor indications, or to a {@link KNXNetworkLink} to evaluate L-data
+ * indications. Busmonitor indications additionally provide the frame error, parity
+ * error and bit error flags, and include frames not addressed to the link.
+ * <p>
+ * Window statistics are kept in one bucket per second of the window, the most frequent
+ * source addresses and group destination addresses ("top talkers") are tracked using a
+ * fixed number of counters. Memory used is fixed on creation, independent of the traffic
+ * and the running time, and {@link #snapshot()} is cheap enough to be called
+ * periodically.
+ * <p>
+ * The bus load is estimated from the frame lengths using the medium bit rate. A frame
+ * character occupies 13 bit times (start bit, 8 data bits, parity bit, stop bit and 2
+ * bit times pause), a frame is preceded by 50 bit times line idle, an acknowledge by 15
+ * bit times. This timing is specified for TP1, and used as approximation for the other
+ * media.
+ * 
+ * @author B. Malinowsky
+ */
+public class TrafficStatistics implements NetworkLinkListener
+{
+	private static final int FRAMES = 0;
+	private static final int REPETITIONS = 1;
+	private static final int FRAME_ERRORS = 2;
+	private static final int PARITY_ERRORS = 3;
+	private static final int BIT_ERRORS = 4;
+	private static final int LOST = 5;
+	private static final int COUNTERS = 6;
+
+	private final KNXMediumSettings medium;
+	private final int bitRate;
+	private final int window;
+
+	// per second buckets of the sliding window
+	private final long[] bucketTime;
+	private final long[][] counters;
+	private final long[] bitTimes;
+
+	private final TopTalkers sources;
+	private final TopTalkers groups;
+	private final int top;
+
+	private long start;
+	private long totalFrames;
+	private long totalErrors;
+
+	/**
+	 * Creates traffic statistics with a window of 60 seconds, tracking the top 10
+	 * talkers.
+	 * <p>
+	 * 
+	 * @param settings medium settings of the KNX network, used for decoding raw frames
+	 *        and for the medium bit rate
+	 */
+	public TrafficStatistics(KNXMediumSettings settings)
+	{
+		this(settings, 60, 10);
+	}
+
+	/**
+	 * Creates traffic statistics.
+	 * <p>
+	 * 
+	 * @param settings medium settings of the KNX network, used for decoding raw frames
+	 *        and for the medium bit rate
+	 * @param windowSeconds length of the sliding window in seconds, 1 &lt;= length
+	 *        &lt;= 86400
+	 * @param topTalkers number of source and group addresses reported as top talkers in
+	 *        a snapshot, &gt; 0
+	 */
+	public TrafficStatistics(KNXMediumSettings settings, int windowSeconds,
+		int topTalkers)
+	{
+		if (settings == null)
+			throw new KNXIllegalArgumentException("medium settings are mandatory");
+		if (windowSeconds < 1 || windowSeconds > 86400)
+			throw new KNXIllegalArgumentException("window out of range [1..86400] s");
+		if (topTalkers < 1)
+			throw new KNXIllegalArgumentException("number of top talkers < 1");
+		medium = settings;
+		bitRate = bitRate(settings.getMedium());
+		window = windowSeconds;
+		bucketTime = new long[windowSeconds];
+		counters = new long[COUNTERS][windowSeconds];
+		bitTimes = new long[windowSeconds];
+		top = topTalkers;
+		// track more counters than reported, to improve accuracy of the top talkers
+		sources = new TopTalkers(4 * topTalkers, windowSeconds * 1000L);
+		groups = new TopTalkers(4 * topTalkers, windowSeconds * 1000L);
+		reset();
+	}
+
+	/**
+	 * Returns the length of the sliding window.
+	 * <p>
+	 * 
+	 * @return window length in seconds
+	 */
+	public final int getWindow()
+	{
+		return window;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.event.LinkListener#indication
+	 * (tuwien.auto.calimero.FrameEvent)
+	 */
+	public void indication(FrameEvent e)
+	{
+		final CEMI frame = e.getFrame();
+		if (frame instanceof CEMIBusMon) {
+			RawFrame raw = null;
+			if (e instanceof MonitorFrameEvent)
+				raw = ((MonitorFrameEvent) e).getRawFrame();
+			if (raw == null)
+				try {
+					raw = RawFrameFactory.create(medium.getMedium(), frame.getPayload(), 0);
+				}
+				catch (final KNXFormatException ignore) {}
+			add(System.currentTimeMillis(), (CEMIBusMon) frame, raw);
+		}
+		else if (frame instanceof CEMILData)
+			add(System.currentTimeMillis(), (CEMILData) frame);
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.event.NetworkLinkListener#confirmation
+	 * (tuwien.auto.calimero.FrameEvent)
+	 */
+	public void confirmation(FrameEvent e)
+	{}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.link.event.LinkListener#linkClosed
+	 * (tuwien.auto.calimero.CloseEvent)
+	 */
+	public void linkClosed(CloseEvent e)
+	{}
+
+	/**
+	 * Returns a snapshot of the current traffic statistics.
+	 * <p>
+	 * 
+	 * @return the snapshot
+	 */
+	public TrafficSnapshot snapshot()
+	{
+		return snapshot(System.currentTimeMillis());
+	}
+
+	/**
+	 * Resets all statistics, and restarts the statistics window.
+	 * <p>
+	 */
+	public synchronized void reset()
+	{
+		for (int i = 0; i < window; ++i) {
+			bucketTime[i] = -1;
+			bitTimes[i] = 0;
+			for (int k = 0; k < COUNTERS; ++k)
+				counters[k][i] = 0;
+		}
+		sources.clear();
+		groups.clear();
+		totalFrames = 0;
+		totalErrors = 0;
+		start = System.currentTimeMillis();
+	}
+
+	synchronized void add(long now, CEMIBusMon frame, RawFrame raw)
+	{
+		final int b = bucket(now);
+		// raw frame length, without message code, status info and timestamp fields
+		final int stamp = frame.getTimestampType() == CEMIBusMon.TYPEID_TIMESTAMP ? 2 : 4;
+		final int length = frame.getStructLength() - 7 - stamp;
+		++counters[FRAMES][b];
+		bitTimes[b] += bitTimes(length);
+		++totalFrames;
+		boolean error = false;
+		if (frame.getFrameError()) {
+			++counters[FRAME_ERRORS][b];
+			error = true;
+		}
+		if (frame.getParityError()) {
+			++counters[PARITY_ERRORS][b];
+			error = true;
+		}
+		if (frame.getBitError()) {
+			++counters[BIT_ERRORS][b];
+			error = true;
+		}
+		if (error)
+			++totalErrors;
+		if (frame.getLost())
+			++counters[LOST][b];
+		if (raw instanceof RawFrameBase && raw.getFrameType() == RawFrame.LDATA_FRAME) {
+			final RawFrameBase f = (RawFrameBase) raw;
+			addTalkers(now, f.getSource(), f.getDestination(), f.isRepetition(), b);
+		}
+	}
+
+	synchronized void add(long now, CEMILData frame)
+	{
+		if (frame.getMessageCode() != CEMILData.MC_LDATA_IND)
+			return;
+		final int b = bucket(now);
+		// standard frame: control field, addresses, NPCI, TPDU and checksum
+		final int length = 7 + frame.getPayload().length;
+		++counters[FRAMES][b];
+		bitTimes[b] += bitTimes(length);
+		++totalFrames;
+		addTalkers(now, frame.getSource(), frame.getDestination(), frame.isRepetition(), b);
+	}
+
+	synchronized TrafficSnapshot snapshot(long now)
+	{
+		final long second = now / 1000;
+		final long[] sums = new long[COUNTERS];
+		long bits = 0;
+		for (int i = 0; i < window; ++i)
+			if (bucketTime[i] > second - window && bucketTime[i] <= second) {
+				for (int k = 0; k < COUNTERS; ++k)
+					sums[k] += counters[k][i];
+				bits += bitTimes[i];
+			}
+		final long covered = Math.max(0, Math.min(window * 1000L, now - start));
+		final double load = covered > 0 ? bits * 100000.0 / bitRate / covered : 0;
+
+		final int[] addr = new int[top];
+		final double[] rates = new double[top];
+		int n = sources.top(now, addr, rates);
+		final IndividualAddress[] srcs = new IndividualAddress[n];
+		final double[] srcRates = new double[n];
+		for (int i = 0; i < n; ++i) {
+			srcs[i] = IndividualAddress.valueOf(addr[i]);
+			srcRates[i] = rates[i];
+		}
+		n = groups.top(now, addr, rates);
+		final GroupAddress[] grps = new GroupAddress[n];
+		final double[] grpRates = new double[n];
+		for (int i = 0; i < n; ++i) {
+			grps[i] = GroupAddress.valueOf(addr[i]);
+			grpRates[i] = rates[i];
+		}
+		return new TrafficSnapshot(now, covered, sums, load, totalFrames, totalErrors, srcs,
+			srcRates, grps, grpRates);
+	}
+
+	private void addTalkers(long now, IndividualAddress src, KNXAddress dst,
+		boolean repeated, int bucket)
+	{
+		if (repeated)
+			++counters[REPETITIONS][bucket];
+		sources.add(src.getRawAddress(), now);
+		if (dst instanceof GroupAddress)
+			groups.add(dst.getRawAddress(), now);
+	}
+
+	// returns the bucket for the time, resetting a bucket of an expired second
+	private int bucket(long now)
+	{
+		final long second = now / 1000;
+		final int b = (int) (second % window);
+		if (bucketTime[b] != second) {
+			bucketTime[b] = second;
+			bitTimes[b] = 0;
+			for (int k = 0; k < COUNTERS; ++k)
+				counters[k][b] = 0;
+		}
+		return b;
+	}
+
+	private static int bitTimes(int frameLength)
+	{
+		return frameLength * 13 + (frameLength == 1 ? 15 : 50);
+	}
+
+	private static int bitRate(int medium)
+	{
+		switch (medium) {
+		case KNXMediumSettings.MEDIUM_TP0:
+			return 4800;
+		case KNXMediumSettings.MEDIUM_PL110:
+			return 1200;
+		case KNXMediumSettings.MEDIUM_PL132:
+			return 2400;
+		case KNXMediumSettings.MEDIUM_RF:
+			return 16384;
+		default:
+			return 9600;
+		}
+	}
+}
@@ -0,0 +1,223 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decodes segment files written by {@link LogBinaryFileWriter} into the text output
+ * format of {@link LogStreamWriter}.
+ * <p>
+ * Decoding is done offline, i.e., independent of a running log writer. Decoded log
+ * information keeps the time stamps of the binary records.
+ * 
+ * @author B. Malinowsky
+ * @see LogBinaryFileWriter
+ */
+public final class LogBinaryDecoder
+{
+	private static final LogLevel[] levels = { LogLevel.OFF, LogLevel.FATAL,
+		LogLevel.ERROR, LogLevel.WARN, LogLevel.INFO, LogLevel.TRACE, LogLevel.ALL };
+
+	private LogBinaryDecoder()
+	{}
+
+	/**
+	 * Decodes all existing segment files of a binary log, oldest segment first.
+	 * <p>
+	 * 
+	 * @param file base file name of the segment files, as used by the binary log writer
+	 * @param out log stream writer for the text output, the log level of the writer is
+	 *        applied to the decoded records
+	 * @return number of decoded records
+	 * @throws KNXLogException on error reading a segment file or on malformed segment
+	 *         data
+	 */
+	public static int decode(String file, LogStreamWriter out) throws KNXLogException
+	{
+		final int[] segments = SegmentedFile.segments(file);
+		int records = 0;
+		for (int i = 0; i < segments.length; ++i)
+			records += decodeSegment(SegmentedFile.segmentFile(file, segments[i]),
+				out);
+		return records;
+	}
+
+	/**
+	 * Decodes one segment file of a binary log.
+	 * <p>
+	 * 
+	 * @param segmentFile segment file name
+	 * @param out log stream writer for the text output
+	 * @return number of decoded records
+	 * @throws KNXLogException on error reading the segment file or on malformed segment
+	 *         data
+	 */
+	public static int decodeSegment(String segmentFile, LogStreamWriter out)
+		throws KNXLogException
+	{
+		final ByteBuffer buf = read(segmentFile);
+		final CharsetDecoder dec = Charset.forName("UTF-8").newDecoder().onMalformedInput(
+			CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		final Map services = new HashMap();
+		int records = 0;
+		try {
+			if (buf.getInt() != LogBinaryFileWriter.MAGIC)
+				throw new KNXLogException(segmentFile + " is no binary log segment");
+			final int version = buf.get();
+			if (version != LogBinaryFileWriter.VERSION)
+				throw new KNXLogException("unsupported binary log version " + version);
+			while (buf.hasRemaining()) {
+				final int type = buf.get();
+				if (type == LogBinaryFileWriter.END)
+					break;
+				if (type == LogBinaryFileWriter.SERVICE) {
+					final Integer id = new Integer(buf.getShort() & 0xffff);
+					services.put(id, getString(buf, buf.getShort() & 0xffff, dec));
+				}
+				else if (type == LogBinaryFileWriter.RECORD) {
+					final long time = buf.getLong();
+					final LogLevel level = toLevel(buf.get());
+					final String svc = (String) services.get(new Integer(buf.getShort()
+						& 0xffff));
+					final String msg = getString(buf, buf.getInt(), dec);
+					final int length = buf.getInt();
+					final String detail = length == -1 ? null : getString(buf, length, dec);
+					if (svc == null)
+						throw new KNXLogException("unknown log service in " + segmentFile);
+					out.write(time, svc, level, msg, detail);
+					++records;
+				}
+				else
+					throw new KNXLogException("unknown record type " + type + " in "
+						+ segmentFile);
+			}
+		}
+		catch (final BufferUnderflowException e) {
+			throw new KNXLogException("truncated segment " + segmentFile);
+		}
+		catch (final IllegalArgumentException e) {
+			throw new KNXLogException("malformed segment " + segmentFile);
+		}
+		catch (final CharacterCodingException e) {
+			throw new KNXLogException("malformed segment " + segmentFile);
+		}
+		out.flush();
+		return records;
+	}
+
+	/**
+	 * Decodes a binary log and prints it to the standard output stream (System.out).
+	 * <p>
+	 * Usage: <code>LogBinaryDecoder file</code>, with <code>file</code> either being the
+	 * base file name of the segment files to decode all segments, or the file name of
+	 * one segment.
+	 * 
+	 * @param args argument list with the file name
+	 */
+	public static void main(String[] args)
+	{
+		if (args.length != 1) {
+			System.out.println("usage: LogBinaryDecoder file");
+			return;
+		}
+		final LogStreamWriter out = new LogStreamWriter(System.out);
+		try {
+			if (SegmentedFile.segments(args[0]).length == 0
+				&& new File(args[0]).isFile())
+				decodeSegment(args[0], out);
+			else
+				decode(args[0], out);
+		}
+		catch (final KNXLogException e) {
+			System.err.println(e.getMessage());
+		}
+		out.flush();
+	}
+
+	private static ByteBuffer read(String file) throws KNXLogException
+	{
+		FileInputStream is = null;
+		try {
+			is = new FileInputStream(file);
+			final FileChannel ch = is.getChannel();
+			return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+		}
+		catch (final IOException e) {
+			throw new KNXLogException(e.getMessage());
+		}
+		finally {
+			try {
+				if (is != null)
+					is.close();
+			}
+			catch (final IOException e) {}
+		}
+	}
+
+	private static String getString(ByteBuffer buf, int length, CharsetDecoder dec)
+		throws CharacterCodingException
+	{
+		final int limit = buf.limit();
+		buf.limit(buf.position() + length);
+		try {
+			return dec.decode(buf).toString();
+		}
+		finally {
+			buf.limit(limit);
+		}
+	}
+
+	private static LogLevel toLevel(int id)
+	{
+		for (int i = 0; i < levels.length; ++i)
+			if (levels[i].level == id * 100)
+				return levels[i];
+		return new LogLevel(id * 100);
+	}
+}
@@ -0,0 +1,329 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.log;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A LogWriter appending log information as compact binary records to memory-mapped
+ * segment files.
+ * <p>
+ * The log writer writes into a sequence of segment files of fixed size, named
+ * <code>file.0</code>, <code>file.1</code>, and so on. A new segment is started when
+ * a record does not fit into the current segment anymore, and if a maximum number of
+ * segments is set, the oldest segments are deleted. On creation, the log writer
+ * continues with a new segment after the existing segments with the same file name.
+ * <p>
+ * A record consists of the time stamp, the log level, the log service and the message,
+ * with log service names stored once per segment. Each segment can be decoded on its
+ * own, use {@link LogBinaryDecoder} to convert segments back into the output format of
+ * {@link LogStreamWriter}.
+ * <p>
+ * Records are written into the mapped segment directly, {@link #flush()} forces written
+ * records to the storage device.
+ * 
+ * @author B. Malinowsky
+ * @see LogBinaryDecoder
+ * @see SegmentedFile
+ */
+public class LogBinaryFileWriter extends LogWriter
+{
+	// segment header: magic "CLOG" and format version
+	static final int MAGIC = 0x434c4f47;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 5;
+
+	// record types, 0 marks the end of records in a segment
+	static final int END = 0;
+	static final int SERVICE = 1;
+	static final int RECORD = 2;
+
+	private static final int MIN_SEGMENT_SIZE = 1024;
+	// service record: type, id, name length
+	private static final int SERVICE_SIZE = 1 + 2 + 2;
+	// log record: type, time, level, service id, msg length, detail length
+	private static final int RECORD_SIZE = 1 + 8 + 1 + 2 + 4 + 4;
+
+	private final SegmentedFile segments;
+	private MappedByteBuffer buf;
+	// maps service name to service id in current segment
+	private final Map services = new HashMap();
+	private final CharsetEncoder encoder;
+	private boolean closed;
+
+	/**
+	 * Creates a binary log writer writing to segments of the supplied size.
+	 * <p>
+	 * 
+	 * @param file base file name of the segment files, the path to the file has to
+	 *        exist
+	 * @param segmentSize size of one segment file in bytes, at least 1024
+	 * @param maxSegments maximum number of segment files kept, older segments are
+	 *        deleted; use 0 for no limit
+	 * @throws KNXLogException if the first segment file can not be created or mapped
+	 */
+	public LogBinaryFileWriter(String file, int segmentSize, int maxSegments)
+		throws KNXLogException
+	{
+		if (segmentSize < MIN_SEGMENT_SIZE)
+			throw new KNXLogException("segment size < " + MIN_SEGMENT_SIZE);
+		encoder = Charset.forName("UTF-8").newEncoder().onMalformedInput(
+			CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		try {
+			segments = new SegmentedFile(file, segmentSize, maxSegments);
+			openSegment();
+		}
+		catch (final IOException e) {
+			throw new KNXLogException(e.getMessage());
+		}
+		catch (final SecurityException e) {
+			throw new KNXLogException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Creates a binary log writer with the specified log level.
+	 * <p>
+	 * 
+	 * @param level log level used by this log writer
+	 * @param file base file name of the segment files
+	 * @param segmentSize size of one segment file in bytes
+	 * @param maxSegments maximum number of segment files kept, 0 for no limit
+	 * @throws KNXLogException if the first segment file can not be created or mapped
+	 * @see #LogBinaryFileWriter(String, int, int)
+	 */
+	public LogBinaryFileWriter(LogLevel level, String file, int segmentSize,
+		int maxSegments) throws KNXLogException
+	{
+		this(file, segmentSize, maxSegments);
+		setLogLevel(level);
+	}
+
+	/**
+	 * Returns the base file name of the segment files.
+	 * <p>
+	 * 
+	 * @return file name
+	 */
+	public final String getFileName()
+	{
+		return segments.getFileName();
+	}
+
+	/**
+	 * Returns the file name of the segment currently written to.
+	 * <p>
+	 * 
+	 * @return segment file name
+	 */
+	public final synchronized String getSegmentFileName()
+	{
+		return segments.getSegmentFileName();
+	}
+
+	/**
+	 * Returns the size of one segment file.
+	 * <p>
+	 * 
+	 * @return segment size in bytes
+	 */
+	public final int getSegmentSize()
+	{
+		return segments.getSegmentSize();
+	}
+
+	/**
+	 * Returns the maximum number of segment files kept.
+	 * <p>
+	 * 
+	 * @return number of segments, 0 for no limit
+	 */
+	public final int getMaxSegments()
+	{
+		return segments.getMaxSegments();
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.log.LogWriter#write
+	 * (java.lang.String, tuwien.auto.calimero.log.LogLevel, java.lang.String)
+	 */
+	public void write(String logService, LogLevel level, String msg)
+	{
+		write(logService, level, msg, null);
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.log.LogWriter#write
+	 * (java.lang.String, tuwien.auto.calimero.log.LogLevel, java.lang.String,
+	 * java.lang.Throwable)
+	 */
+	public synchronized void write(String logService, LogLevel level, String msg,
+		Throwable t)
+	{
+		if (closed || level == LogLevel.OFF || level.higher(logLevel))
+			return;
+		final long now = System.currentTimeMillis();
+		final String detail = t != null ? t.getMessage() : null;
+		try {
+			// at most two attempts, the second one in an empty segment
+			for (int attempt = 0; attempt < 2; ++attempt) {
+				final int start = buf.position();
+				if (append(now, logService, level, msg, detail))
+					return;
+				// discard the partially written record
+				buf.position(start);
+				buf.put(start, (byte) END);
+				if (start == HEADER_SIZE)
+					break;
+				nextSegment();
+			}
+			getErrorHandler().error(this, "record exceeds segment size", null);
+		}
+		catch (final IOException e) {
+			getErrorHandler().error(this, "on write", e);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.log.LogWriter#flush()
+	 */
+	public synchronized void flush()
+	{
+		if (!closed)
+			buf.force();
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.log.LogWriter#close()
+	 */
+	public synchronized void close()
+	{
+		if (closed)
+			return;
+		closed = true;
+		segments.close();
+	}
+
+	// returns false if the record does not fit into the segment
+	private boolean append(long time, String svc, LogLevel level, String msg,
+		String detail)
+	{
+		Integer id = (Integer) services.get(svc);
+		final boolean added = id == null;
+		try {
+			if (added) {
+				id = new Integer(services.size());
+				services.put(svc, id);
+				buf.put((byte) SERVICE);
+				buf.putShort((short) id.intValue());
+				putString(svc, 2);
+			}
+			buf.put((byte) RECORD);
+			buf.putLong(time);
+			buf.put((byte) (level.level / 100));
+			buf.putShort((short) id.intValue());
+			putString(msg != null ? msg : "null", 4);
+			if (detail == null)
+				buf.putInt(-1);
+			else
+				putString(detail, 4);
+			// mark the end, bytes of a discarded record might follow
+			if (buf.hasRemaining())
+				buf.put(buf.position(), (byte) END);
+			return true;
+		}
+		catch (final BufferOverflowException e) {
+			// the service record is discarded together with the log record
+			if (added)
+				services.remove(svc);
+			return false;
+		}
+	}
+
+	// writes the UTF-8 encoded string with a length prefix of 2 or 4 bytes
+	private void putString(String s, int prefix)
+	{
+		final int lengthPos = buf.position();
+		if (buf.remaining() < prefix)
+			throw new BufferOverflowException();
+		buf.position(lengthPos + prefix);
+		encoder.reset();
+		final CharBuffer chars = CharBuffer.wrap(s);
+		CoderResult r = encoder.encode(chars, buf, true);
+		if (!r.isOverflow())
+			r = encoder.flush(buf);
+		if (r.isOverflow())
+			throw new BufferOverflowException();
+		final int length = buf.position() - lengthPos - prefix;
+		if (prefix == 2) {
+			if (length > 0xffff)
+				throw new BufferOverflowException();
+			buf.putShort(lengthPos, (short) length);
+		}
+		else
+			buf.putInt(lengthPos, length);
+	}
+
+	private void nextSegment() throws IOException
+	{
+		buf = segments.next();
+		initSegment();
+	}
+
+	private void openSegment() throws IOException
+	{
+		buf = segments.open();
+		initSegment();
+	}
+
+	private void initSegment()
+	{
+		buf.putInt(MAGIC);
+		buf.put((byte) VERSION);
+		buf.put(buf.position(), (byte) END);
+		services.clear();
+	}
+}
@@ -55,30 +55,6 @@ import java.io.FileOutputStream;
  */
 public class LogFileWriter extends LogStreamWriter
 {
-	// we do a distinction of the used default character set
-	// for easier calculation of file size
-	private static final byte byteEnc;
-	private static final byte lineSep;
-
-	static {
-		// get line separator size
-		lineSep = (byte) System.getProperty("line.separator").length();
-		// get character encoding byte size
-		byte[] buf = new String(new char[] { ' ', ' ' }).getBytes();
-		// if length is 4 or 6 (with byte order mark) we have UTF-16
-		if (buf.length == 4 || buf.length == 6)
-			byteEnc = 2;
-		else {
-			// check for UTF-8 with a character encoded in more bytes
-			buf = new String(new char[] { '\uFFFF' }).getBytes();
-			// on length == 1 we have single byte encoding
-			if (buf.length == 1)
-				byteEnc = 1;
-			else
-				byteEnc = 3;
-		}
-	}
-
 	private String file;
 	// log file size in bytes
 	private int logSize;
@@ -105,7 +81,6 @@ public class LogFileWriter extends LogStreamWriter
 			logSize = (int) f.length();
 		}
 		this.file = file;
-		formatOutput = false;
 		try {
 			createWriter(new FileOutputStream(file, append));
 		}
@@ -175,7 +150,7 @@ public class LogFileWriter extends LogStreamWriter
 	{
 		this(level, file, append);
 		setMaxSize(maxSize);
-		ensureMaxSize("");
+		ensureMaxSize(lineSep.length());
 	}
 
 	/**
@@ -239,25 +214,6 @@ public class LogFileWriter extends LogStreamWriter
 		return maxSize;
 	}
 
-	/* (non-Javadoc)
-	 * @see tuwien.auto.calimero.log.LogStreamWriter#write
-	 * (java.lang.String, tuwien.auto.calimero.log.LogLevel, java.lang.String)
-	 */
-	public void write(String logService, LogLevel level, String msg)
-	{
-		doFileWrite(logService, level, msg, null);
-	}
-
-	/* (non-Javadoc)
-	 * @see tuwien.auto.calimero.log.LogStreamWriter#write
-	 * (java.lang.String, tuwien.auto.calimero.log.LogLevel, java.lang.String,
-	 * java.lang.Throwable)
-	 */
-	public void write(String logService, LogLevel level, String msg, Throwable t)
-	{
-		doFileWrite(logService, level, msg, t);
-	}
-
 	/* (non-Javadoc)
 	 * @see tuwien.auto.calimero.log.LogStreamWriter#close()
 	 */
@@ -267,24 +223,19 @@ public class LogFileWriter extends LogStreamWriter
 		file = "";
 	}
 
-	private void doFileWrite(String logService, LogLevel level, String msg, Throwable t)
+	// called with writer lock held
+	void beforeOutput(int length)
 	{
-		if (logAllowed(level)) {
-			final String s = formatOutput(logService, level, msg, t);
-			ensureMaxSize(s);
-			synchronized (this) {
-				super.write(logService, level, s);
-				logSize += getByteLength(s) + lineSep;
-			}
-		}
+		ensureMaxSize(length);
+		logSize += length;
 	}
 
-	private void ensureMaxSize(String msg)
+	private void ensureMaxSize(int length)
 	{
 		if (maxSize == 0)
 			return;
 		synchronized (this) {
-			if (logSize + getByteLength(msg) + lineSep > maxSize) {
+			if (logSize + length > maxSize) {
 				// remember used file name
 				final String fileName = file;
 				close();
@@ -303,13 +254,4 @@ public class LogFileWriter extends LogStreamWriter
 			}
 		}
 	}
-
-	private int getByteLength(String s)
-	{
-		if (byteEnc == 1)
-			return s.length();
-		if (byteEnc == 2)
-			return s.length() * 2;
-		return s.getBytes().length;
-	}
 }
@@ -43,6 +43,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Vector;
 
+import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
+
 /**
  * Global Manager for {@link LogService}s and {@link LogWriter}s.
  * <p>
@@ -51,6 +53,10 @@ import java.util.Vector;
  * A log service can be queried and removed. A log writer can be added (i.e. registered)
  * and removed, either to a particular log service or as a global log writer. A global log
  * writer will receive all logging output from all registered log services.
+ * <p>
+ * Log information offered by log services is buffered in a bounded queue, and handed to
+ * the log writers in batches by one dispatcher thread. The manager sets the policy used
+ * if that queue is full, see {@link #setOverflowPolicy(int)}.
  * 
  * @author B. Malinowsky
  * @see LogWriter
@@ -58,6 +64,30 @@ import java.util.Vector;
  */
 public final class LogManager
 {
+	/**
+	 * Overflow policy to block a log service until log information can be queued.
+	 * <p>
+	 * This is the default policy. No log information is lost, but a thread offering log
+	 * information is stalled while log writers fall behind. Note, that this also blocks
+	 * threads receiving KNX messages, which might cause timeouts and lost connections;
+	 * use a dropping policy if that is more important than complete logging output. Log
+	 * information offered by a log writer itself is dropped if the queue is full.
+	 */
+	public static final int BLOCK = 0;
+
+	/**
+	 * Overflow policy to drop the oldest queued log information to queue new log
+	 * information.
+	 * <p>
+	 * Offering log information never blocks.
+	 */
+	public static final int DROP_OLDEST = 1;
+
+	/**
+	 * Overflow policy to drop new log information if the queue is full.
+	 */
+	public static final int DROP = 2;
+
 	// TODO method to provide an easy, clean way to shutdown logging at the end of an
 	// application, i.e. remove all log-svcs, wait for dispatcher idle, return writers
 
@@ -212,6 +242,43 @@ public final class LogManager
 		return (LogWriter[]) writers.toArray(new LogWriter[writers.size()]);
 	}
 
+	/**
+	 * Sets the policy used by all log services if the queue of log information waiting
+	 * for dispatch to log writers is full.
+	 * <p>
+	 * 
+	 * @param policy one of {@link #BLOCK}, {@link #DROP_OLDEST} or {@link #DROP}
+	 */
+	public void setOverflowPolicy(int policy)
+	{
+		if (policy < BLOCK || policy > DROP)
+			throw new KNXIllegalArgumentException("unknown overflow policy " + policy);
+		LogService.setOverflowPolicy(policy);
+	}
+
+	/**
+	 * Returns the policy used if the log information queue is full.
+	 * <p>
+	 * 
+	 * @return the overflow policy
+	 * @see #setOverflowPolicy(int)
+	 */
+	public int getOverflowPolicy()
+	{
+		return LogService.getOverflowPolicy();
+	}
+
+	/**
+	 * Returns the number of log information entries dropped due to a full queue.
+	 * <p>
+	 * 
+	 * @return total number of dropped entries
+	 */
+	public long getDroppedMessages()
+	{
+		return LogService.getDroppedMessages();
+	}
+
 	private static final class ManagerHolder
 	{
 		static final LogManager mgr = new LogManager();
@@ -37,7 +37,14 @@
 package tuwien.auto.calimero.log;
 
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * A LogNetWriter is used to log information over a socket network connection.
@@ -46,17 +53,224 @@ import java.net.Socket;
  * connection is opened and used for further logging. After {@link #close()}ing the log
  * writer, it cannot be connected again.<br>
  * For output on the socket the platform's default character set is used.
+ * <p>
+ * Writing log information never blocks on the network connection. Formatted output is
+ * put into a bounded queue, and sent in batches by a background sender thread using a
+ * non-blocking socket channel. If the queue is full, output is dropped. If the
+ * connection is lost, the sender reconnects in the background, with the delay between
+ * connection attempts increasing up to {@link #MAX_RECONNECT_DELAY}; output queued
+ * while disconnected is sent after reconnecting, as long as it fits into the queue.
  * 
  * @author B. Malinowsky
  * @see Socket
  */
 public class LogNetWriter extends LogStreamWriter
 {
+	/**
+	 * Default capacity in bytes of the queue for output waiting to be sent.
+	 */
+	public static final int DEFAULT_QUEUE_SIZE = 64 * 1024;
+
+	/**
+	 * Maximum delay between reconnection attempts in milliseconds.
+	 */
+	public static final int MAX_RECONNECT_DELAY = 60000;
+
+	private static final int MIN_RECONNECT_DELAY = 500;
+	// time to send queued output on close
+	private static final int LINGER = 2000;
+
+	// bounded output queue, written by the log writer and read by the sender
+	private final class Queue implements WritableByteChannel
+	{
+		private ByteBuffer pending;
+		private boolean open = true;
+
+		Queue(int capacity)
+		{
+			pending = ByteBuffer.allocate(capacity);
+		}
+
+		public synchronized int write(ByteBuffer src)
+		{
+			final int length = src.remaining();
+			if (!open || pending.remaining() < length) {
+				dropped(src);
+				src.position(src.limit());
+				return length;
+			}
+			final boolean notify = pending.position() == 0;
+			pending.put(src);
+			if (notify)
+				notifyAll();
+			return length;
+		}
+
+		public synchronized boolean isOpen()
+		{
+			return open;
+		}
+
+		public synchronized void close()
+		{
+			open = false;
+			notifyAll();
+		}
+
+		// swaps the pending output with the empty buffer supplied, waits for output
+		synchronized ByteBuffer take(ByteBuffer empty, long timeout)
+			throws InterruptedException
+		{
+			if (pending.position() == 0 && open)
+				wait(timeout);
+			final ByteBuffer b = pending;
+			empty.clear();
+			pending = empty;
+			b.flip();
+			return b;
+		}
+
+		synchronized boolean isEmpty()
+		{
+			return pending.position() == 0;
+		}
+	}
+
+	private final class Sender extends Thread
+	{
+		private SocketChannel ch;
+		private Selector selector;
+		private ByteBuffer sending;
+		private volatile boolean quit;
+		private volatile long lingerEnd;
+
+		Sender(SocketChannel connected, int queueSize)
+		{
+			super("LogNetWriter " + remote);
+			setDaemon(true);
+			ch = connected;
+			sending = ByteBuffer.allocate(queueSize);
+			sending.flip();
+		}
+
+		public void run()
+		{
+			int delay = MIN_RECONNECT_DELAY;
+			try {
+				selector = Selector.open();
+				while (!quit || lingerEnd != 0 && System.currentTimeMillis() < lingerEnd) {
+					if (ch == null) {
+						if (quit)
+							break;
+						if (!connect()) {
+							Thread.sleep(delay);
+							delay = Math.min(2 * delay, MAX_RECONNECT_DELAY);
+							continue;
+						}
+						delay = MIN_RECONNECT_DELAY;
+					}
+					if (!sending.hasRemaining()) {
+						sending = queue.take(sending, quit ? 1 : 0);
+						if (!sending.hasRemaining() && (quit || !queue.isOpen()))
+							break;
+					}
+					if (sending.hasRemaining())
+						send();
+				}
+			}
+			catch (final InterruptedException e) {}
+			catch (final IOException e) {
+				getErrorHandler().error(LogNetWriter.this, "log sender", e);
+			}
+			finally {
+				dropped(sending);
+				disconnect();
+				try {
+					if (selector != null)
+						selector.close();
+				}
+				catch (final IOException e) {}
+			}
+		}
+
+		void quit(boolean linger)
+		{
+			lingerEnd = linger ? System.currentTimeMillis() + LINGER : 0;
+			quit = true;
+			if (!linger)
+				interrupt();
+		}
+
+		private void send() throws InterruptedException
+		{
+			try {
+				if (ch.write(sending) == 0) {
+					final SelectionKey key = ch.register(selector, SelectionKey.OP_WRITE);
+					selector.select(500);
+					key.interestOps(0);
+					selector.selectedKeys().clear();
+				}
+			}
+			catch (final IOException e) {
+				// output already taken from the queue is lost with the connection
+				dropped(sending);
+				disconnect();
+			}
+		}
+
+		private boolean connect() throws InterruptedException
+		{
+			SocketChannel c = null;
+			try {
+				c = SocketChannel.open();
+				c.configureBlocking(false);
+				if (!c.connect(remote)) {
+					final SelectionKey key = c.register(selector, SelectionKey.OP_CONNECT);
+					selector.select(MAX_RECONNECT_DELAY);
+					key.cancel();
+					selector.selectNow();
+					if (!c.finishConnect())
+						throw new IOException("connect timeout");
+				}
+				ch = c;
+				s = c.socket();
+				return true;
+			}
+			catch (final IOException e) {
+				try {
+					if (c != null)
+						c.close();
+				}
+				catch (final IOException ignore) {}
+				return false;
+			}
+		}
+
+		private void disconnect()
+		{
+			if (ch != null) {
+				try {
+					ch.close();
+				}
+				catch (final IOException e) {}
+				ch = null;
+			}
+		}
+	}
+
 	/**
 	 * Socket connection used as logging destination.
 	 * <p>
+	 * The socket is replaced on reconnection, and might be <code>null</code>.
 	 */
-	protected Socket s;
+	protected volatile Socket s;
+
+	private final InetSocketAddress remote;
+	private boolean closed;
+	private final Queue queue;
+	private final Sender sender;
+	private long droppedMsgs;
+	private long droppedBytes;
 
 	/**
 	 * Creates a log writer and opens a socket connection to destination <code>host</code>
@@ -73,13 +287,7 @@ public class LogNetWriter extends LogStreamWriter
 	 */
 	public LogNetWriter(String host, int port) throws KNXLogException
 	{
-		try {
-			s = new Socket(host, port);
-			createWriter(s.getOutputStream());
-		}
-		catch (final IOException e) {
-			throw new KNXLogException(e.getMessage());
-		}
+		this(host, port, DEFAULT_QUEUE_SIZE);
 	}
 
 	/**
@@ -101,6 +309,47 @@ public class LogNetWriter extends LogStreamWriter
 		setLogLevel(level);
 	}
 
+	/**
+	 * Creates a log writer with the specified output queue capacity, and opens a socket
+	 * connection to destination <code>host</code> and <code>port</code>.
+	 * <p>
+	 * 
+	 * @param host destination host name or IP address in textual presentation; if
+	 *        <code>null</code> or an empty string is specified, an address of the
+	 *        loopback interface is used
+	 * @param port destination port, 0 &lt;= port &lt;= 65535
+	 * @param queueSize capacity in bytes of the queue for output waiting to be sent
+	 * @throws KNXLogException if IP address of host could not be determined or socket
+	 *         binding / connecting failed
+	 */
+	public LogNetWriter(String host, int port, int queueSize) throws KNXLogException
+	{
+		SocketChannel ch = null;
+		try {
+			remote = new InetSocketAddress(InetAddress.getByName(host), port);
+			ch = SocketChannel.open(remote);
+			ch.configureBlocking(false);
+			s = ch.socket();
+		}
+		catch (final IOException e) {
+			try {
+				if (ch != null)
+					ch.close();
+			}
+			catch (final IOException ignore) {}
+			throw new KNXLogException(e.getMessage());
+		}
+		catch (final IllegalArgumentException e) {
+			throw new KNXLogException(e.getMessage());
+		}
+		queue = new Queue(queueSize);
+		setChannel(queue);
+		// hand over output to the queue once per write or batch
+		autoFlush = true;
+		sender = new Sender(ch, queueSize);
+		sender.start();
+	}
+
 	/**
 	 * Returns the remote host IP address of this log writer, or "" if the connection was
 	 * closed.
@@ -109,10 +358,9 @@ public class LogNetWriter extends LogStreamWriter
 	 * @return IP address as String
 	 * @see java.net.InetAddress#getHostAddress()
 	 */
-	public final String getHostAddress()
+	public final synchronized String getHostAddress()
 	{
-		final Socket socket = s;
-		return socket == null ? "" : socket.getInetAddress().getHostAddress();
+		return closed ? "" : remote.getAddress().getHostAddress();
 	}
 
 	/**
@@ -125,10 +373,9 @@ public class LogNetWriter extends LogStreamWriter
 	 * @return host name (or IP address) as String
 	 * @see java.net.InetAddress#getHostName()
 	 */
-	public final String getHostName()
+	public final synchronized String getHostName()
 	{
-		final Socket socket = s;
-		return socket == null ? "" : socket.getInetAddress().getHostName();
+		return closed ? "" : remote.getAddress().getHostName();
 	}
 
 	/**
@@ -137,24 +384,87 @@ public class LogNetWriter extends LogStreamWriter
 	 * 
 	 * @return port number as unsigned
 	 */
-	public final int getPort()
+	public final synchronized int getPort()
+	{
+		return closed ? 0 : remote.getPort();
+	}
+
+	/**
+	 * Returns whether the log writer is currently connected to the destination.
+	 * <p>
+	 * 
+	 * @return <code>true</code> if connected, <code>false</code> while reconnecting or
+	 *         if closed
+	 */
+	public final boolean isConnected()
 	{
 		final Socket socket = s;
-		return socket == null ? 0 : socket.getPort();
+		return socket != null && socket.isConnected() && !socket.isClosed();
+	}
+
+	/**
+	 * Returns the number of log messages dropped, either due to a full output queue or
+	 * due to a lost connection.
+	 * <p>
+	 * 
+	 * @return number of dropped messages
+	 */
+	public final synchronized long getDroppedMessages()
+	{
+		return droppedMsgs;
+	}
+
+	/**
+	 * Returns the number of output bytes dropped, either due to a full output queue or
+	 * due to a lost connection.
+	 * <p>
+	 * 
+	 * @return number of dropped bytes
+	 */
+	public final synchronized long getDroppedBytes()
+	{
+		return droppedBytes;
 	}
 
-	/* (non-Javadoc)
+	/**
+	 * Closes the log writer; queued output is sent for a short time before the
+	 * connection is closed.
+	 * <p>
+	 * 
 	 * @see tuwien.auto.calimero.log.LogStreamWriter#close()
 	 */
-	public synchronized void close()
+	public void close()
 	{
-		if (s != null) {
+		synchronized (this) {
+			if (closed)
+				return;
+			closed = true;
+			// moves buffered output into the queue and closes it
 			super.close();
-			try {
-				s.close();
-			}
-			catch (final IOException e) {}
-			s = null;
+		}
+		sender.quit(true);
+		try {
+			sender.join(LINGER + 500);
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		sender.quit(false);
+		s = null;
+	}
+
+	// counts the messages (lines) of dropped output
+	private void dropped(ByteBuffer buf)
+	{
+		int lines = 0;
+		final int length = buf.remaining();
+		for (int i = buf.position(); i < buf.limit(); ++i)
+			if (buf.get(i) == '\n')
+				++lines;
+		buf.position(buf.limit());
+		synchronized (this) {
+			droppedBytes += length;
+			droppedMsgs += lines;
 		}
 	}
 }
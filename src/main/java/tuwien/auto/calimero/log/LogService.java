@@ -37,7 +37,6 @@
 package tuwien.auto.calimero.log;
 
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Vector;
 
@@ -56,6 +55,12 @@ import java.util.Vector;
  * distinguishes log information by source.<br> - A LogService may be created for a
  * particular subject, i.e. to divide information into topics.<br>
  * A log service may restrict offered information through its own log level.<br> - ...
+ * <p>
+ * For log information which is expensive to build, {@link #isEnabled(LogLevel)} allows
+ * a cheap check whether the information would be offered to any writer at all. The
+ * parameterized methods, like {@link #trace(String, Object[])}, do that check before
+ * formatting the message, with each <code>{}</code> in the message format replaced by
+ * the next argument.
  * 
  * @author B. Malinowsky
  * @see LogLevel
@@ -66,32 +71,45 @@ public class LogService
 	// NOTE: log dispatcher is a daemon thread and never closed explicitly
 	private static final class Dispatcher extends Thread
 	{
-		private static final class LogData
+		// slot of the ring buffer, reused for every log entry stored in that slot
+		private static final class Record
 		{
-			final List wr;
-			final String svc;
-			final LogLevel lvl;
-			final String msg;
-			final Throwable trow;
-
-			LogData(List writers, String service, LogLevel level, String message,
-				Throwable t)
-			{
-				wr = writers;
-				svc = service;
-				lvl = level;
-				msg = message;
-				trow = t;
-			}
+			List wr;
+			String svc;
+			LogLevel lvl;
+			String msg;
+			Throwable trow;
+
+			Record()
+			{}
 		}
 
-		private final List data = new LinkedList();
+		// maximum number of queued records
+		private static final int CAPACITY = 1024;
+
+		// ring buffer, with one slot left unused to distinguish full from empty; the
+		// records from head (inclusive) to tail (exclusive) are queued, guarded by this
+		private final Record[] records = new Record[CAPACITY + 1];
+		private int head;
+		private int tail;
+		private int policy = LogManager.BLOCK;
+		private long dropped;
+
+		// batch of records with the same writer list taken from the ring buffer, only
+		// accessed by the dispatcher thread
+		private final String[] svc = new String[CAPACITY];
+		private final LogLevel[] lvl = new LogLevel[CAPACITY];
+		private final String[] msg = new String[CAPACITY];
+		private final Throwable[] trow = new Throwable[CAPACITY];
+
 		private volatile boolean quit;
 
 		Dispatcher()
 		{
 			super("Log dispatcher");
 			setDaemon(true);
+			for (int i = 0; i < records.length; ++i)
+				records[i] = new Record();
 			start();
 		}
 
@@ -99,33 +117,73 @@ public class LogService
 		{
 			while (!quit) {
 				try {
-					LogData d;
-					synchronized (data) {
-						while (data.isEmpty())
-							data.wait();
-						d = (LogData) data.remove(0);
+					synchronized (this) {
+						while (head == tail)
+							wait();
 					}
-					dispatch(d);
+					dispatch();
 				}
 				catch (final InterruptedException ignore) {}
 			}
-			// empty log data list
-			synchronized (data) {
-				while (!data.isEmpty())
-					dispatch((LogData) data.remove(0));
-			}
+			// empty log data buffer
+			boolean queued = true;
+			while (queued)
+				queued = dispatch();
 		}
 
-		void add(List writers, String service, LogLevel level, String msg, Throwable t)
+		void add(List writers, String service, LogLevel level, String message, Throwable t)
 		{
-			if (!quit) {
-				synchronized (data) {
-					data.add(new LogData(writers, service, level, msg, t));
-					data.notify();
+			if (quit)
+				return;
+			synchronized (this) {
+				if (next(tail) == head) {
+					if (policy == LogManager.BLOCK && currentThread() != this) {
+						try {
+							while (next(tail) == head && !quit)
+								wait();
+						}
+						catch (final InterruptedException e) {
+							currentThread().interrupt();
+						}
+					}
+					else if (policy == LogManager.DROP_OLDEST) {
+						clear(records[head]);
+						head = next(head);
+						++dropped;
+					}
+					if (next(tail) == head) {
+						++dropped;
+						return;
+					}
 				}
+				final Record r = records[tail];
+				r.wr = writers;
+				r.svc = service;
+				r.lvl = level;
+				r.msg = message;
+				r.trow = t;
+				if (head == tail)
+					notifyAll();
+				tail = next(tail);
 			}
 		}
 
+		synchronized void setPolicy(int overflowPolicy)
+		{
+			policy = overflowPolicy;
+			notifyAll();
+		}
+
+		synchronized int getPolicy()
+		{
+			return policy;
+		}
+
+		synchronized long getDropped()
+		{
+			return dropped;
+		}
+
 		void quit()
 		{
 			quit = true;
@@ -138,21 +196,78 @@ public class LogService
 			}
 		}
 
-		private void dispatch(LogData d)
+		// takes the queued records with the writer list of the oldest record, and
+		// offers them to those writers; returns false if no record was queued
+		private boolean dispatch()
 		{
-			synchronized (d.wr) {
-				for (final Iterator i = d.wr.iterator(); i.hasNext();)
-					((LogWriter) i.next()).write(d.svc, d.lvl, d.msg, d.trow);
+			final List wr;
+			int n = 0;
+			synchronized (this) {
+				if (head == tail)
+					return false;
+				final boolean full = next(tail) == head;
+				wr = records[head].wr;
+				while (head != tail && records[head].wr == wr) {
+					final Record r = records[head];
+					svc[n] = r.svc;
+					lvl[n] = r.lvl;
+					msg[n] = r.msg;
+					trow[n] = r.trow;
+					++n;
+					clear(r);
+					head = next(head);
+				}
+				if (full)
+					notifyAll();
+			}
+			// writer lists are vectors, and locked during modification
+			synchronized (wr) {
+				for (final Iterator i = wr.iterator(); i.hasNext();) {
+					final LogWriter w = (LogWriter) i.next();
+					try {
+						w.write(svc, lvl, msg, trow, n);
+					}
+					catch (final RuntimeException e) {
+						LogWriter.getErrorHandler().error(w, "on write", e);
+					}
+				}
 			}
+			for (int k = 0; k < n; ++k) {
+				svc[k] = null;
+				lvl[k] = null;
+				msg[k] = null;
+				trow[k] = null;
+			}
+			return true;
+		}
+
+		private int next(int index)
+		{
+			return (index + 1) % records.length;
+		}
+
+		private static void clear(Record r)
+		{
+			r.wr = null;
+			r.svc = null;
+			r.lvl = null;
+			r.msg = null;
+			r.trow = null;
 		}
 	}
 
 	private static final Dispatcher logger = new Dispatcher();
 
+	// incremented on every change of a writer log level
+	private static volatile int writerLevelChanges;
+
 	/** Name of this log service. */
 	protected final String name;
 	private LogLevel logLevel = LogLevel.ALL;
 	private List writers = new Vector();
+	// most verbose level of all writers, valid for the stored count of level changes
+	private volatile int writerLevel = -1;
+	private volatile int levelChanges = -1;
 
 	/**
 	 * Creates a new log service with the specified <code>name</code>.
@@ -227,6 +342,7 @@ public class LogService
 	public void addWriter(LogWriter writer)
 	{
 		writers.add(writer);
+		updateWriterLevel();
 	}
 
 	/**
@@ -239,6 +355,7 @@ public class LogService
 	public void removeWriter(LogWriter writer)
 	{
 		writers.remove(writer);
+		updateWriterLevel();
 	}
 
 	/**
@@ -255,6 +372,26 @@ public class LogService
 					((LogWriter) i.next()).close();
 			}
 		writers = new Vector();
+		updateWriterLevel();
+	}
+
+	/**
+	 * Returns whether log information of the specified <code>level</code> is offered by
+	 * this log service and accepted by at least one of its writers.
+	 * <p>
+	 * Use this method to avoid building log information which is dropped anyway.
+	 * 
+	 * @param level log level to check
+	 * @return <code>true</code> if information of that level gets written,
+	 *         <code>false</code> otherwise
+	 */
+	public boolean isEnabled(LogLevel level)
+	{
+		if (level == LogLevel.OFF || level.level > logLevel.level)
+			return false;
+		if (levelChanges != writerLevelChanges)
+			updateWriterLevel();
+		return level.level <= writerLevel;
 	}
 
 	/**
@@ -268,6 +405,56 @@ public class LogService
 		log(LogLevel.TRACE, msg);
 	}
 
+	/**
+	 * Offers a message with log level {@link LogLevel#TRACE}, formatted only if that
+	 * level is enabled.
+	 * <p>
+	 * 
+	 * @param format message format, each <code>{}</code> is replaced by the next
+	 *        argument
+	 * @param args message arguments
+	 * @see #log(LogLevel, String, Object[], Throwable)
+	 */
+	public void trace(String format, Object... args)
+	{
+		log(LogLevel.TRACE, format, args, null);
+	}
+
+	/**
+	 * Offers a message with one argument with log level {@link LogLevel#TRACE}, formatted
+	 * only if that level is enabled.
+	 * <p>
+	 * Unlike {@link #trace(String, Object[])}, no argument array is created if the level
+	 * is disabled.
+	 * 
+	 * @param format message format, the first <code>{}</code> is replaced by
+	 *        <code>arg</code>
+	 * @param arg message argument
+	 */
+	public void trace(String format, Object arg)
+	{
+		if (isEnabled(LogLevel.TRACE))
+			log(LogLevel.TRACE, format, new Object[] { arg }, null);
+	}
+
+	/**
+	 * Offers a message with two arguments with log level {@link LogLevel#TRACE},
+	 * formatted only if that level is enabled.
+	 * <p>
+	 * Unlike {@link #trace(String, Object[])}, no argument array is created if the level
+	 * is disabled.
+	 * 
+	 * @param format message format, each <code>{}</code> is replaced by the next
+	 *        argument
+	 * @param arg1 first message argument
+	 * @param arg2 second message argument
+	 */
+	public void trace(String format, Object arg1, Object arg2)
+	{
+		if (isEnabled(LogLevel.TRACE))
+			log(LogLevel.TRACE, format, new Object[] { arg1, arg2 }, null);
+	}
+
 	/**
 	 * Offers <code>msg</code> with log level {@link LogLevel#INFO}.
 	 * <p>
@@ -279,6 +466,56 @@ public class LogService
 		log(LogLevel.INFO, msg);
 	}
 
+	/**
+	 * Offers a message with log level {@link LogLevel#INFO}, formatted only if that
+	 * level is enabled.
+	 * <p>
+	 * 
+	 * @param format message format, each <code>{}</code> is replaced by the next
+	 *        argument
+	 * @param args message arguments
+	 * @see #log(LogLevel, String, Object[], Throwable)
+	 */
+	public void info(String format, Object... args)
+	{
+		log(LogLevel.INFO, format, args, null);
+	}
+
+	/**
+	 * Offers a message with one argument with log level {@link LogLevel#INFO}, formatted
+	 * only if that level is enabled.
+	 * <p>
+	 * Unlike {@link #info(String, Object[])}, no argument array is created if the level
+	 * is disabled.
+	 * 
+	 * @param format message format, the first <code>{}</code> is replaced by
+	 *        <code>arg</code>
+	 * @param arg message argument
+	 */
+	public void info(String format, Object arg)
+	{
+		if (isEnabled(LogLevel.INFO))
+			log(LogLevel.INFO, format, new Object[] { arg }, null);
+	}
+
+	/**
+	 * Offers a message with two arguments with log level {@link LogLevel#INFO},
+	 * formatted only if that level is enabled.
+	 * <p>
+	 * Unlike {@link #info(String, Object[])}, no argument array is created if the level
+	 * is disabled.
+	 * 
+	 * @param format message format, each <code>{}</code> is replaced by the next
+	 *        argument
+	 * @param arg1 first message argument
+	 * @param arg2 second message argument
+	 */
+	public void info(String format, Object arg1, Object arg2)
+	{
+		if (isEnabled(LogLevel.INFO))
+			log(LogLevel.INFO, format, new Object[] { arg1, arg2 }, null);
+	}
+
 	/**
 	 * Offers <code>msg</code> with log level {@link LogLevel#WARN}.
 	 * <p>
@@ -290,6 +527,56 @@ public class LogService
 		log(LogLevel.WARN, msg);
 	}
 
+	/**
+	 * Offers a message with log level {@link LogLevel#WARN}, formatted only if that
+	 * level is enabled.
+	 * <p>
+	 * 
+	 * @param format message format, each <code>{}</code> is replaced by the next
+	 *        argument
+	 * @param args message arguments
+	 * @see #log(LogLevel, String, Object[], Throwable)
+	 */
+	public void warn(String format, Object... args)
+	{
+		log(LogLevel.WARN, format, args, null);
+	}
+
+	/**
+	 * Offers a message with one argument with log level {@link LogLevel#WARN}, formatted
+	 * only if that level is enabled.
+	 * <p>
+	 * Unlike {@link #warn(String, Object[])}, no argument array is created if the level
+	 * is disabled.
+	 * 
+	 * @param format message format, the first <code>{}</code> is replaced by
+	 *        <code>arg</code>
+	 * @param arg message argument
+	 */
+	public void warn(String format, Object arg)
+	{
+		if (isEnabled(LogLevel.WARN))
+			log(LogLevel.WARN, format, new Object[] { arg }, null);
+	}
+
+	/**
+	 * Offers a message with two arguments with log level {@link LogLevel#WARN},
+	 * formatted only if that level is enabled.
+	 * <p>
+	 * Unlike {@link #warn(String, Object[])}, no argument array is created if the level
+	 * is disabled.
+	 * 
+	 * @param format message format, each <code>{}</code> is replaced by the next
+	 *        argument
+	 * @param arg1 first message argument
+	 * @param arg2 second message argument
+	 */
+	public void warn(String format, Object arg1, Object arg2)
+	{
+		if (isEnabled(LogLevel.WARN))
+			log(LogLevel.WARN, format, new Object[] { arg1, arg2 }, null);
+	}
+
 	/**
 	 * Offers <code>msg</code> and the <code>throwable</code> object with log level
 	 * {@link LogLevel#WARN}.
@@ -360,7 +647,7 @@ public class LogService
 	 */
 	public void log(LogLevel level, String msg)
 	{
-		if (level != LogLevel.OFF && level.level <= logLevel.level)
+		if (isEnabled(level))
 			logger.add(writers, name, level, msg, null);
 	}
 
@@ -375,10 +662,93 @@ public class LogService
 	 */
 	public void log(LogLevel level, String msg, Throwable t)
 	{
-		if (level != LogLevel.OFF && level.level <= logLevel.level)
+		if (isEnabled(level))
 			logger.add(writers, name, level, msg, t);
 	}
+
+	/**
+	 * Offers a message and the <code>throwable</code> object with log
+	 * <code>level</code>, the message is only formatted if {@link #isEnabled(LogLevel)}
+	 * returns <code>true</code> for <code>level</code>.
+	 * <p>
+	 * Each occurrence of <code>{}</code> in <code>format</code> is replaced by the string
+	 * representation of the next argument, byte arrays are represented as hexadecimal
+	 * values separated by space. Surplus placeholders are left unchanged.
+	 * 
+	 * @param level log level for this message and throwable
+	 * @param format message format
+	 * @param args message arguments
+	 * @param t throwable object, might be <code>null</code>
+	 */
+	public void log(LogLevel level, String format, Object[] args, Throwable t)
+	{
+		if (!isEnabled(level))
+			return;
+		final StringBuffer buf = new StringBuffer(format.length() + 16 * args.length);
+		int arg = 0;
+		int start = 0;
+		for (int i = format.indexOf("{}"); i != -1 && arg < args.length; i = format
+			.indexOf("{}", start)) {
+			buf.append(format.substring(start, i));
+			append(buf, args[arg++]);
+			start = i + 2;
+		}
+		buf.append(format.substring(start));
+		logger.add(writers, name, level, buf.toString(), t);
+	}
 	
+	private static void append(StringBuffer buf, Object arg)
+	{
+		if (arg instanceof byte[]) {
+			final byte[] data = (byte[]) arg;
+			for (int i = 0; i < data.length; ++i) {
+				if (i > 0)
+					buf.append(' ');
+				final int b = data[i] & 0xff;
+				if (b < 0x10)
+					buf.append('0');
+				buf.append(Integer.toHexString(b));
+			}
+		}
+		else
+			buf.append(arg);
+	}
+
+	static synchronized void writerLevelChanged()
+	{
+		++writerLevelChanges;
+	}
+
+	static void setOverflowPolicy(int policy)
+	{
+		logger.setPolicy(policy);
+	}
+
+	static int getOverflowPolicy()
+	{
+		return logger.getPolicy();
+	}
+
+	static long getDroppedMessages()
+	{
+		return logger.getDropped();
+	}
+
+	// recomputes the most verbose writer level, the count of level changes is read
+	// first, so a change during the update triggers another update
+	private synchronized void updateWriterLevel()
+	{
+		final int changes = writerLevelChanges;
+		int max = -1;
+		final List l = writers;
+		synchronized (l) {
+			for (final Iterator i = l.iterator(); i.hasNext();)
+				max = Math.max(max, ((LogWriter) i.next()).logLevel.level);
+		}
+		writerLevel = max;
+		levelChanges = changes;
+	}
+
 	/* (non-Javadoc)
 	 * @see java.lang.Object#toString()
 	 */
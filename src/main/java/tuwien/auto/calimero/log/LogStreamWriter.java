@@ -36,11 +36,18 @@
 
 package tuwien.auto.calimero.log;
 
-import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.util.Calendar;
 
 /**
@@ -53,12 +60,24 @@ import java.util.Calendar;
  * Using <code>autoFlush = true</code> in the constructor ensures that no data buffering
  * will delay the output. Note that this may degrade performance.<br>
  * For occasional flushing use {@link #flush()} manually.
+ * <p>
+ * If created with an output stream, output lines are formatted into reusable buffers,
+ * and encoded using the platform's default character set directly into a byte buffer
+ * written to a channel of the stream, no intermediate strings are created. The
+ * date/time prefix of the output is recomputed only once per second.
  * 
  * @author B. Malinowsky
  */
 public class LogStreamWriter extends LogWriter
 {
-	/** Calendar used to generate date/time of logged output message. */
+	/**
+	 * Calendar formerly used to generate date/time of logged output message.
+	 * <p>
+	 * 
+	 * @deprecated no longer used by this writer, which formats date/time with its own
+	 *             calendar instance; shared use of this calendar was not thread-safe
+	 */
+	@Deprecated
 	protected static final Calendar c = Calendar.getInstance();
 
 	/**
@@ -81,6 +100,22 @@ public class LogStreamWriter extends LogWriter
 	boolean autoFlush;
 	private Writer out;
 
+	// output using a byte channel
+	private OutputStream stream;
+	private WritableByteChannel channel;
+	private ByteBuffer bytes;
+	// one encoded output line
+	private ByteBuffer line;
+	private CharBuffer chars;
+	private CharsetEncoder encoder;
+
+	// true if a subtype overrides formatOutput(String, LogLevel, String, Throwable)
+	private final boolean customFormat;
+	private final Calendar cal = Calendar.getInstance();
+	// date/time prefix "YYYY-MM-DD hh:mm:ss," of the current second
+	private final char[] prefix = new char[20];
+	private long second = -1;
+
 	/**
 	 * Sets line separator; also called by subtypes creating the output stream on their
 	 * own.
@@ -93,6 +128,7 @@ public class LogStreamWriter extends LogWriter
 		catch (final SecurityException e) {}
 		if (lineSep == null)
 			lineSep = "\n";
+		customFormat = overridesFormat(getClass());
 	}
 
 	/**
@@ -156,18 +192,48 @@ public class LogStreamWriter extends LogWriter
 		doWrite(logService, level, msg, t);
 	}
 
+	/**
+	 * Writes a batch of messages, with output flushed at most once per batch.
+	 * <p>
+	 * 
+	 * @see tuwien.auto.calimero.log.LogWriter#write(java.lang.String[],
+	 *      tuwien.auto.calimero.log.LogLevel[], java.lang.String[],
+	 *      java.lang.Throwable[], int)
+	 */
+	public void write(String[] logService, LogLevel[] level, String[] msg, Throwable[] t,
+		int count)
+	{
+		synchronized (this) {
+			final boolean flush = autoFlush;
+			autoFlush = false;
+			try {
+				super.write(logService, level, msg, t, count);
+			}
+			finally {
+				autoFlush = flush;
+			}
+			if (flush)
+				flush();
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see tuwien.auto.calimero.log.LogWriter#flush()
 	 */
 	public synchronized void flush()
 	{
-		if (out != null)
-			try {
+		try {
+			if (out != null)
 				out.flush();
+			else if (channel != null) {
+				drain();
+				if (stream != null && !(stream instanceof FileOutputStream))
+					stream.flush();
 			}
-			catch (final IOException e) {
-				getErrorHandler().error(this, "on flush", e);
-			}
+		}
+		catch (final IOException e) {
+			getErrorHandler().error(this, "on flush", e);
+		}
 	}
 
 	/* (non-Javadoc)
@@ -182,6 +248,23 @@ public class LogStreamWriter extends LogWriter
 			catch (final IOException e) {}
 			out = null;
 		}
+		if (channel != null) {
+			try {
+				drain();
+			}
+			catch (final IOException e) {
+				getErrorHandler().error(this, "on close", e);
+			}
+			try {
+				if (stream != null)
+					stream.close();
+				else
+					channel.close();
+			}
+			catch (final IOException e) {}
+			channel = null;
+			stream = null;
+		}
 	}
 
 	/**
@@ -194,6 +277,8 @@ public class LogStreamWriter extends LogWriter
 	protected final void setOutput(Writer w)
 	{
 		out = w;
+		channel = null;
+		stream = null;
 	}
 
 	/**
@@ -207,7 +292,8 @@ public class LogStreamWriter extends LogWriter
 	 */
 	protected boolean logAllowed(LogLevel level)
 	{
-		if (out == null || level == LogLevel.OFF || level.higher(logLevel))
+		if (out == null && channel == null || level == LogLevel.OFF
+			|| level.higher(logLevel))
 			return false;
 		return true;
 	}
@@ -237,39 +323,45 @@ public class LogStreamWriter extends LogWriter
 	 */
 	protected String formatOutput(String svc, LogLevel l, String msg, Throwable t)
 	{
-		// ??? for more severe output levels, a formatting routine which
-		// uses (part of) the throwable stack trace would be of advantage
-		final StringBuffer b = new StringBuffer(150);
-		synchronized (c) {
-			c.setTimeInMillis(System.currentTimeMillis());
-			b.append(c.get(Calendar.YEAR));
-			b.append('-').append(pad2Digits(c.get(Calendar.MONTH) + 1));
-			b.append('-').append(pad2Digits(c.get(Calendar.DAY_OF_MONTH)));
-			b.append(' ').append(pad2Digits(c.get(Calendar.HOUR_OF_DAY)));
-			b.append(':').append(pad2Digits(c.get(Calendar.MINUTE)));
-			b.append(':').append(pad2Digits(c.get(Calendar.SECOND)));
-			final int ms = c.get(Calendar.MILLISECOND);
-			b.append(',');
-			if (ms < 99)
-				b.append('0');
-			b.append(pad2Digits(ms));
+		synchronized (this) {
+			format(System.currentTimeMillis(), svc, l, msg, t != null ? t.getMessage()
+				: null);
+			chars.flip();
+			return chars.toString();
 		}
-		b.append(" level=").append(l.toString());
-		b.append(", ");
-		final int dot = svc.lastIndexOf('.') + 1;
-		if (dot > 0 && dot < svc.length() && Character.isDigit(svc.charAt(dot)))
-			b.append(svc);
-		else
-			b.append(svc.substring(dot));
-		b.append(": ").append(msg);
-		if (t != null && t.getMessage() != null)
-			b.append(" (").append(t.getMessage()).append(")");
-		return b.toString();
 	}
 
+	/**
+	 * Called with the encoded byte length of an output line, before the line is written
+	 * to the output channel.
+	 * <p>
+	 * Only used for output written to a byte channel, i.e., if this writer was created
+	 * using an output stream.
+	 * 
+	 * @param length number of bytes of the output line, including the line separator
+	 */
+	void beforeOutput(int length)
+	{}
+
 	void createWriter(OutputStream os)
 	{
-		setOutput(new BufferedWriter(new OutputStreamWriter(os), 512));
+		setChannel(os instanceof FileOutputStream ? ((FileOutputStream) os).getChannel()
+			: Channels.newChannel(os));
+		stream = os;
+	}
+
+	// sets the byte channel used for output, the channel is closed by close()
+	void setChannel(WritableByteChannel ch)
+	{
+		out = null;
+		stream = null;
+		channel = ch;
+		if (bytes == null) {
+			bytes = ByteBuffer.allocate(8192);
+			line = ByteBuffer.allocate(256);
+			encoder = Charset.defaultCharset().newEncoder().onMalformedInput(
+				CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
 	}
 
 	private synchronized void doWrite(String logService, LogLevel level, String msg,
@@ -277,10 +369,24 @@ public class LogStreamWriter extends LogWriter
 	{
 		if (logAllowed(level))
 			try {
-				out.write(formatOutput ? formatOutput(logService, level, msg, t) : msg);
-				out.write(lineSep);
-				if (autoFlush)
-					out.flush();
+				if (channel != null) {
+					if (customFormat || !formatOutput) {
+						final String s = formatOutput ? formatOutput(logService, level, msg,
+							t) : msg;
+						newLine();
+						append(s);
+					}
+					else
+						format(System.currentTimeMillis(), logService, level, msg,
+							t != null ? t.getMessage() : null);
+					output();
+				}
+				else {
+					out.write(formatOutput ? formatOutput(logService, level, msg, t) : msg);
+					out.write(lineSep);
+					if (autoFlush)
+						out.flush();
+				}
 			}
 			catch (final Exception e) {
 				// IOException and RuntimeException
@@ -288,8 +394,176 @@ public class LogStreamWriter extends LogWriter
 			}
 	}
 
-	private static String pad2Digits(int i)
+	/**
+	 * Writes log information recorded at <code>time</code>, using the default output
+	 * format.
+	 * <p>
+	 * Used to convert log information stored by other log writers into text output.
+	 * Only supported if this writer was created using an output stream.
+	 * 
+	 * @param time time stamp of the log information in milliseconds since the epoch
+	 * @param svc name of the log service the message comes from
+	 * @param l log level of message
+	 * @param msg message to format
+	 * @param detail message of a throwable object, might be <code>null</code>
+	 */
+	synchronized void write(long time, String svc, LogLevel l, String msg, String detail)
 	{
-		return i > 9 ? Integer.toString(i) : "0" + Integer.toString(i);
+		if (logAllowed(l) && channel != null)
+			try {
+				format(time, svc, l, msg, detail);
+				output();
+			}
+			catch (final Exception e) {
+				getErrorHandler().error(this, "on write", e);
+			}
+	}
+
+	// encodes the char buffer with an appended line separator and outputs it
+	private void output() throws IOException
+	{
+		append(lineSep);
+		chars.flip();
+		encode();
+		beforeOutput(line.remaining());
+		if (channel != null) {
+			if (line.remaining() > bytes.remaining())
+				drain();
+			if (line.remaining() > bytes.remaining())
+				write(line);
+			else
+				bytes.put(line);
+			if (autoFlush)
+				drain();
+		}
+	}
+
+	// formats the output into the char buffer, see formatOutput
+	private void format(long now, String svc, LogLevel l, String msg, String detail)
+	{
+		newLine();
+		if (now / 1000 != second) {
+			second = now / 1000;
+			cal.setTimeInMillis(now);
+			int i = put4Digits(cal.get(Calendar.YEAR), 0);
+			prefix[i++] = '-';
+			i = put2Digits(cal.get(Calendar.MONTH) + 1, i);
+			prefix[i++] = '-';
+			i = put2Digits(cal.get(Calendar.DAY_OF_MONTH), i);
+			prefix[i++] = ' ';
+			i = put2Digits(cal.get(Calendar.HOUR_OF_DAY), i);
+			prefix[i++] = ':';
+			i = put2Digits(cal.get(Calendar.MINUTE), i);
+			prefix[i++] = ':';
+			i = put2Digits(cal.get(Calendar.SECOND), i);
+			prefix[i] = ',';
+		}
+		chars.put(prefix);
+		final int ms = (int) (now % 1000);
+		chars.put((char) ('0' + ms / 100)).put((char) ('0' + ms / 10 % 10)).put(
+			(char) ('0' + ms % 10));
+		append(" level=");
+		append(l.toString());
+		append(", ");
+		final int dot = svc.lastIndexOf('.') + 1;
+		if (dot > 0 && dot < svc.length() && Character.isDigit(svc.charAt(dot)))
+			append(svc);
+		else
+			append(svc, dot);
+		append(": ");
+		append(String.valueOf(msg));
+		if (detail != null) {
+			append(" (");
+			append(detail);
+			append(")");
+		}
+	}
+
+	private void append(String s)
+	{
+		append(s, 0);
+	}
+
+	private void append(String s, int offset)
+	{
+		final int space = s.length() - offset;
+		if (chars.remaining() < space) {
+			final CharBuffer b = CharBuffer.allocate(Math.max(chars.capacity() * 2, chars
+				.position() + space));
+			chars.flip();
+			chars = b.put(chars);
+		}
+		chars.put(s, offset, s.length());
+	}
+
+	private void newLine()
+	{
+		if (chars == null)
+			chars = CharBuffer.allocate(256);
+		chars.clear();
+	}
+
+	// encodes the char buffer into the line buffer, growing the line buffer as necessary
+	private void encode()
+	{
+		line.clear();
+		encoder.reset();
+		CoderResult r = encoder.encode(chars, line, true);
+		for (; r.isOverflow(); r = encoder.encode(chars, line, true))
+			growLine();
+		for (r = encoder.flush(line); r.isOverflow(); r = encoder.flush(line))
+			growLine();
+		line.flip();
+	}
+
+	private void growLine()
+	{
+		final ByteBuffer b = ByteBuffer.allocate(line.capacity() * 2);
+		line.flip();
+		line = b.put(line);
+	}
+
+	private void drain() throws IOException
+	{
+		bytes.flip();
+		write(bytes);
+		bytes.clear();
+	}
+
+	private void write(ByteBuffer buf) throws IOException
+	{
+		while (buf.hasRemaining())
+			channel.write(buf);
+	}
+
+	private int put2Digits(int value, int offset)
+	{
+		prefix[offset] = (char) ('0' + value / 10);
+		prefix[offset + 1] = (char) ('0' + value % 10);
+		return offset + 2;
+	}
+
+	private int put4Digits(int value, int offset)
+	{
+		put2Digits(value / 100, offset);
+		return put2Digits(value % 100, offset + 2);
+	}
+
+	private static boolean overridesFormat(Class c)
+	{
+		final Class[] params = { String.class, LogLevel.class, String.class,
+			Throwable.class };
+		try {
+			for (; c != LogStreamWriter.class; c = c.getSuperclass())
+				try {
+					c.getDeclaredMethod("formatOutput", params);
+					return true;
+				}
+				catch (final NoSuchMethodException e) {}
+		}
+		catch (final SecurityException e) {
+			return true;
+		}
+		return false;
 	}
 }
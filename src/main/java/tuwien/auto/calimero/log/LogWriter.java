@@ -86,6 +86,7 @@ public abstract class LogWriter
 	public final void setLogLevel(LogLevel level)
 	{
 		logLevel = level;
+		LogService.writerLevelChanged();
 	}
 
 	/**
@@ -124,6 +125,29 @@ public abstract class LogWriter
 	 */
 	public abstract void write(String logService, LogLevel level, String msg, Throwable t);
 
+	/**
+	 * Writes a batch of messages out to this LogWriter.
+	 * <p>
+	 * Message <code>i</code> of the batch consists of the entries at index
+	 * <code>i</code> of the supplied arrays, with 0 &lt;= i &lt; <code>count</code>.
+	 * The arrays are owned by the caller and reused after this method returns.<br>
+	 * By default, {@link #write(String, LogLevel, String, Throwable)} is called for each
+	 * message. Subtypes might override this method to reduce per message overhead, for
+	 * example to flush buffered output only once per batch.
+	 * 
+	 * @param logService log service names stating the sources of the messages
+	 * @param level log levels of the messages
+	 * @param msg the messages to write
+	 * @param t Throwable objects, entries might be <code>null</code>
+	 * @param count number of messages in the batch
+	 */
+	public void write(String[] logService, LogLevel[] level, String[] msg, Throwable[] t,
+		int count)
+	{
+		for (int i = 0; i < count; ++i)
+			write(logService[i], level[i], msg[i], t[i]);
+	}
+
 	/**
 	 * Flushes all buffered output.
 	 */
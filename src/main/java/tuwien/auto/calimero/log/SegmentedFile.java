@@ -0,0 +1,239 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A sequence of memory-mapped segment files of fixed size, used by writers appending
+ * records to segment files.
+ * <p>
+ * Segment files are named <code>file.0</code>, <code>file.1</code>, and so on. On
+ * creation, the sequence continues with a new segment after existing segments with the
+ * same file name. If a maximum number of segments is set, the oldest segments are
+ * deleted whenever a segment is opened.<br>
+ * The format of a segment is up to its writer, a segment file is mapped in whole with
+ * its content initialized to zero.
+ * <p>
+ * This class is not thread-safe, a writer synchronizes access itself.
+ * 
+ * @author B. Malinowsky
+ * @see LogBinaryFileWriter
+ */
+public final class SegmentedFile
+{
+	private final String file;
+	private final int segmentSize;
+	private final int maxSegments;
+
+	private int segment;
+	private int firstSegment;
+	private FileChannel channel;
+	private MappedByteBuffer buf;
+
+	/**
+	 * Creates a sequence of segment files, the first segment is opened with
+	 * {@link #open()}.
+	 * <p>
+	 * 
+	 * @param file base file name of the segment files, the path to the file has to
+	 *        exist
+	 * @param segmentSize size of one segment file in bytes
+	 * @param maxSegments maximum number of segment files kept, older segments are
+	 *        deleted; use 0 for no limit
+	 */
+	public SegmentedFile(String file, int segmentSize, int maxSegments)
+	{
+		this.file = file;
+		this.segmentSize = segmentSize;
+		this.maxSegments = Math.max(0, maxSegments);
+		final int[] existing = segments(file);
+		firstSegment = existing.length > 0 ? existing[0] : 0;
+		segment = existing.length > 0 ? existing[existing.length - 1] + 1 : 0;
+	}
+
+	/**
+	 * Returns the file name of a segment.
+	 * <p>
+	 * 
+	 * @param file base file name of the segment files
+	 * @param segment segment number
+	 * @return the segment file name
+	 */
+	public static String segmentFile(String file, int segment)
+	{
+		return file + "." + segment;
+	}
+
+	/**
+	 * Returns the existing segment numbers of segment files with base name
+	 * <code>file</code>, in ascending order.
+	 * <p>
+	 * 
+	 * @param file base file name of the segment files
+	 * @return array of segment numbers, possibly empty
+	 */
+	public static int[] segments(String file)
+	{
+		final File f = new File(file).getAbsoluteFile();
+		final String prefix = f.getName() + ".";
+		final String[] names = f.getParentFile() != null ? f.getParentFile().list() : null;
+		if (names == null)
+			return new int[0];
+		final int[] found = new int[names.length];
+		int count = 0;
+		for (int i = 0; i < names.length; ++i)
+			if (names[i].startsWith(prefix))
+				try {
+					final int n = Integer.parseInt(names[i].substring(prefix.length()));
+					if (n >= 0)
+						found[count++] = n;
+				}
+				catch (final NumberFormatException e) {}
+		final int[] segs = new int[count];
+		System.arraycopy(found, 0, segs, 0, count);
+		Arrays.sort(segs);
+		return segs;
+	}
+
+	/**
+	 * Returns the base file name of the segment files.
+	 * <p>
+	 * 
+	 * @return file name
+	 */
+	public String getFileName()
+	{
+		return file;
+	}
+
+	/**
+	 * Returns the file name of the current segment.
+	 * <p>
+	 * 
+	 * @return segment file name
+	 */
+	public String getSegmentFileName()
+	{
+		return segmentFile(file, segment);
+	}
+
+	/**
+	 * Returns the size of one segment file.
+	 * <p>
+	 * 
+	 * @return segment size in bytes
+	 */
+	public int getSegmentSize()
+	{
+		return segmentSize;
+	}
+
+	/**
+	 * Returns the maximum number of segment files kept.
+	 * <p>
+	 * 
+	 * @return number of segments, 0 for no limit
+	 */
+	public int getMaxSegments()
+	{
+		return maxSegments;
+	}
+
+	/**
+	 * Creates and maps the current segment file, and deletes the oldest segments
+	 * exceeding the maximum number of segments.
+	 * <p>
+	 * 
+	 * @return the mapped segment, positioned at its start
+	 * @throws IOException on error creating or mapping the segment file
+	 */
+	public MappedByteBuffer open() throws IOException
+	{
+		final RandomAccessFile raf = new RandomAccessFile(segmentFile(file, segment), "rw");
+		try {
+			raf.setLength(segmentSize);
+			channel = raf.getChannel();
+			buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		}
+		catch (final IOException e) {
+			raf.close();
+			throw e;
+		}
+		if (maxSegments > 0)
+			for (; segment - firstSegment >= maxSegments; ++firstSegment)
+				new File(segmentFile(file, firstSegment)).delete();
+		return buf;
+	}
+
+	/**
+	 * Closes the current segment, and opens the next segment.
+	 * <p>
+	 * 
+	 * @return the mapped segment, positioned at its start
+	 * @throws IOException on error creating or mapping the segment file
+	 * @see #open()
+	 */
+	public MappedByteBuffer next() throws IOException
+	{
+		close();
+		++segment;
+		return open();
+	}
+
+	/**
+	 * Forces the content of the current segment to the storage device, and closes the
+	 * segment file.
+	 * <p>
+	 */
+	public void close()
+	{
+		if (buf != null)
+			buf.force();
+		try {
+			if (channel != null)
+				channel.close();
+		}
+		catch (final IOException e) {}
+		channel = null;
+	}
+}
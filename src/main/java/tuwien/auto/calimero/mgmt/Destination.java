@@ -45,7 +45,8 @@ import tuwien.auto.calimero.link.KNXLinkClosedException;
  * <p>
  * It keeps settings to use for communication with a destination and maintains the logical
  * connection state. In connection oriented mode, a timer is used to detect the connection
- * timeout and send a disconnect.<br>
+ * timeout and send a disconnect. The timer is driven by a scheduler shared with other
+ * destinations of the same transport layer.<br>
  * The actual layer 4 communication is done by a {@link TransportLayer} (the aggregator
  * for the destination) specified with the {@link AggregatorProxy}.
  * <p>
@@ -74,18 +75,27 @@ public class Destination
 	public static final class AggregatorProxy
 	{
 		private final TransportLayer aggr;
+		private final TimeoutScheduler timeouts;
 		private Destination d;
 
 		/**
 		 * Creates a new aggregator proxy.
 		 * <p>
+		 * The connection timeout of the associated destination is served by a scheduler
+		 * shared by all destinations created with this constructor.
 		 * 
 		 * @param aggregator the transport layer serving the destination associated with
 		 *        this proxy and handles necessary transport layer communication
 		 */
 		public AggregatorProxy(TransportLayer aggregator)
+		{
+			this(aggregator, TimeoutScheduler.getDefault());
+		}
+
+		AggregatorProxy(TransportLayer aggregator, TimeoutScheduler scheduler)
 		{
 			aggr = aggregator;
+			timeouts = scheduler;
 		}
 
 		/**
@@ -176,86 +186,6 @@ public class Destination
 		}
 	}
 
-	// ??? if one timeout per destination turns out to be too expensive,
-	// we will replace with a more elegant implementation, but seems ok for now..
-	private final class ConnectionTimeout extends Thread
-	{
-		// idle timeout for connection in seconds
-		private static final byte TIMEOUT = 6;
-		private boolean stop;
-		private boolean dormant;
-		private boolean restart;
-
-		ConnectionTimeout()
-		{
-			super("Destination timeout");
-			setDaemon(true);
-			start();
-		}
-
-		/* (non-Javadoc)
-		 * @see java.lang.Thread#run()
-		 */
-		public void run()
-		{
-			long remaining = 0;
-			long end = 0;
-			restart = true;
-			while (!stop) {
-				boolean timeout = false;
-				synchronized (this) {
-					if (dormant)
-						doWait(0);
-					else if (restart) {
-						restart = false;
-						remaining = TIMEOUT * 1000;
-						end = System.currentTimeMillis() + remaining;
-					}
-					else if (remaining <= 0) {
-						dormant = true;
-						timeout = true;
-					}
-					else {
-						doWait(remaining);
-						remaining = end - System.currentTimeMillis();
-					}
-				}
-				if (timeout && state != DISCONNECTED && state != DESTROYED)
-					try {
-						tl.disconnect(Destination.this);
-					}
-					catch (final KNXLinkClosedException e) {}
-			}
-		}
-
-		synchronized void restart()
-		{
-			dormant = false;
-			restart = true;
-			notify();
-		}
-
-		synchronized void dormant()
-		{
-			dormant = true;
-			notify();
-		}
-
-		synchronized void quit()
-		{
-			stop = true;
-			notify();
-		}
-
-		private void doWait(long timeout)
-		{
-			try {
-				wait(timeout);
-			}
-			catch (final InterruptedException e) {}
-		}
-	}
-
 	/**
 	 * Destination is destroyed.
 	 * <p>
@@ -301,8 +231,11 @@ public class Destination
 	private volatile byte state = DISCONNECTED;
 	private int seqRcv;
 	private int seqSend;
-	// we do lazy initialization on timer
-	private ConnectionTimeout timer;
+	// the connection timeout is driven by a scheduler shared with other destinations
+	private final TimeoutScheduler timeouts;
+	// timeout deadline and armed flag, both guarded by the timeout scheduler
+	long timeoutEnd;
+	boolean timeoutArmed;
 	private final boolean co;
 	private final boolean alive;
 
@@ -351,6 +284,7 @@ public class Destination
 		boolean connectionOriented, boolean keepAlive, boolean verifyMode)
 	{
 		tl = aggregator.aggr;
+		timeouts = aggregator.timeouts;
 		aggregator.setDestination(this);
 		addr = remote;
 		co = connectionOriented;
@@ -483,13 +417,8 @@ public class Destination
 			restartTimer();
 		else if (state == OPEN_WAIT)
 			restartTimer();
-		else if (state == DISCONNECTED) {
-			if (timer != null)
-				timer.dormant();
-		}
-		else if (state == DESTROYED)
-			if (timer != null)
-				timer.quit();
+		else if (state == DISCONNECTED || state == DESTROYED)
+			timeouts.cancel(this);
 	}
 
 	private void restartTimer()
@@ -498,9 +427,18 @@ public class Destination
 			throw new KNXIllegalStateException("no timer if not connection oriented");
 		if (state == DESTROYED)
 			return;
-		if (timer != null)
-			timer.restart();
-		else
-			timer = new ConnectionTimeout();
+		timeouts.restart(this);
+	}
+
+	/**
+	 * Invoked by the timeout scheduler on expiration of the connection timeout.
+	 */
+	void connectionTimeout()
+	{
+		if (state != DISCONNECTED && state != DESTROYED)
+			try {
+				tl.disconnect(this);
+			}
+			catch (final KNXLinkClosedException e) {}
 	}
 }
@@ -62,6 +62,9 @@ import tuwien.auto.calimero.log.LogService;
  * Implementation of management client.
  * <p>
  * Uses {@link TransportLayer} internally for communication. <br>
+ * Responses are matched to requests by service and remote address, hence, services
+ * addressing different destinations can be used concurrently. Services addressing the
+ * same destination are executed one after another.<br>
  * All management service methods invoked after a detach of the network link are allowed
  * to throw {@link KNXIllegalStateException}.
  * 
@@ -107,6 +110,9 @@ public class ManagementClientImpl implements ManagementClient
 
 	private static final short RESTART = 0x0380;
 
+	// maximum ASDU length of property responses, allows for APDUs of extended frames
+	private static final int MAX_PROPERTY_ASDU = 252;
+
 	private final class TLListener implements TransportListener
 	{
 		TLListener()
@@ -143,23 +149,44 @@ public class ManagementClientImpl implements ManagementClient
 
 		private void checkResponse(FrameEvent e)
 		{
-			if (svcResponse != 0) {
-				final byte[] tpdu = e.getFrame().getPayload();
-				if (DataUnitBuilder.getAPDUService(tpdu) == svcResponse)
-					synchronized (indications) {
-						indications.add(e);
-						indications.notify();
-					}
+			synchronized (pending) {
+				if (pending.isEmpty())
+					return;
+				final int svc = DataUnitBuilder.getAPDUService(e.getFrame().getPayload());
+				final IndividualAddress src = ((CEMILData) e.getFrame()).getSource();
+				for (int i = 0; i < pending.size(); i++) {
+					final Request r = (Request) pending.get(i);
+					if (r.response == svc && (r.from == null || r.from.equals(src)))
+						synchronized (r) {
+							r.indications.add(e);
+							r.notify();
+						}
+				}
 			}
 		}
 	};
 
+	// a request awaiting its response service, sent by 'from' (or any on null)
+	private static final class Request
+	{
+		final int response;
+		final IndividualAddress from;
+		// guarded by this
+		final List indications = new LinkedList();
+
+		Request(int responseService, IndividualAddress sender)
+		{
+			response = responseService;
+			from = sender;
+		}
+	}
+
 	private final TransportLayer tl;
 	private final TLListener tlListener = new TLListener();
 	private volatile Priority priority = Priority.LOW;
 	private volatile int responseTimeout = 5;
-	private final List indications = new LinkedList();
-	private volatile int svcResponse;
+	// requests awaiting a response, at most one request per remote address
+	private final List pending = new ArrayList();
 	private volatile boolean detached;
 	private final LogService logger;
 
@@ -252,14 +279,14 @@ public class ManagementClientImpl implements ManagementClient
 		throws KNXTimeoutException, KNXRemoteException, KNXLinkClosedException
 	{
 		final List l = new ArrayList();
+		final Request r = register(IND_ADDR_RESPONSE, null);
 		try {
-			svcResponse = IND_ADDR_RESPONSE;
 			tl.broadcast(false, Priority.SYSTEM, DataUnitBuilder.createCompactAPDU(
 				IND_ADDR_READ, null));
 			long wait = responseTimeout * 1000;
 			final long end = System.currentTimeMillis() + wait;
 			while (wait > 0) {
-				l.add(new IndividualAddress(waitForResponse(0, 0, wait)));
+				l.add(toAddress(waitForResponse(r, 0, 0, wait)));
 				if (oneAddressOnly)
 					break;
 				wait = end - System.currentTimeMillis();
@@ -270,7 +297,7 @@ public class ManagementClientImpl implements ManagementClient
 				throw e;
 		}
 		finally {
-			svcResponse = 0;
+			unregister(r);
 		}
 		return (IndividualAddress[]) l.toArray(new IndividualAddress[l.size()]);
 	}
@@ -301,14 +328,14 @@ public class ManagementClientImpl implements ManagementClient
 	{
 		if (serialNo.length != 6)
 			throw new KNXIllegalArgumentException("length of serial number not 6 bytes");
+		final Request r = register(IND_ADDR_SN_RESPONSE, null);
 		try {
-			svcResponse = IND_ADDR_SN_RESPONSE;
 			tl.broadcast(false, Priority.SYSTEM, DataUnitBuilder.createAPDU(
 				IND_ADDR_SN_READ, serialNo));
-			return new IndividualAddress(waitForResponse(10, 10));
+			return toAddress(waitForResponse(r, 10, 10));
 		}
 		finally {
-			svcResponse = 0;
+			unregister(r);
 		}
 	}
 
@@ -405,7 +432,7 @@ public class ManagementClientImpl implements ManagementClient
 		asdu[3] = (byte) start;
 
 		final byte[] apdu = sendWait2(dst, priority, DataUnitBuilder.createAPDU(
-			PROPERTY_READ, asdu), PROPERTY_RESPONSE, 4, 14);
+			PROPERTY_READ, asdu), PROPERTY_RESPONSE, 4, MAX_PROPERTY_ASDU);
 		// check if number of elements is 0, indicates access problem
 		final int number = (apdu[4] & 0xFF) >>> 4;
 		if (number == 0)
@@ -437,7 +464,8 @@ public class ManagementClientImpl implements ManagementClient
 		for (int i = 0; i < data.length; ++i)
 			asdu[4 + i] = data[i];
 		final byte[] send = DataUnitBuilder.createAPDU(PROPERTY_WRITE, asdu);
-		final byte[] apdu = sendWait2(dst, priority, send, PROPERTY_RESPONSE, 4, 14);
+		final byte[] apdu =
+			sendWait2(dst, priority, send, PROPERTY_RESPONSE, 4, MAX_PROPERTY_ASDU);
 		// if number of elements is 0, remote app had problems
 		final int elems = (apdu[4] & 0xFF) >> 4;
 		if (elems == 0)
@@ -629,54 +657,85 @@ public class ManagementClientImpl implements ManagementClient
 		return lnk;
 	}
 
-	private synchronized byte[] sendWait(Destination d, Priority p, byte[] apdu,
-		int response, int minASDULen, int maxASDULen) throws KNXDisconnectException,
+	private byte[] sendWait(Destination d, Priority p, byte[] apdu, int response,
+		int minASDULen, int maxASDULen) throws KNXDisconnectException,
 		KNXTimeoutException, KNXInvalidResponseException, KNXLinkClosedException
 	{
+		final Request r = register(response, d.getAddress());
 		try {
-			svcResponse = response;
 			tl.sendData(d, p, apdu);
-			return waitForResponse(minASDULen, maxASDULen);
+			return waitForResponse(r, minASDULen, maxASDULen);
 		}
 		finally {
-			svcResponse = 0;
+			unregister(r);
 		}
 	}
 
-	private synchronized byte[] sendWait2(Destination d, Priority p, byte[] apdu,
-		int response, int minASDULen, int maxASDULen) throws KNXDisconnectException,
+	private byte[] sendWait2(Destination d, Priority p, byte[] apdu, int response,
+		int minASDULen, int maxASDULen) throws KNXDisconnectException,
 		KNXTimeoutException, KNXInvalidResponseException, KNXLinkClosedException
 	{
+		final Request r = register(response, d.getAddress());
 		try {
-			svcResponse = response;
 			if (d.isConnectionOriented()) {
 				tl.connect(d);
 				tl.sendData(d, p, apdu);
 			}
 			else
 				tl.sendData(d.getAddress(), p, apdu);
-			return waitForResponse(minASDULen, maxASDULen);
+			return waitForResponse(r, minASDULen, maxASDULen);
 		}
 		finally {
-			svcResponse = 0;
+			unregister(r);
+		}
+	}
+
+	// registers a request, waits until no other request for the same remote is pending
+	private Request register(int response, IndividualAddress from)
+	{
+		final Request r = new Request(response, from);
+		synchronized (pending) {
+			for (boolean busy = true; busy;) {
+				busy = false;
+				for (int i = 0; i < pending.size() && !busy; i++) {
+					final IndividualAddress a = ((Request) pending.get(i)).from;
+					busy = a == null ? from == null : a.equals(from);
+				}
+				if (busy)
+					try {
+						pending.wait();
+					}
+					catch (final InterruptedException e) {}
+			}
+			pending.add(r);
+		}
+		return r;
+	}
+
+	private void unregister(Request r)
+	{
+		synchronized (pending) {
+			pending.remove(r);
+			pending.notifyAll();
 		}
 	}
 
 	// timeout in milliseconds
 	// min + max ASDU len are *not* including any field that contains ACPI
-	private byte[] waitForResponse(int minASDULen, int maxASDULen, long timeout)
-		throws KNXInvalidResponseException, KNXTimeoutException
+	private byte[] waitForResponse(Request r, int minASDULen, int maxASDULen,
+		long timeout) throws KNXInvalidResponseException, KNXTimeoutException
 	{
 		long remaining = timeout;
 		final long end = System.currentTimeMillis() + remaining;
-		synchronized (indications) {
+		final List indications = r.indications;
+		synchronized (r) {
 			while (remaining > 0) {
 				try {
 					while (indications.size() > 0) {
 						final CEMI frame =
 							((FrameEvent) indications.remove(0)).getFrame();
 						final byte[] apdu = frame.getPayload();
-						assert svcResponse == DataUnitBuilder.getAPDUService(apdu);
+						assert r.response == DataUnitBuilder.getAPDUService(apdu);
 						if (apdu.length < minASDULen + 2 || apdu.length > maxASDULen + 2) {
 							final String s = "invalid ASDU response length "
 								+ (apdu.length - 2) + " bytes, expected " + minASDULen
@@ -684,13 +743,13 @@ public class ManagementClientImpl implements ManagementClient
 							logger.error("received response with " + s);
 							throw new KNXInvalidResponseException(s);
 						}
-						if (svcResponse == IND_ADDR_RESPONSE
-							|| svcResponse == IND_ADDR_SN_RESPONSE)
+						if (r.response == IND_ADDR_RESPONSE
+							|| r.response == IND_ADDR_SN_RESPONSE)
 							return ((CEMILData) frame).getSource().toByteArray();
 						indications.clear();
 						return apdu;
 					}
-					indications.wait(remaining);
+					r.wait(remaining);
 				}
 				catch (final InterruptedException e) {}
 				remaining = end - System.currentTimeMillis();
@@ -699,10 +758,10 @@ public class ManagementClientImpl implements ManagementClient
 		throw new KNXTimeoutException("timeout occurred while waiting for data response");
 	}
 
-	private byte[] waitForResponse(int minASDULen, int maxASDULen)
+	private byte[] waitForResponse(Request r, int minASDULen, int maxASDULen)
 		throws KNXInvalidResponseException, KNXTimeoutException
 	{
-		return waitForResponse(minASDULen, maxASDULen, responseTimeout * 1000);
+		return waitForResponse(r, minASDULen, maxASDULen, responseTimeout * 1000);
 	}
 
 	private synchronized List readBroadcast(Priority p, byte[] apdu, int response,
@@ -710,13 +769,13 @@ public class ManagementClientImpl implements ManagementClient
 		KNXInvalidResponseException, KNXTimeoutException
 	{
 		final List l = new ArrayList();
+		final Request r = register(response, null);
 		try {
-			svcResponse = response;
 			tl.broadcast(true, p, apdu);
 			long wait = responseTimeout * 1000;
 			final long end = System.currentTimeMillis() + wait;
 			while (wait > 0) {
-				l.add(waitForResponse(minASDULen, maxASDULen, wait));
+				l.add(waitForResponse(r, minASDULen, maxASDULen, wait));
 				if (oneOnly)
 					break;
 				wait = end - System.currentTimeMillis();
@@ -727,7 +786,7 @@ public class ManagementClientImpl implements ManagementClient
 				throw e;
 		}
 		finally {
-			svcResponse = 0;
+			unregister(r);
 		}
 		return l;
 	}
@@ -744,4 +803,9 @@ public class ManagementClientImpl implements ManagementClient
 		}
 		return l;
 	}
+
+	private static IndividualAddress toAddress(byte[] addr)
+	{
+		return IndividualAddress.valueOf((addr[0] & 0xff) << 8 | addr[1] & 0xff);
+	}
 }
@@ -36,17 +36,141 @@
 
 package tuwien.auto.calimero.mgmt;
 
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.exception.KNXInvalidResponseException;
+import tuwien.auto.calimero.exception.KNXRemoteException;
+import tuwien.auto.calimero.exception.KNXTimeoutException;
+import tuwien.auto.calimero.link.KNXLinkClosedException;
+
 /**
  * Management procedures.
  * <p>
  * Offers services following the KNX management procedures.
  * <p>
- * Not yet implemented.
+ * Memory and property value accesses of arbitrary size are split up into a sequence of
+ * management services, with each service using the maximum amount of data fitting into
+ * an APDU of the maximum APDU length of the communication partner. The data of all
+ * services is assembled into (or taken from) one contiguous byte array.
  * 
  * @author B. Malinowsky
  */
 public interface ManagementProcedures
 {
-	// TODO implement memory write as an example? we would have to check max
-	// allowed APDU length first then split up memory block into chunks
+	/**
+	 * Sets the maximum APDU length supported by communication partners.
+	 * <p>
+	 * The maximum APDU length limits the amount of data transferred with one management
+	 * service. The default length is 15, i.e. the APDU length available in standard
+	 * frames. Set a greater length only for partners supporting extended frames (see
+	 * also property PID.MAX_APDULENGTH of a device object).
+	 * 
+	 * @param length maximum APDU length, 15 &lt;= length &lt;= 254
+	 */
+	void setMaxApduLength(int length);
+
+	/**
+	 * Returns the maximum APDU length used for splitting up data accesses.
+	 * <p>
+	 * 
+	 * @return maximum APDU length
+	 */
+	int getMaxApduLength();
+
+	/**
+	 * Reads a region of memory data of arbitrary size from the address space of a
+	 * communication partner its controller.
+	 * <p>
+	 * The memory region is read using one or more memory read services.
+	 * 
+	 * @param dst destination to read from
+	 * @param startAddr 16 bit start address to read in memory
+	 * @param bytes number of data bytes to read (with increasing addresses), with
+	 *        <code>startAddr + bytes</code> &lt;= 0x10000
+	 * @return byte array containing the data read from the memory region
+	 * @throws KNXTimeoutException on a timeout during send
+	 * @throws KNXRemoteException on problems of the partner reading (part of) the memory
+	 * @throws KNXDisconnectException on disconnect during read
+	 * @throws KNXLinkClosedException if network link to KNX network is closed
+	 * @throws KNXException on other read memory error
+	 * @see ManagementClient#readMemory(Destination, int, int)
+	 */
+	byte[] readMemory(Destination dst, int startAddr, int bytes) throws KNXException;
+
+	/**
+	 * Writes a region of memory data of arbitrary size in the address space of a
+	 * communication partner its controller.
+	 * <p>
+	 * The memory region is written using one or more memory write services.
+	 * 
+	 * @param dst destination to write to
+	 * @param startAddr 16 bit start address to write in memory
+	 * @param data byte array containing the memory data to write, with
+	 *        <code>startAddr + data.length</code> &lt;= 0x10000
+	 * @throws KNXTimeoutException on a timeout during send
+	 * @throws KNXRemoteException in verify mode on problems of the partner writing the
+	 *         memory data
+	 * @throws KNXDisconnectException on disconnect during write
+	 * @throws KNXLinkClosedException if network link to KNX network is closed
+	 * @throws KNXException on other write memory error
+	 * @see ManagementClient#writeMemory(Destination, int, byte[])
+	 */
+	void writeMemory(Destination dst, int startAddr, byte[] data) throws KNXException;
+
+	/**
+	 * Reads an arbitrary range of value elements of a property of an interface object
+	 * of a communication partner.
+	 * <p>
+	 * The first element is read separately to determine the size of one element. The
+	 * remaining elements are read using as many elements per property read service as
+	 * fit into the maximum APDU length.<br>
+	 * Element 0 holds the current number of elements of the property, with a size of 2
+	 * bytes independent of the element size. If <code>start</code> is 0, element 0 is
+	 * read on its own, and the returned data starts with these 2 bytes, followed by the
+	 * elements starting at index 1.
+	 * 
+	 * @param dst destination to read from
+	 * @param objIndex interface object index
+	 * @param propID property identifier
+	 * @param start start index in the property value to start reading from
+	 * @param elements number of elements to read, with <code>start + elements - 1</code>
+	 *        &lt;= 0xFFF
+	 * @return byte array containing the property value data of all elements
+	 * @throws KNXTimeoutException on a timeout during send
+	 * @throws KNXRemoteException if tried to access a non existing property or forbidden
+	 *         property access
+	 * @throws KNXInvalidResponseException if received number of elements or element size
+	 *         differ
+	 * @throws KNXDisconnectException on disconnect in connection oriented mode
+	 * @throws KNXLinkClosedException if network link to KNX network is closed
+	 * @throws KNXException on other read property error
+	 * @see ManagementClient#readProperty(Destination, int, int, int, int)
+	 */
+	byte[] readProperty(Destination dst, int objIndex, int propID, int start, int elements)
+		throws KNXException;
+
+	/**
+	 * Modifies an arbitrary range of value elements of a property of an interface object
+	 * of a communication partner.
+	 * <p>
+	 * One element consumes <code>data.length / elements</code> bytes.
+	 * 
+	 * @param dst destination to write to
+	 * @param objIndex interface object index
+	 * @param propID property identifier
+	 * @param start start index in the property value to start writing to
+	 * @param elements number of elements to write, with
+	 *        <code>start + elements - 1</code> &lt;= 0xFFF
+	 * @param data byte array containing property value data to write
+	 * @throws KNXTimeoutException on a timeout during send
+	 * @throws KNXRemoteException if tried to access a non existing property or forbidden
+	 *         property access or erroneous property data was written
+	 * @throws KNXInvalidResponseException if received number of elements differ or the
+	 *         data length read back differs from the written data length
+	 * @throws KNXDisconnectException on disconnect in connection oriented mode
+	 * @throws KNXLinkClosedException if network link to KNX network is closed
+	 * @throws KNXException on other write property error
+	 * @see ManagementClient#writeProperty(Destination, int, int, int, int, byte[])
+	 */
+	void writeProperty(Destination dst, int objIndex, int propID, int start,
+		int elements, byte[] data) throws KNXException;
 }
@@ -0,0 +1,203 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
+import tuwien.auto.calimero.exception.KNXInvalidResponseException;
+
+/**
+ * Implementation of management procedures, based on a management client.
+ * <p>
+ * A transport layer connection transfers one TPDU at a time (the next TPDU is sent
+ * after the acknowledge of the previous one), therefore, the services of one procedure
+ * are issued in sequence. Procedures for different destinations might be used
+ * concurrently.
+ * 
+ * @author B. Malinowsky
+ */
+public class ManagementProceduresImpl implements ManagementProcedures
+{
+	// APDU length available in standard frames
+	private static final int STD_APDU_LENGTH = 15;
+	// maximum number of bytes of one memory service
+	private static final int MAX_MEMORY_BYTES = 63;
+	// maximum number of elements of one property service
+	private static final int MAX_ELEMENTS = 15;
+	// APDU overhead of memory services: service and number, start address
+	private static final int MEMORY_OVERHEAD = 3;
+	// APDU overhead of property services: service, object index, PID, elements and start
+	private static final int PROPERTY_OVERHEAD = 5;
+
+	private final ManagementClient mc;
+	private volatile int maxApdu = STD_APDU_LENGTH;
+
+	/**
+	 * Creates a new management procedures implementation using the supplied management
+	 * client for communication.
+	 * <p>
+	 * 
+	 * @param client management client
+	 */
+	public ManagementProceduresImpl(ManagementClient client)
+	{
+		mc = client;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.mgmt.ManagementProcedures#setMaxApduLength(int)
+	 */
+	public void setMaxApduLength(int length)
+	{
+		if (length < STD_APDU_LENGTH || length > 254)
+			throw new KNXIllegalArgumentException("APDU length out of range [15..254]");
+		maxApdu = length;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.mgmt.ManagementProcedures#getMaxApduLength()
+	 */
+	public int getMaxApduLength()
+	{
+		return maxApdu;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.mgmt.ManagementProcedures#readMemory
+	 * (tuwien.auto.calimero.mgmt.Destination, int, int)
+	 */
+	public byte[] readMemory(Destination dst, int startAddr, int bytes)
+		throws KNXException
+	{
+		if (startAddr < 0 || bytes < 1 || startAddr + bytes > 0x10000)
+			throw new KNXIllegalArgumentException("memory range out of range");
+		final int chunk = Math.min(MAX_MEMORY_BYTES, maxApdu - MEMORY_OVERHEAD);
+		final byte[] mem = new byte[bytes];
+		for (int i = 0; i < bytes; i += chunk) {
+			final int size = Math.min(chunk, bytes - i);
+			final byte[] part = mc.readMemory(dst, startAddr + i, size);
+			if (part.length != size)
+				throw new KNXInvalidResponseException("read " + part.length
+					+ " memory bytes from 0x" + Integer.toHexString(startAddr + i)
+					+ ", expected " + size);
+			System.arraycopy(part, 0, mem, i, size);
+		}
+		return mem;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.mgmt.ManagementProcedures#writeMemory
+	 * (tuwien.auto.calimero.mgmt.Destination, int, byte[])
+	 */
+	public void writeMemory(Destination dst, int startAddr, byte[] data)
+		throws KNXException
+	{
+		if (startAddr < 0 || data.length == 0 || startAddr + data.length > 0x10000)
+			throw new KNXIllegalArgumentException("memory range out of range");
+		final int chunk = Math.min(MAX_MEMORY_BYTES, maxApdu - MEMORY_OVERHEAD);
+		for (int i = 0; i < data.length; i += chunk) {
+			final byte[] part = new byte[Math.min(chunk, data.length - i)];
+			System.arraycopy(data, i, part, 0, part.length);
+			mc.writeMemory(dst, startAddr + i, part);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.mgmt.ManagementProcedures#readProperty
+	 * (tuwien.auto.calimero.mgmt.Destination, int, int, int, int)
+	 */
+	public byte[] readProperty(Destination dst, int objIndex, int propID, int start,
+		int elements) throws KNXException
+	{
+		if (start < 0 || elements < 1 || start + elements - 1 > 0xFFF)
+			throw new KNXIllegalArgumentException("element range out of range");
+		// element 0 holds the current number of elements, not of element size
+		if (start == 0) {
+			final byte[] current = mc.readProperty(dst, objIndex, propID, 0, 1);
+			if (elements == 1)
+				return current;
+			final byte[] rest = readProperty(dst, objIndex, propID, 1, elements - 1);
+			final byte[] data = new byte[current.length + rest.length];
+			System.arraycopy(current, 0, data, 0, current.length);
+			System.arraycopy(rest, 0, data, current.length, rest.length);
+			return data;
+		}
+		// the first element tells us the element size
+		final byte[] first = mc.readProperty(dst, objIndex, propID, start, 1);
+		if (elements == 1)
+			return first;
+		final int size = first.length;
+		final byte[] data = new byte[elements * size];
+		System.arraycopy(first, 0, data, 0, size);
+		final int chunk = elementsPerService(size);
+		for (int i = 1; i < elements; i += chunk) {
+			final int n = Math.min(chunk, elements - i);
+			final byte[] part = mc.readProperty(dst, objIndex, propID, start + i, n);
+			if (part.length != n * size)
+				throw new KNXInvalidResponseException("element size differs, read "
+					+ part.length + " bytes for " + n + " elements of " + size + " bytes");
+			System.arraycopy(part, 0, data, i * size, part.length);
+		}
+		return data;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.mgmt.ManagementProcedures#writeProperty
+	 * (tuwien.auto.calimero.mgmt.Destination, int, int, int, int, byte[])
+	 */
+	public void writeProperty(Destination dst, int objIndex, int propID, int start,
+		int elements, byte[] data) throws KNXException
+	{
+		if (start < 0 || elements < 1 || start + elements - 1 > 0xFFF
+			|| data.length == 0 || data.length % elements != 0)
+			throw new KNXIllegalArgumentException("argument value out of range");
+		final int size = data.length / elements;
+		final int chunk = elementsPerService(size);
+		for (int i = 0; i < elements; i += chunk) {
+			final int n = Math.min(chunk, elements - i);
+			final byte[] part = new byte[n * size];
+			System.arraycopy(data, i * size, part, 0, part.length);
+			mc.writeProperty(dst, objIndex, propID, start + i, n, part);
+		}
+	}
+
+	private int elementsPerService(int elementSize)
+	{
+		return Math.max(1, Math.min(MAX_ELEMENTS, (maxApdu - PROPERTY_OVERHEAD)
+			/ elementSize));
+	}
+}
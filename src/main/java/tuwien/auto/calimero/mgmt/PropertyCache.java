@@ -0,0 +1,781 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import tuwien.auto.calimero.DataUnitBuilder;
+import tuwien.auto.calimero.Settings;
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.exception.KNXFormatException;
+import tuwien.auto.calimero.exception.KNXRemoteException;
+import tuwien.auto.calimero.xml.Attribute;
+import tuwien.auto.calimero.xml.Element;
+import tuwien.auto.calimero.xml.KNXMLException;
+import tuwien.auto.calimero.xml.XMLFactory;
+import tuwien.auto.calimero.xml.XMLReader;
+import tuwien.auto.calimero.xml.XMLWriter;
+
+/**
+ * Cache for static property information of KNX devices, shared by all devices of the
+ * same device identity.
+ * <p>
+ * Devices are identified by a {@link DeviceKey}, consisting of the mask version,
+ * manufacturer and application of a device. For each device identity, the cache keeps
+ * interface object types, property descriptions, results of property scans and the
+ * values of static properties.<br>
+ * Static properties are properties with a value not changing among devices of the same
+ * identity. By default, these are the properties with PIDs
+ * {@link PropertyClient.PID#OBJECT_TYPE}, {@link PropertyClient.PID#MANUFACTURER_ID},
+ * {@link PropertyClient.PID#PROGRAM_VERSION}, {@link PropertyClient.PID#ORDER_INFO} and
+ * {@link PropertyClient.PID#VERSION}. Note that the current number of elements of
+ * cached property descriptions is the one at the time of caching.
+ * <p>
+ * Property descriptions and values are copied when put into and when returned from the
+ * cache, so a caller may modify a returned object without affecting the cache or other
+ * callers.
+ * <p>
+ * The cached information of a device identity expires after the time to live set for
+ * the cache, and can be invalidated explicitly. A cache might be saved to and loaded
+ * from a resource, to be used over more sessions.<br>
+ * A property client consults the cache set with
+ * {@link PropertyClient#setCache(PropertyCache, PropertyCache.DeviceKey)} before
+ * accessing a device.
+ * 
+ * @author B. Malinowsky
+ */
+public class PropertyCache
+{
+	/**
+	 * Identifies the KNX devices sharing the same static property information.
+	 * <p>
+	 * Objects of this type are immutable.
+	 * 
+	 * @author B. Malinowsky
+	 */
+	public static final class DeviceKey
+	{
+		private final int mask;
+		private final int manufacturer;
+		private final byte[] app;
+
+		/**
+		 * Creates a new device key.
+		 * <p>
+		 * 
+		 * @param maskVersion mask version of the device (device descriptor type 0)
+		 * @param manufacturer manufacturer ID of the device
+		 * @param application application identifier of the device, for example the
+		 *        program version property value, use an empty array if not available
+		 */
+		public DeviceKey(int maskVersion, int manufacturer, byte[] application)
+		{
+			mask = maskVersion;
+			this.manufacturer = manufacturer;
+			app = (byte[]) application.clone();
+		}
+
+		/**
+		 * Reads the device key of a device.
+		 * <p>
+		 * The mask version is read using the device descriptor read service, the
+		 * manufacturer ID and the program version are read from the device object. If a
+		 * property is not available in the device object, 0 or an empty array is used,
+		 * respectively.
+		 * 
+		 * @param mc management client for communication with the device
+		 * @param dst destination of the device
+		 * @return the device key
+		 * @throws KNXException on communication errors
+		 */
+		public static DeviceKey read(ManagementClient mc, Destination dst)
+			throws KNXException
+		{
+			final byte[] dd = mc.readDeviceDesc(dst, 0);
+			final int mask = (dd[0] & 0xff) << 8 | dd[1] & 0xff;
+			int manufacturer = 0;
+			byte[] app = new byte[0];
+			try {
+				final byte[] m = mc.readProperty(dst, 0, PropertyClient.PID.MANUFACTURER_ID,
+					1, 1);
+				for (int i = 0; i < m.length; i++)
+					manufacturer = manufacturer << 8 | m[i] & 0xff;
+				app = mc.readProperty(dst, 0, PropertyClient.PID.PROGRAM_VERSION, 1, 1);
+			}
+			catch (final KNXRemoteException e) {}
+			return new DeviceKey(mask, manufacturer, app);
+		}
+
+		/**
+		 * Returns the mask version of this key.
+		 * <p>
+		 * 
+		 * @return mask version
+		 */
+		public int getMaskVersion()
+		{
+			return mask;
+		}
+
+		/**
+		 * Returns the manufacturer ID of this key.
+		 * <p>
+		 * 
+		 * @return manufacturer ID
+		 */
+		public int getManufacturer()
+		{
+			return manufacturer;
+		}
+
+		/**
+		 * Returns the application identifier of this key.
+		 * <p>
+		 * 
+		 * @return application identifier as byte array
+		 */
+		public byte[] getApplication()
+		{
+			return (byte[]) app.clone();
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof DeviceKey))
+				return false;
+			final DeviceKey k = (DeviceKey) obj;
+			return k.mask == mask && k.manufacturer == manufacturer
+				&& Arrays.equals(k.app, app);
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#hashCode()
+		 */
+		public int hashCode()
+		{
+			return (mask << 16 ^ manufacturer) * 31 + Arrays.hashCode(app);
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		public String toString()
+		{
+			return "mask 0x" + Integer.toHexString(mask) + " manufacturer "
+				+ manufacturer + " application " + DataUnitBuilder.toHex(app, "");
+		}
+	}
+
+	private static final class Entry
+	{
+		final long timestamp;
+		// number of interface objects, -1 if not known
+		int objects = -1;
+		// maps object index to Obj
+		final Map objs = new TreeMap();
+		// maps value key to property value data
+		final Map values = new HashMap();
+
+		Entry(long timestamp)
+		{
+			this.timestamp = timestamp;
+		}
+
+		Obj obj(int objIndex, boolean create)
+		{
+			final Integer i = new Integer(objIndex);
+			Obj o = (Obj) objs.get(i);
+			if (o == null && create)
+				objs.put(i, o = new Obj());
+			return o;
+		}
+	}
+
+	private static final class Obj
+	{
+		int type = -1;
+		// number of properties, -1 if not known
+		int properties = -1;
+		// maps property index to description
+		final Map byIndex = new TreeMap();
+		// maps PID to description
+		final Map byPid = new TreeMap();
+	}
+
+	private static final String CACHE_TAG = "propertyCache";
+	private static final String DEVICE_TAG = "device";
+	private static final String OBJECT_TAG = "object";
+	private static final String DESC_TAG = "description";
+	private static final String VALUE_TAG = "value";
+
+	private int ttl;
+	// maps device key to entry, guarded by this
+	private final Map entries = new HashMap();
+	private final Set statics = Collections.synchronizedSet(new HashSet());
+
+	/**
+	 * Creates a new property cache.
+	 * <p>
+	 * 
+	 * @param timeToLive time in seconds the information of a device identity stays
+	 *        valid after it was cached, use 0 for no expiring
+	 */
+	public PropertyCache(int timeToLive)
+	{
+		setTimeToLive(timeToLive);
+		final int[] pids = { PropertyClient.PID.OBJECT_TYPE,
+			PropertyClient.PID.MANUFACTURER_ID, PropertyClient.PID.PROGRAM_VERSION,
+			PropertyClient.PID.ORDER_INFO, PropertyClient.PID.VERSION };
+		for (int i = 0; i < pids.length; i++)
+			addStaticProperty(pids[i]);
+	}
+
+	/**
+	 * Sets the time to live of cached device information.
+	 * <p>
+	 * 
+	 * @param timeToLive time in seconds, use 0 for no expiring
+	 */
+	public synchronized void setTimeToLive(int timeToLive)
+	{
+		ttl = Math.max(0, timeToLive);
+	}
+
+	/**
+	 * Returns the time to live of cached device information.
+	 * <p>
+	 * 
+	 * @return time in seconds, 0 for no expiring
+	 */
+	public synchronized int getTimeToLive()
+	{
+		return ttl;
+	}
+
+	/**
+	 * Adds a property identifier to the set of static properties, whose property values
+	 * are cached.
+	 * <p>
+	 * 
+	 * @param pid property identifier
+	 */
+	public void addStaticProperty(int pid)
+	{
+		statics.add(new Integer(pid));
+	}
+
+	/**
+	 * Removes a property identifier from the set of static properties.
+	 * <p>
+	 * 
+	 * @param pid property identifier
+	 */
+	public void removeStaticProperty(int pid)
+	{
+		statics.remove(new Integer(pid));
+	}
+
+	/**
+	 * Returns whether values of the property identifier are cached.
+	 * <p>
+	 * 
+	 * @param pid property identifier
+	 * @return <code>true</code> if the property is static, <code>false</code> otherwise
+	 */
+	public boolean isStaticProperty(int pid)
+	{
+		return statics.contains(new Integer(pid));
+	}
+
+	/**
+	 * Returns the cached object type of an interface object.
+	 * <p>
+	 * 
+	 * @param key device key
+	 * @param objIndex interface object index
+	 * @return the object type, or -1 if not cached
+	 */
+	public synchronized int getObjectType(DeviceKey key, int objIndex)
+	{
+		final Entry e = get(key, false);
+		final Obj o = e != null ? e.obj(objIndex, false) : null;
+		return o != null ? o.type : -1;
+	}
+
+	/**
+	 * Caches the object type of an interface object.
+	 * <p>
+	 * 
+	 * @param key device key
+	 * @param objIndex interface object index
+	 * @param objType the object type
+	 */
+	public synchronized void putObjectType(DeviceKey key, int objIndex, int objType)
+	{
+		get(key, true).obj(objIndex, true).type = objType;
+	}
+
+	/**
+	 * Returns a cached property description, addressed by PID.
+	 * <p>
+	 * 
+	 * @param key device key
+	 * @param objIndex interface object index
+	 * @param pid property identifier
+	 * @return copy of the description, or <code>null</code> if not cached
+	 */
+	public synchronized Description getDescription(DeviceKey key, int objIndex, int pid)
+	{
+		final Entry e = get(key, false);
+		final Obj o = e != null ? e.obj(objIndex, false) : null;
+		return o != null ? copy((Description) o.byPid.get(new Integer(pid))) : null;
+	}
+
+	/**
+	 * Returns a cached property description, addressed by property index.
+	 * <p>
+	 * 
+	 * @param key device key
+	 * @param objIndex interface object index
+	 * @param propIndex property index
+	 * @return copy of the description, or <code>null</code> if not cached
+	 */
+	public synchronized Description getDescriptionByIndex(DeviceKey key, int objIndex,
+		int propIndex)
+	{
+		final Entry e = get(key, false);
+		final Obj o = e != null ? e.obj(objIndex, false) : null;
+		return o != null ? copy((Description) o.byIndex.get(new Integer(propIndex)))
+			: null;
+	}
+
+	/**
+	 * Caches a property description read by PID.
+	 * <p>
+	 * Such a description is not required to contain the correct property index.
+	 * 
+	 * @param key device key
+	 * @param d the property description
+	 */
+	public synchronized void putDescription(DeviceKey key, Description d)
+	{
+		put(key, copy(d));
+	}
+
+	/**
+	 * Caches a property description read by property index.
+	 * <p>
+	 * 
+	 * @param key device key
+	 * @param d the property description
+	 */
+	public synchronized void putDescriptionByIndex(DeviceKey key, Description d)
+	{
+		final Description c = copy(d);
+		put(key, c).byIndex.put(new Integer(c.getPropIndex()), c);
+	}
+
+	/**
+	 * Returns the cached result of a property description scan of an interface object.
+	 * <p>
+	 * 
+	 * @param key device key
+	 * @param objIndex interface object index
+	 * @param allProperties <code>true</code> for the scan of all properties,
+	 *        <code>false</code> for the scan of the object type description
+	 * @return list with copies of the property descriptions of type
+	 *         {@link Description}, an empty list if there is no such interface object,
+	 *         or <code>null</code> if not cached
+	 * @see PropertyClient#scanProperties(int, boolean)
+	 */
+	public synchronized List getScan(DeviceKey key, int objIndex, boolean allProperties)
+	{
+		final Entry e = get(key, false);
+		if (e == null)
+			return null;
+		if (e.objects != -1 && objIndex >= e.objects)
+			return new ArrayList();
+		final Obj o = e.obj(objIndex, false);
+		if (o == null)
+			return null;
+		final int count = allProperties ? o.properties : 1;
+		if (count == -1)
+			return null;
+		final List l = new ArrayList(count);
+		for (int i = 0; i < count; i++) {
+			final Object d = o.byIndex.get(new Integer(i));
+			if (d == null)
+				return null;
+			l.add(copy((Description) d));
+		}
+		return l;
+	}
+
+	/**
+	 * Caches the result of a property description scan of an interface object.
+	 * <p>
+	 * An empty result marks the end of interface objects of a device.
+	 * 
+	 * @param key device key
+	 * @param objIndex interface object index
+	 * @param allProperties <code>true</code> for the scan of all properties,
+	 *        <code>false</code> for the scan of the object type description
+	 * @param descriptions list with the property descriptions of type
+	 *        {@link Description}
+	 */
+	public synchronized void putScan(DeviceKey key, int objIndex, boolean allProperties,
+		List descriptions)
+	{
+		final Entry e = get(key, true);
+		if (descriptions.isEmpty()) {
+			if (e.objects == -1 || objIndex < e.objects)
+				e.objects = objIndex;
+			return;
+		}
+		for (final Iterator i = descriptions.iterator(); i.hasNext();)
+			putDescriptionByIndex(key, (Description) i.next());
+		if (allProperties)
+			e.obj(objIndex, true).properties = descriptions.size();
+	}
+
+	/**
+	 * Returns a cached property value.
+	 * <p>
+	 * 
+	 * @param key device key
+	 * @param objIndex interface object index
+	 * @param pid property identifier
+	 * @param start index of the first element
+	 * @param elements number of elements
+	 * @return copy of the property value data, or <code>null</code> if not cached
+	 */
+	public synchronized byte[] getValue(DeviceKey key, int objIndex, int pid, int start,
+		int elements)
+	{
+		final Entry e = get(key, false);
+		final byte[] data = e != null ? (byte[]) e.values.get(valueKey(objIndex, pid,
+			start, elements)) : null;
+		return data != null ? (byte[]) data.clone() : null;
+	}
+
+	/**
+	 * Caches a property value.
+	 * <p>
+	 * 
+	 * @param key device key
+	 * @param objIndex interface object index
+	 * @param pid property identifier
+	 * @param start index of the first element
+	 * @param elements number of elements
+	 * @param data property value data
+	 */
+	public synchronized void putValue(DeviceKey key, int objIndex, int pid, int start,
+		int elements, byte[] data)
+	{
+		get(key, true).values.put(valueKey(objIndex, pid, start, elements), data.clone());
+	}
+
+	/**
+	 * Removes all cached information of a device identity.
+	 * <p>
+	 * 
+	 * @param key device key
+	 */
+	public synchronized void invalidate(DeviceKey key)
+	{
+		entries.remove(key);
+	}
+
+	/**
+	 * Removes all cached information whose time to live has expired.
+	 * <p>
+	 */
+	public synchronized void removeExpired()
+	{
+		for (final Iterator i = entries.values().iterator(); i.hasNext();)
+			if (expired((Entry) i.next()))
+				i.remove();
+	}
+
+	/**
+	 * Removes all cached information.
+	 * <p>
+	 */
+	public synchronized void clear()
+	{
+		entries.clear();
+	}
+
+	/**
+	 * Loads cached device information from a resource.
+	 * <p>
+	 * Loaded information replaces cached information of the same device identities.
+	 * Expired information in the resource is ignored.
+	 * 
+	 * @param resource the identifier of a resource to load, for example a file name
+	 * @throws KNXException on errors reading the resource
+	 */
+	public void load(String resource) throws KNXException
+	{
+		final XMLReader r = XMLFactory.getInstance().createXMLReader(resource);
+		try {
+			if (r.read() != XMLReader.START_TAG
+				|| !r.getCurrent().getName().equals(CACHE_TAG))
+				throw new KNXMLException("no property cache");
+			final Map loaded = new HashMap();
+			Entry e = null;
+			while (r.read() != XMLReader.END_DOC) {
+				final Element elem = r.getCurrent();
+				final String name = elem.getName();
+				if (r.getPosition() == XMLReader.START_TAG) {
+					if (name.equals(DEVICE_TAG)) {
+						e = new Entry(Long.parseLong(elem.getAttribute("timestamp")));
+						e.objects = toInt(elem.getAttribute("objects"));
+						loaded.put(new DeviceKey(toInt(elem.getAttribute("mask")),
+							toInt(elem.getAttribute("manufacturer")), fromHex(elem
+								.getAttribute("application"))), e);
+					}
+					else if (e == null)
+						throw new KNXMLException("no device for " + name, null, r
+							.getLineNumber());
+					else if (name.equals(OBJECT_TAG)) {
+						final Obj o = e.obj(toInt(elem.getAttribute("index")), true);
+						o.type = toInt(elem.getAttribute("type"));
+						o.properties = toInt(elem.getAttribute("properties"));
+					}
+					else if (name.equals(DESC_TAG)) {
+						final Description d = new Description(toInt(elem
+							.getAttribute("oi")), toInt(elem.getAttribute("ot")),
+							toInt(elem.getAttribute("pid")), toInt(elem.getAttribute("pi")),
+							toInt(elem.getAttribute("pdt")), "1".equals(elem
+								.getAttribute("write")), toInt(elem.getAttribute("elems")),
+							toInt(elem.getAttribute("maxElems")), toInt(elem
+								.getAttribute("rLevel")), toInt(elem.getAttribute("wLevel")));
+						final Obj o = e.obj(d.getObjectIndex(), true);
+						o.byPid.put(new Integer(d.getPID()), d);
+						if ("1".equals(elem.getAttribute("byIndex")))
+							o.byIndex.put(new Integer(d.getPropIndex()), d);
+					}
+					else if (name.equals(VALUE_TAG))
+						e.values.put(valueKey(toInt(elem.getAttribute("oi")), toInt(elem
+							.getAttribute("pid")), toInt(elem.getAttribute("start")),
+							toInt(elem.getAttribute("elems"))), fromHex(elem
+							.getAttribute("data")));
+				}
+				else if (r.getPosition() == XMLReader.END_TAG && name.equals(CACHE_TAG))
+					break;
+			}
+			synchronized (this) {
+				for (final Iterator i = loaded.entrySet().iterator(); i.hasNext();) {
+					final Map.Entry me = (Map.Entry) i.next();
+					if (!expired((Entry) me.getValue()))
+						entries.put(me.getKey(), me.getValue());
+				}
+			}
+		}
+		catch (final KNXFormatException e) {
+			throw new KNXException("loading property cache, " + e.getMessage());
+		}
+		catch (final NumberFormatException e) {
+			throw new KNXException("loading property cache, " + e.getMessage());
+		}
+		finally {
+			r.close();
+		}
+	}
+
+	/**
+	 * Saves the cached device information to a resource.
+	 * <p>
+	 * 
+	 * @param resource the identifier of a resource for saving, for example a file name
+	 * @throws KNXException on errors writing the resource
+	 */
+	public synchronized void save(String resource) throws KNXException
+	{
+		removeExpired();
+		final XMLWriter w = XMLFactory.getInstance().createXMLWriter(resource);
+		try {
+			w.writeComment("Calimero " + Settings.getLibraryVersion()
+				+ " KNX property cache, saved on " + new Date().toString());
+			w.writeElement(CACHE_TAG, null, null);
+			for (final Iterator i = entries.entrySet().iterator(); i.hasNext();) {
+				final Map.Entry me = (Map.Entry) i.next();
+				final DeviceKey k = (DeviceKey) me.getKey();
+				final Entry e = (Entry) me.getValue();
+				final List att = new ArrayList();
+				att.add(new Attribute("mask", Integer.toString(k.mask)));
+				att.add(new Attribute("manufacturer", Integer.toString(k.manufacturer)));
+				att.add(new Attribute("application", DataUnitBuilder.toHex(k.app, "")));
+				att.add(new Attribute("timestamp", Long.toString(e.timestamp)));
+				att.add(new Attribute("objects", Integer.toString(e.objects)));
+				w.writeElement(DEVICE_TAG, att, null);
+				for (final Iterator j = e.objs.entrySet().iterator(); j.hasNext();) {
+					final Map.Entry oe = (Map.Entry) j.next();
+					final Obj o = (Obj) oe.getValue();
+					att.clear();
+					att.add(new Attribute("index", oe.getKey().toString()));
+					att.add(new Attribute("type", Integer.toString(o.type)));
+					att.add(new Attribute("properties", Integer.toString(o.properties)));
+					w.writeEmptyElement(OBJECT_TAG, att);
+					for (final Iterator d = o.byPid.values().iterator(); d.hasNext();)
+						writeDescription(w, (Description) d.next(), o);
+					for (final Iterator d = o.byIndex.values().iterator(); d.hasNext();) {
+						final Description desc = (Description) d.next();
+						if (o.byPid.get(new Integer(desc.getPID())) != desc)
+							writeDescription(w, desc, o);
+					}
+				}
+				for (final Iterator j = e.values.entrySet().iterator(); j.hasNext();) {
+					final Map.Entry ve = (Map.Entry) j.next();
+					final String[] split = ((String) ve.getKey()).split(":");
+					att.clear();
+					att.add(new Attribute("oi", split[0]));
+					att.add(new Attribute("pid", split[1]));
+					att.add(new Attribute("start", split[2]));
+					att.add(new Attribute("elems", split[3]));
+					att.add(new Attribute("data", DataUnitBuilder.toHex((byte[]) ve
+						.getValue(), "")));
+					w.writeEmptyElement(VALUE_TAG, att);
+				}
+				w.endElement();
+			}
+			w.endElement();
+		}
+		finally {
+			w.close();
+		}
+	}
+
+	private Entry get(DeviceKey key, boolean create)
+	{
+		Entry e = (Entry) entries.get(key);
+		if (e != null && expired(e)) {
+			entries.remove(key);
+			e = null;
+		}
+		if (e == null && create)
+			entries.put(key, e = new Entry(System.currentTimeMillis()));
+		return e;
+	}
+
+	private boolean expired(Entry e)
+	{
+		return ttl > 0 && System.currentTimeMillis() >= e.timestamp + ttl * 1000L;
+	}
+
+	// caches the description by PID, and returns its object entry
+	private Obj put(DeviceKey key, Description d)
+	{
+		final Obj o = get(key, true).obj(d.getObjectIndex(), true);
+		o.type = d.getObjectType();
+		o.byPid.put(new Integer(d.getPID()), d);
+		return o;
+	}
+
+	// descriptions are mutable within this package, never share cached instances
+	private static Description copy(Description d)
+	{
+		if (d == null)
+			return null;
+		return new Description(d.getObjectIndex(), d.getObjectType(), d.getPID(), d
+			.getPropIndex(), d.getPDT(), d.isWriteEnabled(), d.getCurrentElements(), d
+			.getMaxElements(), d.getReadLevel(), d.getWriteLevel());
+	}
+
+	private static void writeDescription(XMLWriter w, Description d, Obj o)
+		throws KNXMLException
+	{
+		final List att = new ArrayList();
+		att.add(new Attribute("oi", Integer.toString(d.getObjectIndex())));
+		att.add(new Attribute("ot", Integer.toString(d.getObjectType())));
+		att.add(new Attribute("pid", Integer.toString(d.getPID())));
+		att.add(new Attribute("pi", Integer.toString(d.getPropIndex())));
+		att.add(new Attribute("pdt", Integer.toString(d.getPDT())));
+		att.add(new Attribute("write", d.isWriteEnabled() ? "1" : "0"));
+		att.add(new Attribute("elems", Integer.toString(d.getCurrentElements())));
+		att.add(new Attribute("maxElems", Integer.toString(d.getMaxElements())));
+		att.add(new Attribute("rLevel", Integer.toString(d.getReadLevel())));
+		att.add(new Attribute("wLevel", Integer.toString(d.getWriteLevel())));
+		final boolean byIndex = o.byIndex.get(new Integer(d.getPropIndex())) == d;
+		att.add(new Attribute("byIndex", byIndex ? "1" : "0"));
+		w.writeEmptyElement(DESC_TAG, att);
+	}
+
+	private static String valueKey(int objIndex, int pid, int start, int elements)
+	{
+		return objIndex + ":" + pid + ":" + start + ":" + elements;
+	}
+
+	private static int toInt(String s) throws KNXFormatException
+	{
+		try {
+			if (s != null)
+				return Integer.parseInt(s);
+		}
+		catch (final NumberFormatException e) {}
+		throw new KNXFormatException("can't convert to number " + s, s);
+	}
+
+	private static byte[] fromHex(String hex) throws KNXFormatException
+	{
+		if (hex == null || hex.length() % 2 != 0)
+			throw new KNXFormatException("invalid hex data " + hex, hex);
+		final byte[] data = new byte[hex.length() / 2];
+		try {
+			for (int i = 0; i < data.length; i++)
+				data[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+		}
+		catch (final NumberFormatException e) {
+			throw new KNXFormatException("invalid hex data " + hex, hex);
+		}
+		return data;
+	}
+}
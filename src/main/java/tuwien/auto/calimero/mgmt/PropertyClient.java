@@ -854,6 +854,9 @@ public class PropertyClient
 	private final List objectTypes = new ArrayList();
 	private final DPTXlator2ByteUnsigned tObjType;
 
+	private volatile PropertyCache cache;
+	private volatile PropertyCache.DeviceKey device;
+
 	/**
 	 * Creates a new property client using the specified adapter for accessing device
 	 * properties.
@@ -965,6 +968,27 @@ public class PropertyClient
 		return properties;
 	}
 
+	/**
+	 * Sets a property cache consulted by this property client before accessing the
+	 * device.
+	 * <p>
+	 * Object types, property descriptions, property scans and values of static
+	 * properties are looked up in the cache using the supplied device key, and results
+	 * read from the device are added to the cache. Property values are never written to
+	 * the cache by {@link #setProperty(int, int, int, int, byte[])}.
+	 * 
+	 * @param cache the property cache, or <code>null</code> to not use a cache
+	 * @param device the device key identifying the accessed device, see
+	 *        {@link PropertyCache.DeviceKey#read(ManagementClient, Destination)}
+	 */
+	public void setCache(PropertyCache cache, PropertyCache.DeviceKey device)
+	{
+		if (cache != null && device == null)
+			throw new KNXIllegalArgumentException("no device key for property cache");
+		this.device = device;
+		this.cache = cache;
+	}
+
 	/**
 	 * Sets one element of a property, with the value given as string representation.
 	 * <p>
@@ -1038,8 +1062,18 @@ public class PropertyClient
 	public byte[] getProperty(int objIndex, int pid, int start, int elements)
 		throws KNXException
 	{
+		final PropertyCache c = cache;
+		final boolean cached = c != null && c.isStaticProperty(pid);
+		if (cached) {
+			final byte[] data = c.getValue(device, objIndex, pid, start, elements);
+			if (data != null)
+				return data;
+		}
 		try {
-			return pa.getProperty(objIndex, pid, start, elements);
+			final byte[] data = pa.getProperty(objIndex, pid, start, elements);
+			if (cached)
+				c.putValue(device, objIndex, pid, start, elements, data);
+			return data;
 		}
 		catch (final KNXException e) {
 			logger.error("get property failed", e);
@@ -1086,8 +1120,17 @@ public class PropertyClient
 	{
 		if (pid == 0)
 			throw new KNXIllegalArgumentException("pid has to be > 0");
+		final PropertyCache c = cache;
+		if (c != null) {
+			final Description d = c.getDescription(device, objIndex, pid);
+			if (d != null)
+				return d;
+		}
 		try {
-			return createDesc(objIndex, pa.getDescription(objIndex, pid, 0));
+			final Description d = createDesc(objIndex, pa.getDescription(objIndex, pid, 0));
+			if (c != null)
+				c.putDescription(device, d);
+			return d;
 		}
 		catch (final KNXException e) {
 			logger.error("get description failed", e);
@@ -1107,8 +1150,18 @@ public class PropertyClient
 	public Description getDescriptionByIndex(int objIndex, int propIndex)
 		throws KNXException
 	{
+		final PropertyCache c = cache;
+		if (c != null) {
+			final Description d = c.getDescriptionByIndex(device, objIndex, propIndex);
+			if (d != null)
+				return d;
+		}
 		try {
-			return createDesc(objIndex, pa.getDescription(objIndex, 0, propIndex));
+			final Description d = createDesc(objIndex, pa.getDescription(objIndex, 0,
+				propIndex));
+			if (c != null)
+				c.putDescriptionByIndex(device, d);
+			return d;
 		}
 		catch (final KNXException e) {
 			logger.error("get description failed", e);
@@ -1151,6 +1204,12 @@ public class PropertyClient
 	 */
 	public List scanProperties(int objIndex, boolean allProperties) throws KNXException
 	{
+		final PropertyCache c = cache;
+		if (c != null) {
+			final List l = c.getScan(device, objIndex, allProperties);
+			if (l != null)
+				return l;
+		}
 		final List scan = new ArrayList();
 		// property with index 0 is description of object type
 		// rest are ordinary properties of the object
@@ -1164,6 +1223,8 @@ public class PropertyClient
 				throw e;
 			}
 		}
+		if (c != null)
+			c.putScan(device, objIndex, allProperties, scan);
 		return scan;
 	}
 
@@ -1215,9 +1276,16 @@ public class PropertyClient
 
 	private int queryObjectType(int objIndex) throws KNXException
 	{
-		tObjType.setData(pa.getProperty(objIndex, 1, 1, 1));
-		objectTypes.add(new Pair(objIndex, tObjType.getValueUnsigned()));
-		return tObjType.getValueUnsigned();
+		final PropertyCache c = cache;
+		int type = c != null ? c.getObjectType(device, objIndex) : -1;
+		if (type == -1) {
+			tObjType.setData(pa.getProperty(objIndex, 1, 1, 1));
+			type = tObjType.getValueUnsigned();
+			if (c != null)
+				c.putObjectType(device, objIndex, type);
+		}
+		objectTypes.add(new Pair(objIndex, type));
+		return type;
 	}
 
 	private DPTXlator createTranslator(int objIndex, int pid) throws KNXException
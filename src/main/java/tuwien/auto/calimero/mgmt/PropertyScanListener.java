@@ -0,0 +1,83 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import java.util.EventListener;
+import java.util.List;
+
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.exception.KNXException;
+
+/**
+ * Listener interface to receive the progress of a property scan.
+ * <p>
+ * With more devices scanned concurrently, the notifications of different devices are
+ * interleaved and might be invoked by different threads.
+ * 
+ * @author B. Malinowsky
+ * @see PropertyScanner
+ */
+public interface PropertyScanListener extends EventListener
+{
+	/**
+	 * A property description of a device was scanned.
+	 * <p>
+	 * 
+	 * @param device address of the scanned device
+	 * @param d the property description
+	 */
+	void propertyScanned(IndividualAddress device, Description d);
+
+	/**
+	 * The property scan of a device is completed.
+	 * <p>
+	 * 
+	 * @param device address of the scanned device
+	 * @param descriptions list containing all scanned property descriptions of type
+	 *        {@link Description}
+	 */
+	void deviceScanned(IndividualAddress device, List descriptions);
+
+	/**
+	 * The property scan of a device failed and was canceled.
+	 * <p>
+	 * 
+	 * @param device address of the device
+	 * @param e the cause for the failure
+	 */
+	void deviceFailed(IndividualAddress device, KNXException e);
+}
@@ -0,0 +1,315 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
+import tuwien.auto.calimero.exception.KNXRemoteException;
+import tuwien.auto.calimero.log.LogManager;
+import tuwien.auto.calimero.log.LogService;
+
+/**
+ * Scans the property descriptions of the interface objects of KNX devices.
+ * <p>
+ * A property scanner uses one management client, i.e., one network link, for
+ * communication. More devices are scanned concurrently, up to the maximum number of
+ * concurrent devices set on creation. Since the services addressing one device are
+ * executed one after another, scanning devices concurrently gives the most benefit when
+ * scanning many devices.<br>
+ * The object type of an interface object is queried once for each object scanned. In
+ * addition, the result of a device scan might be reused for subsequent devices of the
+ * same device type (i.e., same mask version, manufacturer and program version), see
+ * {@link #setReuseDeviceTypeResults(boolean)}.
+ * <p>
+ * The scan progress is reported to a {@link PropertyScanListener}.
+ * 
+ * @author B. Malinowsky
+ * @see PropertyClient#scanProperties(boolean)
+ */
+public class PropertyScanner
+{
+	private final class Worker extends Thread
+	{
+		private final IndividualAddress[] devices;
+		private final boolean all;
+		private final PropertyScanListener l;
+		private final Map results;
+
+		Worker(IndividualAddress[] devices, boolean allProperties,
+			PropertyScanListener listener, Map results)
+		{
+			super("Property scanner");
+			setDaemon(true);
+			this.devices = devices;
+			all = allProperties;
+			l = listener;
+			this.results = results;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Thread#run()
+		 */
+		public void run()
+		{
+			for (IndividualAddress device = next(); device != null; device = next())
+				try {
+					final List scan = scan(device, all, l);
+					synchronized (results) {
+						results.put(device, scan);
+					}
+				}
+				catch (final KNXException e) {
+					logger.warn("scan of " + device + " failed", e);
+					if (l != null)
+						try {
+							l.deviceFailed(device, e);
+						}
+						catch (final RuntimeException rte) {
+							logger.error("scan listener", rte);
+						}
+				}
+		}
+
+		private IndividualAddress next()
+		{
+			synchronized (results) {
+				return nextDevice < devices.length ? devices[nextDevice++] : null;
+			}
+		}
+	}
+
+	// PID of the interface object type property
+	private static final int PID_OBJECT_TYPE = 1;
+
+	private final ManagementClient mc;
+	private final boolean co;
+	private final int concurrent;
+	private final LogService logger;
+
+	private volatile boolean reuse;
+	// map device key to list of property descriptions, of object type scans and of
+	// scans of all properties, respectively
+	private final Map typeScans = Collections.synchronizedMap(new HashMap());
+	private final Map allScans = Collections.synchronizedMap(new HashMap());
+	// index of next device to scan, guarded by the results of a scan
+	private int nextDevice;
+
+	/**
+	 * Creates a new property scanner.
+	 * <p>
+	 * The log service used by property scanners is named "property scanner".
+	 * 
+	 * @param client the management client used for communication with the devices
+	 * @param connectionOriented <code>true</code> to use connection oriented mode for
+	 *        accessing devices, <code>false</code> to use connectionless mode
+	 * @param maxConcurrentDevices maximum number of devices scanned concurrently, &gt; 0
+	 */
+	public PropertyScanner(ManagementClient client, boolean connectionOriented,
+		int maxConcurrentDevices)
+	{
+		if (maxConcurrentDevices < 1)
+			throw new KNXIllegalArgumentException("maximum concurrent devices not > 0");
+		mc = client;
+		co = connectionOriented;
+		concurrent = maxConcurrentDevices;
+		logger = LogManager.getManager().getLogService("property scanner");
+	}
+
+	/**
+	 * Sets whether the scan result of a device is reused for subsequent scans of devices
+	 * of the same device type.
+	 * <p>
+	 * The device type is identified by a {@link PropertyCache.DeviceKey}, i.e., the mask
+	 * version, manufacturer ID and program version of a device. Reusing results will not
+	 * query the descriptions of a device, if a device of the same type was already
+	 * scanned; the device key is read from every device instead. Only scans done while
+	 * reusing results are kept for reuse. Note that the current number of elements in
+	 * the reused descriptions are the ones of the first scanned device.<br>
+	 * By default, results are not reused.
+	 * 
+	 * @param reuse <code>true</code> to reuse scan results, <code>false</code> otherwise
+	 */
+	public void setReuseDeviceTypeResults(boolean reuse)
+	{
+		this.reuse = reuse;
+	}
+
+	/**
+	 * Removes all scan results kept for reuse.
+	 * <p>
+	 */
+	public void clearDeviceTypeResults()
+	{
+		typeScans.clear();
+		allScans.clear();
+	}
+
+	/**
+	 * Scans the property descriptions of the interface objects of all supplied devices.
+	 * <p>
+	 * The method blocks until all devices are scanned. Devices whose scan failed are
+	 * reported to the listener, and are not contained in the returned map.
+	 * 
+	 * @param devices addresses of the devices to scan
+	 * @param allProperties <code>true</code> to scan all property descriptions in the
+	 *        interface objects, <code>false</code> to only scan the object type
+	 *        descriptions
+	 * @param l the scan listener, use <code>null</code> for no listener
+	 * @return a map with the device address as key, and the list of property
+	 *         descriptions of type {@link Description} as value
+	 */
+	public synchronized Map scan(IndividualAddress[] devices, boolean allProperties,
+		PropertyScanListener l)
+	{
+		final Map results = new HashMap();
+		nextDevice = 0;
+		final Worker[] workers = new Worker[Math.min(concurrent, devices.length)];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Worker(devices, allProperties, l, results);
+			workers[i].start();
+		}
+		for (int i = 0; i < workers.length; i++)
+			while (workers[i].isAlive())
+				try {
+					workers[i].join();
+				}
+				catch (final InterruptedException e) {}
+		return results;
+	}
+
+	/**
+	 * Scans the property descriptions of the interface objects of one device.
+	 * <p>
+	 * 
+	 * @param device address of the device to scan
+	 * @param allProperties <code>true</code> to scan all property descriptions in the
+	 *        interface objects, <code>false</code> to only scan the object type
+	 *        descriptions
+	 * @param l the scan listener, use <code>null</code> for no listener
+	 * @return a list containing the property descriptions of type {@link Description}
+	 * @throws KNXException on communication errors while querying the descriptions
+	 */
+	public List scan(IndividualAddress device, boolean allProperties,
+		PropertyScanListener l) throws KNXException
+	{
+		final Destination dst = mc.createDestination(device, co);
+		try {
+			final Map scans = allProperties ? allScans : typeScans;
+			final PropertyCache.DeviceKey key =
+				reuse ? PropertyCache.DeviceKey.read(mc, dst) : null;
+			List scan = key != null ? (List) scans.get(key) : null;
+			if (scan != null)
+				for (int i = 0; i < scan.size(); i++)
+					fireScanned(l, device, (Description) scan.get(i));
+			else {
+				scan = scanObjects(dst, allProperties, l);
+				if (key != null)
+					scans.put(key, Collections.unmodifiableList(scan));
+			}
+			if (l != null)
+				try {
+					l.deviceScanned(device, scan);
+				}
+				catch (final RuntimeException rte) {
+					logger.error("scan listener", rte);
+				}
+			return scan;
+		}
+		finally {
+			dst.destroy();
+		}
+	}
+
+	private List scanObjects(Destination dst, boolean allProperties,
+		PropertyScanListener l) throws KNXException
+	{
+		final List scan = new ArrayList();
+		for (int oi = 0;; ++oi) {
+			int type = -1;
+			// property with index 0 is description of object type
+			// rest are ordinary properties of the object
+			for (int i = 0; i < 1 || allProperties; ++i) {
+				final byte[] desc;
+				try {
+					desc = mc.readPropertyDesc(dst, oi, 0, i);
+				}
+				catch (final KNXRemoteException e) {
+					// no more properties, or no more objects on property index 0
+					if (i == 0)
+						return scan;
+					break;
+				}
+				if (type == -1)
+					type = queryObjectType(dst, oi);
+				final Description d = new Description(type, desc);
+				try {
+					d.setCurrentElements(mc.readProperty(dst, oi, d.getPID(), 0, 1));
+				}
+				catch (final KNXRemoteException e) {
+					logger.warn("no current elements of " + oi + "|" + d.getPID(), e);
+				}
+				scan.add(d);
+				fireScanned(l, dst.getAddress(), d);
+			}
+		}
+	}
+
+	private int queryObjectType(Destination dst, int objIndex) throws KNXException
+	{
+		final byte[] data = mc.readProperty(dst, objIndex, PID_OBJECT_TYPE, 1, 1);
+		return data.length < 2 ? data[0] & 0xff : (data[0] & 0xff) << 8 | data[1] & 0xff;
+	}
+
+	private void fireScanned(PropertyScanListener l, IndividualAddress device,
+		Description d)
+	{
+		if (l != null)
+			try {
+				l.propertyScanned(device, d);
+			}
+			catch (final RuntimeException rte) {
+				logger.error("scan listener", rte);
+			}
+	}
+}
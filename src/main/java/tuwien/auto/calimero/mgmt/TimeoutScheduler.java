@@ -0,0 +1,190 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drives the connection timeouts of transport layer destinations using one thread.
+ * <p>
+ * All destinations sharing a scheduler are served by a single daemon thread, which is
+ * started on first use and runs until {@link #quit()}. A restart of a destination
+ * timeout only updates the deadline of that destination, the thread is woken up for
+ * expired deadlines only.<br>
+ * Since every deadline is set to the current time plus the same constant timeout of the
+ * scheduler, a
+ * newly armed deadline is never earlier than the ones already scheduled, hence arming
+ * requires a notification only if the scheduler is idle.
+ * 
+ * @author B. Malinowsky
+ */
+final class TimeoutScheduler implements Runnable
+{
+	// default idle timeout for connection in milliseconds
+	static final int TIMEOUT = 6000;
+
+	// scheduler used by destinations not supplying a scheduler of its own
+	private static TimeoutScheduler defaultScheduler;
+
+	private final String name;
+	private final int timeout;
+	// list of destinations with a running timeout, guarded by this
+	private final List armed = new ArrayList();
+	private Thread worker;
+	private boolean quit;
+
+	TimeoutScheduler(String name)
+	{
+		this(name, TIMEOUT);
+	}
+
+	/**
+	 * Creates a scheduler with a connection timeout other than the default timeout.
+	 * <p>
+	 * 
+	 * @param name name of the scheduler thread
+	 * @param timeout connection timeout in milliseconds, timeout &gt; 0
+	 */
+	TimeoutScheduler(String name, int timeout)
+	{
+		this.name = name;
+		this.timeout = timeout;
+	}
+
+	static synchronized TimeoutScheduler getDefault()
+	{
+		if (defaultScheduler == null)
+			defaultScheduler = new TimeoutScheduler("Destination timeouts");
+		return defaultScheduler;
+	}
+
+	/**
+	 * Starts or restarts the connection timeout of destination <code>d</code>.
+	 * <p>
+	 * 
+	 * @param d the destination
+	 */
+	synchronized void restart(Destination d)
+	{
+		if (quit)
+			return;
+		d.timeoutEnd = System.currentTimeMillis() + timeout;
+		if (d.timeoutArmed)
+			return;
+		d.timeoutArmed = true;
+		armed.add(d);
+		if (worker == null) {
+			worker = new Thread(this, name);
+			worker.setDaemon(true);
+			worker.start();
+		}
+		else if (armed.size() == 1)
+			notify();
+	}
+
+	/**
+	 * Cancels a running connection timeout of destination <code>d</code>.
+	 * <p>
+	 * 
+	 * @param d the destination
+	 */
+	synchronized void cancel(Destination d)
+	{
+		if (d.timeoutArmed) {
+			d.timeoutArmed = false;
+			armed.remove(d);
+		}
+	}
+
+	/**
+	 * Stops the scheduler thread and cancels all running timeouts.
+	 * <p>
+	 * Subsequent restarts of timeouts are ignored.
+	 */
+	synchronized void quit()
+	{
+		quit = true;
+		for (int i = 0; i < armed.size(); i++)
+			((Destination) armed.get(i)).timeoutArmed = false;
+		armed.clear();
+		notify();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run()
+	{
+		final List expired = new ArrayList();
+		while (true) {
+			synchronized (this) {
+				while (!quit && expired.isEmpty()) {
+					final long now = System.currentTimeMillis();
+					long next = 0;
+					for (int i = armed.size() - 1; i >= 0; i--) {
+						final Destination d = (Destination) armed.get(i);
+						final long remaining = d.timeoutEnd - now;
+						if (remaining <= 0) {
+							armed.remove(i);
+							d.timeoutArmed = false;
+							expired.add(d);
+						}
+						else if (next == 0 || remaining < next)
+							next = remaining;
+					}
+					if (expired.isEmpty())
+						try {
+							wait(next);
+						}
+						catch (final InterruptedException e) {}
+				}
+				if (quit)
+					return;
+			}
+			// notify destinations outside the lock, a disconnect will send a frame
+			for (int i = 0; i < expired.size(); i++)
+				try {
+					((Destination) expired.get(i)).connectionTimeout();
+				}
+				catch (final RuntimeException e) {
+					// e.g., transport layer got detached, keep serving the others
+				}
+			expired.clear();
+		}
+	}
+}
@@ -57,6 +57,7 @@ import tuwien.auto.calimero.exception.KNXTimeoutException;
 import tuwien.auto.calimero.link.KNXLinkClosedException;
 import tuwien.auto.calimero.link.KNXNetworkLink;
 import tuwien.auto.calimero.link.event.NetworkLinkListener;
+import tuwien.auto.calimero.log.LogLevel;
 import tuwien.auto.calimero.log.LogManager;
 import tuwien.auto.calimero.log.LogService;
 import tuwien.auto.calimero.mgmt.Destination.AggregatorProxy;
@@ -68,6 +69,11 @@ import tuwien.auto.calimero.mgmt.Destination.AggregatorProxy;
  * response is implicit by return of a send method, there are no explicit confirmation
  * notifications.
  * <p>
+ * Sequence numbers and acknowledgments are maintained for each destination separately.
+ * Hence, data connected sending to different destinations might be done concurrently,
+ * while sending to one destination is serialized (waiting for the layer 4 acknowledge
+ * before the next send).
+ * <p>
  * Once this transport layer has been {@link TransportLayer#detach()}ed, it can't be used
  * for any further layer 4 communication, and it can't be attached to a new network link.
  * <br>
@@ -100,22 +106,21 @@ public class TransportLayerImpl implements TransportLayer
 					fireFrameType(f, 2);
 			}
 			else {
-				final IndividualAddress src = f.getSource();
-				// are we waiting for ack?
-				synchronized (indications) {
-					if (active != null
-						&& active.getDestination().getAddress().equals(src)) {
-						indications.add(e);
-						indications.notify();
-						return;
-					}
+				Connection c = null;
+				synchronized (proxies) {
+					c = (Connection) proxies.get(f.getSource());
 				}
-				try {
-					AggregatorProxy ap = null;
-					synchronized (proxies) {
-						ap = (AggregatorProxy) proxies.get(f.getSource());
+				// is a sender waiting for ack from that destination?
+				if (c != null)
+					synchronized (c) {
+						if (c.awaitingAck) {
+							c.indications.add(e);
+							c.notify();
+							return;
+						}
 					}
-					handleConnected(f, ap);
+				try {
+					handleConnected(f, c);
 				}
 				catch (final KNXLinkClosedException ignore) {
 					// we get notified with link-closed event
@@ -134,6 +139,24 @@ public class TransportLayerImpl implements TransportLayer
 		}
 	}
 
+	// holds the state of the logical connection with one destination
+	private static final class Connection
+	{
+		final AggregatorProxy proxy;
+		// indications received while awaiting an ack, guarded by this
+		final List indications = new LinkedList();
+		// guards between send and return (only one at a time per destination)
+		final Object sendLock = new Object();
+		// guarded by this
+		boolean awaitingAck;
+		volatile int repeated;
+
+		Connection(AggregatorProxy p)
+		{
+			proxy = p;
+		}
+	}
+
 	private static final short CONNECT = 0x80;
 	private static final short DISCONNECT = 0x81;
 	private static final short ACK = 0xC2;
@@ -146,24 +169,21 @@ public class TransportLayerImpl implements TransportLayer
 	// maximum repetitions of send in connected mode
 	private static final int MAX_REPEAT = 3;
 
-	private static final GroupAddress broadcast = new GroupAddress(0);
+	private static final GroupAddress broadcast = GroupAddress.valueOf(0);
+	// drives the connection timeouts of all destinations of this layer
+	private final TimeoutScheduler timeouts;
 	// used as default on incoming conn.oriented messages from unknown remote devices
-	private final Destination unknownPartner =
-		new Destination(new AggregatorProxy(this), new IndividualAddress(0), true);
+	private final Destination unknownPartner;
 
 	private final LogService logger;
 
 	private volatile boolean detached;
 	private final KNXNetworkLink lnk;
 	private final NetworkLinkListener lnkListener = new NLListener();
-	private final List indications = new LinkedList();
 	private final EventListeners listeners;
 
-	// holds the mapping of connection destination address to proxy
+	// holds the mapping of connection destination address to connection (and its proxy)
 	private final Map proxies = new HashMap();
-	private AggregatorProxy active;
-	private volatile int repeated;
-	private final Object lock = new Object();
 
 	/**
 	 * Creates a new transport layer attached to the supplied KNX network link.
@@ -173,9 +193,27 @@ public class TransportLayerImpl implements TransportLayer
 	 * @throws KNXLinkClosedException if the network link is closed
 	 */
 	public TransportLayerImpl(KNXNetworkLink link) throws KNXLinkClosedException
+	{
+		this(link, TimeoutScheduler.TIMEOUT);
+	}
+
+	/**
+	 * Creates a new transport layer with a connection timeout other than the default
+	 * timeout of 6 seconds.
+	 * <p>
+	 * 
+	 * @param link network link used for communication with a KNX network
+	 * @param connectionTimeout connection timeout of destinations in milliseconds
+	 * @throws KNXLinkClosedException if the network link is closed
+	 */
+	TransportLayerImpl(KNXNetworkLink link, int connectionTimeout)
+		throws KNXLinkClosedException
 	{
 		if (!link.isOpen())
 			throw new KNXLinkClosedException();
+		timeouts = new TimeoutScheduler("TL connection timeouts", connectionTimeout);
+		unknownPartner = new Destination(new AggregatorProxy(this, timeouts),
+			IndividualAddress.valueOf(0), true);
 		lnk = link;
 		lnk.addLinkListener(lnkListener);
 		logger = LogManager.getManager().getLogService(getName());
@@ -211,10 +249,10 @@ public class TransportLayerImpl implements TransportLayer
 			if (proxies.containsKey(remote))
 				throw new KNXIllegalArgumentException("destination already created: "
 					+ remote);
-			final AggregatorProxy p = new AggregatorProxy(this);
+			final AggregatorProxy p = new AggregatorProxy(this, timeouts);
 			final Destination d =
 				new Destination(p, remote, connectionOriented, keepAlive, verifyMode);
-			proxies.put(remote, p);
+			proxies.put(remote, new Connection(p));
 			logger.trace("destination " + remote + " ready for use");
 			return d;
 		}
@@ -228,10 +266,10 @@ public class TransportLayerImpl implements TransportLayer
 	{
 		// method invocation is idempotent
 		synchronized (proxies) {
-			final AggregatorProxy p = (AggregatorProxy) proxies.get(d.getAddress());
-			if (p == null)
+			final Connection c = (Connection) proxies.get(d.getAddress());
+			if (c == null)
 				return;
-			if (p.getDestination() == d) {
+			if (c.proxy.getDestination() == d) {
 				proxies.remove(d.getAddress());
 				d.destroy();
 			}
@@ -264,7 +302,7 @@ public class TransportLayerImpl implements TransportLayer
 	 */
 	public void connect(Destination d) throws KNXTimeoutException, KNXLinkClosedException
 	{
-		final AggregatorProxy p = getProxy(d);
+		final AggregatorProxy p = getConnection(d).proxy;
 		if (!d.isConnectionOriented()) {
 			logger.error("destination not connection oriented: " + d.getAddress());
 			return;
@@ -288,7 +326,7 @@ public class TransportLayerImpl implements TransportLayer
 			throw new KNXIllegalStateException("TL detached");
 		if (d.getState() != Destination.DESTROYED
 			&& d.getState() != Destination.DISCONNECTED)
-			disconnectIndicate(getProxy(d), true);
+			disconnectIndicate(getConnection(d).proxy, true);
 	}
 
 	/* (non-Javadoc)
@@ -298,41 +336,56 @@ public class TransportLayerImpl implements TransportLayer
 	public void sendData(Destination d, Priority p, byte[] tsdu)
 		throws KNXDisconnectException, KNXLinkClosedException
 	{
-		final AggregatorProxy ap = getProxy(d);
+		final Connection c = getConnection(d);
+		final AggregatorProxy ap = c.proxy;
 		if (d.getState() == Destination.DISCONNECTED) {
 			final KNXDisconnectException e = new KNXDisconnectException(
 				"no connection opened for " + d.getAddress(), d);
 			logger.warn("send failed", e);
 			throw e;
 		}
-		tsdu[0] = (byte) (tsdu[0] & 0x03 | DATA_CONNECTED | ap.getSeqSend() << 2);
-		// the entry lock guards between send and return (only one at a time)
-		synchronized (lock) {
-			// on indications we do wait() for incoming messages
-			synchronized (indications) {
-				try {
-					active = ap;
-					for (repeated = 0; repeated < MAX_REPEAT + 1; ++repeated) {
-						try {
-							logger.trace("sending data connected to " + d.getAddress()
-								+ ", attempt " + (repeated + 1));
-							// set state and timer
-							ap.setState(Destination.OPEN_WAIT);
-							lnk.sendRequestWait(d.getAddress(), p, tsdu);
-							if (waitForAck())
-								return;
+		// the entry lock guards between send and return (only one at a time), we don't
+		// block any sending to other destinations
+		synchronized (c.sendLock) {
+			tsdu[0] = (byte) (tsdu[0] & 0x03 | DATA_CONNECTED | ap.getSeqSend() << 2);
+			try {
+				for (c.repeated = 0; c.repeated < MAX_REPEAT + 1; ++c.repeated) {
+					try {
+						if (logger.isEnabled(LogLevel.TRACE))
+							logger.trace("sending data connected to {}, attempt {}",
+								d.getAddress(), new Integer(c.repeated + 1));
+						// queue indications of destination from now on, we don't hold
+						// the connection monitor while sending, which would block the
+						// link notifying us
+						synchronized (c) {
+							c.awaitingAck = true;
 						}
-						catch (final KNXTimeoutException e) {}
-						// cancel repetitions if detached or destroyed
-						if (detached || d.getState() == Destination.DESTROYED)
-							throw new KNXDisconnectException(
-								"send data connected failed", d);
+						// set state and timer
+						ap.setState(Destination.OPEN_WAIT);
+						lnk.sendRequestWait(d.getAddress(), p, tsdu);
+						if (waitForAck(c))
+							return;
 					}
+					catch (final KNXTimeoutException e) {}
+					// cancel repetitions if detached or destroyed
+					if (detached || d.getState() == Destination.DESTROYED)
+						throw new KNXDisconnectException("send data connected failed", d);
 				}
-				finally {
-					active = null;
-					repeated = 0;
+			}
+			finally {
+				synchronized (c) {
+					c.awaitingAck = false;
 				}
+				c.repeated = 0;
+				// handle indications which arrived after we got the ack
+				FrameEvent e;
+				while ((e = nextIndication(c)) != null)
+					try {
+						handleConnected((CEMILData) e.getFrame(), c);
+					}
+					catch (final KNXTimeoutException ignore) {
+						// possible timeouts on sending ack
+					}
 			}
 		}
 		disconnectIndicate(ap, true);
@@ -381,26 +434,27 @@ public class TransportLayerImpl implements TransportLayer
 		closeDestinations(false);
 		lnk.removeLinkListener(lnkListener);
 		detached = true;
+		timeouts.quit();
 		fireDetached();
 		logger.info("detached from " + lnk.getName());
 		LogManager.getManager().removeLogService(logger.getName());
 		return lnk;
 	}
 
-	private AggregatorProxy getProxy(Destination d)
+	private Connection getConnection(Destination d)
 	{
 		if (detached)
 			throw new KNXIllegalStateException("TL detached");
 		synchronized (proxies) {
-			final AggregatorProxy p = (AggregatorProxy) proxies.get(d.getAddress());
+			final Connection c = (Connection) proxies.get(d.getAddress());
 			// check identity, too, to prevent destination with only same address
-			if (p == null || p.getDestination() != d)
+			if (c == null || c.proxy.getDestination() != d)
 				throw new KNXIllegalArgumentException("not the owner of " + d.toString());
-			return p;
+			return c;
 		}
 	}
 
-	private void handleConnected(CEMILData frame, AggregatorProxy p)
+	private void handleConnected(CEMILData frame, Connection c)
 		throws KNXLinkClosedException, KNXTimeoutException
 	{
 		final IndividualAddress sender = frame.getSource();
@@ -408,7 +462,9 @@ public class TransportLayerImpl implements TransportLayer
 		final int ctrl = tpdu[0] & 0xFF;
 		final int seq = (tpdu[0] & 0x3C) >>> 2;
 	
-		// on proxy null (no destination found for sender) use 'no partner' placeholder
+		// on connection null (no destination found for sender) use 'no partner'
+		// placeholder
+		final AggregatorProxy p = c != null ? c.proxy : null;
 		final Destination d = p != null ? p.getDestination() : unknownPartner;
 	
 		if (ctrl == CONNECT) {
@@ -446,7 +502,7 @@ public class TransportLayerImpl implements TransportLayer
 			else if (d.getState() == Destination.OPEN_WAIT && seq == p.getSeqSend()) {
 				p.incSeqSend();
 				p.setState(Destination.OPEN_IDLE);
-				logger.trace("positive ack by " + d.getAddress());
+				logger.trace("positive ack by {}", d.getAddress());
 			}
 			else
 				disconnectIndicate(p, true);
@@ -456,30 +512,33 @@ public class TransportLayerImpl implements TransportLayer
 				|| !sender.equals(d.getAddress()))
 				sendDisconnect(sender);
 			else if (d.getState() == Destination.OPEN_WAIT && seq == p.getSeqSend()
-				&& repeated < MAX_REPEAT) {
+				&& c.repeated < MAX_REPEAT) {
 				; // do nothing, we will send message again
 			}
 			else
 				disconnectIndicate(p, true);
 	}
 
-	private boolean waitForAck() throws KNXTimeoutException, KNXDisconnectException,
-		KNXLinkClosedException
+	private boolean waitForAck(Connection c) throws KNXTimeoutException,
+		KNXDisconnectException, KNXLinkClosedException
 	{
 		long remaining = ACK_TIMEOUT * 1000;
 		final long end = System.currentTimeMillis() + remaining;
-		final Destination d = active.getDestination();
+		final Destination d = c.proxy.getDestination();
 		while (remaining > 0) {
 			try {
-				while (indications.size() > 0)
-					handleConnected((CEMILData) ((FrameEvent) indications.remove(0))
-						.getFrame(), active);
+				FrameEvent e;
+				while ((e = nextIndication(c)) != null)
+					handleConnected((CEMILData) e.getFrame(), c);
 				if (d.getState() == Destination.DISCONNECTED)
 					throw new KNXDisconnectException(d.getAddress()
 						+ " disconnected while awaiting ACK", d);
 				if (d.getState() == Destination.OPEN_IDLE)
 					return true;
-				indications.wait(remaining);
+				synchronized (c) {
+					if (c.indications.isEmpty())
+						c.wait(remaining);
+				}
 				if (d.getState() == Destination.DISCONNECTED)
 					throw new KNXDisconnectException(d.getAddress()
 						+ " disconnected while awaiting ACK", d);
@@ -490,16 +549,24 @@ public class TransportLayerImpl implements TransportLayer
 		return false;
 	}
 
+	private static FrameEvent nextIndication(Connection c)
+	{
+		synchronized (c) {
+			return c.indications.isEmpty() ? null : (FrameEvent) c.indications.remove(0);
+		}
+	}
+
 	private void closeDestinations(boolean skipSendDisconnect)
 	{
 		// we can't use proxies default iterator due to concurrent modifications in
 		// destroyDestination(), called by d.destroy()
-		AggregatorProxy[] allProxies = new AggregatorProxy[proxies.size()];
+		Connection[] connections;
 		synchronized (proxies) {
-			allProxies = (AggregatorProxy[]) proxies.values().toArray(allProxies);
+			connections = (Connection[]) proxies.values().toArray(
+				new Connection[proxies.size()]);
 		}
-		for (int i = 0; i < allProxies.length; i++) {
-			final AggregatorProxy p = allProxies[i];
+		for (int i = 0; i < connections.length; i++) {
+			final AggregatorProxy p = connections[i].proxy;
 			final Destination d = p.getDestination();
 			if (skipSendDisconnect && d.getState() != Destination.DISCONNECTED) {
 				p.setState(Destination.DISCONNECTED);
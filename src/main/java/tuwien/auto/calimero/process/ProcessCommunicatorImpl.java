@@ -417,7 +417,7 @@ public class ProcessCommunicatorImpl implements ProcessCommunicator
 		if (detached)
 			throw new KNXIllegalStateException("process communicator detached");
 		lnk.sendRequestWait(dst, p, createGroupAPDU(GROUP_WRITE, t));
-		logger.trace("group write to " + dst + " succeeded");
+		logger.trace("group write to {} succeeded", dst);
 	}
 
 	private synchronized byte[] readFromGroup(GroupAddress dst, Priority p,
@@ -430,7 +430,7 @@ public class ProcessCommunicatorImpl implements ProcessCommunicator
 			wait = true;
 			lnk.sendRequestWait(dst, p, DataUnitBuilder.createCompactAPDU(
 				GROUP_READ, null));
-			logger.trace("sent group read request to " + dst);
+			logger.trace("sent group read request to {}", dst);
 			return waitForResponse(minASDULen + 2, maxASDULen + 2);
 		}
 		finally {
@@ -52,6 +52,7 @@ import tuwien.auto.calimero.KNXListener;
 import tuwien.auto.calimero.exception.KNXAckTimeoutException;
 import tuwien.auto.calimero.exception.KNXException;
 import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
+import tuwien.auto.calimero.log.LogLevel;
 import tuwien.auto.calimero.log.LogManager;
 import tuwien.auto.calimero.log.LogService;
 
@@ -261,14 +262,15 @@ public class FT12Connection
 	 */
 	public FT12Connection(String portID, int baudrate) throws KNXException
 	{
-		open(portID, baudrate);
-		try {
-			sendReset();
-		}
-		catch (final KNXAckTimeoutException e) {
-			close(false, "acknowledge timeout on sending reset");
-			throw e;
-		}
+		open(createAdapter(portID, baudrate), portID);
+		sendReset();
+	}
+
+	// creates a connection on an adapter opened by the caller, e.g., a simulated BCU
+	FT12Connection(LibraryAdapter adapter, String portID) throws KNXException
+	{
+		open(adapter, portID);
+		sendReset();
 	}
 
 	/**
@@ -366,6 +368,7 @@ public class FT12Connection
 	public void setBaudrate(int baud)
 	{
 		adapter.setBaudRate(baud);
+		calcTimeouts(adapter.getBaudRate());
 	}
 
 	/**
@@ -417,8 +420,9 @@ public class FT12Connection
 		boolean ack = false;
 		try {
 			for (int i = 0; i <= REPEAT_LIMIT; ++i) {
-				logger.trace("sending FT1.2 frame, " + (blocking ? "" : "non-")
-					+ "blocking, attempt " + (i + 1));
+				if (logger.isEnabled(LogLevel.TRACE))
+					logger.trace("sending FT1.2 frame, {}blocking, attempt {}",
+						blocking ? "" : "non-", new Integer(i + 1));
 				sendData(frame);
 				if (!blocking || waitForAck()) {
 					ack = true;
@@ -469,9 +473,9 @@ public class FT12Connection
 		fireConnectionClosed(user, reason);
 	}
 	
-	private void open(String portID, int baudrate) throws KNXException
+	private void open(LibraryAdapter adapter, String portID)
 	{
-		adapter = createAdapter(portID, baudrate);
+		this.adapter = adapter;
 		port = portID;
 		is = adapter.getInputStream();
 		os = adapter.getOutputStream();
@@ -523,6 +527,17 @@ public class FT12Connection
 			logger.warn("native access to serial port failed", e);
 		}
 
+		// check for a tty device, accessed without native library on Linux platforms
+		if (TtyAdapter.isSupported(portID)) {
+			logger.info("try tty device access for serial ports");
+			try {
+				return new TtyAdapter(portID, baudrate);
+			}
+			catch (final IOException e) {
+				logger.warn("tty access to serial port failed", e);
+			}
+		}
+
 		// check whether a rxtx library is hanging around somewhere
 		logger.info("try rxtx library support for serial ports");
 		try {
@@ -563,6 +578,7 @@ public class FT12Connection
 				if (waitForAck())
 					return;
 			}
+			close(false, "acknowledge timeout on sending reset");
 			throw new KNXAckTimeoutException(
 				"resetting BCU failed (no acknowledge reply received)");
 		}
@@ -664,9 +680,18 @@ public class FT12Connection
 
 	private final class Receiver extends Thread
 	{
+		// the receive buffer holds at least one frame of maximum length (255 + 6 bytes)
+		private static final int BUFFER_SIZE = 512;
+
 		private volatile boolean quit;
 		private int lastChecksum;
-		
+
+		// received bytes not yet processed are buf[pos] to buf[end - 1]
+		private final byte[] buf = new byte[BUFFER_SIZE];
+		private int pos;
+		private int end;
+		private long lastReceived;
+
 		Receiver()
 		{
 			super("FT1.2 receiver");
@@ -677,22 +702,20 @@ public class FT12Connection
 		{
 			try {
 				while (!quit) {
-					final int c = is.read();
-					if (c > -1) {
-						if (c == ACK) {
-							if (state == ACK_PENDING)
-								synchronized (lock) {
-									state = OK;
-									lock.notify();
-								}
+					// read whatever is available, at least one byte, in one go
+					final int read = is.read(buf, end, buf.length - end);
+					if (read > 0) {
+						final long now = System.currentTimeMillis();
+						// characters of a frame are sent without pause, so a frame
+						// incomplete for longer than the idle timeout got interrupted
+						if (pos < end && now - lastReceived > idleTimeout) {
+							logger.warn("incomplete frame, discarded "
+								+ DataUnitBuilder.toHex(copy(pos, end - pos), " "));
+							pos = end;
 						}
-						else if (c == START)
-							readFrame();
-						else if (c == START_FIXED)
-							readShortFrame();
-						else
-							logger.trace("received unexpected start byte 0x" +
-								Integer.toHexString(c) + " - ignored");
+						lastReceived = now;
+						end += read;
+						process();
 					}
 				}
 			}
@@ -713,15 +736,70 @@ public class FT12Connection
 			}
 			catch (final InterruptedException e) {}
 		}
-	
-		private boolean readShortFrame() throws IOException
+
+		// processes all complete frames in the buffer, and moves an incomplete frame to
+		// the buffer start
+		private void process() throws IOException
 		{
-			final byte[] buf = new byte[3];
-			if (is.read(buf) == 3 && buf[0] == buf[1] && (buf[2] & 0xff) == END) {
+			while (pos < end) {
+				final int c = buf[pos] & 0xff;
+				final int avail = end - pos;
+				if (c == ACK) {
+					++pos;
+					if (state == ACK_PENDING)
+						synchronized (lock) {
+							state = OK;
+							lock.notify();
+						}
+				}
+				else if (c == START_FIXED) {
+					if (avail < 4)
+						break;
+					pos += readShortFrame(pos) ? 4 : 1;
+				}
+				else if (c == START) {
+					// header: start, length, length, start
+					if (avail < 4)
+						break;
+					final int len = buf[pos + 1] & 0xff;
+					if (buf[pos + 2] != buf[pos + 1] || (buf[pos + 3] & 0xff) != START) {
+						logger.warn("invalid frame header, discarded start byte");
+						++pos;
+					}
+					else if (len < 1 || len + 6 > buf.length) {
+						// no ctrl field or frame does not fit, resync on next start byte
+						logger.warn("invalid frame length " + len
+							+ ", discarded start byte");
+						++pos;
+					}
+					else if (avail < len + 6)
+						break;
+					else {
+						readFrame(pos, len);
+						pos += len + 6;
+					}
+				}
+				else {
+					logger.trace("received unexpected start byte 0x"
+						+ Integer.toHexString(c) + " - ignored");
+					++pos;
+				}
+			}
+			if (pos > 0) {
+				System.arraycopy(buf, pos, buf, 0, end - pos);
+				end -= pos;
+				pos = 0;
+			}
+		}
+
+		private boolean readShortFrame(int start) throws IOException
+		{
+			if (buf[start + 1] == buf[start + 2] && (buf[start + 3] & 0xff) == END) {
+				final int ctrl = buf[start + 1];
 				// for our purposes (reset and status), FRAMECOUNT_VALID is never set
-				if ((buf[0] & 0x30) == 0) {
+				if ((ctrl & 0x30) == 0) {
 					sendAck();
-					final int fc = buf[0] & 0x0f;
+					final int fc = ctrl & 0x0f;
 					logger.trace("received " + (fc == RESET ? "reset" : fc == REQ_STATUS
 						? "status" : "unknown function code "));
 					return true;
@@ -730,37 +808,35 @@ public class FT12Connection
 			return false;
 		}
 		
-		private boolean readFrame() throws IOException
+		// start points to the start byte of a frame with valid header and complete length
+		private boolean readFrame(int start, int len) throws IOException
 		{
-			final int len = is.read();
-			final byte[] buf = new byte[len + 4];
-			// read rest of frame, check header, ctrl, and end tag
-			final int read = is.read(buf);
-			if (read == (len + 4) && (buf[0] & 0xff) == len
-				&& (buf[1] & 0xff) == START && (buf[len + 3] & 0xff) == END) {
-				final byte chk = buf[buf.length - 2];
-				if (!checkCtrlField(buf[2] & 0xff, chk))
-					;
-				else if (checksum(buf, 2, len) != chk)
-					logger.warn("invalid checksum in frame "
-						+ DataUnitBuilder.toHex(buf, " "));
-				else {
-					sendAck();
-					lastChecksum = chk;
-					rcvFrameCount ^= FRAMECOUNT_BIT;
-					final byte[] ldata = new byte[len - 1];
-					for (int i = 0; i < ldata.length; ++i)
-						ldata[i] = buf[3 + i];
-
-					fireFrameReceived(ldata);
-					return true;
-				}
+			// check ctrl and end tag
+			final byte chk = buf[start + len + 4];
+			if ((buf[start + len + 5] & 0xff) != END)
+				logger.warn("invalid frame, discarded " + (len + 6) + " bytes: "
+					+ DataUnitBuilder.toHex(copy(start, len + 6), " "));
+			else if (!checkCtrlField(buf[start + 4] & 0xff, chk))
+				;
+			else if (checksum(buf, start + 4, len) != chk)
+				logger.warn("invalid checksum in frame "
+					+ DataUnitBuilder.toHex(copy(start, len + 6), " "));
+			else {
+				sendAck();
+				lastChecksum = chk;
+				rcvFrameCount ^= FRAMECOUNT_BIT;
+				fireFrameReceived(copy(start + 5, len - 1));
+				return true;
 			}
-			else
-				logger.warn("invalid frame, discarded " + read + " bytes: "
-					+ DataUnitBuilder.toHex(buf, " "));
 			return false;
 		}
+
+		private byte[] copy(int start, int length)
+		{
+			final byte[] data = new byte[length];
+			System.arraycopy(buf, start, data, 0, length);
+			return data;
+		}
 		
 		private boolean checkCtrlField(int c, byte chk)
 		{
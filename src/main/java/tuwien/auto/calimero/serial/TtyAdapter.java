@@ -0,0 +1,228 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.serial;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+/**
+ * Adapter for serial communication on Linux, accessing a tty device file with file
+ * channels, without any native library.
+ * <p>
+ * The line settings for FT1.2 (8 data bits, even parity, 1 stop bit, no flow control,
+ * raw mode) are set up using the <code>stty</code> utility. Reads block until at least
+ * one character is available, and return all characters available at that time.<br>
+ * Input and output use separate file channels, so a read blocked in one thread does not
+ * block a write of another thread.
+ * <p>
+ * A file channel is no selectable channel, therefore every opened port still requires
+ * one thread blocking for input.
+ * 
+ * @author B. Malinowsky
+ */
+final class TtyAdapter extends LibraryAdapter
+{
+	private final String dev;
+	private final FileChannel in;
+	private final FileChannel out;
+	private final FileLock lock;
+	private volatile int baudrate;
+
+	TtyAdapter(String portID, int baudrate) throws IOException
+	{
+		if (portID == null)
+			throw new NullPointerException("port ID");
+		if (!isSupported(portID))
+			throw new IOException("no tty device " + portID);
+		dev = portID;
+		// a blocking open of a port in -clocal state waits for carrier detect, stty
+		// opens the device non-blocking, so set clocal first; setting clocal only does
+		// not disturb another open connection
+		stty(new String[] { "clocal" });
+		// lock the device before setting it up, not to disturb another open connection
+		out = new FileOutputStream(dev).getChannel();
+		try {
+			lock = lock(out);
+			in = new FileInputStream(dev).getChannel();
+		}
+		catch (final IOException e) {
+			out.close();
+			throw e;
+		}
+		try {
+			stty(new String[] { "raw", String.valueOf(baudrate), "cs8", "parenb",
+				"-parodd", "-cstopb", "-crtscts", "-ixon", "-ixoff", "clocal", "cread",
+				"-echo", "min", "1", "time", "0" });
+		}
+		catch (final IOException e) {
+			close();
+			throw e;
+		}
+		this.baudrate = baudrate;
+	}
+
+	/**
+	 * Returns whether the port identifier specifies an existing tty device file on a
+	 * Linux platform.
+	 * <p>
+	 * 
+	 * @param portID port identifier, i.e., the device file name
+	 * @return <code>true</code> if device access is possible, <code>false</code>
+	 *         otherwise
+	 */
+	static boolean isSupported(String portID)
+	{
+		try {
+			return System.getProperty("os.name").toLowerCase().indexOf("linux") > -1
+				&& portID.startsWith("/dev/") && new File(portID).exists();
+		}
+		catch (final SecurityException e) {}
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.serial.LibraryAdapter#getInputStream()
+	 */
+	public InputStream getInputStream()
+	{
+		return Channels.newInputStream(in);
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.serial.LibraryAdapter#getOutputStream()
+	 */
+	public OutputStream getOutputStream()
+	{
+		return Channels.newOutputStream(out);
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.serial.LibraryAdapter#setBaudRate(int)
+	 */
+	public void setBaudRate(int baudrate)
+	{
+		if (!out.isOpen())
+			return;
+		try {
+			stty(new String[] { String.valueOf(baudrate) });
+			this.baudrate = baudrate;
+		}
+		catch (final IOException e) {
+			logger.error("set baud rate " + baudrate + " on " + dev, e);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.serial.LibraryAdapter#getBaudRate()
+	 */
+	public int getBaudRate()
+	{
+		return baudrate;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.serial.LibraryAdapter#close()
+	 */
+	public void close() throws IOException
+	{
+		try {
+			in.close();
+			if (lock != null)
+				lock.release();
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	// a tty is not locked by the OS, so we prevent shared use at least by processes
+	// honoring advisory locks, and within this VM
+	private FileLock lock(FileChannel ch) throws IOException
+	{
+		final FileLock l;
+		try {
+			l = ch.tryLock();
+		}
+		catch (final OverlappingFileLockException e) {
+			throw new IOException(dev + " in use");
+		}
+		catch (final IOException e) {
+			// locking not supported for this device
+			return null;
+		}
+		if (l == null)
+			throw new IOException(dev + " in use");
+		return l;
+	}
+
+	private void stty(String[] settings) throws IOException
+	{
+		final String[] cmd = new String[settings.length + 3];
+		cmd[0] = "stty";
+		cmd[1] = "-F";
+		cmd[2] = dev;
+		System.arraycopy(settings, 0, cmd, 3, settings.length);
+		final Process p = Runtime.getRuntime().exec(cmd);
+		try {
+			p.getOutputStream().close();
+			final ByteArrayOutputStream err = new ByteArrayOutputStream();
+			final InputStream is = p.getErrorStream();
+			final byte[] buf = new byte[256];
+			for (int n; (n = is.read(buf)) != -1;)
+				err.write(buf, 0, n);
+			if (p.waitFor() != 0)
+				throw new IOException("stty on " + dev + ": " + err.toString().trim());
+		}
+		catch (final InterruptedException e) {
+			p.destroy();
+			throw new IOException("interrupted on stty " + dev);
+		}
+		finally {
+			p.getInputStream().close();
+			p.getErrorStream().close();
+		}
+	}
+}
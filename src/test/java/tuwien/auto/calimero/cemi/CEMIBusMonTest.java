@@ -0,0 +1,134 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.cemi;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import tuwien.auto.calimero.knxnetip.servicetype.KNXnetIPHeader;
+import tuwien.auto.calimero.knxnetip.servicetype.PacketHelper;
+import tuwien.auto.calimero.knxnetip.servicetype.ServiceRequest;
+
+/**
+ * @author B. Malinowsky
+ */
+public class CEMIBusMonTest extends TestCase
+{
+	// TP1 standard frame, group value write 1/0/1
+	private static final byte[] raw = { (byte) 0xBC, 0x11, 0x01, 0x08, 0x01, (byte) 0xE1,
+		0x00, (byte) 0x81, 0x55 };
+	// busmonitor indication with extended timestamp, add.info length 9
+	private static final byte[] extFrame = { 0x2B, 0x09, 0x03, 0x01, 0x00, 0x06, 0x04,
+		0x00, 0x00, 0x00, 0x01, (byte) 0xBC, 0x11, 0x01, 0x08, 0x01, (byte) 0xE1, 0x00,
+		(byte) 0x81, 0x55 };
+
+	/**
+	 * @param name name of test case
+	 */
+	public CEMIBusMonTest(String name)
+	{
+		super(name);
+	}
+
+	/**
+	 * Test method for {@link CEMIBusMon#getStructLength()}.
+	 */
+	public void testGetStructLength()
+	{
+		assertEquals(raw.length + 9, new CEMIBusMon(0, 1, false, raw).getStructLength());
+		assertEquals(raw.length + 11, new CEMIBusMon(0, 1, true, raw).getStructLength());
+	}
+
+	/**
+	 * Test method for {@link CEMIBusMon#toByteArray()}.
+	 * 
+	 * @throws Exception
+	 */
+	public void testToByteArray() throws Exception
+	{
+		final CEMIBusMon f = new CEMIBusMon(extFrame, 0, extFrame.length);
+		assertEquals(CEMIBusMon.TYPEID_TIMESTAMP_EXT, f.getTimestampType());
+		assertEquals(1, f.getTimestamp());
+		assertTrue(Arrays.equals(raw, f.getPayload()));
+		final byte[] data = f.toByteArray();
+		assertEquals(f.getStructLength(), data.length);
+		assertTrue(Arrays.equals(extFrame, data));
+
+		final CEMIBusMon std = new CEMIBusMon(0, 0x1234, false, raw);
+		final byte[] stdData = std.toByteArray();
+		final CEMIBusMon copy = new CEMIBusMon(stdData, 0, stdData.length);
+		assertEquals(CEMIBusMon.TYPEID_TIMESTAMP, copy.getTimestampType());
+		assertEquals(0x1234, copy.getTimestamp());
+		assertTrue(Arrays.equals(raw, copy.getPayload()));
+	}
+
+	/**
+	 * Test method for {@link CEMIBusMon#writeTo(ByteBuffer)}.
+	 * 
+	 * @throws Exception
+	 */
+	public void testWriteTo() throws Exception
+	{
+		final CEMIBusMon f = new CEMIBusMon(0, 0x12345678L, true, raw);
+		final ByteBuffer buf = ByteBuffer.allocate(f.getStructLength());
+		f.writeTo(buf);
+		assertFalse(buf.hasRemaining());
+		assertTrue(Arrays.equals(f.toByteArray(), buf.array()));
+	}
+
+	/**
+	 * Test method for a tunneling request containing a busmonitor indication with
+	 * extended timestamp.
+	 * 
+	 * @throws Exception
+	 */
+	public void testTunnelingRequest() throws Exception
+	{
+		final CEMIBusMon f = new CEMIBusMon(extFrame, 0, extFrame.length);
+		final ServiceRequest req = new ServiceRequest(KNXnetIPHeader.TUNNELING_REQ, 1, 0,
+			f);
+		final byte[] packet = PacketHelper.toPacket(req);
+		// header, connection header and cEMI frame
+		assertEquals(6 + 4 + extFrame.length, packet.length);
+		final KNXnetIPHeader h = new KNXnetIPHeader(packet, 0);
+		final CEMIBusMon parsed = (CEMIBusMon) PacketHelper.getServiceRequest(h, packet,
+			h.getStructLength()).getCEMI();
+		assertEquals(1, parsed.getTimestamp());
+		assertTrue(Arrays.equals(extFrame, parsed.toByteArray()));
+	}
+}
@@ -36,6 +36,7 @@
 
 package tuwien.auto.calimero.cemi;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
 
@@ -45,6 +46,7 @@ import tuwien.auto.calimero.IndividualAddress;
 import tuwien.auto.calimero.Priority;
 import tuwien.auto.calimero.cemi.CEMILData;
 import tuwien.auto.calimero.cemi.CEMILDataEx;
+import tuwien.auto.calimero.exception.KNXFormatException;
 import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
 
 /**
@@ -97,6 +99,64 @@ public class CEMILDataExTest extends TestCase
 		assertEquals(11, f.getStructLength());
 	}
 
+	/**
+	 * Test method for
+	 * {@link tuwien.auto.calimero.cemi.CEMILDataEx#CEMILDataEx(byte[], int)}.
+	 * 
+	 * @throws KNXFormatException
+	 */
+	public final void testCEMILDataExByteArrayInt() throws KNXFormatException
+	{
+		final byte[] frame = f.toByteArray();
+		final byte[] data = new byte[frame.length + 3];
+		System.arraycopy(frame, 0, data, 3, frame.length);
+		final CEMILDataEx parsed = new CEMILDataEx(data, 3);
+		assertEquals(src, parsed.getSource());
+		assertEquals(dst, parsed.getDestination());
+		// decoded addresses are the canonical instances
+		assertSame(IndividualAddress.valueOf(src.getRawAddress()), parsed.getSource());
+		assertSame(GroupAddress.valueOf(dst.getRawAddress()), parsed.getDestination());
+		assertSame(parsed.getDestination(), new CEMILDataEx(data, 3).getDestination());
+		assertEquals(Priority.LOW, parsed.getPriority());
+		assertTrue(Arrays.equals(tpdu, parsed.getPayload()));
+		assertTrue(Arrays.equals(plinfo, parsed
+			.getAdditionalInfo(CEMILDataEx.ADDINFO_PLMEDIUM)));
+		assertTrue(Arrays.equals(frame, parsed.toByteArray()));
+
+		// additional info element exceeding the additional info length
+		data[4] = 3;
+		try {
+			new CEMILDataEx(data, 3);
+			fail("invalid additional info length");
+		}
+		catch (final KNXFormatException e) {}
+		// tpdu length exceeding the frame
+		data[4] = frame[1];
+		data[data.length - 3] = 5;
+		try {
+			new CEMILDataEx(data, 3);
+			fail("invalid tpdu length");
+		}
+		catch (final KNXFormatException e) {}
+	}
+
+	/**
+	 * Test method for
+	 * {@link tuwien.auto.calimero.cemi.CEMILDataEx#writeTo(java.nio.ByteBuffer)}.
+	 */
+	public final void testWriteTo()
+	{
+		final ByteBuffer buf = ByteBuffer.allocateDirect(50);
+		buf.put((byte) 0x55);
+		f.writeTo(buf);
+		assertEquals(1 + f.getStructLength(), buf.position());
+		final byte[] data = new byte[f.getStructLength()];
+		buf.flip();
+		buf.get();
+		buf.get(data);
+		assertTrue(Arrays.equals(f.toByteArray(), data));
+	}
+
 	/**
 	 * Test method for {@link tuwien.auto.calimero.cemi.CEMILDataEx#toString()}.
 	 */
@@ -0,0 +1,270 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.knxnetip;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
+import tuwien.auto.calimero.knxnetip.servicetype.DescriptionRequest;
+import tuwien.auto.calimero.knxnetip.servicetype.DescriptionResponse;
+import tuwien.auto.calimero.knxnetip.servicetype.KNXnetIPHeader;
+import tuwien.auto.calimero.knxnetip.servicetype.PacketHelper;
+import tuwien.auto.calimero.knxnetip.servicetype.SearchRequest;
+import tuwien.auto.calimero.knxnetip.servicetype.SearchResponse;
+import tuwien.auto.calimero.knxnetip.util.DeviceDIB;
+import tuwien.auto.calimero.knxnetip.util.HPAI;
+import tuwien.auto.calimero.knxnetip.util.SuppFamiliesDIB;
+
+/**
+ * @author B. Malinowsky
+ */
+public class DiscoveryServiceTest extends TestCase
+{
+	private InetAddress localhost;
+	private DatagramSocket server;
+	private Thread responder;
+	private volatile boolean answer;
+	private volatile byte status;
+	private DiscoveryService ds;
+
+	// received events, "added", "changed" or "removed"
+	private final List events = new ArrayList();
+
+	private final DiscoveryListener l = new DiscoveryListener()
+	{
+		public void serverAdded(DiscoveredServer server)
+		{
+			event("added");
+		}
+
+		public void serverChanged(DiscoveredServer server)
+		{
+			event("changed");
+		}
+
+		public void serverRemoved(DiscoveredServer server)
+		{
+			event("removed");
+		}
+	};
+
+	/**
+	 * @param name name for test case
+	 */
+	public DiscoveryServiceTest(String name)
+	{
+		super(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		events.clear();
+		answer = true;
+		status = 0;
+		localhost = InetAddress.getByName("127.0.0.1");
+		server = new DatagramSocket(0, localhost);
+		responder = new Thread()
+		{
+			public void run()
+			{
+				respond();
+			}
+		};
+		responder.start();
+		ds = new DiscoveryService(localhost, 0, false, 1, 2,
+			(InetSocketAddress) server.getLocalSocketAddress());
+		ds.addDiscoveryListener(l);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception
+	{
+		ds.stop();
+		server.close();
+		responder.join();
+		super.tearDown();
+	}
+
+	/**
+	 * Test method for {@link DiscoveryService#DiscoveryService(InetAddress, int, boolean,
+	 * int, int)}.
+	 * 
+	 * @throws KNXException
+	 */
+	public final void testDiscoveryService() throws KNXException
+	{
+		try {
+			new DiscoveryService(localhost, -1, false, 1, 2);
+			fail("negative port number");
+		}
+		catch (final KNXIllegalArgumentException e) {}
+		try {
+			new DiscoveryService(localhost, 0, false, 0, 2);
+			fail("no probe interval");
+		}
+		catch (final KNXIllegalArgumentException e) {}
+		try {
+			new DiscoveryService(localhost, 0, false, 2, 2);
+			fail("time to live not > probe interval");
+		}
+		catch (final KNXIllegalArgumentException e) {}
+	}
+
+	/**
+	 * Test method for {@link DiscoveryService#start(int)}.
+	 * 
+	 * @throws KNXException
+	 * @throws InterruptedException
+	 */
+	public final void testRegistry() throws KNXException, InterruptedException
+	{
+		assertFalse(ds.isRunning());
+		ds.start(1);
+		assertTrue(ds.isRunning());
+		assertTrue(waitFor("added", 3000));
+		assertEquals(1, ds.getServers().length);
+		final DiscoveredServer s =
+			ds.getServer((InetSocketAddress) server.getLocalSocketAddress());
+		assertNotNull(s);
+		assertEquals("test server", s.getDevice().getName());
+
+		// a changed device status is found by the next description request
+		status = 1;
+		assertTrue(waitFor("changed", 3000));
+		assertEquals(1, ds.getServers()[0].getDevice().getDeviceStatus());
+		assertTrue(ds.getServers()[0].getLastSeen() > s.getLastSeen());
+
+		// the server stops answering and expires
+		answer = false;
+		assertTrue(waitFor("removed", 5000));
+		assertEquals(0, ds.getServers().length);
+		assertEquals(3, events.size());
+
+		ds.stop();
+		assertFalse(ds.isRunning());
+	}
+
+	private void event(String e)
+	{
+		synchronized (events) {
+			events.add(e);
+			events.notifyAll();
+		}
+	}
+
+	private boolean waitFor(String e, long timeout) throws InterruptedException
+	{
+		final long end = System.currentTimeMillis() + timeout;
+		synchronized (events) {
+			for (long wait = timeout; !events.contains(e) && wait > 0; wait = end
+				- System.currentTimeMillis())
+				events.wait(wait);
+			return events.contains(e);
+		}
+	}
+
+	// answers search and description requests
+	private void respond()
+	{
+		final byte[] buf = new byte[256];
+		try {
+			while (true) {
+				final DatagramPacket p = new DatagramPacket(buf, buf.length);
+				server.receive(p);
+				if (!answer)
+					continue;
+				final KNXnetIPHeader h = new KNXnetIPHeader(buf, 0);
+				final HPAI ep;
+				final byte[] res;
+				if (h.getServiceType() == KNXnetIPHeader.SEARCH_REQ) {
+					ep = new SearchRequest(buf, h.getStructLength()).getEndpoint();
+					final HPAI ctrlEndpoint = new HPAI(HPAI.IPV4_UDP,
+						(InetSocketAddress) server.getLocalSocketAddress());
+					res = PacketHelper.toPacket(new SearchResponse(ctrlEndpoint,
+						createDevice(), createFamilies()));
+				}
+				else if (h.getServiceType() == KNXnetIPHeader.DESCRIPTION_REQ) {
+					ep = new DescriptionRequest(buf, h.getStructLength()).getEndpoint();
+					res = PacketHelper.toPacket(new DescriptionResponse(createDevice(),
+						createFamilies()));
+				}
+				else
+					continue;
+				server.send(new DatagramPacket(res, res.length, new InetSocketAddress(ep
+					.getAddress(), ep.getPort())));
+			}
+		}
+		catch (final IOException e) {}
+		catch (final KNXException e) {
+			fail(e.getMessage());
+		}
+	}
+
+	private DeviceDIB createDevice() throws KNXException
+	{
+		final byte[] device = new byte[54];
+		device[0] = 54;
+		device[1] = DeviceDIB.DEVICE_INFO;
+		device[2] = 2;
+		device[3] = status;
+		device[4] = 0x11;
+		device[5] = 0x01;
+		final byte[] name = "test server".getBytes();
+		System.arraycopy(name, 0, device, 24, name.length);
+		return new DeviceDIB(device, 0);
+	}
+
+	private SuppFamiliesDIB createFamilies() throws KNXException
+	{
+		final byte[] families = new byte[] { 4, DeviceDIB.SUPP_SVC_FAMILIES, 2, 1 };
+		return new SuppFamiliesDIB(families, 0);
+	}
+}
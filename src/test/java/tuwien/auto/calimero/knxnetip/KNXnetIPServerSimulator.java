@@ -0,0 +1,1158 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.knxnetip;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import tuwien.auto.calimero.DataUnitBuilder;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.Priority;
+import tuwien.auto.calimero.cemi.CEMI;
+import tuwien.auto.calimero.cemi.CEMIFactory;
+import tuwien.auto.calimero.cemi.CEMILData;
+import tuwien.auto.calimero.cemi.CEMILDataEx;
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.exception.KNXFormatException;
+import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
+import tuwien.auto.calimero.knxnetip.servicetype.ConnectRequest;
+import tuwien.auto.calimero.knxnetip.servicetype.ConnectResponse;
+import tuwien.auto.calimero.knxnetip.servicetype.ConnectionstateRequest;
+import tuwien.auto.calimero.knxnetip.servicetype.ConnectionstateResponse;
+import tuwien.auto.calimero.knxnetip.servicetype.DescriptionRequest;
+import tuwien.auto.calimero.knxnetip.servicetype.DescriptionResponse;
+import tuwien.auto.calimero.knxnetip.servicetype.DisconnectRequest;
+import tuwien.auto.calimero.knxnetip.servicetype.DisconnectResponse;
+import tuwien.auto.calimero.knxnetip.servicetype.ErrorCodes;
+import tuwien.auto.calimero.knxnetip.servicetype.KNXnetIPHeader;
+import tuwien.auto.calimero.knxnetip.servicetype.PacketHelper;
+import tuwien.auto.calimero.knxnetip.servicetype.RoutingIndication;
+import tuwien.auto.calimero.knxnetip.servicetype.RoutingLostMessage;
+import tuwien.auto.calimero.knxnetip.servicetype.SearchRequest;
+import tuwien.auto.calimero.knxnetip.servicetype.SearchResponse;
+import tuwien.auto.calimero.knxnetip.servicetype.ServiceAck;
+import tuwien.auto.calimero.knxnetip.servicetype.ServiceRequest;
+import tuwien.auto.calimero.knxnetip.util.DeviceDIB;
+import tuwien.auto.calimero.knxnetip.util.HPAI;
+import tuwien.auto.calimero.knxnetip.util.SuppFamiliesDIB;
+import tuwien.auto.calimero.knxnetip.util.TunnelCRD;
+import tuwien.auto.calimero.knxnetip.util.TunnelCRI;
+
+/**
+ * An in-process KNXnet/IP server simulator, for tests and benchmarks without KNX IP
+ * hardware.
+ * <p>
+ * The simulator answers search, description, connect, connection state, disconnect and
+ * tunneling requests on one UDP socket, which is both control and data endpoint. With
+ * routing started, it also takes part in KNXnet/IP routing on a multicast group.
+ * <p>
+ * The KNX network behind the server is a population of group objects, each owned by a
+ * device. An L-Data request received over a tunnel is confirmed, and the frame is
+ * indicated to all other tunnels and the routing group. A group value read is answered
+ * by the owner of the group object with a group value response to all tunnels and the
+ * routing group, group value writes and responses update the group object.<br>
+ * Management devices answer device descriptor, memory and property services addressed
+ * to them, in connectionless and connection oriented mode. A device holds one transport
+ * layer connection, acknowledges connected data and keeps its sequence numbers. Answers
+ * are sent to the tunnel with the requesting individual address, using extended frames
+ * for TPDUs exceeding 16 bytes.
+ * <p>
+ * Test conditions:<br>
+ * - latency delays every answer of the simulator<br>
+ * - loss drops received datagrams with the given probability; a dropped routing
+ * indication is reported with a routing lost message. The random sequence is
+ * reproducible, datagrams sent by the simulator are not dropped.<br>
+ * - {@link #sendLostMessage(int, short)} and {@link #disconnectAll()} inject routing
+ * lost messages and server initiated disconnects<br>
+ * - {@link #dropConnectedData(IndividualAddress, int)} drops connected data of a
+ * management device, to provoke repetitions of the transport layer
+ * 
+ * @author B. Malinowsky
+ */
+public class KNXnetIPServerSimulator
+{
+	private static final int maxBuf = 512;
+
+	private static final class Tunnel
+	{
+		final short channel;
+		final InetSocketAddress ctrlEP;
+		final InetSocketAddress dataEP;
+		final IndividualAddress address;
+		int seqRcv;
+		int seqSend;
+
+		Tunnel(short channel, InetSocketAddress ctrlEP, InetSocketAddress dataEP,
+			IndividualAddress address)
+		{
+			this.channel = channel;
+			this.ctrlEP = ctrlEP;
+			this.dataEP = dataEP;
+			this.address = address;
+		}
+	}
+
+	private static final class GroupObject
+	{
+		final IndividualAddress owner;
+		// APDU of the last group value response
+		byte[] apdu;
+
+		GroupObject(IndividualAddress owner, byte[] apdu)
+		{
+			this.owner = owner;
+			this.apdu = apdu;
+		}
+	}
+
+	// a device answering management services
+	private static final class Device
+	{
+		final IndividualAddress address;
+		final int mask;
+		final byte[] memory = new byte[0x10000];
+		// interface objects, each one a list of properties
+		final List objects = new ArrayList();
+		// APDUs of management requests received, TPCI cleared
+		final List requests = new ArrayList();
+		// partner of the transport layer connection, null if not connected
+		IndividualAddress partner;
+		int seqRcv;
+		int seqSend;
+		// number of connected data frames to drop
+		int drop;
+
+		Device(IndividualAddress address, int mask)
+		{
+			this.address = address;
+			this.mask = mask;
+		}
+
+		Property getProperty(int objIndex, int pid)
+		{
+			if (objIndex >= objects.size())
+				return null;
+			final List props = (List) objects.get(objIndex);
+			for (int i = 0; i < props.size(); i++)
+				if (((Property) props.get(i)).pid == pid)
+					return (Property) props.get(i);
+			return null;
+		}
+	}
+
+	private static final class Property
+	{
+		final int pid;
+		final int pdt;
+		final int size;
+		final int max;
+		// all current elements
+		byte[] data;
+
+		Property(int pid, int pdt, int size, int max, byte[] data)
+		{
+			this.pid = pid;
+			this.pdt = pdt;
+			this.size = size;
+			this.max = max;
+			this.data = data;
+		}
+	}
+
+	// transport layer control fields
+	private static final int CONNECT = 0x80;
+	private static final int DISCONNECT = 0x81;
+	private static final int DATA_CONNECTED = 0x40;
+	private static final int ACK = 0xC2;
+	private static final int NACK = 0xC3;
+
+	// management services
+	private static final int MEMORY_READ = 0x200;
+	private static final int MEMORY_RESPONSE = 0x240;
+	private static final int MEMORY_WRITE = 0x280;
+	private static final int DEVICE_DESC_READ = 0x300;
+	private static final int DEVICE_DESC_RESPONSE = 0x340;
+	private static final int PROPERTY_READ = 0x3D5;
+	private static final int PROPERTY_RESPONSE = 0x3D6;
+	private static final int PROPERTY_WRITE = 0x3D7;
+	private static final int PROPERTY_DESC_READ = 0x3D8;
+	private static final int PROPERTY_DESC_RESPONSE = 0x3D9;
+
+	private final DatagramSocket socket;
+	private final InetSocketAddress ctrlEndpoint;
+	private final IndividualAddress address;
+	private final int maxTunnels;
+
+	// channel ID -> tunnel
+	private final Map tunnels = new HashMap();
+	// group address -> group object
+	private final Map objects = new HashMap();
+	// individual address -> management device
+	private final Map devices = new HashMap();
+
+	// routing is set last on start, once routing is started all routing fields are valid
+	private volatile MulticastSocket routing;
+	// we send routing messages from an ephemeral port, to recognize our own messages
+	private MulticastSocket routingOut;
+	private InetSocketAddress routingGroup;
+	private int lostRouting;
+
+	private volatile int latency;
+	private volatile double loss;
+	private final Random random = new Random(0);
+	private volatile int received;
+	private volatile int dropped;
+
+	private Thread receiver;
+	private Thread routingReceiver;
+	private volatile boolean closed;
+
+	/**
+	 * Creates a new server simulator.
+	 * <p>
+	 * 
+	 * @param ctrlEndpoint local control endpoint of the server, with an IP address other
+	 *        than the wildcard address, use port 0 for an ephemeral port
+	 * @param address individual address of the server
+	 * @param maxTunnels maximum number of tunneling connections, maxTunnels > 0
+	 * @throws SocketException on failure binding the server socket
+	 */
+	public KNXnetIPServerSimulator(InetSocketAddress ctrlEndpoint,
+		IndividualAddress address, int maxTunnels) throws SocketException
+	{
+		if (ctrlEndpoint.getAddress().isAnyLocalAddress())
+			throw new KNXIllegalArgumentException("wildcard address as control endpoint");
+		if (maxTunnels <= 0)
+			throw new KNXIllegalArgumentException("maximum tunnels has to be > 0");
+		socket = new DatagramSocket(ctrlEndpoint);
+		this.ctrlEndpoint = (InetSocketAddress) socket.getLocalSocketAddress();
+		this.address = address;
+		this.maxTunnels = maxTunnels;
+	}
+
+	/**
+	 * Starts answering requests.
+	 * <p>
+	 */
+	public synchronized void start()
+	{
+		if (receiver != null)
+			return;
+		receiver = new Thread("Server simulator " + ctrlEndpoint)
+		{
+			public void run()
+			{
+				receive(socket);
+			}
+		};
+		receiver.setDaemon(true);
+		receiver.start();
+	}
+
+	/**
+	 * Starts KNXnet/IP routing on the multicast group <code>group</code>.
+	 * <p>
+	 * 
+	 * @param netIf network interface to join the group, use <code>null</code> for the
+	 *        default interface
+	 * @param group multicast group address, the KNXnet/IP port is used
+	 * @throws IOException on failure joining the group
+	 */
+	public synchronized void startRouting(NetworkInterface netIf, InetAddress group)
+		throws IOException
+	{
+		if (routing != null)
+			return;
+		routingGroup = new InetSocketAddress(group, KNXnetIPConnection.IP_PORT);
+		final MulticastSocket s = new MulticastSocket(KNXnetIPConnection.IP_PORT);
+		routingOut = new MulticastSocket();
+		if (netIf != null) {
+			s.setNetworkInterface(netIf);
+			routingOut.setNetworkInterface(netIf);
+		}
+		s.joinGroup(group);
+		routing = s;
+		routingReceiver = new Thread("Server simulator routing " + group)
+		{
+			public void run()
+			{
+				receive(s);
+			}
+		};
+		routingReceiver.setDaemon(true);
+		routingReceiver.start();
+	}
+
+	/**
+	 * Adds a simulated device with group objects.
+	 * <p>
+	 * Every group object gets the datapoint value <code>data</code>. If
+	 * <code>compact</code> is <code>true</code>, <code>data</code> is a single byte
+	 * value of at most 6 bits, stored in the APCI of group value responses.
+	 * 
+	 * @param device individual address of the device
+	 * @param groups group addresses of the device group objects
+	 * @param data initial value of the group objects
+	 * @param compact <code>true</code> for a value of at most 6 bits, <code>false</code>
+	 *        otherwise
+	 */
+	public void addDevice(IndividualAddress device, GroupAddress[] groups, byte[] data,
+		boolean compact)
+	{
+		final byte[] apdu = compact ? DataUnitBuilder.createCompactAPDU(0x40, data)
+			: DataUnitBuilder.createAPDU(0x40, data);
+		synchronized (objects) {
+			for (int i = 0; i < groups.length; i++)
+				objects.put(groups[i], new GroupObject(device, (byte[]) apdu.clone()));
+		}
+	}
+
+	/**
+	 * Adds a population of simulated devices, each one with group objects of datapoint
+	 * type boolean.
+	 * <p>
+	 * Devices get the individual addresses 1.1.1, 1.1.2, and so on, group objects get the
+	 * group addresses 1/0/1, 1/0/2, and so on.
+	 * 
+	 * @param devices number of devices
+	 * @param groupObjects number of group objects per device
+	 */
+	public void populate(int devices, int groupObjects)
+	{
+		int group = new GroupAddress(1, 0, 1).getRawAddress();
+		final int first = new IndividualAddress(1, 1, 1).getRawAddress();
+		for (int d = 0; d < devices; d++) {
+			final GroupAddress[] groups = new GroupAddress[groupObjects];
+			for (int i = 0; i < groupObjects; i++)
+				groups[i] = GroupAddress.valueOf(group++);
+			final IndividualAddress device = IndividualAddress.valueOf(first + d);
+			addDevice(device, groups, new byte[] { 0 }, true);
+		}
+	}
+
+	/**
+	 * Returns the APDU of a group value response containing the current value of the
+	 * group object <code>group</code>.
+	 * <p>
+	 * 
+	 * @param group group address of the group object
+	 * @return the APDU, or <code>null</code> if there is no such group object
+	 */
+	public byte[] getGroupValue(GroupAddress group)
+	{
+		synchronized (objects) {
+			final GroupObject o = (GroupObject) objects.get(group);
+			return o != null ? (byte[]) o.apdu.clone() : null;
+		}
+	}
+
+	/**
+	 * Adds a simulated device answering management services.
+	 * <p>
+	 * The device has 64 KB of memory initialized to zero, and a device object (interface
+	 * object index 0) with the properties object type, manufacturer ID and program
+	 * version.
+	 * 
+	 * @param device individual address of the device
+	 * @param maskVersion mask version returned on device descriptor read of type 0
+	 * @param manufacturer manufacturer ID of the device
+	 * @param programVersion program version of the device, 5 bytes
+	 */
+	public void addManagementDevice(IndividualAddress device, int maskVersion,
+		int manufacturer, byte[] programVersion)
+	{
+		synchronized (devices) {
+			devices.put(device, new Device(device, maskVersion));
+		}
+		setProperty(device, 0, 1, 0x04, 2, 1, new byte[2]);
+		setProperty(device, 0, 12, 0x04, 2, 1, new byte[] { (byte) (manufacturer >> 8),
+			(byte) manufacturer });
+		setProperty(device, 0, 13, 0x15, 5, 1, programVersion);
+	}
+
+	/**
+	 * Sets a property of a management device, the property is created if necessary.
+	 * <p>
+	 * An interface object is created if <code>objIndex</code> is the next free
+	 * interface object index.
+	 * 
+	 * @param device individual address of the management device
+	 * @param objIndex interface object index
+	 * @param pid property identifier
+	 * @param pdt property data type, a set bit 7 marks the property write-enabled
+	 * @param elementSize size of one property element in bytes
+	 * @param maxElements maximum number of elements
+	 * @param data all current property elements, with a length of a multiple of
+	 *        <code>elementSize</code>
+	 */
+	public void setProperty(IndividualAddress device, int objIndex, int pid, int pdt,
+		int elementSize, int maxElements, byte[] data)
+	{
+		final Device d = getDevice(device);
+		synchronized (d) {
+			if (objIndex == d.objects.size())
+				d.objects.add(new ArrayList());
+			final List props = (List) d.objects.get(objIndex);
+			final Property p = new Property(pid, pdt, elementSize, maxElements,
+				(byte[]) data.clone());
+			final int index = props.indexOf(d.getProperty(objIndex, pid));
+			if (index >= 0)
+				props.set(index, p);
+			else
+				props.add(p);
+		}
+	}
+
+	/**
+	 * Returns all current elements of a property of a management device.
+	 * <p>
+	 * 
+	 * @param device individual address of the management device
+	 * @param objIndex interface object index
+	 * @param pid property identifier
+	 * @return property data, or <code>null</code> if there is no such property
+	 */
+	public byte[] getProperty(IndividualAddress device, int objIndex, int pid)
+	{
+		final Device d = getDevice(device);
+		synchronized (d) {
+			final Property p = d.getProperty(objIndex, pid);
+			return p != null ? (byte[]) p.data.clone() : null;
+		}
+	}
+
+	/**
+	 * Writes memory of a management device.
+	 * <p>
+	 * 
+	 * @param device individual address of the management device
+	 * @param startAddr memory address to write to
+	 * @param data memory content
+	 */
+	public void setMemory(IndividualAddress device, int startAddr, byte[] data)
+	{
+		final Device d = getDevice(device);
+		synchronized (d) {
+			System.arraycopy(data, 0, d.memory, startAddr, data.length);
+		}
+	}
+
+	/**
+	 * Reads memory of a management device.
+	 * <p>
+	 * 
+	 * @param device individual address of the management device
+	 * @param startAddr memory address to read from
+	 * @param bytes number of bytes to read
+	 * @return memory content
+	 */
+	public byte[] getMemory(IndividualAddress device, int startAddr, int bytes)
+	{
+		final Device d = getDevice(device);
+		final byte[] data = new byte[bytes];
+		synchronized (d) {
+			System.arraycopy(d.memory, startAddr, data, 0, bytes);
+		}
+		return data;
+	}
+
+	/**
+	 * Returns the management requests received by a management device, in the order
+	 * received.
+	 * <p>
+	 * Repeated connected data is contained once.
+	 * 
+	 * @param device individual address of the management device
+	 * @return list of APDUs of type byte[], with the TPCI bits cleared
+	 */
+	public List getRequests(IndividualAddress device)
+	{
+		final Device d = getDevice(device);
+		synchronized (d) {
+			return new ArrayList(d.requests);
+		}
+	}
+
+	/**
+	 * Removes all requests recorded for a management device.
+	 * <p>
+	 * 
+	 * @param device individual address of the management device
+	 */
+	public void clearRequests(IndividualAddress device)
+	{
+		final Device d = getDevice(device);
+		synchronized (d) {
+			d.requests.clear();
+		}
+	}
+
+	/**
+	 * Returns whether a management device has a transport layer connection open.
+	 * <p>
+	 * 
+	 * @param device individual address of the management device
+	 * @return <code>true</code> if connected, <code>false</code> otherwise
+	 */
+	public boolean isConnected(IndividualAddress device)
+	{
+		final Device d = getDevice(device);
+		synchronized (d) {
+			return d.partner != null;
+		}
+	}
+
+	/**
+	 * Lets a management device drop the next received frames with connected data,
+	 * without acknowledging or answering them.
+	 * <p>
+	 * 
+	 * @param device individual address of the management device
+	 * @param frames number of frames to drop
+	 */
+	public void dropConnectedData(IndividualAddress device, int frames)
+	{
+		final Device d = getDevice(device);
+		synchronized (d) {
+			d.drop = frames;
+		}
+	}
+
+	/**
+	 * Sets the latency of the simulator, every answer is delayed by that time.
+	 * <p>
+	 * 
+	 * @param millis latency in milliseconds
+	 */
+	public void setLatency(int millis)
+	{
+		latency = millis;
+	}
+
+	/**
+	 * Sets the probability a received datagram is dropped.
+	 * <p>
+	 * 
+	 * @param probability probability between 0 (no loss) and 1 (drop all)
+	 */
+	public void setLoss(double probability)
+	{
+		if (probability < 0 || probability > 1)
+			throw new KNXIllegalArgumentException("loss probability out of range [0..1]");
+		loss = probability;
+	}
+
+	/**
+	 * Returns the number of datagrams received by the simulator, including dropped ones.
+	 * <p>
+	 * 
+	 * @return number of received datagrams
+	 */
+	public int getReceived()
+	{
+		return received;
+	}
+
+	/**
+	 * Returns the number of received datagrams dropped by the simulator.
+	 * <p>
+	 * 
+	 * @return number of dropped datagrams
+	 */
+	public int getDropped()
+	{
+		return dropped;
+	}
+
+	/**
+	 * Returns the control endpoint of the simulator.
+	 * <p>
+	 * 
+	 * @return the control endpoint
+	 */
+	public InetSocketAddress getControlEndpoint()
+	{
+		return ctrlEndpoint;
+	}
+
+	/**
+	 * Returns the number of open tunneling connections.
+	 * <p>
+	 * 
+	 * @return number of tunneling connections
+	 */
+	public int getTunnels()
+	{
+		synchronized (tunnels) {
+			return tunnels.size();
+		}
+	}
+
+	/**
+	 * Sends a routing lost message to the routing multicast group.
+	 * <p>
+	 * 
+	 * @param lostMessages number of lost messages to report
+	 * @param deviceState device state of the server
+	 * @throws IOException on send failure
+	 */
+	public void sendLostMessage(int lostMessages, short deviceState) throws IOException
+	{
+		send(routingOut, PacketHelper.toPacket(new RoutingLostMessage(lostMessages,
+			deviceState)), routingGroup);
+	}
+
+	/**
+	 * Closes all tunneling connections with a disconnect request of the server.
+	 * <p>
+	 * 
+	 * @throws IOException on send failure
+	 */
+	public void disconnectAll() throws IOException
+	{
+		final List l;
+		synchronized (tunnels) {
+			l = new ArrayList(tunnels.values());
+			tunnels.clear();
+		}
+		for (final Iterator i = l.iterator(); i.hasNext();) {
+			final Tunnel t = (Tunnel) i.next();
+			final HPAI ep = new HPAI(HPAI.IPV4_UDP, ctrlEndpoint);
+			send(socket, PacketHelper.toPacket(new DisconnectRequest(t.channel, ep)),
+				t.ctrlEP);
+		}
+	}
+
+	/**
+	 * Closes the simulator, without notifying connected clients.
+	 * <p>
+	 */
+	public void close()
+	{
+		closed = true;
+		socket.close();
+		synchronized (this) {
+			if (routing != null) {
+				routing.close();
+				routingOut.close();
+			}
+		}
+	}
+
+	private void receive(DatagramSocket s)
+	{
+		final byte[] buf = new byte[maxBuf];
+		try {
+			while (!closed) {
+				final DatagramPacket p = new DatagramPacket(buf, buf.length);
+				s.receive(p);
+				final InetSocketAddress src = (InetSocketAddress) p.getSocketAddress();
+				// ignore our own routing messages
+				if (s == routing && src.getPort() == routingOut.getLocalPort()
+					&& NetworkInterface.getByInetAddress(src.getAddress()) != null)
+					continue;
+				try {
+					final KNXnetIPHeader h = new KNXnetIPHeader(buf, 0);
+					if (drop(h))
+						continue;
+					final int svc = h.getServiceType();
+					if (svc != KNXnetIPHeader.TUNNELING_ACK && latency > 0)
+						Thread.sleep(latency);
+					handle(h, buf, h.getStructLength(), src);
+				}
+				catch (final KNXException e) {
+					// ignore invalid frames
+				}
+			}
+		}
+		catch (final InterruptedException e) {}
+		catch (final IOException e) {}
+	}
+
+	private boolean drop(KNXnetIPHeader h) throws IOException
+	{
+		++received;
+		synchronized (random) {
+			if (loss == 0 || random.nextDouble() >= loss)
+				return false;
+		}
+		++dropped;
+		if (h.getServiceType() == KNXnetIPHeader.ROUTING_IND)
+			sendLostMessage(++lostRouting, (short) 0);
+		return true;
+	}
+
+	private void handle(KNXnetIPHeader h, byte[] data, int offset, InetSocketAddress src)
+		throws KNXException, IOException
+	{
+		final int svc = h.getServiceType();
+		if (svc == KNXnetIPHeader.SEARCH_REQ) {
+			final SearchRequest req = new SearchRequest(data, offset);
+			final HPAI ep = new HPAI(HPAI.IPV4_UDP, ctrlEndpoint);
+			send(socket, PacketHelper.toPacket(new SearchResponse(ep, createDevice(),
+				createFamilies())), endpoint(req.getEndpoint(), src));
+		}
+		else if (svc == KNXnetIPHeader.DESCRIPTION_REQ) {
+			final DescriptionRequest req = new DescriptionRequest(data, offset);
+			send(socket, PacketHelper.toPacket(new DescriptionResponse(createDevice(),
+				createFamilies())), endpoint(req.getEndpoint(), src));
+		}
+		else if (svc == KNXnetIPHeader.CONNECT_REQ)
+			connect(new ConnectRequest(data, offset), src);
+		else if (svc == KNXnetIPHeader.CONNECTIONSTATE_REQ) {
+			final ConnectionstateRequest req = new ConnectionstateRequest(data, offset);
+			final boolean known;
+			synchronized (tunnels) {
+				known = tunnels.containsKey(new Short(req.getChannelID()));
+			}
+			final short status = known ? ErrorCodes.NO_ERROR : ErrorCodes.CONNECTION_ID;
+			send(socket, PacketHelper.toPacket(new ConnectionstateResponse(req
+				.getChannelID(), status)), endpoint(req.getControlEndpoint(), src));
+		}
+		else if (svc == KNXnetIPHeader.DISCONNECT_REQ) {
+			final DisconnectRequest req = new DisconnectRequest(data, offset);
+			synchronized (tunnels) {
+				tunnels.remove(new Short(req.getChannelID()));
+			}
+			send(socket, PacketHelper.toPacket(new DisconnectResponse(req.getChannelID(),
+				ErrorCodes.NO_ERROR)), endpoint(req.getEndpoint(), src));
+		}
+		else if (svc == KNXnetIPHeader.TUNNELING_REQ)
+			tunnelingRequest(PacketHelper.getServiceRequest(h, data, offset));
+		else if (svc == KNXnetIPHeader.ROUTING_IND) {
+			final CEMI frame = new RoutingIndication(data, offset, h.getTotalLength()
+				- h.getStructLength()).getCEMI();
+			if (frame.getMessageCode() == CEMILData.MC_LDATA_IND) {
+				indicate(frame, null);
+				network((CEMILData) frame);
+			}
+		}
+		// acknowledges and routing lost messages are ignored
+	}
+
+	private void connect(ConnectRequest req, InetSocketAddress src) throws IOException
+	{
+		final InetSocketAddress ctrlEP = endpoint(req.getControlEndpoint(), src);
+		if (req.getCRI().getConnectionType() != KNXnetIPTunnel.TUNNEL_CONNECTION) {
+			refuse(ErrorCodes.CONNECTION_TYPE, ctrlEP);
+			return;
+		}
+		if (!(req.getCRI() instanceof TunnelCRI)
+			|| ((TunnelCRI) req.getCRI()).getKNXLayer() != KNXnetIPTunnel.LINK_LAYER) {
+			refuse(ErrorCodes.TUNNELING_LAYER, ctrlEP);
+			return;
+		}
+		Tunnel t = null;
+		synchronized (tunnels) {
+			for (short channel = 1; channel <= maxTunnels && t == null; channel++) {
+				final Short key = new Short(channel);
+				if (!tunnels.containsKey(key)) {
+					t = new Tunnel(channel, ctrlEP, endpoint(req.getDataEndpoint(), src),
+						IndividualAddress.valueOf(address.getRawAddress() + channel));
+					tunnels.put(key, t);
+				}
+			}
+		}
+		if (t == null)
+			refuse(ErrorCodes.NO_MORE_CONNECTIONS, ctrlEP);
+		else
+			send(socket, PacketHelper.toPacket(new ConnectResponse(t.channel,
+				ErrorCodes.NO_ERROR, new HPAI(HPAI.IPV4_UDP, ctrlEndpoint), new TunnelCRD(
+					t.address))), ctrlEP);
+	}
+
+	private void refuse(short status, InetSocketAddress ctrlEP) throws IOException
+	{
+		send(socket, PacketHelper.toPacket(new ConnectResponse(status)), ctrlEP);
+	}
+
+	private void tunnelingRequest(ServiceRequest req) throws KNXException, IOException
+	{
+		final Tunnel t;
+		synchronized (tunnels) {
+			t = (Tunnel) tunnels.get(new Short(req.getChannelID()));
+		}
+		if (t == null)
+			return;
+		final int seq = req.getSequenceNumber();
+		final boolean next;
+		synchronized (t) {
+			next = seq == t.seqRcv;
+			if (next)
+				t.seqRcv = (t.seqRcv + 1) & 0xff;
+			// acknowledge repeated requests, too
+			else if (seq != ((t.seqRcv - 1) & 0xff))
+				return;
+		}
+		send(socket, PacketHelper.toPacket(new ServiceAck(KNXnetIPHeader.TUNNELING_ACK,
+			t.channel, seq, ErrorCodes.NO_ERROR)), t.dataEP);
+		if (!next || req.getCEMI().getMessageCode() != CEMILData.MC_LDATA_REQ)
+			return;
+		CEMILData f = (CEMILData) req.getCEMI();
+		if (f.getSource().getRawAddress() == 0)
+			f = (CEMILData) CEMIFactory.create(t.address, null, f, false);
+		send(t, CEMIFactory.create(CEMILData.MC_LDATA_CON, f.getPayload(), f));
+		final CEMI ind = CEMIFactory.create(CEMILData.MC_LDATA_IND, f.getPayload(), f);
+		indicate(ind, t);
+		if (routing != null)
+			send(routingOut, PacketHelper.toPacket(new RoutingIndication(ind)),
+				routingGroup);
+		network(f);
+		management(f);
+	}
+
+	// simulates the group objects on the KNX network answering frame f
+	private void network(CEMILData f) throws KNXException, IOException
+	{
+		if (!(f.getDestination() instanceof GroupAddress))
+			return;
+		final byte[] apdu = f.getPayload();
+		if (apdu.length < 2)
+			return;
+		final int svc = DataUnitBuilder.getAPDUService(apdu);
+		final GroupObject o;
+		synchronized (objects) {
+			o = (GroupObject) objects.get(f.getDestination());
+			if (o == null)
+				return;
+			if (svc == 0x40 || svc == 0x80) {
+				apdu[1] = (byte) (apdu[1] & 0x3f | 0x40);
+				o.apdu = apdu;
+				return;
+			}
+			if (svc != 0)
+				return;
+		}
+		final CEMILData res = new CEMILData(CEMILData.MC_LDATA_IND, o.owner, f
+			.getDestination(), getGroupValue((GroupAddress) f.getDestination()),
+			Priority.LOW);
+		indicate(res, null);
+		if (routing != null)
+			send(routingOut, PacketHelper.toPacket(new RoutingIndication(res)),
+				routingGroup);
+	}
+
+	// simulates the management devices on the KNX network answering frame f
+	private void management(CEMILData f) throws IOException
+	{
+		if (!(f.getDestination() instanceof IndividualAddress))
+			return;
+		final Device d;
+		synchronized (devices) {
+			d = (Device) devices.get(f.getDestination());
+		}
+		if (d == null)
+			return;
+		final IndividualAddress src = f.getSource();
+		final byte[] tpdu = f.getPayload();
+		final int ctrl = tpdu[0] & 0xff;
+		final int seq = (ctrl & 0x3c) >> 2;
+		final List replies = new ArrayList();
+		synchronized (d) {
+			if (ctrl == CONNECT) {
+				d.partner = src;
+				d.seqRcv = 0;
+				d.seqSend = 0;
+			}
+			else if (ctrl == DISCONNECT) {
+				if (src.equals(d.partner))
+					d.partner = null;
+			}
+			else if ((ctrl & 0xc0) == DATA_CONNECTED) {
+				if (!src.equals(d.partner))
+					replies.add(new byte[] { (byte) DISCONNECT });
+				else if (d.drop > 0)
+					--d.drop;
+				else if (seq == d.seqRcv) {
+					replies.add(new byte[] { (byte) (ACK | seq << 2) });
+					d.seqRcv = (d.seqRcv + 1) & 0xf;
+					final byte[] res = answer(d, tpdu);
+					if (res != null) {
+						res[0] |= DATA_CONNECTED | d.seqSend << 2;
+						d.seqSend = (d.seqSend + 1) & 0xf;
+						replies.add(res);
+					}
+				}
+				// acknowledge a repetition without answering it again
+				else if (seq == ((d.seqRcv - 1) & 0xf))
+					replies.add(new byte[] { (byte) (ACK | seq << 2) });
+				else
+					replies.add(new byte[] { (byte) (NACK | seq << 2) });
+			}
+			else if ((ctrl & 0xfc) == 0) {
+				final byte[] res = answer(d, tpdu);
+				if (res != null)
+					replies.add(res);
+			}
+			// acknowledges of our answers are not checked
+		}
+		for (int i = 0; i < replies.size(); i++)
+			reply(d.address, src, (byte[]) replies.get(i));
+	}
+
+	// returns the answer of device d to the request tpdu, or null for no answer
+	private static byte[] answer(Device d, byte[] tpdu)
+	{
+		if (tpdu.length < 2)
+			return null;
+		final byte[] req = (byte[]) tpdu.clone();
+		req[0] &= 0x03;
+		d.requests.add(req);
+		final int apci = (tpdu[0] & 0x03) << 8 | tpdu[1] & 0xff;
+		if ((apci & 0x3c0) == MEMORY_READ && tpdu.length == 4) {
+			final int addr = (tpdu[2] & 0xff) << 8 | tpdu[3] & 0xff;
+			final int bytes = addr + (apci & 0x3f) > 0x10000 ? 0 : apci & 0x3f;
+			final byte[] res = apdu(MEMORY_RESPONSE | bytes, 2 + bytes);
+			res[2] = tpdu[2];
+			res[3] = tpdu[3];
+			System.arraycopy(d.memory, addr, res, 4, bytes);
+			return res;
+		}
+		if ((apci & 0x3c0) == MEMORY_WRITE && tpdu.length > 4) {
+			final int addr = (tpdu[2] & 0xff) << 8 | tpdu[3] & 0xff;
+			final int bytes = apci & 0x3f;
+			if (tpdu.length == 4 + bytes && addr + bytes <= 0x10000)
+				System.arraycopy(tpdu, 4, d.memory, addr, bytes);
+			return null;
+		}
+		// we only know descriptor type 0
+		if (apci == DEVICE_DESC_READ) {
+			final byte[] res = apdu(DEVICE_DESC_RESPONSE, 2);
+			res[2] = (byte) (d.mask >> 8);
+			res[3] = (byte) d.mask;
+			return res;
+		}
+		if (apci == PROPERTY_READ && tpdu.length == 6)
+			return readProperty(d, tpdu);
+		if (apci == PROPERTY_WRITE && tpdu.length > 6)
+			return writeProperty(d, tpdu);
+		if (apci == PROPERTY_DESC_READ && tpdu.length == 5)
+			return readPropertyDesc(d, tpdu);
+		return null;
+	}
+
+	private static byte[] readProperty(Device d, byte[] tpdu)
+	{
+		final Property p = d.getProperty(tpdu[2] & 0xff, tpdu[3] & 0xff);
+		final int elements = (tpdu[4] & 0xff) >> 4;
+		final int start = (tpdu[4] & 0x0f) << 8 | tpdu[5] & 0xff;
+		if (p == null || elements == 0)
+			return propertyResponse(tpdu, null);
+		final int current = p.data.length / p.size;
+		// element 0 holds the current number of elements
+		if (start == 0)
+			return propertyResponse(tpdu, elements != 1 ? null : new byte[] {
+				(byte) (current >> 8), (byte) current });
+		if (start + elements - 1 > current)
+			return propertyResponse(tpdu, null);
+		final byte[] data = new byte[elements * p.size];
+		System.arraycopy(p.data, (start - 1) * p.size, data, 0, data.length);
+		return propertyResponse(tpdu, data);
+	}
+
+	private static byte[] writeProperty(Device d, byte[] tpdu)
+	{
+		final Property p = d.getProperty(tpdu[2] & 0xff, tpdu[3] & 0xff);
+		final int elements = (tpdu[4] & 0xff) >> 4;
+		final int start = (tpdu[4] & 0x0f) << 8 | tpdu[5] & 0xff;
+		final int bytes = tpdu.length - 6;
+		if (p == null || (p.pdt & 0x80) == 0 || elements == 0 || start == 0
+			|| bytes != elements * p.size || start + elements - 1 > p.max)
+			return propertyResponse(tpdu, null);
+		final int last = start + elements - 1;
+		if (last * p.size > p.data.length) {
+			final byte[] data = new byte[last * p.size];
+			System.arraycopy(p.data, 0, data, 0, p.data.length);
+			p.data = data;
+		}
+		System.arraycopy(tpdu, 6, p.data, (start - 1) * p.size, bytes);
+		final byte[] written = new byte[bytes];
+		System.arraycopy(tpdu, 6, written, 0, bytes);
+		return propertyResponse(tpdu, written);
+	}
+
+	// returns a property response with the data, or if null, with 0 elements
+	private static byte[] propertyResponse(byte[] tpdu, byte[] data)
+	{
+		final byte[] res = apdu(PROPERTY_RESPONSE, 4 + (data != null ? data.length : 0));
+		System.arraycopy(tpdu, 2, res, 2, 4);
+		if (data == null)
+			res[4] &= 0x0f;
+		else
+			System.arraycopy(data, 0, res, 6, data.length);
+		return res;
+	}
+
+	private static byte[] readPropertyDesc(Device d, byte[] tpdu)
+	{
+		final int obj = tpdu[2] & 0xff;
+		final int pid = tpdu[3] & 0xff;
+		int index = tpdu[4] & 0xff;
+		Property p = null;
+		if (obj < d.objects.size()) {
+			final List props = (List) d.objects.get(obj);
+			if (pid != 0) {
+				p = d.getProperty(obj, pid);
+				index = props.indexOf(p);
+			}
+			else if (index < props.size())
+				p = (Property) props.get(index);
+		}
+		final byte[] res = apdu(PROPERTY_DESC_RESPONSE, 7);
+		System.arraycopy(tpdu, 2, res, 2, 3);
+		// maximum number of elements 0 tells there is no such property
+		if (p != null) {
+			res[3] = (byte) p.pid;
+			res[4] = (byte) index;
+			res[5] = (byte) p.pdt;
+			res[6] = (byte) (p.max >> 8 & 0x0f);
+			res[7] = (byte) p.max;
+		}
+		return res;
+	}
+
+	// creates an APDU of the service, with space for the ASDU
+	private static byte[] apdu(int service, int asduLength)
+	{
+		final byte[] apdu = new byte[2 + asduLength];
+		apdu[0] = (byte) (service >> 8 & 0x03);
+		apdu[1] = (byte) service;
+		return apdu;
+	}
+
+	// sends a frame of a management device to the tunnel with individual address dst
+	private void reply(IndividualAddress src, IndividualAddress dst, byte[] tpdu)
+		throws IOException
+	{
+		final Priority p = tpdu.length == 1 ? Priority.SYSTEM : Priority.LOW;
+		final CEMILData f = tpdu.length > 16 ? new CEMILDataEx(CEMILData.MC_LDATA_IND,
+			src, dst, tpdu, p) : new CEMILData(CEMILData.MC_LDATA_IND, src, dst, tpdu, p);
+		final List l;
+		synchronized (tunnels) {
+			l = new ArrayList(tunnels.values());
+		}
+		for (final Iterator i = l.iterator(); i.hasNext();) {
+			final Tunnel t = (Tunnel) i.next();
+			if (t.address.equals(dst))
+				send(t, f);
+		}
+	}
+
+	private Device getDevice(IndividualAddress device)
+	{
+		synchronized (devices) {
+			final Device d = (Device) devices.get(device);
+			if (d == null)
+				throw new KNXIllegalArgumentException("no management device " + device);
+			return d;
+		}
+	}
+
+	// indicates frame to all tunnels except the sending one
+	private void indicate(CEMI frame, Tunnel sender) throws IOException
+	{
+		final List l;
+		synchronized (tunnels) {
+			l = new ArrayList(tunnels.values());
+		}
+		for (final Iterator i = l.iterator(); i.hasNext();) {
+			final Tunnel t = (Tunnel) i.next();
+			if (t != sender)
+				send(t, frame);
+		}
+	}
+
+	private void send(Tunnel t, CEMI frame) throws IOException
+	{
+		final int seq;
+		synchronized (t) {
+			seq = t.seqSend;
+			t.seqSend = (t.seqSend + 1) & 0xff;
+		}
+		final ServiceRequest req = new ServiceRequest(KNXnetIPHeader.TUNNELING_REQ,
+			t.channel, seq, frame);
+		send(socket, PacketHelper.toPacket(req), t.dataEP);
+	}
+
+	private static void send(DatagramSocket s, byte[] buf, InetSocketAddress dst)
+		throws IOException
+	{
+		s.send(new DatagramPacket(buf, buf.length, dst));
+	}
+
+	// uses the sender address for an endpoint with unspecified address or port (NAT)
+	private static InetSocketAddress endpoint(HPAI ep, InetSocketAddress src)
+	{
+		final InetAddress ip = ep.getAddress();
+		if (ip == null || ip.isAnyLocalAddress() || ep.getPort() == 0)
+			return src;
+		return new InetSocketAddress(ip, ep.getPort());
+	}
+
+	private DeviceDIB createDevice() throws KNXFormatException
+	{
+		final byte[] device = new byte[54];
+		device[0] = 54;
+		device[1] = DeviceDIB.DEVICE_INFO;
+		device[2] = DeviceDIB.MEDIUM_TP1;
+		device[4] = (byte) (address.getRawAddress() >> 8);
+		device[5] = (byte) address.getRawAddress();
+		final byte[] name = "KNXnet/IP server simulator".getBytes();
+		System.arraycopy(name, 0, device, 24, name.length);
+		return new DeviceDIB(device, 0);
+	}
+
+	private SuppFamiliesDIB createFamilies() throws KNXFormatException
+	{
+		final byte[] families = new byte[] { 8, DeviceDIB.SUPP_SVC_FAMILIES, 2, 1, 4, 1,
+			5, 1 };
+		return new SuppFamiliesDIB(families, 0);
+	}
+}
@@ -0,0 +1,276 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.knxnetip;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import tuwien.auto.calimero.CloseEvent;
+import tuwien.auto.calimero.FrameEvent;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.knxnetip.servicetype.DescriptionResponse;
+import tuwien.auto.calimero.link.KNXNetworkLink;
+import tuwien.auto.calimero.link.KNXNetworkLinkIP;
+import tuwien.auto.calimero.link.KNXNetworkLinkReconnect;
+import tuwien.auto.calimero.link.event.ReconnectEvent;
+import tuwien.auto.calimero.link.event.ReconnectListener;
+import tuwien.auto.calimero.link.medium.TPSettings;
+import tuwien.auto.calimero.process.ProcessCommunicator;
+import tuwien.auto.calimero.process.ProcessCommunicatorImpl;
+
+/**
+ * Exercises client connections against a {@link KNXnetIPServerSimulator}.
+ * <p>
+ * 
+ * @author B. Malinowsky
+ */
+public class KNXnetIPServerSimulatorTest extends TestCase
+{
+	private InetSocketAddress localEP;
+	private KNXnetIPServerSimulator server;
+	private KNXNetworkLink link;
+	private KNXNetworkLink link2;
+
+	private final GroupAddress group = new GroupAddress(1, 0, 1);
+
+	/**
+	 * @param name name of test case
+	 */
+	public KNXnetIPServerSimulatorTest(String name)
+	{
+		super(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		localEP = new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0);
+		server = new KNXnetIPServerSimulator(localEP, new IndividualAddress(1, 1, 0), 2);
+		server.populate(10, 4);
+		server.start();
+		link = null;
+		link2 = null;
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception
+	{
+		if (link != null)
+			link.close();
+		if (link2 != null)
+			link2.close();
+		server.close();
+		super.tearDown();
+	}
+
+	/**
+	 * Test method for description requests.
+	 * 
+	 * @throws KNXException
+	 */
+	public final void testDescription() throws KNXException
+	{
+		final Discoverer d = new Discoverer(localEP.getAddress(), 0, false);
+		final DescriptionResponse res = d.getDescription(server.getControlEndpoint(), 2);
+		assertEquals("KNXnet/IP server simulator", res.getDevice().getName());
+		assertEquals(new IndividualAddress(1, 1, 0), res.getDevice().getAddress());
+	}
+
+	/**
+	 * Test method for group communication over a tunnel.
+	 * 
+	 * @throws KNXException
+	 */
+	public final void testTunneling() throws KNXException
+	{
+		link = new KNXNetworkLinkIP(KNXNetworkLinkIP.TUNNEL, localEP, server
+			.getControlEndpoint(), false, TPSettings.TP1);
+		final ProcessCommunicator pc = new ProcessCommunicatorImpl(link);
+		assertFalse(pc.readBool(group));
+		pc.write(group, true);
+		assertTrue(pc.readBool(group));
+		assertEquals(0x41, server.getGroupValue(group)[1]);
+
+		// the second tunnel sees the write of the first one
+		link2 = new KNXNetworkLinkIP(KNXNetworkLinkIP.TUNNEL, localEP, server
+			.getControlEndpoint(), false, TPSettings.TP1);
+		final ProcessCommunicator pc2 = new ProcessCommunicatorImpl(link2);
+		pc.write(group, false);
+		assertFalse(pc2.readBool(group));
+		assertEquals(2, server.getTunnels());
+
+		// no more tunnels available
+		try {
+			new KNXNetworkLinkIP(KNXNetworkLinkIP.TUNNEL, localEP, server
+				.getControlEndpoint(), false, TPSettings.TP1);
+			fail("no more connections");
+		}
+		catch (final KNXException e) {}
+		pc.detach();
+		pc2.detach();
+	}
+
+	/**
+	 * Test method for latency.
+	 * 
+	 * @throws KNXException
+	 */
+	public final void testLatency() throws KNXException
+	{
+		link = new KNXNetworkLinkIP(KNXNetworkLinkIP.TUNNEL, localEP, server
+			.getControlEndpoint(), false, TPSettings.TP1);
+		final ProcessCommunicator pc = new ProcessCommunicatorImpl(link);
+		server.setLatency(100);
+		final long start = System.currentTimeMillis();
+		pc.readBool(group);
+		assertTrue(System.currentTimeMillis() - start >= 100);
+		pc.detach();
+	}
+
+	/**
+	 * Test method for loss.
+	 * 
+	 * @throws KNXException
+	 */
+	public final void testLoss() throws KNXException
+	{
+		final Discoverer d = new Discoverer(localEP.getAddress(), 0, false);
+		server.setLoss(1);
+		try {
+			d.getDescription(server.getControlEndpoint(), 1);
+			fail("request dropped");
+		}
+		catch (final KNXException e) {}
+		assertEquals(1, server.getDropped());
+		assertEquals(1, server.getReceived());
+		server.setLoss(0);
+		d.getDescription(server.getControlEndpoint(), 1);
+	}
+
+	/**
+	 * Test method for routing lost messages.
+	 * 
+	 * @throws Exception
+	 */
+	public final void testLostMessage() throws Exception
+	{
+		final InetAddress mcast = InetAddress.getByName(KNXnetIPRouter.DEFAULT_MULTICAST);
+		final KNXnetIPRouter router = new KNXnetIPRouter(null, mcast);
+		final List lost = new ArrayList();
+		router.addConnectionListener(new RouterListener()
+		{
+			public void frameReceived(FrameEvent e)
+			{}
+
+			public void connectionClosed(CloseEvent e)
+			{}
+
+			public void lostMessage(LostMessageEvent e)
+			{
+				synchronized (lost) {
+					lost.add(e);
+					lost.notify();
+				}
+			}
+		});
+		server.startRouting(null, mcast);
+		synchronized (lost) {
+			server.sendLostMessage(3, (short) 0);
+			lost.wait(2000);
+		}
+		router.close();
+		assertEquals(1, lost.size());
+		assertEquals(3, ((LostMessageEvent) lost.get(0)).getLostMessages());
+	}
+
+	/**
+	 * Test method for a server initiated disconnect with a reconnecting link.
+	 * 
+	 * @throws KNXException
+	 * @throws Exception
+	 */
+	public final void testDisconnect() throws Exception
+	{
+		final KNXNetworkLinkReconnect l = new KNXNetworkLinkReconnect(localEP, server
+			.getControlEndpoint(), false, TPSettings.TP1,
+			KNXNetworkLinkReconnect.BUFFER_SENDS);
+		link = l;
+		final Object reconnected = new Object();
+		l.addLinkListener(new ReconnectListener()
+		{
+			public void indication(FrameEvent e)
+			{}
+
+			public void confirmation(FrameEvent e)
+			{}
+
+			public void linkClosed(CloseEvent e)
+			{}
+
+			public void linkInterrupted(CloseEvent e)
+			{}
+
+			public void linkReconnected(ReconnectEvent e)
+			{
+				synchronized (reconnected) {
+					reconnected.notify();
+				}
+			}
+		});
+		assertEquals(1, server.getTunnels());
+		synchronized (reconnected) {
+			server.disconnectAll();
+			reconnected.wait(5000);
+		}
+		assertTrue(l.isConnected());
+		assertEquals(1, server.getTunnels());
+		final ProcessCommunicator pc = new ProcessCommunicatorImpl(l);
+		pc.write(group, true);
+		assertTrue(pc.readBool(group));
+		pc.detach();
+	}
+}
@@ -0,0 +1,250 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.knxnetip;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+
+import junit.framework.TestCase;
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
+import tuwien.auto.calimero.exception.KNXIllegalStateException;
+import tuwien.auto.calimero.knxnetip.servicetype.KNXnetIPHeader;
+import tuwien.auto.calimero.knxnetip.servicetype.PacketHelper;
+import tuwien.auto.calimero.knxnetip.servicetype.SearchRequest;
+import tuwien.auto.calimero.knxnetip.servicetype.SearchResponse;
+import tuwien.auto.calimero.knxnetip.util.DeviceDIB;
+import tuwien.auto.calimero.knxnetip.util.HPAI;
+import tuwien.auto.calimero.knxnetip.util.SuppFamiliesDIB;
+
+/**
+ * @author B. Malinowsky
+ */
+public class MulticastSearchTest extends TestCase
+{
+	private DatagramSocket server;
+	private Thread responder;
+	private volatile int answers;
+	private MulticastSearch search;
+
+	private int received;
+	private int ended;
+	private boolean complete;
+
+	private final SearchListener l = new SearchListener()
+	{
+		public void responseReceived(SearchResponse response, NetworkInterface ni)
+		{
+			++received;
+		}
+
+		public void searchEnded(boolean complete)
+		{
+			++ended;
+			MulticastSearchTest.this.complete = complete;
+		}
+	};
+
+	/**
+	 * @param name name for test case
+	 */
+	public MulticastSearchTest(String name)
+	{
+		super(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		received = 0;
+		ended = 0;
+		complete = false;
+		answers = 2;
+		server = new DatagramSocket(0, InetAddress.getByName("127.0.0.1"));
+		responder = new Thread()
+		{
+			public void run()
+			{
+				respond();
+			}
+		};
+		responder.start();
+		search = new MulticastSearch(0, false, (InetSocketAddress) server
+			.getLocalSocketAddress());
+		search.addSearchListener(l);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception
+	{
+		search.stop();
+		server.close();
+		responder.join();
+		super.tearDown();
+	}
+
+	/**
+	 * Test method for {@link MulticastSearch#MulticastSearch(int, boolean)}.
+	 */
+	public final void testMulticastSearch()
+	{
+		try {
+			new MulticastSearch(-1, false);
+			fail("negative port number");
+		}
+		catch (final KNXIllegalArgumentException e) {}
+		try {
+			new MulticastSearch(0x10000, false);
+			fail("port number too big");
+		}
+		catch (final KNXIllegalArgumentException e) {}
+	}
+
+	/**
+	 * Test method for {@link MulticastSearch#start(int, int)}.
+	 * 
+	 * @throws KNXException
+	 * @throws InterruptedException
+	 */
+	public final void testStart() throws KNXException, InterruptedException
+	{
+		final long start = System.currentTimeMillis();
+		search.start(10, 1);
+		assertTrue(search.waitForEnd(5000));
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		assertTrue(search.isComplete());
+		assertFalse(search.isSearching());
+		// duplicates from the server are removed
+		assertEquals(1, search.getSearchResponses().length);
+		assertEquals(1, received);
+		assertEquals(1, ended);
+		assertTrue(complete);
+		final HPAI ep = search.getSearchResponses()[0].getControlEndpoint();
+		assertEquals(server.getLocalPort(), ep.getPort());
+		try {
+			search.start(10, 1);
+			fail("already started");
+		}
+		catch (final KNXIllegalStateException e) {}
+	}
+
+	/**
+	 * Test method for {@link MulticastSearch#start(int, int)}.
+	 * 
+	 * @throws KNXException
+	 * @throws InterruptedException
+	 */
+	public final void testStartTimeout() throws KNXException, InterruptedException
+	{
+		search.start(1, 2);
+		assertTrue(search.isSearching());
+		assertTrue(search.waitForEnd(5000));
+		assertFalse(search.isComplete());
+		assertEquals(1, search.getSearchResponses().length);
+		assertEquals(1, received);
+		assertEquals(1, ended);
+		assertFalse(complete);
+	}
+
+	/**
+	 * Test method for {@link MulticastSearch#stop()}.
+	 * 
+	 * @throws KNXException
+	 * @throws InterruptedException
+	 */
+	public final void testStop() throws KNXException, InterruptedException
+	{
+		answers = 0;
+		search.start(0, 0);
+		assertFalse(search.waitForEnd(500));
+		assertTrue(search.isSearching());
+		search.stop();
+		assertTrue(search.waitForEnd(2000));
+		assertEquals(0, search.getSearchResponses().length);
+		assertEquals(1, ended);
+	}
+
+	// answers every search request with the same search response
+	private void respond()
+	{
+		final byte[] buf = new byte[256];
+		try {
+			final byte[] res = PacketHelper.toPacket(createResponse());
+			while (true) {
+				final DatagramPacket p = new DatagramPacket(buf, buf.length);
+				server.receive(p);
+				final KNXnetIPHeader h = new KNXnetIPHeader(buf, 0);
+				if (h.getServiceType() != KNXnetIPHeader.SEARCH_REQ)
+					continue;
+				final HPAI ep = new SearchRequest(buf, h.getStructLength()).getEndpoint();
+				final InetSocketAddress dst = new InetSocketAddress(ep.getAddress(), ep
+					.getPort());
+				for (int i = 0; i < answers; i++)
+					server.send(new DatagramPacket(res, res.length, dst));
+			}
+		}
+		catch (final IOException e) {}
+		catch (final KNXException e) {
+			fail(e.getMessage());
+		}
+	}
+
+	private SearchResponse createResponse() throws KNXException
+	{
+		final byte[] device = new byte[54];
+		device[0] = 54;
+		device[1] = DeviceDIB.DEVICE_INFO;
+		device[2] = 2;
+		device[4] = 0x11;
+		device[5] = 0x01;
+		final byte[] name = "test server".getBytes();
+		System.arraycopy(name, 0, device, 24, name.length);
+		final byte[] families = new byte[] { 4, DeviceDIB.SUPP_SVC_FAMILIES, 2, 1 };
+		return new SearchResponse(new HPAI(HPAI.IPV4_UDP, (InetSocketAddress) server
+			.getLocalSocketAddress()), new DeviceDIB(device, 0), new SuppFamiliesDIB(
+			families, 0));
+	}
+}
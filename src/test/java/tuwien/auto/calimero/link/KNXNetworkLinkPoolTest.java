@@ -0,0 +1,424 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.link;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+import tuwien.auto.calimero.CloseEvent;
+import tuwien.auto.calimero.FrameEvent;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.KNXAddress;
+import tuwien.auto.calimero.Priority;
+import tuwien.auto.calimero.cemi.CEMIFactory;
+import tuwien.auto.calimero.cemi.CEMILData;
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.exception.KNXIllegalStateException;
+import tuwien.auto.calimero.exception.KNXTimeoutException;
+import tuwien.auto.calimero.link.event.NetworkLinkListener;
+import tuwien.auto.calimero.link.medium.KNXMediumSettings;
+import tuwien.auto.calimero.link.medium.TPSettings;
+
+/**
+ * @author B. Malinowsky
+ */
+public class KNXNetworkLinkPoolTest extends TestCase
+{
+	private final InetSocketAddress server = new InetSocketAddress("127.0.0.1", 3671);
+	private final GroupAddress dst = new GroupAddress(1, 0, 1);
+	private final byte[] tpdu = new byte[] { 0, (byte) 0x81 };
+
+	// opened tunneling links
+	private final List opened = new ArrayList();
+	// number of tunneling links the server accepts
+	private volatile int slots;
+	private KNXNetworkLinkPool pool;
+
+	// a tunneling link confirming every message, without network access
+	private final class TunnelLink implements KNXNetworkLink
+	{
+		private final List listeners = new ArrayList();
+		private volatile boolean closed;
+		// fail blocking sends with a confirmation timeout
+		volatile boolean noConfirmation;
+		private KNXMediumSettings medium;
+
+		TunnelLink(KNXMediumSettings settings)
+		{
+			medium = settings;
+		}
+
+		public void setKNXMedium(KNXMediumSettings settings)
+		{
+			medium = settings;
+		}
+
+		public KNXMediumSettings getKNXMedium()
+		{
+			return medium;
+		}
+
+		public synchronized void addLinkListener(NetworkLinkListener l)
+		{
+			listeners.add(l);
+		}
+
+		public synchronized void removeLinkListener(NetworkLinkListener l)
+		{
+			listeners.remove(l);
+		}
+
+		public void setHopCount(int count)
+		{}
+
+		public byte getHopCount()
+		{
+			return 6;
+		}
+
+		public void sendRequest(KNXAddress dst, Priority p, byte[] nsdu)
+		{}
+
+		public void sendRequestWait(KNXAddress dst, Priority p, byte[] nsdu)
+		{}
+
+		public void send(CEMILData msg, boolean waitForCon) throws KNXLinkClosedException,
+			KNXTimeoutException
+		{
+			if (closed)
+				throw new KNXLinkClosedException("link closed");
+			if (waitForCon && noConfirmation)
+				throw new KNXTimeoutException("no confirmation");
+			try {
+				final CEMILData con = (CEMILData) CEMIFactory.create(
+					CEMILData.MC_LDATA_CON, msg.getPayload(), msg);
+				final FrameEvent e = new FrameEvent(this, con);
+				for (final Iterator i = copy().iterator(); i.hasNext();)
+					((NetworkLinkListener) i.next()).confirmation(e);
+			}
+			catch (final KNXException e) {
+				fail(e.getMessage());
+			}
+		}
+
+		public String getName()
+		{
+			return "tunnel link";
+		}
+
+		public boolean isOpen()
+		{
+			return !closed;
+		}
+
+		public void close()
+		{
+			closed = true;
+		}
+
+		void indicate(CEMILData ind)
+		{
+			for (final Iterator i = copy().iterator(); i.hasNext();)
+				((NetworkLinkListener) i.next()).indication(new FrameEvent(this, ind));
+		}
+
+		// the server closes the connection
+		void lost()
+		{
+			closed = true;
+			for (final Iterator i = copy().iterator(); i.hasNext();)
+				((NetworkLinkListener) i.next()).linkClosed(new CloseEvent(this, false,
+					"server request"));
+		}
+
+		private synchronized List copy()
+		{
+			return new ArrayList(listeners);
+		}
+	}
+
+	private static final class Listener implements NetworkLinkListener
+	{
+		volatile int ind;
+		volatile int con;
+		volatile boolean closed;
+		volatile CEMILData last;
+
+		public void indication(FrameEvent e)
+		{
+			last = (CEMILData) e.getFrame();
+			++ind;
+		}
+
+		public void confirmation(FrameEvent e)
+		{
+			++con;
+		}
+
+		public void linkClosed(CloseEvent e)
+		{
+			closed = true;
+		}
+	}
+
+	/**
+	 * @param name name of test case
+	 */
+	public KNXNetworkLinkPoolTest(String name)
+	{
+		super(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		opened.clear();
+		slots = 4;
+		pool = new KNXNetworkLinkPool(null, false, 2)
+		{
+			KNXNetworkLink open(InetSocketAddress server, KNXMediumSettings settings)
+				throws KNXException
+			{
+				synchronized (opened) {
+					int open = 0;
+					for (final Iterator i = opened.iterator(); i.hasNext();)
+						if (((KNXNetworkLink) i.next()).isOpen())
+							++open;
+					if (open >= slots)
+						throw new KNXException("no more connections");
+					final TunnelLink l = new TunnelLink(settings);
+					opened.add(l);
+					return l;
+				}
+			}
+		};
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception
+	{
+		pool.close();
+		super.tearDown();
+	}
+
+	/**
+	 * Test method for {@link KNXNetworkLinkPool#getLink(InetSocketAddress,
+	 * KNXMediumSettings)}.
+	 * 
+	 * @throws KNXException
+	 */
+	public final void testGetLink() throws KNXException
+	{
+		final KNXNetworkLink l1 = pool.getLink(server, TPSettings.TP1);
+		assertEquals(1, pool.getTunnels(server));
+		final KNXNetworkLink l2 = pool.getLink(server, TPSettings.TP1);
+		assertEquals(2, pool.getTunnels(server));
+		// maximum reached, share a tunnel
+		final KNXNetworkLink l3 = pool.getLink(server, TPSettings.TP1);
+		assertEquals(2, pool.getTunnels(server));
+		assertEquals(2, opened.size());
+		assertTrue(l1.isOpen() && l2.isOpen() && l3.isOpen());
+		assertNotSame(l1, l3);
+
+		// a closed virtual link does not affect the others
+		l3.close();
+		assertFalse(l3.isOpen());
+		assertTrue(l1.isOpen());
+		assertEquals(2, pool.getTunnels(server));
+		// the tunnel is closed with its last virtual link
+		l2.close();
+		assertEquals(1, pool.getTunnels(server));
+		assertFalse(((KNXNetworkLink) opened.get(1)).isOpen());
+	}
+
+	/**
+	 * Test method for {@link KNXNetworkLinkPool#getLink(InetSocketAddress,
+	 * KNXMediumSettings)}.
+	 * 
+	 * @throws KNXException
+	 */
+	public final void testGetLinkNoSlots() throws KNXException
+	{
+		slots = 0;
+		try {
+			pool.getLink(server, TPSettings.TP1);
+			fail("no tunnel available");
+		}
+		catch (final KNXException e) {}
+		assertEquals(0, pool.getTunnels(server));
+		slots = 1;
+		pool.getLink(server, TPSettings.TP1);
+		// server does not accept another tunnel, share the first one
+		pool.getLink(server, TPSettings.TP1);
+		assertEquals(1, pool.getTunnels(server));
+	}
+
+	/**
+	 * Test method for confirmation and indication routing of virtual links.
+	 * 
+	 * @throws KNXException
+	 * @throws InterruptedException
+	 */
+	public final void testRouting() throws KNXException, InterruptedException
+	{
+		slots = 1;
+		final KNXNetworkLink l1 = pool.getLink(server, TPSettings.TP1);
+		final KNXNetworkLink l2 = pool.getLink(server, new TPSettings(
+			new IndividualAddress(1, 1, 10), true));
+		final Listener n1 = new Listener();
+		final Listener n2 = new Listener();
+		l1.addLinkListener(n1);
+		l2.addLinkListener(n2);
+
+		l1.sendRequestWait(dst, Priority.LOW, tpdu);
+		l2.sendRequest(dst, Priority.LOW, new byte[] { 0, (byte) 0x80 });
+		final TunnelLink tunnel = (TunnelLink) opened.get(0);
+		tunnel.indicate(new CEMILData(CEMILData.MC_LDATA_IND, new IndividualAddress(1, 1,
+			5), dst, tpdu, Priority.LOW));
+		Thread.sleep(200);
+		assertEquals(1, n1.con);
+		assertEquals(1, n2.con);
+		// the indication, and the message sent by the other virtual link
+		assertEquals(2, n1.ind);
+		assertEquals(2, n2.ind);
+	}
+
+	/**
+	 * Test method for indications of messages sent by virtual links sharing a tunnel.
+	 * 
+	 * @throws KNXException
+	 * @throws InterruptedException
+	 */
+	public final void testLoopback() throws KNXException, InterruptedException
+	{
+		slots = 1;
+		final KNXNetworkLink l1 = pool.getLink(server, new TPSettings(
+			new IndividualAddress(1, 1, 10), true));
+		final KNXNetworkLink l2 = pool.getLink(server, TPSettings.TP1);
+		final KNXNetworkLink l3 = pool.getLink(server, TPSettings.TP1);
+		final Listener n1 = new Listener();
+		final Listener n2 = new Listener();
+		final Listener n3 = new Listener();
+		l1.addLinkListener(n1);
+		l2.addLinkListener(n2);
+		l3.addLinkListener(n3);
+
+		l1.sendRequestWait(dst, Priority.LOW, tpdu);
+		Thread.sleep(200);
+		assertEquals("no indication of own message", 0, n1.ind);
+		assertEquals(1, n2.ind);
+		assertEquals(1, n3.ind);
+		final CEMILData ind = n2.last;
+		assertEquals(CEMILData.MC_LDATA_IND, ind.getMessageCode());
+		assertEquals(new IndividualAddress(1, 1, 10), ind.getSource());
+		assertEquals(dst, ind.getDestination());
+		assertTrue(Arrays.equals(tpdu, ind.getPayload()));
+
+		// no indication of a message without confirmation
+		((TunnelLink) opened.get(0)).noConfirmation = true;
+		try {
+			l2.sendRequestWait(dst, Priority.LOW, tpdu);
+			fail("no confirmation");
+		}
+		catch (final KNXTimeoutException e) {}
+		l2.sendRequest(dst, Priority.LOW, tpdu);
+		Thread.sleep(200);
+		assertEquals(1, n1.ind);
+		assertEquals(1, n2.ind);
+		assertEquals(2, n3.ind);
+	}
+
+	/**
+	 * Test method for reconnecting a tunnel.
+	 * 
+	 * @throws KNXException
+	 * @throws InterruptedException
+	 */
+	public final void testReconnect() throws KNXException, InterruptedException
+	{
+		final KNXNetworkLink l = pool.getLink(server, TPSettings.TP1);
+		final Listener n = new Listener();
+		l.addLinkListener(n);
+		((TunnelLink) opened.get(0)).lost();
+		assertTrue(l.isOpen());
+		for (int i = 0; i < 20 && opened.size() < 2; i++)
+			Thread.sleep(50);
+		assertEquals(2, opened.size());
+		l.sendRequestWait(dst, Priority.LOW, tpdu);
+		Thread.sleep(200);
+		assertEquals(1, n.con);
+		assertFalse(n.closed);
+	}
+
+	/**
+	 * Test method for {@link KNXNetworkLinkPool#close()}.
+	 * 
+	 * @throws KNXException
+	 * @throws InterruptedException
+	 */
+	public final void testClose() throws KNXException, InterruptedException
+	{
+		final KNXNetworkLink l = pool.getLink(server, TPSettings.TP1);
+		final Listener n = new Listener();
+		l.addLinkListener(n);
+		pool.close();
+		assertFalse(l.isOpen());
+		assertFalse(((KNXNetworkLink) opened.get(0)).isOpen());
+		Thread.sleep(100);
+		assertTrue(n.closed);
+		try {
+			l.sendRequest(dst, Priority.LOW, tpdu);
+			fail("link closed");
+		}
+		catch (final KNXLinkClosedException e) {}
+		try {
+			pool.getLink(server, TPSettings.TP1);
+			fail("pool closed");
+		}
+		catch (final KNXIllegalStateException e) {}
+	}
+}
@@ -0,0 +1,471 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.link;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+import tuwien.auto.calimero.CloseEvent;
+import tuwien.auto.calimero.FrameEvent;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.KNXAddress;
+import tuwien.auto.calimero.Priority;
+import tuwien.auto.calimero.cemi.CEMIFactory;
+import tuwien.auto.calimero.cemi.CEMILData;
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
+import tuwien.auto.calimero.exception.KNXTimeoutException;
+import tuwien.auto.calimero.link.event.NetworkLinkListener;
+import tuwien.auto.calimero.link.event.ReconnectEvent;
+import tuwien.auto.calimero.link.event.ReconnectListener;
+import tuwien.auto.calimero.link.medium.KNXMediumSettings;
+import tuwien.auto.calimero.link.medium.TPSettings;
+
+/**
+ * @author B. Malinowsky
+ */
+public class KNXNetworkLinkReconnectTest extends TestCase
+{
+	private final InetSocketAddress server = new InetSocketAddress("127.0.0.1", 3671);
+	private final GroupAddress dst = new GroupAddress(1, 0, 1);
+	private final byte[] tpdu = new byte[] { 0, (byte) 0x81 };
+
+	// opened tunneling links
+	private final List opened = new ArrayList();
+	// server accepts connections
+	private volatile boolean available;
+	// time a tunneling link takes for sending a message
+	private volatile long sendDelay;
+	private KNXNetworkLinkReconnect link;
+
+	// received events: "ind", "con", "interrupted", "reconnected" or "closed"
+	private final List events = new ArrayList();
+	private volatile ReconnectEvent reconnected;
+
+	private final ReconnectListener l = new ReconnectListener()
+	{
+		public void indication(FrameEvent e)
+		{
+			event("ind");
+		}
+
+		public void confirmation(FrameEvent e)
+		{
+			event("con");
+		}
+
+		public void linkClosed(CloseEvent e)
+		{
+			event("closed");
+		}
+
+		public void linkInterrupted(CloseEvent e)
+		{
+			assertFalse(e.isUserRequest());
+			event("interrupted");
+		}
+
+		public void linkReconnected(ReconnectEvent e)
+		{
+			reconnected = e;
+			event("reconnected");
+		}
+	};
+
+	// a tunneling link confirming every message, without network access
+	private final class TunnelLink implements KNXNetworkLink
+	{
+		private final List listeners = new ArrayList();
+		private volatile boolean closed;
+		private KNXMediumSettings medium;
+		private volatile int sent;
+		// last byte of the TPDU of each sent message
+		private final List order = new ArrayList();
+
+		TunnelLink(KNXMediumSettings settings)
+		{
+			medium = settings;
+		}
+
+		public void setKNXMedium(KNXMediumSettings settings)
+		{
+			medium = settings;
+		}
+
+		public KNXMediumSettings getKNXMedium()
+		{
+			return medium;
+		}
+
+		public synchronized void addLinkListener(NetworkLinkListener l)
+		{
+			listeners.add(l);
+		}
+
+		public synchronized void removeLinkListener(NetworkLinkListener l)
+		{
+			listeners.remove(l);
+		}
+
+		public void setHopCount(int count)
+		{}
+
+		public byte getHopCount()
+		{
+			return 6;
+		}
+
+		public void sendRequest(KNXAddress dst, Priority p, byte[] nsdu)
+			throws KNXLinkClosedException
+		{
+			send(new CEMILData(CEMILData.MC_LDATA_REQ, medium.getDeviceAddress(), dst,
+				nsdu, p), false);
+		}
+
+		public void sendRequestWait(KNXAddress dst, Priority p, byte[] nsdu)
+			throws KNXLinkClosedException
+		{
+			sendRequest(dst, p, nsdu);
+		}
+
+		public void send(CEMILData msg, boolean waitForCon) throws KNXLinkClosedException
+		{
+			if (closed)
+				throw new KNXLinkClosedException("link closed");
+			try {
+				Thread.sleep(sendDelay);
+			}
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			final byte[] payload = msg.getPayload();
+			synchronized (order) {
+				order.add(new Integer(payload[payload.length - 1] & 0x7f));
+			}
+			++sent;
+			try {
+				final CEMILData con = (CEMILData) CEMIFactory.create(
+					CEMILData.MC_LDATA_CON, msg.getPayload(), msg);
+				final FrameEvent e = new FrameEvent(this, con);
+				for (final Iterator i = copy().iterator(); i.hasNext();)
+					((NetworkLinkListener) i.next()).confirmation(e);
+			}
+			catch (final KNXException e) {
+				fail(e.getMessage());
+			}
+		}
+
+		public String getName()
+		{
+			return "tunnel link";
+		}
+
+		public boolean isOpen()
+		{
+			return !closed;
+		}
+
+		public void close()
+		{
+			closed = true;
+		}
+
+		void indicate()
+		{
+			final FrameEvent e = new FrameEvent(this, new CEMILData(CEMILData.MC_LDATA_IND,
+				medium.getDeviceAddress(), dst, tpdu, Priority.LOW));
+			for (final Iterator i = copy().iterator(); i.hasNext();)
+				((NetworkLinkListener) i.next()).indication(e);
+		}
+
+		// the server closes the connection
+		void lost()
+		{
+			closed = true;
+			final CloseEvent e = new CloseEvent(this, false, "no heartbeat response");
+			for (final Iterator i = copy().iterator(); i.hasNext();)
+				((NetworkLinkListener) i.next()).linkClosed(e);
+		}
+
+		private synchronized List copy()
+		{
+			return new ArrayList(listeners);
+		}
+	}
+
+	/**
+	 * @param name name of test case
+	 */
+	public KNXNetworkLinkReconnectTest(String name)
+	{
+		super(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		opened.clear();
+		events.clear();
+		reconnected = null;
+		available = true;
+		sendDelay = 0;
+		link = create(KNXNetworkLinkReconnect.BUFFER_SENDS);
+		link.setReconnectDelay(50, 100);
+		link.addLinkListener(l);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception
+	{
+		link.close();
+		super.tearDown();
+	}
+
+	/**
+	 * Test method for {@link KNXNetworkLinkReconnect#KNXNetworkLinkReconnect(
+	 * InetSocketAddress, InetSocketAddress, boolean, KNXMediumSettings, int)}.
+	 * 
+	 * @throws KNXException
+	 */
+	public final void testKNXNetworkLinkReconnect() throws KNXException
+	{
+		try {
+			create(0);
+			fail("unknown policy");
+		}
+		catch (final KNXIllegalArgumentException e) {}
+		available = false;
+		try {
+			create(KNXNetworkLinkReconnect.REJECT_SENDS);
+			fail("no server");
+		}
+		catch (final KNXException e) {}
+		assertTrue(link.isOpen());
+		assertTrue(link.isConnected());
+	}
+
+	/**
+	 * Test method for reconnecting with buffered messages.
+	 * 
+	 * @throws KNXException
+	 * @throws InterruptedException
+	 */
+	public final void testReconnectBuffered() throws KNXException, InterruptedException
+	{
+		available = false;
+		tunnel(0).lost();
+		assertTrue(waitFor("interrupted", 1000));
+		assertTrue(link.isOpen());
+		assertFalse(link.isConnected());
+
+		// buffered until reconnected
+		link.sendRequestWait(dst, Priority.LOW, tpdu);
+		link.sendRequest(dst, Priority.LOW, tpdu);
+		Thread.sleep(200);
+		assertEquals(1, opened.size());
+		assertFalse(events.contains("con"));
+
+		available = true;
+		assertTrue(waitFor("reconnected", 1000));
+		assertTrue(link.isConnected());
+		assertEquals(2, opened.size());
+		assertEquals(2, tunnel(1).sent);
+		assertTrue(reconnected.getAttempts() > 1);
+		assertTrue(reconnected.getReconnectTime() >= reconnected.getLostTime());
+		assertSame(link, reconnected.getSource());
+
+		// listeners stay attached
+		tunnel(1).indicate();
+		assertTrue(waitFor("ind", 1000));
+		assertEquals(2, count("con"));
+		assertFalse(events.contains("closed"));
+	}
+
+	/**
+	 * Test method for sending while buffered messages are sent after a reconnect.
+	 * 
+	 * @throws KNXException
+	 * @throws InterruptedException
+	 */
+	public final void testSendWhileFlushing() throws KNXException, InterruptedException
+	{
+		available = false;
+		tunnel(0).lost();
+		assertTrue(waitFor("interrupted", 1000));
+		for (int i = 0; i < 5; ++i)
+			link.sendRequest(dst, Priority.LOW, new byte[] { 0, (byte) (0x80 | i) });
+
+		// flushing the buffered messages takes 500 ms
+		sendDelay = 100;
+		available = true;
+		while (tunnels() < 2)
+			Thread.sleep(10);
+		Thread.sleep(50);
+		final long start = System.currentTimeMillis();
+		assertFalse(link.isConnected());
+		link.sendRequest(dst, Priority.LOW, new byte[] { 0, (byte) 0x85 });
+		link.setHopCount(5);
+		assertTrue(System.currentTimeMillis() - start < 100);
+
+		assertTrue(waitFor("reconnected", 2000));
+		assertTrue(link.isConnected());
+		assertEquals(6, tunnel(1).sent);
+		final List expected = new ArrayList();
+		for (int i = 0; i < 6; ++i)
+			expected.add(new Integer(i));
+		assertEquals(expected, tunnel(1).order);
+	}
+
+	/**
+	 * Test method for rejecting messages while reconnecting.
+	 * 
+	 * @throws KNXException
+	 * @throws InterruptedException
+	 */
+	public final void testReconnectRejected() throws KNXException, InterruptedException
+	{
+		link.close();
+		link = create(KNXNetworkLinkReconnect.REJECT_SENDS);
+		link.setReconnectDelay(50, 100);
+		link.addLinkListener(l);
+		available = false;
+		tunnel(1).lost();
+		try {
+			link.sendRequest(dst, Priority.LOW, tpdu);
+			fail("not connected");
+		}
+		catch (final KNXTimeoutException e) {}
+		available = true;
+		assertTrue(waitFor("reconnected", 1000));
+		link.sendRequest(dst, Priority.LOW, tpdu);
+		assertEquals(1, tunnel(2).sent);
+	}
+
+	/**
+	 * Test method for {@link KNXNetworkLinkReconnect#close()}.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public final void testClose() throws InterruptedException
+	{
+		available = false;
+		tunnel(0).lost();
+		link.close();
+		assertFalse(link.isOpen());
+		assertTrue(waitFor("closed", 1000));
+		try {
+			link.sendRequest(dst, Priority.LOW, tpdu);
+			fail("link closed");
+		}
+		catch (final KNXException e) {
+			assertTrue(e instanceof KNXLinkClosedException);
+		}
+		// no reconnect after close
+		available = true;
+		Thread.sleep(200);
+		assertEquals(1, opened.size());
+	}
+
+	private KNXNetworkLinkReconnect create(int policy) throws KNXException
+	{
+		return new KNXNetworkLinkReconnect(null, server, false, TPSettings.TP1, policy)
+		{
+			KNXNetworkLink open() throws KNXException
+			{
+				if (!available)
+					throw new KNXException("server not available");
+				final TunnelLink t = new TunnelLink(getKNXMedium());
+				synchronized (opened) {
+					opened.add(t);
+				}
+				return t;
+			}
+		};
+	}
+
+	private int tunnels()
+	{
+		synchronized (opened) {
+			return opened.size();
+		}
+	}
+
+	private TunnelLink tunnel(int index)
+	{
+		synchronized (opened) {
+			return (TunnelLink) opened.get(index);
+		}
+	}
+
+	private void event(String e)
+	{
+		synchronized (events) {
+			events.add(e);
+			events.notifyAll();
+		}
+	}
+
+	private int count(String e)
+	{
+		int n = 0;
+		synchronized (events) {
+			for (final Iterator i = events.iterator(); i.hasNext();)
+				if (i.next().equals(e))
+					++n;
+		}
+		return n;
+	}
+
+	private boolean waitFor(String e, long timeout) throws InterruptedException
+	{
+		final long end = System.currentTimeMillis() + timeout;
+		synchronized (events) {
+			for (long wait = timeout; !events.contains(e) && wait > 0; wait = end
+				- System.currentTimeMillis())
+				events.wait(wait);
+			return events.contains(e);
+		}
+	}
+}
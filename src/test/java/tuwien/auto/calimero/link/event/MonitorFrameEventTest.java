@@ -0,0 +1,138 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.link.event;
+
+import junit.framework.TestCase;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.cemi.CEMIBusMon;
+import tuwien.auto.calimero.link.medium.KNXMediumSettings;
+import tuwien.auto.calimero.link.medium.RawFrame;
+import tuwien.auto.calimero.link.medium.TP1LData;
+
+/**
+ * @author B. Malinowsky
+ */
+public class MonitorFrameEventTest extends TestCase
+{
+	// TP1 standard frame, group value write 1/0/1
+	private static final byte[] tp1 = { (byte) 0xBC, 0x11, 0x01, 0x08, 0x01, (byte) 0xE1,
+		0x00, (byte) 0x81, 0x55 };
+
+	private final Object source = new Object();
+	private CEMIBusMon frame;
+
+	/**
+	 * @param name name of test case
+	 */
+	public MonitorFrameEventTest(String name)
+	{
+		super(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		frame = new CEMIBusMon(0, 0, false, tp1);
+	}
+
+	/**
+	 * Test method for {@link MonitorFrameEvent#MonitorFrameEvent(Object,
+	 * tuwien.auto.calimero.cemi.CEMI, RawFrame)}.
+	 */
+	public void testDecodedRawFrame()
+	{
+		assertNull(new MonitorFrameEvent(source, frame).getRawFrame());
+		final MonitorFrameEvent e = new MonitorFrameEvent(source, frame, (RawFrame) null);
+		assertNull(e.getRawFrame());
+		assertNull(e.getRawFrameError());
+	}
+
+	/**
+	 * Test method for {@link MonitorFrameEvent#MonitorFrameEvent(Object,
+	 * tuwien.auto.calimero.cemi.CEMI, int)}.
+	 */
+	public void testDecodePayload()
+	{
+		final MonitorFrameEvent e = new MonitorFrameEvent(source, frame,
+			KNXMediumSettings.MEDIUM_TP1);
+		final RawFrame raw = e.getRawFrame();
+		assertTrue(raw instanceof TP1LData);
+		assertEquals(new GroupAddress(1, 0, 1), ((TP1LData) raw).getDestination());
+		// decoded once, and kept
+		assertSame(raw, e.getRawFrame());
+		assertNull(e.getRawFrameError());
+		assertSame(frame, e.getFrame());
+	}
+
+	/**
+	 * Test method for {@link MonitorFrameEvent#MonitorFrameEvent(Object,
+	 * tuwien.auto.calimero.cemi.CEMI, int, byte[], int)}.
+	 */
+	public void testDecodeBuffer()
+	{
+		final byte[] buf = new byte[4 + tp1.length];
+		System.arraycopy(tp1, 0, buf, 4, tp1.length);
+		final MonitorFrameEvent e = new MonitorFrameEvent(source, frame,
+			KNXMediumSettings.MEDIUM_TP1, buf, 4);
+		final TP1LData raw = (TP1LData) e.getRawFrame();
+		assertEquals(new GroupAddress(1, 0, 1), raw.getDestination());
+		assertEquals(0x55, raw.getChecksum());
+		assertSame(raw, e.getRawFrame());
+	}
+
+	/**
+	 * Test method for {@link MonitorFrameEvent#getRawFrameError()}.
+	 */
+	public void testGetRawFrameError()
+	{
+		// truncated TPDU
+		final byte[] buf = new byte[6];
+		System.arraycopy(tp1, 0, buf, 0, buf.length);
+		MonitorFrameEvent e = new MonitorFrameEvent(source, frame,
+			KNXMediumSettings.MEDIUM_TP1, buf, 0);
+		assertNull(e.getRawFrame());
+		assertNotNull(e.getRawFrameError());
+
+		// error is available without requesting the raw frame before
+		e = new MonitorFrameEvent(source, frame, KNXMediumSettings.MEDIUM_RF);
+		assertNotNull(e.getRawFrameError());
+		assertNull(e.getRawFrame());
+	}
+}
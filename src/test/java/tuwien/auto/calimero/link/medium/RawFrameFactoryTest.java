@@ -0,0 +1,199 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.link.medium;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.Priority;
+import tuwien.auto.calimero.exception.KNXFormatException;
+
+/**
+ * @author B. Malinowsky
+ */
+public class RawFrameFactoryTest extends TestCase
+{
+	private static final IndividualAddress src = new IndividualAddress(1, 1, 1);
+	private static final GroupAddress dst = new GroupAddress(1, 0, 1);
+	private static final byte[] tpdu = { 0x00, (byte) 0x81 };
+
+	// standard frame: ctrl, src, dst, group/hop count 6/length 1, tpdu, fcs
+	private static final byte[] tp1 = { (byte) 0xBC, 0x11, 0x01, 0x08, 0x01, (byte) 0xE1,
+		0x00, (byte) 0x81, 0x55 };
+	// extended frame: ctrl, ctrle group/hop count 6, src, dst, length 1, tpdu, fcs
+	private static final byte[] tp1Ext = { 0x3C, (byte) 0xE0, 0x11, 0x01, 0x08, 0x01,
+		0x01, 0x00, (byte) 0x81, 0x55 };
+	// poll data frame: ctrl, src, dst, expected poll data 3, fcs
+	private static final byte[] tp1Poll = { (byte) 0xF0, 0x11, 0x01, 0x08, 0x01, 0x03,
+		0x55 };
+	// standard frame followed by fcs and domain address
+	private static final byte[] pl110 = { (byte) 0xBC, 0x11, 0x01, 0x08, 0x01,
+		(byte) 0xE1, 0x00, (byte) 0x81, 0x55, 0x2A };
+	// domain address, standard ctrl group, src, dst, hop count 6/length 1, tpdu, fcs
+	private static final byte[] pl132 = { 0x00, 0x2A, (byte) 0xEF, 0x11, 0x01, 0x08,
+		0x01, 0x61, 0x00, (byte) 0x81, 0x12, 0x34 };
+
+	/**
+	 * @param name name of test case
+	 */
+	public RawFrameFactoryTest(String name)
+	{
+		super(name);
+	}
+
+	/**
+	 * Test method for {@link RawFrameFactory#createTP1(byte[], int)}.
+	 * 
+	 * @throws KNXFormatException
+	 */
+	public void testCreateTP1() throws KNXFormatException
+	{
+		TP1LData f = (TP1LData) RawFrameFactory.createTP1(tp1, 0);
+		assertLData(f, false, 0x55);
+		f = (TP1LData) RawFrameFactory.create(KNXMediumSettings.MEDIUM_TP1,
+			prefix(tp1, 3), 3);
+		assertLData(f, false, 0x55);
+		f = (TP1LData) RawFrameFactory.createTP1(prefix(tp1Ext, 5), 5);
+		assertLData(f, true, 0x55);
+
+		// frame without checksum
+		final byte[] noFcs = new byte[tp1.length - 1];
+		System.arraycopy(tp1, 0, noFcs, 0, noFcs.length);
+		f = (TP1LData) RawFrameFactory.createTP1(noFcs, 0);
+		assertLData(f, false, -1);
+
+		final TP1LPollData poll = (TP1LPollData) RawFrameFactory.createTP1(prefix(tp1Poll,
+			2), 2);
+		assertEquals(RawFrame.LPOLLDATA_FRAME, poll.getFrameType());
+		assertEquals(src, poll.getSource());
+		assertEquals(dst, poll.getDestination());
+		assertEquals(3, poll.getExpectedDataLength());
+		assertEquals(0x55, poll.getChecksum());
+
+		assertTrue(RawFrameFactory.createTP1(new byte[] { 0, (byte) 0xCC }, 1)
+			instanceof TP1Ack);
+	}
+
+	/**
+	 * Test method for {@link RawFrameFactory#createPL110(byte[], int)}.
+	 * 
+	 * @throws KNXFormatException
+	 */
+	public void testCreatePL110() throws KNXFormatException
+	{
+		PL110LData f = (PL110LData) RawFrameFactory.createPL110(pl110, 0);
+		assertLData(f, false, 0x55);
+		assertEquals(0x2A, f.getDomainAddress()[1]);
+		// control field of frame at offset decides about frame type
+		final byte[] data = prefix(pl110, 4);
+		f = (PL110LData) RawFrameFactory.create(KNXMediumSettings.MEDIUM_PL110, data, 4);
+		assertLData(f, false, 0x55);
+		assertEquals(0x2A, f.getDomainAddress()[1]);
+	}
+
+	/**
+	 * Test method for {@link RawFrameFactory#createPL132(byte[], int)}.
+	 * 
+	 * @throws KNXFormatException
+	 */
+	public void testCreatePL132() throws KNXFormatException
+	{
+		PL132LData f = (PL132LData) RawFrameFactory.createPL132(pl132, 0);
+		assertLData(f, false, 0x1234);
+		assertTrue(Arrays.equals(new byte[] { 0x00, 0x2A }, f.getDomainAddress()));
+		assertFalse(f.isAckRequested());
+		f = (PL132LData) RawFrameFactory.create(KNXMediumSettings.MEDIUM_PL132, prefix(
+			pl132, 1), 1);
+		assertLData(f, false, 0x1234);
+		assertTrue(Arrays.equals(new byte[] { 0x00, 0x2A }, f.getDomainAddress()));
+	}
+
+	/**
+	 * Test method for invalid frames.
+	 */
+	public void testInvalidFrames()
+	{
+		// too short
+		try {
+			RawFrameFactory.createTP1(prefix(tp1, 4), 8);
+			fail("too short");
+		}
+		catch (final KNXFormatException e) {}
+		// TPDU exceeds data
+		final byte[] truncated = new byte[tp1.length - 3];
+		System.arraycopy(tp1, 0, truncated, 0, truncated.length);
+		try {
+			RawFrameFactory.createTP1(prefix(truncated, 2), 2);
+			fail("truncated TPDU");
+		}
+		catch (final KNXFormatException e) {}
+		// invalid control field
+		try {
+			RawFrameFactory.createTP1(new byte[] { (byte) 0xD0, 0, 0, 0, 0, 0, 0 }, 0);
+			fail("invalid ctrl");
+		}
+		catch (final KNXFormatException e) {}
+		try {
+			RawFrameFactory.create(KNXMediumSettings.MEDIUM_RF, tp1, 0);
+			fail("RF not supported");
+		}
+		catch (final KNXFormatException e) {}
+	}
+
+	private static void assertLData(RawFrameBase f, boolean ext, int fcs)
+	{
+		assertEquals(RawFrame.LDATA_FRAME, f.getFrameType());
+		assertEquals(ext, f.ext);
+		assertFalse(f.isRepetition());
+		assertEquals(Priority.LOW, f.getPriority());
+		assertEquals(src, f.getSource());
+		assertEquals(dst, f.getDestination());
+		assertEquals(6, f.getHopcount());
+		assertTrue(Arrays.equals(tpdu, f.getTPDU()));
+		assertEquals(fcs, f.getChecksum());
+	}
+
+	// returns data with count zero bytes inserted in front
+	private static byte[] prefix(byte[] data, int count)
+	{
+		final byte[] buf = new byte[count + data.length];
+		System.arraycopy(data, 0, buf, count, data.length);
+		return buf;
+	}
+}
@@ -0,0 +1,218 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.link.trace;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import tuwien.auto.calimero.CloseEvent;
+import tuwien.auto.calimero.FrameEvent;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.cemi.CEMIBusMon;
+import tuwien.auto.calimero.cemi.CEMILData;
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.link.KNXLinkClosedException;
+import tuwien.auto.calimero.link.event.NetworkLinkListener;
+import tuwien.auto.calimero.link.medium.TPSettings;
+import tuwien.auto.calimero.log.SegmentedFile;
+
+/**
+ * @author B. Malinowsky
+ */
+public class KNXNetworkLinkReplayTest extends TestCase
+{
+	private static final String file = "./src/test/link-replay";
+	// TP1 L-data from 1.1.1 to 1/1/2, group value read
+	private static final byte[] raw = new byte[] { (byte) 0xbc, 0x11, 0x01, 0x09, 0x02,
+		(byte) 0xe1, 0x00, 0x00, 0x00 };
+	// TP1 acknowledge
+	private static final byte[] ack = new byte[] { (byte) 0xcc };
+
+	private final class Listener implements NetworkLinkListener
+	{
+		final List indications = new ArrayList();
+		volatile CloseEvent closed;
+
+		public void confirmation(FrameEvent e)
+		{}
+
+		public void indication(FrameEvent e)
+		{
+			indications.add(e.getFrame());
+		}
+
+		public void linkClosed(CloseEvent e)
+		{
+			closed = e;
+		}
+	}
+
+	private KNXNetworkLinkReplay link;
+	private Listener l;
+
+	/**
+	 * @param name name of test case
+	 */
+	public KNXNetworkLinkReplayTest(String name)
+	{
+		super(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		delete();
+		final MonitorTraceWriter w = new MonitorTraceWriter(file, 8192, 0);
+		for (int i = 0; i < 100; ++i) {
+			w.write(1000 + 2 * i, new CEMIBusMon(0, i, false, raw));
+			w.write(1000 + 2 * i + 1, new CEMIBusMon(0, i, false, ack));
+		}
+		w.close();
+		l = new Listener();
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception
+	{
+		if (link != null)
+			link.close();
+		delete();
+		super.tearDown();
+	}
+
+	/**
+	 * Test method for replay as fast as possible.
+	 * 
+	 * @throws KNXException
+	 * @throws InterruptedException
+	 */
+	public void testReplayFast() throws KNXException, InterruptedException
+	{
+		link = new KNXNetworkLinkReplay(file, KNXNetworkMonitorReplay.AS_FAST_AS_POSSIBLE,
+			TPSettings.TP1);
+		link.addLinkListener(l);
+		link.start();
+		assertTrue(link.waitForEnd(5000));
+		assertEquals(200, link.getEvents());
+		assertTrue(link.getEventsPerSecond() > 0);
+		assertEquals(100, l.indications.size());
+		final CEMILData f = (CEMILData) l.indications.get(0);
+		assertEquals(CEMILData.MC_LDATA_IND, f.getMessageCode());
+		assertEquals(new IndividualAddress(1, 1, 1), f.getSource());
+		assertEquals(new GroupAddress(1, 1, 2), f.getDestination());
+		assertEquals(6, f.getHopCount());
+		assertNotNull(l.closed);
+		assertFalse(l.closed.isUserRequest());
+		assertFalse(link.isOpen());
+	}
+
+	/**
+	 * Test method for scaled replay.
+	 * 
+	 * @throws KNXException
+	 * @throws InterruptedException
+	 */
+	public void testReplayScaled() throws KNXException, InterruptedException
+	{
+		// 199 ms of captured traffic at 10 times the speed
+		link = new KNXNetworkLinkReplay(file, 10, TPSettings.TP1);
+		link.addLinkListener(l);
+		final long start = System.currentTimeMillis();
+		link.start();
+		assertTrue(link.waitForEnd(5000));
+		assertTrue(System.currentTimeMillis() - start >= 19);
+		assertEquals(100, l.indications.size());
+	}
+
+	/**
+	 * Test method for {@link KNXNetworkLinkReplay#close()}.
+	 * 
+	 * @throws KNXException
+	 * @throws InterruptedException
+	 */
+	public void testClose() throws KNXException, InterruptedException
+	{
+		// real time replay would take 199 ms
+		link = new KNXNetworkLinkReplay(file, KNXNetworkMonitorReplay.REAL_TIME,
+			TPSettings.TP1);
+		link.addLinkListener(l);
+		link.send(null, false);
+		link.start();
+		link.close();
+		assertTrue(link.waitForEnd(1000));
+		assertTrue(l.indications.size() < 100);
+		assertTrue(l.closed.isUserRequest());
+		try {
+			link.sendRequest(new GroupAddress(1, 1, 2), null, new byte[2]);
+			fail("link closed");
+		}
+		catch (final KNXLinkClosedException e) {}
+	}
+
+	/**
+	 * Test method for {@link KNXNetworkLinkReplay#close()} without starting the replay.
+	 * 
+	 * @throws KNXException
+	 * @throws InterruptedException
+	 */
+	public void testCloseNotStarted() throws KNXException, InterruptedException
+	{
+		link = new KNXNetworkLinkReplay(file, KNXNetworkMonitorReplay.REAL_TIME,
+			TPSettings.TP1);
+		link.addLinkListener(l);
+		link.close();
+		assertTrue(link.waitForEnd(0));
+		assertEquals(0, l.indications.size());
+		assertTrue(l.closed.isUserRequest());
+		assertFalse(link.isOpen());
+	}
+
+	private static void delete()
+	{
+		final int[] segments = SegmentedFile.segments(file);
+		for (int i = 0; i < segments.length; ++i)
+			new File(SegmentedFile.segmentFile(file, segments[i])).delete();
+	}
+}
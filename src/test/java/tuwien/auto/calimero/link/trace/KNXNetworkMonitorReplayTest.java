@@ -0,0 +1,146 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.link.trace;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import tuwien.auto.calimero.CloseEvent;
+import tuwien.auto.calimero.FrameEvent;
+import tuwien.auto.calimero.cemi.CEMIBusMon;
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.link.event.LinkListener;
+import tuwien.auto.calimero.link.event.MonitorFrameEvent;
+import tuwien.auto.calimero.link.medium.RawFrame;
+import tuwien.auto.calimero.link.medium.TPSettings;
+import tuwien.auto.calimero.log.SegmentedFile;
+
+/**
+ * @author B. Malinowsky
+ */
+public class KNXNetworkMonitorReplayTest extends TestCase
+{
+	private static final String file = "./src/test/monitor-replay";
+	private static final byte[] raw = new byte[] { (byte) 0xbc, 0x11, 0x01, 0x09, 0x02,
+		(byte) 0xe1, 0x00, 0x00, 0x00 };
+
+	private KNXNetworkMonitorReplay mon;
+	private final List events = new ArrayList();
+
+	/**
+	 * @param name name of test case
+	 */
+	public KNXNetworkMonitorReplayTest(String name)
+	{
+		super(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		delete();
+		events.clear();
+		final MonitorTraceWriter w = new MonitorTraceWriter(file, 8192, 0);
+		for (int i = 0; i < 50; ++i)
+			w.write(i, new CEMIBusMon(0, i, false, raw));
+		w.close();
+		mon = new KNXNetworkMonitorReplay(file, KNXNetworkMonitorReplay.AS_FAST_AS_POSSIBLE,
+			TPSettings.TP1);
+		mon.addMonitorListener(new LinkListener() {
+			public void indication(FrameEvent e)
+			{
+				events.add(e);
+			}
+
+			public void linkClosed(CloseEvent e)
+			{}
+		});
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception
+	{
+		mon.close();
+		delete();
+		super.tearDown();
+	}
+
+	/**
+	 * Test method for {@link KNXNetworkMonitorReplay#start()}.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void testStart() throws InterruptedException
+	{
+		mon.setDecodeRawFrames(true);
+		mon.start();
+		assertTrue(mon.waitForEnd(5000));
+		assertFalse(mon.isOpen());
+		assertEquals(50, mon.getEvents());
+		assertEquals(50, events.size());
+		final MonitorFrameEvent e = (MonitorFrameEvent) events.get(49);
+		assertEquals(49, ((CEMIBusMon) e.getFrame()).getTimestamp());
+		assertEquals(RawFrame.LDATA_FRAME, e.getRawFrame().getFrameType());
+	}
+
+	/**
+	 * Test method for {@link KNXNetworkMonitorReplay#close()} before start.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void testClose() throws InterruptedException
+	{
+		mon.close();
+		assertFalse(mon.isOpen());
+		assertTrue(mon.waitForEnd(1000));
+		assertEquals(0, events.size());
+	}
+
+	private static void delete()
+	{
+		final int[] segments = SegmentedFile.segments(file);
+		for (int i = 0; i < segments.length; ++i)
+			new File(SegmentedFile.segmentFile(file, segments[i])).delete();
+	}
+}
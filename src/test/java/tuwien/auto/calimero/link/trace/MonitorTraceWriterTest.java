@@ -0,0 +1,190 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.link.trace;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+import tuwien.auto.calimero.cemi.CEMIBusMon;
+import tuwien.auto.calimero.exception.KNXException;
+import tuwien.auto.calimero.link.event.MonitorFrameEvent;
+import tuwien.auto.calimero.log.SegmentedFile;
+
+/**
+ * @author B. Malinowsky
+ */
+public class MonitorTraceWriterTest extends TestCase
+{
+	private static final String file = "./src/test/monitor-trace";
+	private static final byte[] raw = new byte[] { (byte) 0xbc, 0x11, 0x01, 0x09, 0x02,
+		(byte) 0xe1, 0x00, (byte) 0x81, 0x44 };
+
+	private MonitorTraceWriter w;
+	private MonitorTraceReader r;
+
+	/**
+	 * @param name name of test case
+	 */
+	public MonitorTraceWriterTest(String name)
+	{
+		super(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		delete();
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception
+	{
+		if (w != null)
+			w.close();
+		if (r != null)
+			r.close();
+		delete();
+		super.tearDown();
+	}
+
+	/**
+	 * Test method for {@link MonitorTraceWriter#indication(tuwien.auto.calimero.FrameEvent)}
+	 * and {@link MonitorTraceReader#next()}.
+	 * 
+	 * @throws KNXException
+	 */
+	public void testWriteRead() throws KNXException
+	{
+		w = new MonitorTraceWriter(file, 8192, 0);
+		final CEMIBusMon frame = new CEMIBusMon(true, false, false, true, (byte) 5,
+			0x12345678L, true, raw);
+		w.indication(new MonitorFrameEvent(this, frame));
+		w.write(1000, new CEMIBusMon(0, 0x1234, false, raw));
+		assertEquals(2, w.getFrameCount());
+
+		r = new MonitorTraceReader(file);
+		final CEMIBusMon first = r.next();
+		assertTrue(r.getTime() > 1000);
+		assertTrue(first.getFrameError());
+		assertTrue(first.getLost());
+		assertFalse(first.getBitError());
+		assertEquals(5, first.getSequenceNumber());
+		assertEquals(0x12345678L, first.getTimestamp());
+		assertEquals(CEMIBusMon.TYPEID_TIMESTAMP_EXT, first.getTimestampType());
+		assertEquals(raw.length, first.getPayload().length);
+		final CEMIBusMon second = r.next();
+		assertEquals(1000, r.getTime());
+		assertEquals(0x1234, second.getTimestamp());
+		assertEquals(CEMIBusMon.TYPEID_TIMESTAMP, second.getTimestampType());
+		assertNull(r.next());
+
+		// frames appended later are returned by the reader
+		w.write(2000, new CEMIBusMon(0, 1, false, raw));
+		assertNotNull(r.next());
+		assertEquals(2000, r.getTime());
+	}
+
+	/**
+	 * Test method for {@link MonitorTraceReader#seek(long)} over several segments.
+	 * 
+	 * @throws KNXException
+	 */
+	public void testSeek() throws KNXException
+	{
+		w = new MonitorTraceWriter(file, 8192, 0);
+		final int frames = 2000;
+		for (int i = 0; i < frames; ++i)
+			w.write(10 * i, new CEMIBusMon(0, i, false, raw));
+		assertTrue(SegmentedFile.segments(file).length > 5);
+
+		r = new MonitorTraceReader(file);
+		for (int i = 0; i < frames; ++i) {
+			assertEquals(i, r.next().getTimestamp());
+			assertEquals(10 * i, r.getTime());
+		}
+		assertNull(r.next());
+
+		r.seek(12345);
+		assertEquals(1235, r.next().getTimestamp());
+		r.seek(10 * 1500);
+		assertEquals(1500, r.next().getTimestamp());
+		assertEquals(1501, r.next().getTimestamp());
+		r.seek(-1);
+		assertEquals(0, r.next().getTimestamp());
+		r.seek(10 * frames);
+		assertNull(r.next());
+	}
+
+	/**
+	 * Test method for segment rotation and retention.
+	 * 
+	 * @throws KNXException
+	 */
+	public void testRotation() throws KNXException
+	{
+		w = new MonitorTraceWriter(file, 8192, 3);
+		for (int i = 0; i < 2000; ++i)
+			w.write(i, new CEMIBusMon(0, i, false, raw));
+		w.close();
+		final int[] segments = SegmentedFile.segments(file);
+		assertEquals(3, segments.length);
+		assertEquals(segments[0] + 2, segments[2]);
+
+		r = new MonitorTraceReader(file);
+		long last = -1;
+		for (CEMIBusMon f = r.next(); f != null; f = r.next())
+			last = f.getTimestamp();
+		assertEquals(1999, last);
+
+		// a new writer continues after the existing segments
+		w = new MonitorTraceWriter(file, 8192, 3);
+		assertEquals(SegmentedFile.segmentFile(file, segments[2] + 1), w
+			.getSegmentFileName());
+	}
+
+	private static void delete()
+	{
+		final int[] segments = SegmentedFile.segments(file);
+		for (int i = 0; i < segments.length; ++i)
+			new File(SegmentedFile.segmentFile(file, segments[i])).delete();
+	}
+}
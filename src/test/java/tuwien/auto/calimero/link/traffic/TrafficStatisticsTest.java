@@ -0,0 +1,191 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.link.traffic;
+
+import junit.framework.TestCase;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.Priority;
+import tuwien.auto.calimero.cemi.CEMIBusMon;
+import tuwien.auto.calimero.cemi.CEMILData;
+import tuwien.auto.calimero.link.medium.KNXMediumSettings;
+import tuwien.auto.calimero.link.medium.RawFrame;
+import tuwien.auto.calimero.link.medium.RawFrameFactory;
+import tuwien.auto.calimero.link.medium.TPSettings;
+
+/**
+ * @author B. Malinowsky
+ */
+public class TrafficStatisticsTest extends TestCase
+{
+	// L-data standard frame 1.1.1 -> 1/1/2, 9 bytes
+	private static final byte[] raw = new byte[] { (byte) 0xbc, 0x11, 0x01, 0x09, 0x02,
+		(byte) 0xe1, 0x00, 0x00, 0x00 };
+	// repeated frame 1.1.5 -> 1/1/3
+	private static final byte[] repeated = new byte[] { (byte) 0x9c, 0x11, 0x05, 0x09,
+		0x03, (byte) 0xe1, 0x00, 0x00, 0x00 };
+
+	private TrafficStatistics stat;
+	private long start;
+
+	/**
+	 * @param name name of test case
+	 */
+	public TrafficStatisticsTest(String name)
+	{
+		super(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		stat = new TrafficStatistics(TPSettings.TP1, 10, 3);
+		start = System.currentTimeMillis();
+	}
+
+	/**
+	 * Test method for {@link TrafficStatistics#TrafficStatistics(KNXMediumSettings, int, int)}.
+	 */
+	public void testTrafficStatistics()
+	{
+		assertEquals(60, new TrafficStatistics(TPSettings.TP1).getWindow());
+		try {
+			new TrafficStatistics(TPSettings.TP1, 0, 10);
+			fail("window out of range");
+		}
+		catch (final RuntimeException e) {}
+		try {
+			new TrafficStatistics(TPSettings.TP1, 10, 0);
+			fail("no top talkers");
+		}
+		catch (final RuntimeException e) {}
+	}
+
+	/**
+	 * Test method for {@link TrafficStatistics#snapshot()}.
+	 * 
+	 * @throws Exception
+	 */
+	public void testSnapshot() throws Exception
+	{
+		final RawFrame f = RawFrameFactory.create(KNXMediumSettings.MEDIUM_TP1, raw, 0);
+		final RawFrame r = RawFrameFactory.create(KNXMediumSettings.MEDIUM_TP1, repeated, 0);
+		for (int i = 0; i < 50; ++i)
+			stat.add(start + 15000 + i * 100, new CEMIBusMon(0, i, false, raw), f);
+		for (int i = 0; i < 10; ++i)
+			stat.add(start + 16000 + i * 100, new CEMIBusMon(0, i, false, repeated), r);
+		stat.add(start + 17000, new CEMIBusMon(true, false, true, false, (byte) 0, 0, false,
+			raw), null);
+
+		final TrafficSnapshot s = stat.snapshot(start + 20000);
+		assertEquals(10000, s.getWindow());
+		assertEquals(61, s.getFrames());
+		assertEquals(61, s.getTotalFrames());
+		assertEquals(10, s.getRepetitions());
+		assertEquals(1, s.getFrameErrors());
+		assertEquals(1, s.getParityErrors());
+		assertEquals(0, s.getBitErrors());
+		assertEquals(1, s.getTotalErrors());
+		assertEquals(6.1, s.getFramesPerSecond(), 0.001);
+		// 61 frames of 9 bytes: 61 * (9 * 13 + 50) bit times in 10 s at 9600 bit/s
+		assertEquals(61 * 167 * 100.0 / 96000, s.getBusLoad(), 0.001);
+
+		final IndividualAddress[] src = s.getTopSources();
+		assertEquals(2, src.length);
+		assertEquals(new IndividualAddress(1, 1, 1), src[0]);
+		assertEquals(new IndividualAddress(1, 1, 5), src[1]);
+		assertTrue(s.getSourceRates()[0] > s.getSourceRates()[1]);
+		final GroupAddress[] grp = s.getTopGroups();
+		assertEquals(2, grp.length);
+		assertEquals(new GroupAddress(1, 1, 2), grp[0]);
+
+		// frames expired from the window, totals are kept
+		final TrafficSnapshot later = stat.snapshot(start + 40000);
+		assertEquals(0, later.getFrames());
+		assertEquals(0.0, later.getBusLoad(), 0);
+		assertEquals(61, later.getTotalFrames());
+	}
+
+	/**
+	 * Test method for busmonitor indications with extended timestamps.
+	 */
+	public void testExtendedTimestamp()
+	{
+		for (int i = 0; i < 10; ++i)
+			stat.add(start + 15000 + i * 100, new CEMIBusMon(0, i, true, raw), null);
+		final TrafficSnapshot s = stat.snapshot(start + 20000);
+		assertEquals(10, s.getFrames());
+		// bus load is computed from the raw frame length of 9 bytes
+		assertEquals(10 * 167 * 100.0 / 96000, s.getBusLoad(), 0.001);
+	}
+
+	/**
+	 * Test method for indications of L-data frames.
+	 */
+	public void testLDataIndication()
+	{
+		final CEMILData ind = new CEMILData(CEMILData.MC_LDATA_IND, new IndividualAddress(
+			1, 1, 1), new GroupAddress(1, 1, 2), new byte[] { 0, (byte) 0x81 },
+			Priority.LOW);
+		final CEMILData req = new CEMILData(CEMILData.MC_LDATA_REQ, new IndividualAddress(
+			1, 1, 1), new GroupAddress(1, 1, 2), new byte[] { 0, (byte) 0x81 },
+			Priority.LOW);
+		for (int i = 0; i < 5; ++i)
+			stat.add(start + 1000, ind);
+		stat.add(start + 1000, req);
+		final TrafficSnapshot s = stat.snapshot(start + 2000);
+		assertEquals(5, s.getFrames());
+		assertEquals(1, s.getTopSources().length);
+		assertEquals(new GroupAddress(1, 1, 2), s.getTopGroups()[0]);
+	}
+
+	/**
+	 * Test method for {@link TrafficStatistics#reset()}.
+	 */
+	public void testReset()
+	{
+		stat.add(start + 1000, new CEMIBusMon(0, 0, false, raw), null);
+		stat.reset();
+		final TrafficSnapshot s = stat.snapshot();
+		assertEquals(0, s.getFrames());
+		assertEquals(0, s.getTotalFrames());
+		assertEquals(0, s.getTopSources().length);
+	}
+}
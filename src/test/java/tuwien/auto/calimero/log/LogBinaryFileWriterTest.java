@@ -0,0 +1,167 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+/**
+ * @author B. Malinowsky
+ */
+public class LogBinaryFileWriterTest extends TestCase
+{
+	private static final String file = "./src/test/binary-log";
+	private static final String text = "./src/test/binary-log.log";
+	private static final String logService = "my LogService";
+
+	private LogBinaryFileWriter w;
+
+	/**
+	 * @param name name of test case
+	 */
+	public LogBinaryFileWriterTest(String name)
+	{
+		super(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		delete();
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception
+	{
+		if (w != null)
+			w.close();
+		delete();
+		super.tearDown();
+	}
+
+	/**
+	 * Test method for {@link LogBinaryFileWriter#write(String, LogLevel, String, Throwable)}
+	 * and {@link LogBinaryDecoder#decode(String, LogStreamWriter)}.
+	 * 
+	 * @throws KNXLogException
+	 * @throws IOException
+	 */
+	public void testWriteDecode() throws KNXLogException, IOException
+	{
+		w = new LogBinaryFileWriter(LogLevel.INFO, file, 4096, 0);
+		w.write(logService, LogLevel.INFO, "first message");
+		w.write(logService, LogLevel.TRACE, "filtered message");
+		w.write("other service", LogLevel.ERROR, "second message", new Exception(
+			"exception string"));
+		w.close();
+		assertEquals(2, decode());
+		final String[] lines = LogServiceTest.readLines(text);
+		assertEquals(2, lines.length);
+		assertTrue(lines[0].endsWith("level=info, my LogService: first message"));
+		assertTrue(lines[1].endsWith(
+			"level=error, other service: second message (exception string)"));
+	}
+
+	/**
+	 * Test method for segment rotation and retention.
+	 * 
+	 * @throws KNXLogException
+	 * @throws IOException
+	 */
+	public void testRotation() throws KNXLogException, IOException
+	{
+		w = new LogBinaryFileWriter(file, 1024, 3);
+		for (int i = 0; i < 100; ++i)
+			w.write(logService, LogLevel.INFO, "message number " + i);
+		w.close();
+		final int[] segments = SegmentedFile.segments(file);
+		assertEquals(3, segments.length);
+		assertEquals(segments[0] + 2, segments[2]);
+		final int records = decode();
+		assertTrue(records > 0 && records < 100);
+		final String[] lines = LogServiceTest.readLines(text);
+		assertEquals(records, lines.length);
+		assertTrue(lines[lines.length - 1].endsWith("message number 99"));
+
+		// a new writer continues after the existing segments
+		w = new LogBinaryFileWriter(file, 1024, 3);
+		assertEquals(SegmentedFile.segmentFile(file, segments[2] + 1), w
+			.getSegmentFileName());
+	}
+
+	/**
+	 * Test method for a record exceeding the segment size.
+	 * 
+	 * @throws KNXLogException
+	 */
+	public void testRecordTooLarge() throws KNXLogException
+	{
+		w = new LogBinaryFileWriter(file, 1024, 0);
+		w.write(logService, LogLevel.INFO, new String(new char[2000]).replace('\0', 'a'));
+		w.write(logService, LogLevel.INFO, "fits");
+		w.close();
+		assertEquals(1, SegmentedFile.segments(file).length);
+	}
+
+	private int decode() throws KNXLogException, IOException
+	{
+		final FileOutputStream os = new FileOutputStream(text);
+		final LogStreamWriter out = new LogStreamWriter(os);
+		try {
+			return LogBinaryDecoder.decode(file, out);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private static void delete()
+	{
+		final int[] segments = SegmentedFile.segments(file);
+		for (int i = 0; i < segments.length; ++i)
+			new File(SegmentedFile.segmentFile(file, segments[i])).delete();
+		new File(text).delete();
+	}
+}
@@ -39,6 +39,7 @@ package tuwien.auto.calimero.log;
 import java.io.IOException;
 
 import junit.framework.TestCase;
+import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
 import tuwien.auto.calimero.log.KNXLogException;
 import tuwien.auto.calimero.log.LogFileWriter;
 import tuwien.auto.calimero.log.LogLevel;
@@ -263,4 +264,62 @@ public class LogManagerTest extends TestCase
 		assertTrue(m.hasLogService(logger2));
 		assertTrue(m.hasLogService(logger3));
 	}
+
+	/**
+	 * Test method for {@link tuwien.auto.calimero.log.LogManager#setOverflowPolicy(int)}.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void testSetOverflowPolicy() throws InterruptedException
+	{
+		assertEquals(LogManager.BLOCK, m.getOverflowPolicy());
+		try {
+			m.setOverflowPolicy(5);
+			fail("unknown policy");
+		}
+		catch (final KNXIllegalArgumentException e) {}
+
+		final Object gate = new Object();
+		final int[] written = new int[1];
+		final LogWriter w = new LogWriter() {
+			public void write(String logService, LogLevel level, String msg)
+			{
+				write(logService, level, msg, null);
+			}
+
+			public void write(String logService, LogLevel level, String msg, Throwable t)
+			{
+				synchronized (gate) {
+					try {
+						// block dispatcher on first message
+						if (written[0]++ == 0)
+							gate.wait();
+					}
+					catch (final InterruptedException e) {}
+				}
+			}
+
+			public void flush()
+			{}
+
+			public void close()
+			{}
+		};
+		final LogService l = m.getLogService("overflow");
+		l.addWriter(w);
+		m.setOverflowPolicy(LogManager.DROP);
+		final long dropped = m.getDroppedMessages();
+		l.info("first");
+		Thread.sleep(100);
+		for (int i = 0; i < 1100; ++i)
+			l.info("msg " + i);
+		assertTrue(m.getDroppedMessages() - dropped >= 1100 - 1024);
+		synchronized (gate) {
+			gate.notify();
+		}
+		Thread.sleep(200);
+		assertEquals(1 + 1024, written[0]);
+		m.setOverflowPolicy(LogManager.BLOCK);
+		m.removeLogService("overflow");
+	}
 }
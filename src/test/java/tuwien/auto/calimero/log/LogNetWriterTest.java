@@ -227,4 +227,26 @@ public class LogNetWriterTest extends TestCase
 		}
 		assertNotNull(w);
 	}
+
+	/**
+	 * Test method for {@link tuwien.auto.calimero.log.LogNetWriter#getDroppedMessages()}.
+	 */
+	public void testGetDroppedMessages()
+	{
+		LogNetWriter w = null;
+		try {
+			// queue too small to hold a formatted message
+			w = new LogNetWriter("localhost", port, 16);
+			assertEquals(0, w.getDroppedMessages());
+			w.write(logService, all, "this msg gets dropped");
+			assertEquals(1, w.getDroppedMessages());
+			assertTrue(w.getDroppedBytes() > 16);
+			w.close();
+			assertFalse(w.isConnected());
+		}
+		catch (final KNXLogException e) {
+			fail("no receiver");
+		}
+		assertNotNull(w);
+	}
 }
@@ -40,6 +40,7 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Vector;
 
@@ -239,6 +240,141 @@ public class LogServiceTest extends TestCase
 		ls.log(LogLevel.INFO, null, null);
 	}
 
+	/**
+	 * Test method for {@link LogService#isEnabled(LogLevel)}.
+	 * 
+	 * @throws KNXLogException
+	 */
+	public void testIsEnabled() throws KNXLogException
+	{
+		final LogService s = LogManager.getManager().getLogService("enabled-log");
+		s.removeAllWriter(false);
+		assertFalse(s.isEnabled(LogLevel.ERROR));
+		w = new LogFileWriter(file, false, true);
+		w.setLogLevel(LogLevel.WARN);
+		s.addWriter(w);
+		assertTrue(s.isEnabled(LogLevel.ERROR));
+		assertTrue(s.isEnabled(LogLevel.WARN));
+		assertFalse(s.isEnabled(LogLevel.INFO));
+		assertFalse(s.isEnabled(LogLevel.OFF));
+		// level change of an added writer
+		w.setLogLevel(LogLevel.INFO);
+		assertTrue(s.isEnabled(LogLevel.INFO));
+		w.setLogLevel(LogLevel.WARN);
+		assertFalse(s.isEnabled(LogLevel.INFO));
+		// global writer
+		final LogWriter global = new LogStreamWriter(LogLevel.TRACE, System.out, false);
+		LogManager.getManager().addWriter(null, global);
+		assertTrue(s.isEnabled(LogLevel.TRACE));
+		LogManager.getManager().removeWriter(null, global);
+		assertFalse(s.isEnabled(LogLevel.INFO));
+		s.setLogLevel(LogLevel.ERROR);
+		assertFalse(s.isEnabled(LogLevel.WARN));
+		s.removeAllWriter(false);
+		LogManager.getManager().removeLogService(s.getName());
+	}
+
+	/**
+	 * Test method for
+	 * {@link LogService#log(LogLevel, String, Object[], Throwable)}.
+	 * 
+	 * @throws IOException
+	 * @throws KNXLogException
+	 */
+	public void testLogFormatted() throws IOException, KNXLogException
+	{
+		w = new LogFileWriter(file, false, true);
+		ls.addWriter(w);
+		ls.setLogLevel(LogLevel.TRACE);
+		ls.trace("{} and {}, data {}", "first", new Integer(2), new byte[] { 1, 0x2a });
+		ls.info("no {} args");
+		ls.warn("surplus {} {}", "arg");
+		final String[] buf = readLines(file);
+		assertEquals(3, buf.length);
+		assertTrue(buf[0].endsWith("first and 2, data 01 2a"));
+		assertTrue(buf[1].endsWith("no {} args"));
+		assertTrue(buf[2].endsWith("surplus arg {}"));
+		ls.removeWriter(w);
+	}
+
+	/**
+	 * Test method for {@link LogService#info(String, Object)} and
+	 * {@link LogService#warn(String, Object, Object)}.
+	 * 
+	 * @throws IOException
+	 * @throws KNXLogException
+	 */
+	public void testLogFixedArgs() throws IOException, KNXLogException
+	{
+		w = new LogFileWriter(file, false, true);
+		ls.addWriter(w);
+		ls.setLogLevel(LogLevel.INFO);
+		ls.trace("disabled {}", "trace");
+		ls.info("one {}", new Integer(1));
+		ls.warn("{} and {}", "first", new byte[] { 0x2a });
+		final String[] buf = readLines(file);
+		assertEquals(2, buf.length);
+		assertTrue(buf[0].endsWith("one 1"));
+		assertTrue(buf[1].endsWith("first and 2a"));
+		ls.removeWriter(w);
+	}
+
+	/**
+	 * Test method for dispatching log information of several log services to writers
+	 * registered more than once.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public void testDispatch() throws InterruptedException
+	{
+		final List msgs = new Vector();
+		final List msgs2 = new Vector();
+		final LogWriter twice = new ListWriter(msgs);
+		final LogWriter once = new ListWriter(msgs2);
+		final LogService s = LogManager.getManager().getLogService("dispatch-log");
+		s.removeAllWriter(false);
+		s.addWriter(twice);
+		s.addWriter(twice);
+		ls.addWriter(twice);
+		ls.addWriter(once);
+		s.info("a");
+		ls.info("b");
+		s.info("c");
+		Thread.sleep(250);
+		assertEquals(Arrays.asList(new String[] { "a", "a", "b", "c", "c" }),
+			msgs);
+		assertEquals(Arrays.asList(new String[] { "b" }), msgs2);
+		ls.removeWriter(twice);
+		ls.removeWriter(once);
+		LogManager.getManager().removeLogService(s.getName());
+	}
+
+	private static final class ListWriter extends LogWriter
+	{
+		private final List msgs;
+
+		ListWriter(List msgs)
+		{
+			this.msgs = msgs;
+		}
+
+		public void write(String logService, LogLevel level, String msg)
+		{
+			msgs.add(msg);
+		}
+
+		public void write(String logService, LogLevel level, String msg, Throwable t)
+		{
+			msgs.add(msg);
+		}
+
+		public void flush()
+		{}
+
+		public void close()
+		{}
+	}
+
 	public static String[] readLines(String file) throws IOException
 	{
 		// this is necessary to let the log service thread write its data out
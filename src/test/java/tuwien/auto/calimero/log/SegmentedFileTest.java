@@ -0,0 +1,147 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+
+import junit.framework.TestCase;
+
+/**
+ * @author B. Malinowsky
+ */
+public class SegmentedFileTest extends TestCase
+{
+	private static final String file = "./src/test/segmented";
+
+	private SegmentedFile f;
+
+	/**
+	 * @param name name of test case
+	 */
+	public SegmentedFileTest(String name)
+	{
+		super(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		delete();
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception
+	{
+		if (f != null)
+			f.close();
+		delete();
+		super.tearDown();
+	}
+
+	/**
+	 * Test method for {@link SegmentedFile#open()}.
+	 * 
+	 * @throws IOException
+	 */
+	public void testOpen() throws IOException
+	{
+		f = new SegmentedFile(file, 256, 0);
+		assertEquals(0, SegmentedFile.segments(file).length);
+		final MappedByteBuffer buf = f.open();
+		assertEquals(256, buf.capacity());
+		assertEquals(0, buf.position());
+		assertEquals(SegmentedFile.segmentFile(file, 0), f.getSegmentFileName());
+		assertEquals(256, new File(f.getSegmentFileName()).length());
+		buf.putInt(1);
+		f.close();
+
+		// continues after existing segments
+		f = new SegmentedFile(file, 256, 0);
+		f.open();
+		assertEquals(SegmentedFile.segmentFile(file, 1), f.getSegmentFileName());
+		assertEquals(2, SegmentedFile.segments(file).length);
+	}
+
+	/**
+	 * Test method for {@link SegmentedFile#next()}.
+	 * 
+	 * @throws IOException
+	 */
+	public void testNext() throws IOException
+	{
+		f = new SegmentedFile(file, 128, 3);
+		f.open();
+		for (int i = 0; i < 5; ++i)
+			f.next();
+		final int[] segments = SegmentedFile.segments(file);
+		assertEquals(3, segments.length);
+		assertEquals(3, segments[0]);
+		assertEquals(5, segments[2]);
+		assertEquals(SegmentedFile.segmentFile(file, 5), f.getSegmentFileName());
+	}
+
+	/**
+	 * Test method for {@link SegmentedFile#segments(String)}.
+	 * 
+	 * @throws IOException
+	 */
+	public void testSegments() throws IOException
+	{
+		new File(file + ".x").createNewFile();
+		new File(file + ".12").createNewFile();
+		new File(file + ".3").createNewFile();
+		final int[] segments = SegmentedFile.segments(file);
+		new File(file + ".x").delete();
+		assertEquals(2, segments.length);
+		assertEquals(3, segments[0]);
+		assertEquals(12, segments[1]);
+	}
+
+	private static void delete()
+	{
+		final int[] segments = SegmentedFile.segments(file);
+		for (int i = 0; i < segments.length; ++i)
+			new File(SegmentedFile.segmentFile(file, segments[i])).delete();
+	}
+}
@@ -0,0 +1,304 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.exception.KNXIllegalArgumentException;
+import tuwien.auto.calimero.exception.KNXInvalidResponseException;
+import tuwien.auto.calimero.knxnetip.KNXnetIPServerSimulator;
+import tuwien.auto.calimero.link.KNXNetworkLink;
+import tuwien.auto.calimero.link.KNXNetworkLinkIP;
+import tuwien.auto.calimero.link.medium.TPSettings;
+
+/**
+ * Tests the chunking of {@link ManagementProceduresImpl} against a management device of
+ * a {@link KNXnetIPServerSimulator}.
+ * <p>
+ * 
+ * @author B. Malinowsky
+ */
+public class ManagementProceduresImplTest extends TestCase
+{
+	private static final int MEMORY_READ = 0x200;
+	private static final int MEMORY_WRITE = 0x280;
+	private static final int PROPERTY_READ = 0x3D5;
+	private static final int PROPERTY_WRITE = 0x3D7;
+
+	// property of interface object 1, with elements of 1 byte
+	private static final int PID = 50;
+
+	private final IndividualAddress device = new IndividualAddress(1, 1, 10);
+
+	private KNXnetIPServerSimulator server;
+	private KNXNetworkLink link;
+	private ManagementClient mc;
+	private ManagementProcedures mp;
+	private Destination dst;
+
+	/**
+	 * @param name name of test case
+	 */
+	public ManagementProceduresImplTest(String name)
+	{
+		super(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		final InetSocketAddress localEP = new InetSocketAddress(InetAddress
+			.getByName("127.0.0.1"), 0);
+		server = new KNXnetIPServerSimulator(localEP, new IndividualAddress(1, 1, 0), 1);
+		server.addManagementDevice(device, 0x0012, 1, new byte[5]);
+		server.setProperty(device, 1, 1, 0x04, 2, 1, new byte[2]);
+		server.setProperty(device, 1, PID, 0x80 | 0x11, 1, 100, data(25));
+		server.start();
+		link = new KNXNetworkLinkIP(KNXNetworkLinkIP.TUNNEL, localEP, server
+			.getControlEndpoint(), false, TPSettings.TP1);
+		mc = new ManagementClientImpl(link);
+		mp = new ManagementProceduresImpl(mc);
+		dst = mc.createDestination(device, true);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception
+	{
+		mc.detach();
+		link.close();
+		server.close();
+		super.tearDown();
+	}
+
+	/**
+	 * Test method for {@link ManagementProceduresImpl#setMaxApduLength(int)}.
+	 */
+	public void testSetMaxApduLength()
+	{
+		assertEquals(15, mp.getMaxApduLength());
+		mp.setMaxApduLength(254);
+		assertEquals(254, mp.getMaxApduLength());
+		try {
+			mp.setMaxApduLength(14);
+			fail("APDU length too short");
+		}
+		catch (final KNXIllegalArgumentException e) {}
+		try {
+			mp.setMaxApduLength(255);
+			fail("APDU length too long");
+		}
+		catch (final KNXIllegalArgumentException e) {}
+	}
+
+	/**
+	 * Test method for {@link ManagementProceduresImpl#readMemory(Destination, int, int)}.
+	 * 
+	 * @throws Exception
+	 */
+	public void testReadMemory() throws Exception
+	{
+		final byte[] mem = data(30);
+		server.setMemory(device, 0x100, mem);
+		assertTrue(Arrays.equals(mem, mp.readMemory(dst, 0x100, 30)));
+		// 12 bytes fit into a memory response of a standard frame
+		assertMemoryServices(MEMORY_READ, new int[] { 12, 12, 6 }, new int[] { 0x100,
+			0x10C, 0x118 });
+
+		server.clearRequests(device);
+		assertTrue(Arrays.equals(data(12), mp.readMemory(dst, 0x100, 12)));
+		assertMemoryServices(MEMORY_READ, new int[] { 12 }, new int[] { 0x100 });
+
+		// extended frames
+		server.clearRequests(device);
+		mp.setMaxApduLength(254);
+		final byte[] large = data(100);
+		server.setMemory(device, 0x200, large);
+		assertTrue(Arrays.equals(large, mp.readMemory(dst, 0x200, 100)));
+		assertMemoryServices(MEMORY_READ, new int[] { 63, 37 }, new int[] { 0x200,
+			0x23F });
+	}
+
+	/**
+	 * Test method for
+	 * {@link ManagementProceduresImpl#writeMemory(Destination, int, byte[])}.
+	 * 
+	 * @throws Exception
+	 */
+	public void testWriteMemory() throws Exception
+	{
+		final byte[] mem = data(25);
+		mp.writeMemory(dst, 0x300, mem);
+		assertTrue(Arrays.equals(mem, server.getMemory(device, 0x300, 25)));
+		assertMemoryServices(MEMORY_WRITE, new int[] { 12, 12, 1 }, new int[] { 0x300,
+			0x30C, 0x318 });
+	}
+
+	/**
+	 * Test method for
+	 * {@link ManagementProceduresImpl#readProperty(Destination, int, int, int, int)}.
+	 * 
+	 * @throws Exception
+	 */
+	public void testReadProperty() throws Exception
+	{
+		final byte[] data = mp.readProperty(dst, 1, PID, 1, 25);
+		assertTrue(Arrays.equals(data(25), data));
+		// first element alone, then 10 elements of 1 byte per standard frame
+		assertPropertyServices(PROPERTY_READ, new int[] { 1, 10, 10, 4 }, new int[] { 1,
+			2, 12, 22 });
+
+		server.clearRequests(device);
+		final byte[] part = mp.readProperty(dst, 1, PID, 5, 11);
+		final byte[] expected = new byte[11];
+		System.arraycopy(data, 4, expected, 0, 11);
+		assertTrue(Arrays.equals(expected, part));
+		assertPropertyServices(PROPERTY_READ, new int[] { 1, 10 }, new int[] { 5, 6 });
+	}
+
+	/**
+	 * Test method for
+	 * {@link ManagementProceduresImpl#readProperty(Destination, int, int, int, int)},
+	 * starting with element 0.
+	 * 
+	 * @throws Exception
+	 */
+	public void testReadPropertyCurrentElements() throws Exception
+	{
+		final byte[] data = mp.readProperty(dst, 1, PID, 0, 26);
+		assertEquals(2 + 25, data.length);
+		// current number of elements
+		assertEquals(0, data[0]);
+		assertEquals(25, data[1]);
+		final byte[] elements = new byte[25];
+		System.arraycopy(data, 2, elements, 0, elements.length);
+		assertTrue(Arrays.equals(data(25), elements));
+		// element 0 alone, then elements from 1 on with the size of element 1
+		assertPropertyServices(PROPERTY_READ, new int[] { 1, 1, 10, 10, 4 }, new int[] {
+			0, 1, 2, 12, 22 });
+
+		server.clearRequests(device);
+		assertTrue(Arrays.equals(new byte[] { 0, 25 }, mp.readProperty(dst, 1, PID, 0, 1)));
+		assertPropertyServices(PROPERTY_READ, new int[] { 1 }, new int[] { 0 });
+	}
+
+	/**
+	 * Test method for
+	 * {@link ManagementProceduresImpl#writeProperty(Destination, int, int, int, int, byte[])}.
+	 * 
+	 * @throws Exception
+	 */
+	public void testWriteProperty() throws Exception
+	{
+		final byte[] data = new byte[30];
+		Arrays.fill(data, (byte) 0x55);
+		mp.writeProperty(dst, 1, PID, 1, 30, data);
+		assertTrue(Arrays.equals(data, server.getProperty(device, 1, PID)));
+		assertPropertyServices(PROPERTY_WRITE, new int[] { 10, 10, 10 }, new int[] { 1,
+			11, 21 });
+	}
+
+	/**
+	 * Test method for the maximum ASDU length of 252 bytes of property responses.
+	 * 
+	 * @throws Exception
+	 */
+	public void testPropertyAsduLimit() throws Exception
+	{
+		mp.setMaxApduLength(254);
+		// object index, PID, elements and start take 4 bytes of the ASDU
+		final byte[] elements = data(2 * 248);
+		server.setProperty(device, 1, PID + 1, 0x80 | 0x11, 248, 2, elements);
+		assertTrue(Arrays.equals(elements, mp.readProperty(dst, 1, PID + 1, 1, 2)));
+		assertPropertyServices(PROPERTY_READ, new int[] { 1, 1 }, new int[] { 1, 2 });
+
+		server.clearRequests(device);
+		final byte[] written = new byte[2 * 248];
+		Arrays.fill(written, (byte) 0x2A);
+		mp.writeProperty(dst, 1, PID + 1, 1, 2, written);
+		assertTrue(Arrays.equals(written, server.getProperty(device, 1, PID + 1)));
+		assertPropertyServices(PROPERTY_WRITE, new int[] { 1, 1 }, new int[] { 1, 2 });
+
+		// a response of 253 bytes ASDU exceeds the limit
+		server.setProperty(device, 1, PID + 2, 0x11, 249, 1, data(249));
+		try {
+			mp.readProperty(dst, 1, PID + 2, 1, 1);
+			fail("ASDU exceeds 252 bytes");
+		}
+		catch (final KNXInvalidResponseException e) {}
+	}
+
+	private void assertMemoryServices(int service, int[] bytes, int[] addresses)
+	{
+		final List requests = server.getRequests(device);
+		assertEquals(bytes.length, requests.size());
+		for (int i = 0; i < bytes.length; i++) {
+			final byte[] apdu = (byte[]) requests.get(i);
+			assertEquals(service | bytes[i], (apdu[0] & 0x03) << 8 | apdu[1] & 0xff);
+			assertEquals(addresses[i], (apdu[2] & 0xff) << 8 | apdu[3] & 0xff);
+		}
+	}
+
+	private void assertPropertyServices(int service, int[] elements, int[] start)
+	{
+		final List requests = server.getRequests(device);
+		assertEquals(elements.length, requests.size());
+		for (int i = 0; i < elements.length; i++) {
+			final byte[] apdu = (byte[]) requests.get(i);
+			assertEquals(service, (apdu[0] & 0x03) << 8 | apdu[1] & 0xff);
+			assertEquals(elements[i], (apdu[4] & 0xff) >> 4);
+			assertEquals(start[i], (apdu[4] & 0x0f) << 8 | apdu[5] & 0xff);
+		}
+	}
+
+	private static byte[] data(int length)
+	{
+		final byte[] data = new byte[length];
+		for (int i = 0; i < length; i++)
+			data[i] = (byte) (i + 1);
+		return data;
+	}
+}
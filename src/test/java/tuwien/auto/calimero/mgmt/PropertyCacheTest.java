@@ -0,0 +1,236 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * @author B. Malinowsky
+ */
+public class PropertyCacheTest extends TestCase
+{
+	private static final String file = "./src/test/propertyCache.xml";
+
+	private PropertyCache cache;
+	private PropertyCache.DeviceKey key;
+	private Description desc;
+
+	/**
+	 * @param name name for test case
+	 */
+	public PropertyCacheTest(String name)
+	{
+		super(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		cache = new PropertyCache(0);
+		key = new PropertyCache.DeviceKey(0x0012, 0x0001, new byte[] { 1, 2, 3, 4, 5 });
+		desc = new Description(1, 3, 5, 2, 4, true, 10, 20, 3, 1);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception
+	{
+		new File(file).delete();
+		super.tearDown();
+	}
+
+	/**
+	 * Test method for {@link PropertyCache.DeviceKey#equals(java.lang.Object)}.
+	 */
+	public final void testDeviceKeyEquals()
+	{
+		final PropertyCache.DeviceKey k = new PropertyCache.DeviceKey(0x0012, 0x0001,
+			new byte[] { 1, 2, 3, 4, 5 });
+		assertEquals(key, k);
+		assertEquals(key.hashCode(), k.hashCode());
+		assertFalse(key.equals(new PropertyCache.DeviceKey(0x0012, 0x0001, new byte[0])));
+		assertFalse(key.equals(new PropertyCache.DeviceKey(0x0020, 0x0001, new byte[] {
+			1, 2, 3, 4, 5 })));
+	}
+
+	/**
+	 * Test method for {@link PropertyCache#getDescription(PropertyCache.DeviceKey, int, int)}.
+	 */
+	public final void testGetDescription()
+	{
+		assertNull(cache.getDescription(key, 1, 5));
+		cache.putDescription(key, desc);
+		assertDescription(desc, cache.getDescription(key, 1, 5));
+		assertNull(cache.getDescriptionByIndex(key, 1, 2));
+		cache.putDescriptionByIndex(key, desc);
+		assertDescription(desc, cache.getDescriptionByIndex(key, 1, 2));
+		assertEquals(3, cache.getObjectType(key, 1));
+	}
+
+	/**
+	 * Test that cached descriptions are not shared with callers.
+	 */
+	public final void testDescriptionCopies()
+	{
+		cache.putDescriptionByIndex(key, desc);
+		final Description d = cache.getDescription(key, 1, 5);
+		assertNotSame("cached instance returned", desc, d);
+		assertNotSame("same instance returned twice", d, cache.getDescription(key, 1, 5));
+		d.setCurrentElements(new byte[] { 0, 99 });
+		d.setPDT(-1);
+		assertEquals("returned copy changed cache", 10, cache.getDescription(key, 1, 5)
+			.getCurrentElements());
+		assertEquals("returned copy changed cache", 4, cache.getDescriptionByIndex(key, 1,
+			2).getPDT());
+		desc.setCurrentElements(new byte[] { 0, 1 });
+		assertEquals("put description changed cache", 10, cache.getDescriptionByIndex(key,
+			1, 2).getCurrentElements());
+		final List l = new ArrayList();
+		l.add(new Description(1, 3, 1, 0, 4, false, 1, 1, 3, 0));
+		cache.putScan(key, 1, false, l);
+		((Description) cache.getScan(key, 1, false).get(0))
+			.setCurrentElements(new byte[] { 0, 2 });
+		assertEquals("scan result changed cache", 1, ((Description) cache.getScan(key, 1,
+			false).get(0)).getCurrentElements());
+		assertEquals(-1, cache.getObjectType(key, 0));
+	}
+
+	/**
+	 * Test method for {@link PropertyCache#getScan(PropertyCache.DeviceKey, int, boolean)}.
+	 */
+	public final void testGetScan()
+	{
+		assertNull(cache.getScan(key, 0, true));
+		final List l = new ArrayList();
+		l.add(new Description(0, 0, 1, 0, 4, false, 1, 1, 3, 0));
+		l.add(new Description(0, 0, 11, 1, 17, false, 1, 1, 3, 0));
+		cache.putScan(key, 0, true, l);
+		final List all = cache.getScan(key, 0, true);
+		assertEquals(2, all.size());
+		assertDescription((Description) l.get(0), (Description) all.get(0));
+		assertDescription((Description) l.get(1), (Description) all.get(1));
+		final List first = cache.getScan(key, 0, false);
+		assertEquals(1, first.size());
+		assertDescription((Description) l.get(0), (Description) first.get(0));
+		assertNull(cache.getScan(key, 1, false));
+		cache.putScan(key, 1, false, new ArrayList());
+		assertTrue(cache.getScan(key, 1, false).isEmpty());
+		assertTrue(cache.getScan(key, 5, true).isEmpty());
+	}
+
+	/**
+	 * Test method for {@link PropertyCache#getValue(PropertyCache.DeviceKey, int, int, int, int)}.
+	 */
+	public final void testGetValue()
+	{
+		final byte[] data = new byte[] { 0, 1 };
+		assertNull(cache.getValue(key, 0, 12, 1, 1));
+		cache.putValue(key, 0, 12, 1, 1, data);
+		assertTrue(Arrays.equals(data, cache.getValue(key, 0, 12, 1, 1)));
+		assertNull(cache.getValue(key, 0, 12, 1, 2));
+		assertTrue(cache.isStaticProperty(PropertyClient.PID.MANUFACTURER_ID));
+		assertFalse(cache.isStaticProperty(PropertyClient.PID.SERIAL_NUMBER));
+	}
+
+	/**
+	 * Test method for {@link PropertyCache#invalidate(PropertyCache.DeviceKey)}.
+	 */
+	public final void testInvalidate()
+	{
+		cache.putDescription(key, desc);
+		cache.invalidate(key);
+		assertNull(cache.getDescription(key, 1, 5));
+	}
+
+	/**
+	 * Test method for {@link PropertyCache#setTimeToLive(int)}.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public final void testTimeToLive() throws InterruptedException
+	{
+		cache.setTimeToLive(1);
+		cache.putDescription(key, desc);
+		assertDescription(desc, cache.getDescription(key, 1, 5));
+		Thread.sleep(1100);
+		assertNull(cache.getDescription(key, 1, 5));
+	}
+
+	/**
+	 * Test method for {@link PropertyCache#save(java.lang.String)} and
+	 * {@link PropertyCache#load(java.lang.String)}.
+	 * 
+	 * @throws Exception
+	 */
+	public final void testSaveLoad() throws Exception
+	{
+		cache.putDescriptionByIndex(key, desc);
+		cache.putValue(key, 0, 13, 1, 1, new byte[] { 1, 2, 3, 4, 5 });
+		cache.putScan(key, 2, false, new ArrayList());
+		cache.save(file);
+
+		final PropertyCache loaded = new PropertyCache(0);
+		loaded.load(file);
+		final Description d = loaded.getDescriptionByIndex(key, 1, 2);
+		assertNotNull(d);
+		assertEquals(desc.getPID(), d.getPID());
+		assertEquals(desc.getPDT(), d.getPDT());
+		assertEquals(desc.getCurrentElements(), d.getCurrentElements());
+		assertEquals(desc.getMaxElements(), d.getMaxElements());
+		assertEquals(desc.isWriteEnabled(), d.isWriteEnabled());
+		assertEquals(desc.getWriteLevel(), d.getWriteLevel());
+		assertTrue(Arrays.equals(new byte[] { 1, 2, 3, 4, 5 }, loaded.getValue(key, 0,
+			13, 1, 1)));
+		assertTrue(loaded.getScan(key, 2, true).isEmpty());
+	}
+
+	// descriptions don't implement equals, compare all their information
+	private static void assertDescription(Description expected, Description actual)
+	{
+		assertNotNull(actual);
+		assertEquals(expected.toString(), actual.toString());
+	}
+}
@@ -0,0 +1,206 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.knxnetip.KNXnetIPServerSimulator;
+import tuwien.auto.calimero.link.KNXNetworkLink;
+import tuwien.auto.calimero.link.KNXNetworkLinkIP;
+import tuwien.auto.calimero.link.medium.TPSettings;
+
+/**
+ * Tests the reuse of device type results of {@link PropertyScanner} against management
+ * devices of a {@link KNXnetIPServerSimulator}.
+ * <p>
+ * 
+ * @author B. Malinowsky
+ */
+public class PropertyScannerTest extends TestCase
+{
+	private static final int PROPERTY_DESC_READ = 0x3D8;
+
+	private static final byte[] version1 = { 1, 0, 0, 0, 1 };
+	private static final byte[] version2 = { 1, 0, 0, 0, 2 };
+
+	private final IndividualAddress device = new IndividualAddress(1, 1, 10);
+	// same type as device
+	private final IndividualAddress sameType = new IndividualAddress(1, 1, 11);
+	// same mask version and program version, other manufacturer
+	private final IndividualAddress otherManufacturer = new IndividualAddress(1, 1, 12);
+	// same mask version and manufacturer, other program version
+	private final IndividualAddress otherVersion = new IndividualAddress(1, 1, 13);
+
+	private KNXnetIPServerSimulator server;
+	private KNXNetworkLink link;
+	private ManagementClient mc;
+	private PropertyScanner scanner;
+
+	/**
+	 * @param name name of test case
+	 */
+	public PropertyScannerTest(String name)
+	{
+		super(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		final InetSocketAddress localEP = new InetSocketAddress(InetAddress
+			.getByName("127.0.0.1"), 0);
+		server = new KNXnetIPServerSimulator(localEP, new IndividualAddress(1, 1, 0), 1);
+		addDevice(device, 1, version1, 1);
+		addDevice(sameType, 1, version1, 1);
+		addDevice(otherManufacturer, 2, version1, 2);
+		addDevice(otherVersion, 1, version2, 3);
+		server.start();
+		link = new KNXNetworkLinkIP(KNXNetworkLinkIP.TUNNEL, localEP, server
+			.getControlEndpoint(), false, TPSettings.TP1);
+		mc = new ManagementClientImpl(link);
+		scanner = new PropertyScanner(mc, true, 2);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception
+	{
+		mc.detach();
+		link.close();
+		server.close();
+		super.tearDown();
+	}
+
+	/**
+	 * Test method for {@link PropertyScanner#setReuseDeviceTypeResults(boolean)}.
+	 * 
+	 * @throws Exception
+	 */
+	public void testReuseDeviceTypeResults() throws Exception
+	{
+		scanner.setReuseDeviceTypeResults(true);
+		final List scan = scanner.scan(device, true, null);
+		// device object with 3 properties, object 1 with object type and 1 property
+		assertEquals(5, scan.size());
+		assertTrue(descReads(device) > 0);
+
+		final Map results = scanner.scan(new IndividualAddress[] { sameType,
+			otherManufacturer, otherVersion }, true, null);
+		assertEquals(3, results.size());
+		assertEquals(0, descReads(sameType));
+		assertEquals(scan, results.get(sameType));
+		// the device key differs, so the descriptions of these are queried
+		assertTrue(descReads(otherManufacturer) > 0);
+		assertEquals(6, ((List) results.get(otherManufacturer)).size());
+		assertTrue(descReads(otherVersion) > 0);
+		assertEquals(7, ((List) results.get(otherVersion)).size());
+	}
+
+	/**
+	 * Test method for reusing results only for scans of the same kind.
+	 * 
+	 * @throws Exception
+	 */
+	public void testReuseObjectTypeScan() throws Exception
+	{
+		scanner.setReuseDeviceTypeResults(true);
+		assertEquals(2, scanner.scan(device, false, null).size());
+		// an object type scan is no result for a scan of all properties
+		assertEquals(5, scanner.scan(sameType, true, null).size());
+		assertTrue(descReads(sameType) > 0);
+
+		server.clearRequests(sameType);
+		assertEquals(2, scanner.scan(sameType, false, null).size());
+		assertEquals(0, descReads(sameType));
+
+		scanner.clearDeviceTypeResults();
+		server.clearRequests(sameType);
+		assertEquals(5, scanner.scan(sameType, true, null).size());
+		assertTrue(descReads(sameType) > 0);
+	}
+
+	/**
+	 * Test method for scans without reusing results.
+	 * 
+	 * @throws Exception
+	 */
+	public void testNoReuse() throws Exception
+	{
+		assertEquals(5, scanner.scan(device, true, null).size());
+		assertEquals(5, scanner.scan(sameType, true, null).size());
+		assertTrue(descReads(sameType) > 0);
+		// no device key is read
+		assertEquals(0, requests(sameType, 0x300));
+	}
+
+	// adds a device with interface object 1 holding the object type and the
+	// supplied number of properties
+	private void addDevice(IndividualAddress d, int manufacturer, byte[] version,
+		int properties)
+	{
+		server.addManagementDevice(d, 0x0012, manufacturer, version);
+		server.setProperty(d, 1, 1, 0x04, 2, 1, new byte[2]);
+		for (int i = 0; i < properties; i++)
+			server.setProperty(d, 1, 50 + i, 0x11, 1, 10, new byte[1]);
+	}
+
+	private int descReads(IndividualAddress d)
+	{
+		return requests(d, PROPERTY_DESC_READ);
+	}
+
+	private int requests(IndividualAddress d, int service)
+	{
+		final List requests = server.getRequests(d);
+		int count = 0;
+		for (int i = 0; i < requests.size(); i++) {
+			final byte[] apdu = (byte[]) requests.get(i);
+			if (((apdu[0] & 0x03) << 8 | apdu[1] & 0xff) == service)
+				++count;
+		}
+		return count;
+	}
+}
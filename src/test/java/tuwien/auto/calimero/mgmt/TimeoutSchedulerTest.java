@@ -0,0 +1,242 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+import tuwien.auto.calimero.CloseEvent;
+import tuwien.auto.calimero.DetachEvent;
+import tuwien.auto.calimero.FrameEvent;
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.Priority;
+import tuwien.auto.calimero.knxnetip.KNXnetIPServerSimulator;
+import tuwien.auto.calimero.link.KNXNetworkLink;
+import tuwien.auto.calimero.link.KNXNetworkLinkIP;
+import tuwien.auto.calimero.link.medium.TPSettings;
+
+/**
+ * Tests the connection timeouts of transport layer destinations against management
+ * devices of a {@link KNXnetIPServerSimulator}.
+ * <p>
+ * The transport layer uses a short connection timeout, the assertions leave a margin
+ * of at least half that timeout.
+ * 
+ * @author B. Malinowsky
+ */
+public class TimeoutSchedulerTest extends TestCase
+{
+	// connection timeout of the transport layer
+	private static final int TIMEOUT = 1000;
+
+	private final IndividualAddress device1 = new IndividualAddress(1, 1, 10);
+	private final IndividualAddress device2 = new IndividualAddress(1, 1, 11);
+
+	private KNXnetIPServerSimulator server;
+	private KNXNetworkLink link;
+	private TransportLayer tl;
+	private final List disconnected = new Vector();
+
+	private final class Listener implements TransportListener
+	{
+		Listener()
+		{}
+
+		public void broadcast(FrameEvent e)
+		{}
+
+		public void dataConnected(FrameEvent e)
+		{}
+
+		public void dataIndividual(FrameEvent e)
+		{}
+
+		public void disconnected(Destination d)
+		{
+			disconnected.add(d);
+		}
+
+		public void group(FrameEvent e)
+		{}
+
+		public void detached(DetachEvent e)
+		{}
+
+		public void linkClosed(CloseEvent e)
+		{}
+	}
+
+	/**
+	 * @param name name of test case
+	 */
+	public TimeoutSchedulerTest(String name)
+	{
+		super(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		final InetSocketAddress localEP = new InetSocketAddress(InetAddress
+			.getByName("127.0.0.1"), 0);
+		server = new KNXnetIPServerSimulator(localEP, new IndividualAddress(1, 1, 0), 1);
+		server.addManagementDevice(device1, 0x0012, 1, new byte[5]);
+		server.addManagementDevice(device2, 0x0012, 1, new byte[5]);
+		server.start();
+		link = new KNXNetworkLinkIP(KNXNetworkLinkIP.TUNNEL, localEP, server
+			.getControlEndpoint(), false, TPSettings.TP1);
+		tl = new TransportLayerImpl(link, TIMEOUT);
+		tl.addTransportListener(new Listener());
+		disconnected.clear();
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception
+	{
+		tl.detach();
+		link.close();
+		server.close();
+		super.tearDown();
+	}
+
+	/**
+	 * Test method for connection timeouts of concurrent destinations, with one
+	 * destination kept open by data connected.
+	 * 
+	 * @throws Exception
+	 */
+	public void testRestart() throws Exception
+	{
+		final Destination d1 = tl.createDestination(device1, true);
+		final Destination d2 = tl.createDestination(device2, true);
+		tl.connect(d1);
+		tl.connect(d2);
+		waitForServer(device1, true);
+		waitForServer(device2, true);
+
+		// keep d2 busy for twice the timeout of d1
+		for (int i = 0; i < 8; i++) {
+			pause(TIMEOUT / 4);
+			tl.sendData(d2, Priority.LOW, new byte[] { 0x03, 0x00 });
+		}
+		assertEquals("d1 timed out", Destination.DISCONNECTED, d1.getState());
+		assertEquals("d2 kept open", Destination.OPEN_IDLE, d2.getState());
+		assertEquals("one disconnect", 1, disconnected.size());
+		assertSame("d1 disconnected", d1, disconnected.get(0));
+		waitForServer(device1, false);
+		assertTrue("d2 connected at server", server.isConnected(device2));
+
+		// now d2 times out, too
+		waitForDisconnect(d2, 2 * TIMEOUT);
+		waitForServer(device2, false);
+		assertEquals("two disconnects", 2, disconnected.size());
+	}
+
+	/**
+	 * Test method for a connection timeout, restarted by a reconnect.
+	 * 
+	 * @throws Exception
+	 */
+	public void testTimeout() throws Exception
+	{
+		final Destination d1 = tl.createDestination(device1, true);
+		final long start = System.currentTimeMillis();
+		tl.connect(d1);
+		waitForDisconnect(d1, 3 * TIMEOUT);
+		final long elapsed = System.currentTimeMillis() - start;
+		assertTrue("timeout too early after " + elapsed + " ms", elapsed >= TIMEOUT);
+		waitForServer(device1, false);
+
+		tl.connect(d1);
+		pause(TIMEOUT / 2);
+		assertEquals("open before timeout", Destination.OPEN_IDLE, d1.getState());
+		waitForDisconnect(d1, 3 * TIMEOUT);
+	}
+
+	/**
+	 * Test method for cancelling the timeouts on detach.
+	 * 
+	 * @throws Exception
+	 */
+	public void testDetach() throws Exception
+	{
+		final Destination d1 = tl.createDestination(device1, true);
+		tl.connect(d1);
+		tl.detach();
+		assertEquals("destroyed on detach", Destination.DESTROYED, d1.getState());
+		pause(2 * TIMEOUT);
+		assertEquals("no timeout after detach", Destination.DESTROYED, d1.getState());
+		assertEquals("one disconnect", 1, disconnected.size());
+	}
+
+	private void waitForDisconnect(Destination d, long timeout)
+	{
+		final long end = System.currentTimeMillis() + timeout;
+		while (d.getState() != Destination.DISCONNECTED
+			&& System.currentTimeMillis() < end)
+			pause(20);
+		assertEquals("disconnected within " + timeout + " ms", Destination.DISCONNECTED, d
+			.getState());
+	}
+
+	// the simulator handles connect and disconnect frames asynchronously
+	private void waitForServer(IndividualAddress device, boolean connected)
+	{
+		final long end = System.currentTimeMillis() + TIMEOUT;
+		while (server.isConnected(device) != connected
+			&& System.currentTimeMillis() < end)
+			pause(20);
+		assertEquals(device + " connected at server", connected, server
+			.isConnected(device));
+	}
+
+	private static void pause(long millis)
+	{
+		try {
+			Thread.sleep(millis);
+		}
+		catch (final InterruptedException e) {}
+	}
+}
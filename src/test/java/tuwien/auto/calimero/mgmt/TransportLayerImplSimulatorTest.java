@@ -0,0 +1,279 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.mgmt;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+import tuwien.auto.calimero.CloseEvent;
+import tuwien.auto.calimero.DetachEvent;
+import tuwien.auto.calimero.FrameEvent;
+import tuwien.auto.calimero.IndividualAddress;
+import tuwien.auto.calimero.Priority;
+import tuwien.auto.calimero.cemi.CEMILData;
+import tuwien.auto.calimero.knxnetip.KNXnetIPServerSimulator;
+import tuwien.auto.calimero.link.KNXNetworkLink;
+import tuwien.auto.calimero.link.KNXNetworkLinkIP;
+import tuwien.auto.calimero.link.medium.TPSettings;
+
+/**
+ * Tests the layer 4 acknowledge handling of {@link TransportLayerImpl} against
+ * management devices of a {@link KNXnetIPServerSimulator}.
+ * <p>
+ * 
+ * @author B. Malinowsky
+ */
+public class TransportLayerImplSimulatorTest extends TestCase
+{
+	// acknowledge timeout of the transport layer
+	private static final int ACK_TIMEOUT = 3000;
+	// maximum repetitions of the transport layer
+	private static final int MAX_REPEAT = 3;
+
+	private final IndividualAddress device1 = new IndividualAddress(1, 1, 10);
+	private final IndividualAddress device2 = new IndividualAddress(1, 1, 11);
+
+	private KNXnetIPServerSimulator server;
+	private KNXNetworkLink link;
+	private TransportLayer tl;
+	private Destination d1;
+	private Destination d2;
+	// received frames of connected data
+	private final List connected = new Vector();
+
+	private final class Listener implements TransportListener
+	{
+		Listener()
+		{}
+
+		public void broadcast(FrameEvent e)
+		{}
+
+		public void dataConnected(FrameEvent e)
+		{
+			connected.add(e.getFrame());
+		}
+
+		public void dataIndividual(FrameEvent e)
+		{}
+
+		public void disconnected(Destination d)
+		{}
+
+		public void group(FrameEvent e)
+		{}
+
+		public void detached(DetachEvent e)
+		{}
+
+		public void linkClosed(CloseEvent e)
+		{}
+	}
+
+	/**
+	 * @param name name of test case
+	 */
+	public TransportLayerImplSimulatorTest(String name)
+	{
+		super(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		final InetSocketAddress localEP = new InetSocketAddress(InetAddress
+			.getByName("127.0.0.1"), 0);
+		server = new KNXnetIPServerSimulator(localEP, new IndividualAddress(1, 1, 0), 1);
+		server.addManagementDevice(device1, 0x0012, 1, new byte[5]);
+		server.addManagementDevice(device2, 0x0012, 1, new byte[5]);
+		server.start();
+		link = new KNXNetworkLinkIP(KNXNetworkLinkIP.TUNNEL, localEP, server
+			.getControlEndpoint(), false, TPSettings.TP1);
+		tl = new TransportLayerImpl(link);
+		tl.addTransportListener(new Listener());
+		d1 = tl.createDestination(device1, true);
+		d2 = tl.createDestination(device2, true);
+		connected.clear();
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception
+	{
+		tl.detach();
+		link.close();
+		server.close();
+		super.tearDown();
+	}
+
+	/**
+	 * Test method for {@link TransportLayerImpl#sendData(Destination, Priority, byte[])}.
+	 * 
+	 * @throws Exception
+	 */
+	public void testSendData() throws Exception
+	{
+		tl.connect(d1);
+		for (int i = 0; i < 20; i++)
+			tl.sendData(d1, Priority.LOW, descRead());
+		waitForResponses(20);
+		assertEquals(20, server.getRequests(device1).size());
+		assertEquals(Destination.OPEN_IDLE, d1.getState());
+		for (int i = 0; i < connected.size(); i++)
+			assertEquals(device1, ((CEMILData) connected.get(i)).getSource());
+	}
+
+	/**
+	 * Test method for a repetition after an acknowledge timeout.
+	 * 
+	 * @throws Exception
+	 */
+	public void testAckTimeout() throws Exception
+	{
+		tl.connect(d1);
+		server.dropConnectedData(device1, 1);
+		final long start = System.currentTimeMillis();
+		tl.sendData(d1, Priority.LOW, descRead());
+		final long elapsed = System.currentTimeMillis() - start;
+		assertTrue(elapsed >= ACK_TIMEOUT);
+		assertTrue(elapsed < 2 * ACK_TIMEOUT);
+		assertEquals(Destination.OPEN_IDLE, d1.getState());
+		waitForResponses(1);
+		assertEquals(1, server.getRequests(device1).size());
+
+		// sequence numbers are still in sync
+		tl.sendData(d1, Priority.LOW, descRead());
+		waitForResponses(2);
+		assertEquals(2, server.getRequests(device1).size());
+	}
+
+	/**
+	 * Test method for a disconnect after the maximum number of repetitions.
+	 * 
+	 * @throws Exception
+	 */
+	public void testMaxRepetitions() throws Exception
+	{
+		tl.connect(d1);
+		// the last repetition gets acknowledged
+		server.dropConnectedData(device1, MAX_REPEAT);
+		tl.sendData(d1, Priority.LOW, descRead());
+		assertEquals(Destination.OPEN_IDLE, d1.getState());
+
+		server.dropConnectedData(device1, MAX_REPEAT + 1);
+		final long start = System.currentTimeMillis();
+		try {
+			tl.sendData(d1, Priority.LOW, descRead());
+			fail("no acknowledge");
+		}
+		catch (final KNXDisconnectException e) {}
+		assertTrue(System.currentTimeMillis() - start >= (MAX_REPEAT + 1) * ACK_TIMEOUT);
+		assertEquals(Destination.DISCONNECTED, d1.getState());
+		assertFalse(server.isConnected(device1));
+		assertEquals(1, server.getRequests(device1).size());
+	}
+
+	/**
+	 * Test method for sending to a destination while another one awaits an acknowledge.
+	 * 
+	 * @throws Exception
+	 */
+	public void testConcurrentDestinations() throws Exception
+	{
+		tl.connect(d1);
+		tl.connect(d2);
+		server.dropConnectedData(device1, 1);
+		final Exception[] error = new Exception[1];
+		final Thread t = new Thread()
+		{
+			public void run()
+			{
+				try {
+					tl.sendData(d1, Priority.LOW, descRead());
+				}
+				catch (final Exception e) {
+					error[0] = e;
+				}
+			}
+		};
+		t.start();
+		// d1 awaits its acknowledge until the repetition
+		pause(200);
+		assertEquals(Destination.OPEN_WAIT, d1.getState());
+		final long start = System.currentTimeMillis();
+		for (int i = 0; i < 10; i++)
+			tl.sendData(d2, Priority.LOW, descRead());
+		assertTrue(System.currentTimeMillis() - start < ACK_TIMEOUT / 2);
+		assertEquals(Destination.OPEN_WAIT, d1.getState());
+		assertEquals(10, server.getRequests(device2).size());
+		assertEquals(0, server.getRequests(device1).size());
+
+		t.join();
+		assertNull(error[0]);
+		assertEquals(Destination.OPEN_IDLE, d1.getState());
+		waitForResponses(11);
+		assertEquals(1, server.getRequests(device1).size());
+	}
+
+	// device descriptor read
+	private static byte[] descRead()
+	{
+		return new byte[] { 0x03, 0x00 };
+	}
+
+	private void waitForResponses(int responses)
+	{
+		for (int i = 0; i < 20 && connected.size() < responses; i++)
+			pause(50);
+		assertEquals(responses, connected.size());
+	}
+
+	private static void pause(long millis)
+	{
+		try {
+			Thread.sleep(millis);
+		}
+		catch (final InterruptedException e) {}
+	}
+}
@@ -0,0 +1,523 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.serial;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+import tuwien.auto.calimero.exception.KNXException;
+
+/**
+ * Simulates a BCU2 speaking the FT1.2 protocol, accessed like a serial port through the
+ * library adapter interface.
+ * <p>
+ * The simulator acknowledges reset and user data frames of the host, keeps track of the
+ * frame count bit and ignores repeated frames, and answers an EMI2 L-Data request with a
+ * positive L-Data confirmation. Both directions of the serial line take the transmission
+ * time of the set baud rate, with 11 bits per character (start, 8 data, parity, stop).
+ * <p>
+ * For testing the host side, the simulator can delay or withhold acknowledges, and send
+ * L-Data indications to the host.
+ * 
+ * @author B. Malinowsky
+ */
+public class FT12Simulator extends LibraryAdapter
+{
+	private static final int ACK = 0xE5;
+	private static final int START = 0x68;
+	private static final int START_FIXED = 0x10;
+	private static final int END = 0x16;
+
+	private static final int DIR_FROM_BAU = 0x80;
+	private static final int INITIATOR = 0x40;
+	private static final int FRAMECOUNT_BIT = 0x20;
+	private static final int FRAMECOUNT_VALID = 0x10;
+	private static final int RESET = 0x00;
+	private static final int USER_DATA = 0x03;
+
+	// EMI2 message codes
+	private static final int LDATA_REQ = 0x11;
+	private static final int LDATA_CON = 0x2E;
+	private static final int LDATA_IND = 0x29;
+
+	private static final int BITS_PER_CHAR = 11;
+
+	private final Line toHost = new Line();
+	private final Line fromHost = new Line();
+	private final Bcu bcu = new Bcu();
+	private volatile int baudrate;
+
+	// frame count bit expected in the next host frame, and used in the next BCU frame
+	private int rcvFrameCount = FRAMECOUNT_BIT;
+	private int sendFrameCount = FRAMECOUNT_BIT;
+
+	private volatile int ackDelay;
+	private int withheldAcks;
+	private volatile boolean mute;
+
+	private int frames;
+	private int repeated;
+	private int resets;
+	private int acks;
+
+	private final InputStream is = new InputStream()
+	{
+		public int read() throws IOException
+		{
+			final byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			return toHost.read(b, off, len);
+		}
+
+		public void close()
+		{
+			toHost.close();
+		}
+	};
+
+	private final OutputStream os = new OutputStream()
+	{
+		public void write(int b) throws IOException
+		{
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			fromHost.write(b, off, len);
+		}
+
+		public void close()
+		{
+			fromHost.close();
+		}
+	};
+
+	// a serial line in one direction
+	private final class Line
+	{
+		private final byte[] buf = new byte[1024];
+		private int head;
+		private int count;
+		private boolean closed;
+		// transmission time not yet waited for, in microseconds
+		private long owed;
+
+		void write(byte[] b, int off, int len) throws IOException
+		{
+			transmit(len);
+			synchronized (this) {
+				for (int i = 0; i < len; ++i) {
+					while (count == buf.length && !closed)
+						waitForData();
+					if (closed)
+						throw new IOException("serial line closed");
+					buf[(head + count++) % buf.length] = b[off + i];
+				}
+				notifyAll();
+			}
+		}
+
+		synchronized int read(byte[] b, int off, int len) throws IOException
+		{
+			while (count == 0 && !closed)
+				waitForData();
+			if (count == 0)
+				throw new IOException("serial line closed");
+			final int n = Math.min(len, count);
+			for (int i = 0; i < n; ++i)
+				b[off + i] = buf[(head + i) % buf.length];
+			head = (head + n) % buf.length;
+			count -= n;
+			notifyAll();
+			return n;
+		}
+
+		synchronized void close()
+		{
+			closed = true;
+			notifyAll();
+		}
+
+		private void waitForData() throws InterruptedIOException
+		{
+			try {
+				wait();
+			}
+			catch (final InterruptedException e) {
+				throw new InterruptedIOException("interrupted on serial line");
+			}
+		}
+
+		// the characters are sent without pause, so we wait for them as a whole, and
+		// carry over the fraction of a millisecond to the next transmission
+		private void transmit(int chars) throws InterruptedIOException
+		{
+			final long ms;
+			synchronized (this) {
+				owed += chars * BITS_PER_CHAR * 1000000L / baudrate;
+				ms = owed / 1000;
+				owed %= 1000;
+			}
+			pause(ms);
+		}
+	}
+
+	private final class Bcu extends Thread
+	{
+		private final byte[] buf = new byte[512];
+		private int end;
+
+		Bcu()
+		{
+			super("BCU simulator");
+			setDaemon(true);
+		}
+
+		public void run()
+		{
+			try {
+				while (true) {
+					end += fromHost.read(buf, end, buf.length - end);
+					int pos = 0;
+					for (int n; (n = process(pos)) > 0;)
+						pos += n;
+					System.arraycopy(buf, pos, buf, 0, end - pos);
+					end -= pos;
+				}
+			}
+			catch (final IOException e) {}
+		}
+
+		// returns the number of processed bytes, or 0 for no or an incomplete frame
+		private int process(int pos) throws IOException
+		{
+			final int avail = end - pos;
+			if (avail == 0)
+				return 0;
+			final int c = buf[pos] & 0xff;
+			if (c == ACK) {
+				synchronized (FT12Simulator.this) {
+					++acks;
+				}
+				return 1;
+			}
+			if (c == START_FIXED) {
+				if (avail < 4)
+					return 0;
+				if (buf[pos + 1] != buf[pos + 2] || (buf[pos + 3] & 0xff) != END)
+					return 1;
+				if ((buf[pos + 1] & 0x0f) == RESET) {
+					synchronized (FT12Simulator.this) {
+						++resets;
+						rcvFrameCount = FRAMECOUNT_BIT;
+						sendFrameCount = FRAMECOUNT_BIT;
+					}
+				}
+				ack();
+				return 4;
+			}
+			if (c == START) {
+				if (avail < 4)
+					return 0;
+				final int len = buf[pos + 1] & 0xff;
+				if (buf[pos + 2] != buf[pos + 1] || (buf[pos + 3] & 0xff) != START)
+					return 1;
+				if (avail < len + 6)
+					return 0;
+				if ((buf[pos + len + 5] & 0xff) == END
+					&& checksum(buf, pos + 4, len) == buf[pos + len + 4])
+					userData(pos, len);
+				return len + 6;
+			}
+			return 1;
+		}
+
+		private void userData(int pos, int len) throws IOException
+		{
+			final int ctrl = buf[pos + 4] & 0xff;
+			final boolean repeat;
+			synchronized (FT12Simulator.this) {
+				repeat = (ctrl & FRAMECOUNT_BIT) != rcvFrameCount;
+				if (repeat)
+					++repeated;
+				else {
+					++frames;
+					rcvFrameCount ^= FRAMECOUNT_BIT;
+				}
+			}
+			// a new frame is processed even if its acknowledge gets lost
+			if (!ack() && mute)
+				return;
+			if (!repeat && (buf[pos + 5] & 0xff) == LDATA_REQ) {
+				final byte[] con = new byte[len - 1];
+				System.arraycopy(buf, pos + 5, con, 0, con.length);
+				con[0] = (byte) LDATA_CON;
+				sendFrame(con);
+			}
+		}
+
+		// returns false if the acknowledge was withheld
+		private boolean ack() throws IOException
+		{
+			synchronized (FT12Simulator.this) {
+				if (mute)
+					return false;
+				if (withheldAcks > 0) {
+					--withheldAcks;
+					return false;
+				}
+			}
+			pause(ackDelay);
+			toHost.write(new byte[] { (byte) ACK }, 0, 1);
+			return true;
+		}
+	}
+
+	/**
+	 * Creates a new BCU simulator, ready to get opened by a FT1.2 connection.
+	 * <p>
+	 * 
+	 * @param baudrate baud rate of the serial line [Bit/s], 0 &lt; baud rate
+	 */
+	public FT12Simulator(int baudrate)
+	{
+		setBaudRate(baudrate);
+		bcu.start();
+	}
+
+	/**
+	 * Creates a FT1.2 connection to this simulator.
+	 * <p>
+	 * 
+	 * @return the opened connection, the BCU is reset
+	 * @throws KNXException on failed BCU reset
+	 */
+	public FT12Connection connect() throws KNXException
+	{
+		return new FT12Connection(this, "sim");
+	}
+
+	/**
+	 * Delays every acknowledge of the BCU.
+	 * <p>
+	 * 
+	 * @param delay delay in milliseconds
+	 */
+	public void setAckDelay(int delay)
+	{
+		ackDelay = delay;
+	}
+
+	/**
+	 * Withholds the acknowledge for the next frames received from the host, so the host
+	 * has to repeat them.
+	 * <p>
+	 * 
+	 * @param frames number of frames not to acknowledge
+	 */
+	public synchronized void withholdAcks(int frames)
+	{
+		withheldAcks = frames;
+	}
+
+	/**
+	 * Sets whether the BCU stops answering the host altogether.
+	 * <p>
+	 * 
+	 * @param mute <code>true</code> to not answer any frame
+	 */
+	public void setMute(boolean mute)
+	{
+		this.mute = mute;
+	}
+
+	/**
+	 * Sends an EMI2 L-Data indication to the host.
+	 * <p>
+	 * 
+	 * @param frame EMI2 L-Data frame, the message code is set to L-Data indication
+	 * @throws IOException on closed serial line
+	 */
+	public void indicate(byte[] frame) throws IOException
+	{
+		final byte[] ind = (byte[]) frame.clone();
+		ind[0] = (byte) LDATA_IND;
+		sendFrame(ind);
+	}
+
+	/**
+	 * Sends raw bytes to the host, as is.
+	 * <p>
+	 * 
+	 * @param data the bytes to send
+	 * @throws IOException on closed serial line
+	 */
+	public void sendRaw(byte[] data) throws IOException
+	{
+		toHost.write(data, 0, data.length);
+	}
+
+	/**
+	 * Returns the number of user data frames received from the host, without repeated
+	 * frames.
+	 * <p>
+	 * 
+	 * @return number of frames
+	 */
+	public synchronized int getFrames()
+	{
+		return frames;
+	}
+
+	/**
+	 * Returns the number of repeated user data frames received from the host.
+	 * <p>
+	 * 
+	 * @return number of frames
+	 */
+	public synchronized int getRepeatedFrames()
+	{
+		return repeated;
+	}
+
+	/**
+	 * Returns the number of BCU resets requested by the host.
+	 * <p>
+	 * 
+	 * @return number of resets
+	 */
+	public synchronized int getResets()
+	{
+		return resets;
+	}
+
+	/**
+	 * Returns the number of acknowledges received from the host.
+	 * <p>
+	 * 
+	 * @return number of acknowledges
+	 */
+	public synchronized int getAcks()
+	{
+		return acks;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.serial.LibraryAdapter#getInputStream()
+	 */
+	public InputStream getInputStream()
+	{
+		return is;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.serial.LibraryAdapter#getOutputStream()
+	 */
+	public OutputStream getOutputStream()
+	{
+		return os;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.serial.LibraryAdapter#setBaudRate(int)
+	 */
+	public void setBaudRate(int baudrate)
+	{
+		if (baudrate > 0)
+			this.baudrate = baudrate;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.serial.LibraryAdapter#getBaudRate()
+	 */
+	public int getBaudRate()
+	{
+		return baudrate;
+	}
+
+	/* (non-Javadoc)
+	 * @see tuwien.auto.calimero.serial.LibraryAdapter#close()
+	 */
+	public void close()
+	{
+		toHost.close();
+		fromHost.close();
+	}
+
+	private synchronized void sendFrame(byte[] data) throws IOException
+	{
+		final byte[] buf = new byte[data.length + 7];
+		buf[0] = START;
+		buf[1] = (byte) (data.length + 1);
+		buf[2] = (byte) (data.length + 1);
+		buf[3] = START;
+		buf[4] = (byte) (DIR_FROM_BAU | INITIATOR | sendFrameCount | FRAMECOUNT_VALID
+			| USER_DATA);
+		System.arraycopy(data, 0, buf, 5, data.length);
+		buf[buf.length - 2] = checksum(buf, 4, data.length + 1);
+		buf[buf.length - 1] = END;
+		sendFrameCount ^= FRAMECOUNT_BIT;
+		toHost.write(buf, 0, buf.length);
+	}
+
+	private static byte checksum(byte[] data, int offset, int length)
+	{
+		byte chk = 0;
+		for (int i = 0; i < length; ++i)
+			chk += data[offset + i];
+		return chk;
+	}
+
+	private static void pause(long ms) throws InterruptedIOException
+	{
+		if (ms <= 0)
+			return;
+		try {
+			Thread.sleep(ms);
+		}
+		catch (final InterruptedException e) {
+			throw new InterruptedIOException("interrupted on serial line");
+		}
+	}
+}
@@ -0,0 +1,291 @@
+/*
+    Calimero - A library for KNX network access
+    Copyright (C) 2006-2008 B. Malinowsky
+
+    This program is free software; you can redistribute it and/or 
+    modify it under the terms of the GNU General Public License 
+    as published by the Free Software Foundation; either version 2 
+    of the License, or at your option any later version. 
+ 
+    This program is distributed in the hope that it will be useful, 
+    but WITHOUT ANY WARRANTY; without even the implied warranty of 
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+    GNU General Public License for more details. 
+ 
+    You should have received a copy of the GNU General Public License 
+    along with this program; if not, write to the Free Software 
+    Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+    Linking this library statically or dynamically with other modules is 
+    making a combined work based on this library. Thus, the terms and 
+    conditions of the GNU General Public License cover the whole 
+    combination. 
+ 
+    As a special exception, the copyright holders of this library give you 
+    permission to link this library with independent modules to produce an 
+    executable, regardless of the license terms of these independent 
+    modules, and to copy and distribute the resulting executable under terms 
+    of your choice, provided that you also meet, for each linked independent 
+    module, the terms and conditions of the license of that module. An 
+    independent module is a module which is not derived from or based on 
+    this library. If you modify this library, you may extend this exception 
+    to your version of the library, but you are not obligated to do so. If 
+    you do not wish to do so, delete this exception statement from your 
+    version. 
+*/
+
+package tuwien.auto.calimero.serial;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import tuwien.auto.calimero.CloseEvent;
+import tuwien.auto.calimero.FrameEvent;
+import tuwien.auto.calimero.KNXListener;
+import tuwien.auto.calimero.exception.KNXAckTimeoutException;
+import tuwien.auto.calimero.exception.KNXException;
+
+/**
+ * Exercises a FT1.2 connection against a {@link FT12Simulator}, and benchmarks the
+ * frame throughput and acknowledge latency at different baud rates.
+ * <p>
+ * 
+ * @author B. Malinowsky
+ */
+public class FT12SimulatorTest extends TestCase
+{
+	// EMI2 L-Data request, group value write 1/0/1 on
+	private static final byte[] req = { 0x11, 0x0C, 0x00, 0x00, 0x08, 0x01, (byte) 0xE1,
+		0x00, (byte) 0x81 };
+
+	private FT12Simulator bcu;
+	private FT12Connection c;
+	private final List received = new ArrayList();
+
+	private final KNXListener l = new KNXListener()
+	{
+		public void frameReceived(FrameEvent e)
+		{
+			synchronized (received) {
+				received.add(e.getFrameBytes());
+				received.notifyAll();
+			}
+		}
+
+		public void connectionClosed(CloseEvent e)
+		{}
+	};
+
+	/**
+	 * @param name name of test case
+	 */
+	public FT12SimulatorTest(String name)
+	{
+		super(name);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		received.clear();
+		bcu = new FT12Simulator(19200);
+		c = bcu.connect();
+		c.addConnectionListener(l);
+	}
+
+	/* (non-Javadoc)
+	 * @see junit.framework.TestCase#tearDown()
+	 */
+	protected void tearDown() throws Exception
+	{
+		c.close();
+		super.tearDown();
+	}
+
+	/**
+	 * Test method for the BCU reset on opening a connection.
+	 * 
+	 * @throws KNXException
+	 */
+	public final void testReset() throws KNXException
+	{
+		assertEquals(1, bcu.getResets());
+		assertEquals(FT12Connection.OK, c.getState());
+		final FT12Simulator mute = new FT12Simulator(19200);
+		mute.setMute(true);
+		try {
+			mute.connect();
+			fail("no acknowledge");
+		}
+		catch (final KNXAckTimeoutException e) {}
+		assertEquals(4, mute.getResets());
+	}
+
+	/**
+	 * Test method for {@link FT12Connection#send(byte[], boolean)}.
+	 * 
+	 * @throws KNXException
+	 * @throws InterruptedException
+	 */
+	public final void testSend() throws KNXException, InterruptedException
+	{
+		c.send(req, true);
+		assertEquals(FT12Connection.OK, c.getState());
+		assertTrue(waitFor(1, 1000));
+		final byte[] con = (byte[]) received.get(0);
+		assertEquals(0x2E, con[0]);
+		assertEquals(req.length, con.length);
+		c.send(req, false);
+		assertTrue(waitFor(2, 1000));
+		assertEquals(FT12Connection.OK, c.getState());
+		assertEquals(2, bcu.getFrames());
+	}
+
+	/**
+	 * Test method for repeating a frame without acknowledge.
+	 * 
+	 * @throws KNXException
+	 * @throws InterruptedException
+	 */
+	public final void testRepeat() throws KNXException, InterruptedException
+	{
+		bcu.withholdAcks(2);
+		c.send(req, true);
+		assertEquals(1, bcu.getFrames());
+		assertEquals(2, bcu.getRepeatedFrames());
+		assertTrue(waitFor(1, 1000));
+
+		// the frame count bit toggles for the next frame
+		c.send(req, true);
+		assertEquals(2, bcu.getFrames());
+		assertTrue(waitFor(2, 1000));
+
+		bcu.withholdAcks(4);
+		try {
+			c.send(req, true);
+			fail("no acknowledge");
+		}
+		catch (final KNXAckTimeoutException e) {}
+		assertEquals(FT12Connection.OK, c.getState());
+	}
+
+	/**
+	 * Test method for acknowledge delays close to the exchange timeout.
+	 * 
+	 * @throws KNXException
+	 * @throws InterruptedException
+	 */
+	public final void testAckDelay() throws KNXException, InterruptedException
+	{
+		// exchange timeout at 19200 Bit/s is 32 ms
+		bcu.setAckDelay(15);
+		c.send(req, true);
+		assertEquals(0, bcu.getRepeatedFrames());
+
+		// a late acknowledge is accepted for the repeated frame
+		bcu.setAckDelay(45);
+		c.send(req, true);
+		Thread.sleep(100);
+		assertEquals(2, bcu.getFrames());
+		assertEquals(1, bcu.getRepeatedFrames());
+	}
+
+	/**
+	 * Test method for indications sent by the BCU.
+	 * 
+	 * @throws Exception
+	 */
+	public final void testIndication() throws Exception
+	{
+		for (int i = 0; i < 10; ++i)
+			bcu.indicate(req);
+		assertTrue(waitFor(10, 2000));
+		assertEquals(0x29, ((byte[]) received.get(9))[0]);
+		// the last acknowledges might still be on the line
+		Thread.sleep(20);
+		assertEquals(10, bcu.getAcks());
+	}
+
+	/**
+	 * Test method for resynchronizing after a frame with invalid length.
+	 * 
+	 * @throws Exception
+	 */
+	public final void testInvalidLength() throws Exception
+	{
+		// length 0 and a matching checksum of 0
+		bcu.sendRaw(new byte[] { 0x68, 0x00, 0x00, 0x68, 0x00, 0x16 });
+		bcu.indicate(req);
+		assertTrue(waitFor(1, 1000));
+		assertEquals(req.length, ((byte[]) received.get(0)).length);
+		assertEquals(FT12Connection.OK, c.getState());
+	}
+
+	/**
+	 * Test method for a changed baud rate.
+	 * 
+	 * @throws KNXException
+	 */
+	public final void testSetBaudrate() throws KNXException
+	{
+		// exchange timeout at 9600 Bit/s is 58 ms, but only 32 ms at 19200 Bit/s
+		bcu.setAckDelay(40);
+		c.setBaudrate(9600);
+		assertEquals(9600, c.getBaudRate());
+		c.send(req, true);
+		assertEquals(0, bcu.getRepeatedFrames());
+	}
+
+	/**
+	 * Benchmarks the frame throughput (request and confirmation) and acknowledge latency
+	 * with blocking sends.
+	 * 
+	 * @throws KNXException
+	 * @throws InterruptedException
+	 */
+	public final void testBenchmark() throws KNXException, InterruptedException
+	{
+		final int[] rates = { 9600, 19200, 38400, 115200 };
+		final int frames = 50;
+		for (int k = 0; k < rates.length; ++k) {
+			c.close();
+			received.clear();
+			bcu = new FT12Simulator(rates[k]);
+			c = bcu.connect();
+			c.addConnectionListener(l);
+
+			long maxAck = 0;
+			long sumAck = 0;
+			final long start = System.currentTimeMillis();
+			for (int i = 0; i < frames; ++i) {
+				final long send = System.currentTimeMillis();
+				c.send(req, true);
+				final long ack = System.currentTimeMillis() - send;
+				sumAck += ack;
+				maxAck = Math.max(maxAck, ack);
+				assertTrue(waitFor(i + 1, 1000));
+			}
+			final long elapsed = Math.max(1, System.currentTimeMillis() - start);
+			assertEquals(frames, bcu.getFrames());
+			assertEquals(0, bcu.getRepeatedFrames());
+			System.out.println("FT1.2 " + rates[k] + " Bit/s: " + frames * 1000 / elapsed
+				+ " frames/s, ack latency avg " + (float) sumAck / frames + " ms, max "
+				+ maxAck + " ms");
+		}
+	}
+
+	private boolean waitFor(int frames, long timeout) throws InterruptedException
+	{
+		final long end = System.currentTimeMillis() + timeout;
+		synchronized (received) {
+			for (long wait = timeout; received.size() < frames && wait > 0; wait = end
+				- System.currentTimeMillis())
+				received.wait(wait);
+			return received.size() >= frames;
+		}
+	}
+}